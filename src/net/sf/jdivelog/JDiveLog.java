@@ -64,6 +64,8 @@ public class JDiveLog {
     public static final String PROPERTY_PREVIEW = "preview";
     public static final String PROPERTY_STARTSORT = "startsort";
     public static final String PROPERTY_DOCUMENTS_PATH = "documents_path";
+    public static final String PROPERTY_UNDO_LIMIT = "undo_limit";
+    public static final String PROPERTY_EXPORT_THREADS = "export_threads";
     
     
     /**
@@ -86,6 +88,8 @@ public class JDiveLog {
                 String preview = p.getProperty(PROPERTY_PREVIEW);
                 String startsort = p.getProperty(PROPERTY_STARTSORT);
                 String documents_path = p.getProperty(PROPERTY_DOCUMENTS_PATH);
+                String undoLimit = p.getProperty(PROPERTY_UNDO_LIMIT);
+                String exportThreads = p.getProperty(PROPERTY_EXPORT_THREADS);
                 if (locale != null) {
                     String lang;
                     String country = "";
@@ -136,6 +140,12 @@ public class JDiveLog {
                 else {
                     System.setProperty(PROPERTY_DOCUMENTS_PATH, "");
                 }
+                if (undoLimit != null) {
+                    System.setProperty(PROPERTY_UNDO_LIMIT, undoLimit);
+                }
+                if (exportThreads != null) {
+                    System.setProperty(PROPERTY_EXPORT_THREADS, exportThreads);
+                }
             } catch (FileNotFoundException e) {
                 LOGGER.log(Level.SEVERE, "failed to load properties", e);
             } catch (IOException e) {
@@ -24,7 +24,6 @@ package net.sf.jdivelog.ci;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.Iterator;
 import java.util.Properties;
 import java.util.TreeSet;
@@ -41,6 +40,7 @@ import net.sf.jdivelog.comm.CommUtil;
 import net.sf.jdivelog.comm.PortInUseException;
 import net.sf.jdivelog.comm.PortNotFoundException;
 import net.sf.jdivelog.comm.SerialPort;
+import net.sf.jdivelog.comm.SerialTransport;
 import net.sf.jdivelog.comm.UnsupportedCommOperationException;
 import net.sf.jdivelog.comm.SerialPort.DataBits;
 import net.sf.jdivelog.comm.SerialPort.Parity;
@@ -71,8 +71,15 @@ public class AladinInterface implements ComputerInterface {
             "unbekannt", "Aladin Air Z/X", "Aladin Pro", "Mares Genius", "unbekannt", "Aladin Air Z/X", "Spiro Monitor 3 Air", "unbekannt",
             "Aladin Air Z/X O2", "unbekannt", "Aladin Air Z/X Nitrox", "Aladin Pro Nitrox" };
 
+    /** maximum number of bytes received before the start sequence */
     private static final int TIME_OUT = 15000;
 
+    /** milliseconds to wait for the start sequence */
+    private static final int START_TIMEOUT = 120000;
+
+    /** the computer sends three 0x55 bytes and a 0x00 byte before the data */
+    private static final byte[] START_SEQUENCE = { 0x55, 0x55, 0x55 };
+
     private static final Integer[] CONNECTION_SPEED = { 19200, 9600, 2400 };
 
     private static final DataBits[] CONNECTION_DATA_BITS = { DataBits.DataBits_5, DataBits.DataBits_6,
@@ -92,7 +99,7 @@ public class AladinInterface implements ComputerInterface {
 
     private SerialPort commPort = null;
 
-    private InputStream in = null;
+    private SerialTransport transport = null;
 
     private AladinConfigurationPanel configurationPanel;
 
@@ -183,8 +190,6 @@ public class AladinInterface implements ComputerInterface {
     public void transfer(StatusInterface status, JDiveLog logbook) throws TransferException, NotInitializedException, InvalidConfigurationException {
         byte[] read_byte = new byte[1];
         int[] read_data = new int[2046];
-        int i = 0;
-        int timeout = 0;
 
         if (properties == null) {
             throw new NotInitializedException();
@@ -220,45 +225,28 @@ public class AladinInterface implements ComputerInterface {
             Parity parity = Parity.valueOf(this.properties.getProperty(PROPERTY_NAMES[5]));
             commPort.setSerialPortParams(connectionSpeed, dataBits, parity, stopBits);
             LOGGER.info(connectionSpeed + " " + dataBits + " " + parity + " " + stopBits);
-            commPort.enableReceiveTimeout(500);
             commPort.setDTR(true);
             commPort.setRTS(false);
             status.commSend();
             sleep(1000);
-            in = commPort.getInputStream();
-
-            // start reading the input stream
-            for (i = 0, timeout = 0; i < 4 && timeout < TIME_OUT;) {
-                // read the start byte sequence
-                in.read(read_byte);
-                if (read_byte[0] != 0) {
-                    LOGGER.fine(" " + read_byte[0]);
-                }
-                if (i < 3) {
-                    if (unsigned_int(read_byte[0]) == 85) {
-                        i++;
-                    } else {
-                        i = 0;
-                    }
-                } else if (unsigned_int(read_byte[0]) == 0) {
-                    i++;
-                } else {
-                    i = 0;
-                    throw new InvalidConfigurationException(Messages.getString("aladin.read_error"));
-                }
-                timeout++;
-            }
+            transport = new SerialTransport(commPort, status);
+
+            // skip everything up to the start byte sequence
+            byte[] start = transport.readUntil(START_SEQUENCE, TIME_OUT, START_TIMEOUT);
             // no connection in timeout
-            if (timeout == TIME_OUT) {
+            if (start == null) {
                 throw new TransferException(Messages.getString("aladin.comm_timeout"));
             }
+            LOGGER.fine("start sequence after " + (start.length - START_SEQUENCE.length) + " bytes");
+            if (transport.readFully(read_byte, 500) != 1 || read_byte[0] != 0) {
+                throw new InvalidConfigurationException(Messages.getString("aladin.read_error"));
+            }
 
             status.messageInfo(Messages.getString("aladin.reading"));
             // read the data
             for (int j = 0; j < read_data.length; j++) {
                 status.countingProgressbarIncrement();
-                in.read(read_byte);
-                status.commReceive();
+                transport.readFully(read_byte, 500);
                 read_data[j] = unsigned_int(read_byte[0]);
             }
             read_data = reorder_bytes(read_data, read_data.length);
@@ -266,7 +254,6 @@ public class AladinInterface implements ComputerInterface {
             for (int j = 0; j < read_data.length; j++) {
                 LOGGER.fine(" Nr. " + j + " :" + read_data[j]);
             }
-            in.close();
             commPort.setDTR(false);
             status.commSend();
 
@@ -308,7 +295,11 @@ public class AladinInterface implements ComputerInterface {
         }
         finally {
             status.messageClear();
-            if (commPort != null) {
+            if (transport != null) {
+                // closes the port as well
+                transport.close();
+                transport = null;
+            } else if (commPort != null) {
                 commPort.close();
             }
         }
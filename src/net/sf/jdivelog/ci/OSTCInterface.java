@@ -24,7 +24,6 @@ package net.sf.jdivelog.ci;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -51,6 +50,7 @@ import net.sf.jdivelog.comm.CommUtil;
 import net.sf.jdivelog.comm.PortInUseException;
 import net.sf.jdivelog.comm.PortNotFoundException;
 import net.sf.jdivelog.comm.SerialPort;
+import net.sf.jdivelog.comm.SerialTransport;
 import net.sf.jdivelog.comm.UnsupportedCommOperationException;
 import net.sf.jdivelog.gui.ostc.sim.DummyOstcSimulator;
 import net.sf.jdivelog.gui.ostc.sim.OstcSimulator;
@@ -414,16 +414,15 @@ public class OSTCInterface implements ComputerInterface {
         }
 
         SerialPort commPort = null;
+        SerialTransport transport = null;
         try {
             commPort = CommUtil.getInstance().open(portIdentifier);
             commPort.setSerialPortParams(115200, SerialPort.DataBits.DataBits_8, SerialPort.Parity.NONE,
                     SerialPort.StopBits.StopBits_1);
-            commPort.enableReceiveTimeout(500);
-            OutputStream out = commPort.getOutputStream();
-            InputStream in = commPort.getInputStream();
-            write(status, out, new byte[] { 10 });
+            transport = new SerialTransport(commPort, status);
+            transport.write(new byte[] { 10 });
             byte[] res = new byte[1];
-            read(status, in, res, 2000);
+            transport.readFully(res, 2000);
             sleep(1000);
         } catch (PortNotFoundException e) {
             LOGGER.log(Level.FINE, "driver detection failed", e);
@@ -434,7 +433,10 @@ public class OSTCInterface implements ComputerInterface {
         } catch (IOException e) {
             LOGGER.log(Level.FINE, "driver detection failed", e);
         } finally {
-            if (commPort != null) {
+            if (transport != null) {
+                // closes the port as well
+                transport.close();
+            } else if (commPort != null) {
                 commPort.close();
             }
         }
@@ -462,16 +464,15 @@ public class OSTCInterface implements ComputerInterface {
         String drivername = null; // "OSTC 0.23, 1.0" ?
 
         SerialPort commPort = null;
+        SerialTransport transport = null;
         try {
             commPort = CommUtil.getInstance().open(portIdentifier);
             commPort.setSerialPortParams(115200, SerialPort.DataBits.DataBits_8, SerialPort.Parity.NONE,
                     SerialPort.StopBits.StopBits_1);
-            commPort.enableReceiveTimeout(500);
-            OutputStream out = commPort.getOutputStream();
-            InputStream in = commPort.getInputStream();
-            write(status, out, new byte[] { 0x65 });
+            transport = new SerialTransport(commPort, status);
+            transport.write(new byte[] { 0x65 });
             byte[] hashbuf = new byte[18];
-            int count = read(status, in, hashbuf, 2000);
+            int count = transport.readFully(hashbuf, 2000);
             if (count != 18) {
                 LOGGER.warning("Could not autodetect driver, result-length of checkFirmware command: " + count);
                 return null;
@@ -501,7 +502,10 @@ public class OSTCInterface implements ComputerInterface {
         } catch (IOException e) {
             LOGGER.log(Level.FINE, "driver detection failed", e);
         } finally {
-            if (commPort != null) {
+            if (transport != null) {
+                // closes the port as well
+                transport.close();
+            } else if (commPort != null) {
                 commPort.close();
             }
         }
@@ -530,32 +534,6 @@ public class OSTCInterface implements ComputerInterface {
         out.write(data);
     }
 
-    private static int read(StatusInterface status, InputStream in, byte[] ret, int timeout) throws IOException {
-        int timeelapsed = 0;
-        byte[] buf = new byte[ret.length];
-        int count = 0;
-        while (count < ret.length) {
-            if (in.available() > 0) {
-                int read = in.read(buf, 0, ret.length - count);
-                for (int i = 0; i < read; i++) {
-                    ret[count + i] = buf[i];
-                }
-                if (read > 0) {
-                    status.commReceive();
-                    count += read;
-                }
-            }
-            if (timeout > 0 && timeelapsed > timeout) {
-                return count;
-            }
-            if (count < ret.length) {
-                sleep(100);
-                timeelapsed += 100;
-            }
-        }
-        return ret.length;
-    }
-
     private static void sleep(long millis) {
         try {
             Thread.sleep(millis);
@@ -306,9 +306,17 @@ public class SmartInterface implements ComputerInterface {
 
             write(new byte[] { (byte) 0xc4, 0, 0, 0, 0, 0x10, 0x27, 0x00, 0x00 },
                     status);
-            for (int j = 0; (long) j < length; j++) {
-                status.countingProgressbarIncrement();
-                read_data[j] = (byte) read(status);
+            for (int j = 0; j < read_data.length;) {
+                // read whole blocks instead of single bytes
+                int count = is.read(read_data, j, read_data.length - j);
+                if (count < 0) {
+                    throw new IOException("end of stream after " + j + " of " + read_data.length + " bytes");
+                }
+                status.commReceive();
+                for (int k = 0; k < count; k++) {
+                    status.countingProgressbarIncrement();
+                }
+                j += count;
             }
 
             // save Smart log file to disk
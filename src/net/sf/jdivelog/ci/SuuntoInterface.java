@@ -24,7 +24,6 @@ package net.sf.jdivelog.ci;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.GregorianCalendar;
@@ -50,6 +49,7 @@ import net.sf.jdivelog.comm.CommUtil;
 import net.sf.jdivelog.comm.PortInUseException;
 import net.sf.jdivelog.comm.PortNotFoundException;
 import net.sf.jdivelog.comm.SerialPort;
+import net.sf.jdivelog.comm.SerialTransport;
 import net.sf.jdivelog.comm.UnsupportedCommOperationException;
 import net.sf.jdivelog.gui.resources.Messages;
 import net.sf.jdivelog.gui.statusbar.StatusInterface;
@@ -82,7 +82,7 @@ public class SuuntoInterface implements ComputerInterface {
 
     private OutputStream out = null;
 
-    private InputStream in = null;
+    private SerialTransport transport = null;
 
     private boolean localEcho;
 
@@ -266,12 +266,11 @@ public class SuuntoInterface implements ComputerInterface {
         commPort = CommUtil.getInstance().open(portIdentifier);
         commPort.setSerialPortParams(computermodel.getBaudRate(), computermodel.getNumDataBits(),
                 computermodel.getParity(), computermodel.getNumStopBits());
-        commPort.enableReceiveTimeout(50);
         commPort.setDTR(true);
         commPort.setRTS(false);
         sleep(1000);
         out = commPort.getOutputStream();
-        in = commPort.getInputStream();
+        transport = new SerialTransport(commPort, status);
 
         boolean ready = false;
         for (int i = 0; i < 2 && !ready; i++) {
@@ -286,7 +285,11 @@ public class SuuntoInterface implements ComputerInterface {
 
     public void cleanup(StatusInterface status) {
         status.infiniteProgressbarEnd();
-        if (commPort != null) {
+        if (transport != null) {
+            // closes the port as well
+            transport.close();
+            transport = null;
+        } else if (commPort != null) {
             commPort.close();
         }
     }
@@ -639,27 +642,7 @@ public class SuuntoInterface implements ComputerInterface {
     }
 
     private int read(StatusInterface status, byte[] ret, int timeout) throws IOException {
-        int timeelapsed = 0;
-        byte[] buf = new byte[ret.length];
-        int count = 0;
-        while (count < ret.length) {
-            int read = in.read(buf, 0, ret.length - count);
-            for (int i = 0; i < read; i++) {
-                ret[count + i] = buf[i];
-            }
-            if (read > 0) {
-                status.commReceive();
-                count += read;
-            }
-            if (timeout > 0 && timeelapsed > timeout) {
-                return count;
-            }
-            if (count < ret.length) {
-                sleep(50);
-                timeelapsed += 50;
-            }
-        }
-        return ret.length;
+        return transport.readFully(ret, timeout);
     }
 
     private void createCRC(byte[] packet) {
@@ -820,6 +803,9 @@ public class SuuntoInterface implements ComputerInterface {
 
             }
 
+            public void commStatistics(int bytesPerSecond, int cpuPercent) {
+            }
+
             public void messageError(String message) {
                 // TODO Auto-generated method stub
 
@@ -872,12 +858,11 @@ public class SuuntoInterface implements ComputerInterface {
             commPort = CommUtil.getInstance().open(cpId);
             commPort.setSerialPortParams(2400, SerialPort.DataBits.DataBits_8, SerialPort.Parity.ODD,
                     SerialPort.StopBits.StopBits_1);
-            commPort.enableReceiveTimeout(5);
             commPort.setDTR(true);
             commPort.setRTS(false);
             sleep(1000);
             out = commPort.getOutputStream();
-            in = commPort.getInputStream();
+            transport = new SerialTransport(commPort, status);
 
             boolean ready = false;
             for (int i = 0; i < 5 && !ready; i++) {
@@ -900,7 +885,7 @@ public class SuuntoInterface implements ComputerInterface {
                 LOGGER.info("new value = " + Hexadecimal.valueOf(bs));
 
             } finally {
-                commPort.close();
+                transport.close();
             }
         }
 
@@ -361,54 +361,14 @@ public class SuuntoNGInterface implements ComputerInterface {
 
             status.messageInfo(Messages.getString("suunto.reading"));
 
-            // read memory header
-            byte[] bytes = readMemory(status, 0, MemoryHeader.SIZE);
-            MemoryHeader memoryHeader = new MemoryHeader(bytes);
-            LogBook logBook = new LogBook(memoryHeader);
+            LogBook logBook = readLogBook(status, memory, lastDiveDate, downloadAll);
 
-            status.countingProgressbarStart(memoryHeader.numberOfDivesInBuffer, true);
-
-            // read all dive profiles
-            int currentDiveOffset = memoryHeader.oldestDiveInBuffer;
-
-            for (int diveNumber = 1; diveNumber <= memoryHeader.numberOfDivesInBuffer; diveNumber++) {
-                status.countingProgressbarIncrement();
-
-                // read dive profile header to get offset to next dive
-                // profile header
-                bytes = readMemory(status, currentDiveOffset, DiveProfileHeader.VYPER_AIR_SIZE);
-
-                DiveProfileHeader diveProfileHeader = new DiveProfileHeader(bytes);
-
-                // read dive profile header with dive profile data
-                if (diveProfileHeader.nextDiveOffset > currentDiveOffset) {
-                    bytes = readMemory(status, currentDiveOffset, diveProfileHeader.nextDiveOffset - currentDiveOffset);
-                } else {
-                    bytes = readMemory(status, currentDiveOffset, diveProfileHeader.nextDiveOffset - MemoryHeader.SIZE);
-                }
-                currentDiveOffset = diveProfileHeader.nextDiveOffset;
-                diveProfileHeader = new DiveProfileHeader(bytes);
-
-                LogEntry logEntry = new LogEntry(diveProfileHeader);
-
-                // copy dive profile data into separate array
-                byte[] diveProfile = new byte[bytes.length - diveProfileHeader.getSize()];
-
-                System.arraycopy(bytes, diveProfileHeader.getSize(), diveProfile, 0, diveProfile.length);
-
-                DiveProfileData diveProfileData = new DiveProfileData(diveProfile,
-                        diveProfileHeader.sampleRecordingInterval, diveProfileHeader.temperatureRecordingInterval,
-                        diveProfileHeader.offsetToFirstMarker, diveProfileHeader.hasTankPressureInformation());
-
-                if (downloadAll || (lastDiveDate == null) || logEntry.date.after(lastDiveDate)) {
-                    logEntry.setProfile(diveProfileData.getProfile());
-                    logBook.addLogEntry(logEntry);
-                }
+            // save Suunto data to disk, the pages of the known dives have
+            // not been read after a partial download
+            if (logBook.getLogEntries().size() == logBook.numberOfDivesInBuffer) {
+                memory.saveToFile(new File(System.getProperty("java.io.tmpdir"), "suuntoNG.data").getPath());
             }
 
-            // save Suunto data to disk
-            memory.saveToFile(new File(System.getProperty("java.io.tmpdir"), "suuntoNG.data").getPath());
-
             // create the dive objects
             dives = new SuuntoNGAdapter(logBook);
         } catch (PortInUseException piuex) {
@@ -435,6 +395,91 @@ public class SuuntoNGInterface implements ComputerInterface {
         }
     }
 
+    /**
+     * Read the dives from the memory of the dive computer, the newest first.
+     * 
+     * @param status
+     *            status object
+     * @param memory
+     *            memory of the dive computer
+     * @param lastDiveDate
+     *            date of the last dive of the logbook, <code>null</code> if
+     *            the logbook has no dives
+     * @param downloadAll
+     *            <code>true</code> to read the dives older than the last
+     *            dive of the logbook as well
+     * 
+     * @return the dives, in chronological order
+     * @throws IOException
+     *             Thrown if the communication to the dive computer failed.
+     * @throws ChecksumException
+     *             Thrown if the checksum was wrong.
+     * @throws InterruptedException
+     *             Thrown if any thread has interrupted the current thread.
+     */
+    static LogBook readLogBook(StatusInterface status, Memory memory, Date lastDiveDate, boolean downloadAll)
+            throws IOException, ChecksumException, InterruptedException {
+        // read memory header
+        byte[] bytes = readMemory(status, memory, 0, MemoryHeader.SIZE);
+        MemoryHeader memoryHeader = new MemoryHeader(bytes);
+        LogBook logBook = new LogBook(memoryHeader);
+
+        status.countingProgressbarStart(memoryHeader.numberOfDivesInBuffer, true);
+
+        // walk the ring buffer from the newest dive backwards, so only
+        // the memory pages of new dives have to be transferred
+        LinkedList<LogEntry> newEntries = new LinkedList<LogEntry>();
+        int currentDiveOffset = memoryHeader.lastDiveInBuffer;
+
+        for (int diveNumber = 1; diveNumber <= memoryHeader.numberOfDivesInBuffer; diveNumber++) {
+            status.countingProgressbarIncrement();
+
+            // read dive profile header to get offset to next dive
+            // profile header
+            bytes = readMemory(status, memory, currentDiveOffset, DiveProfileHeader.VYPER_AIR_SIZE);
+
+            DiveProfileHeader diveProfileHeader = new DiveProfileHeader(bytes);
+
+            // the dives are in chronological order, so all dives from
+            // here on are older than the last dive of the logbook
+            if (!downloadAll && (lastDiveDate != null) && !new LogEntry(diveProfileHeader).date.after(lastDiveDate)) {
+                LOGGER.fine("stopped at known dive " + diveNumber + " of " + memoryHeader.numberOfDivesInBuffer);
+                break;
+            }
+
+            // read dive profile header with dive profile data
+            int previousDiveOffset = diveProfileHeader.prevDiveOffset;
+            if (diveProfileHeader.nextDiveOffset > currentDiveOffset) {
+                bytes = readMemory(status, memory, currentDiveOffset, diveProfileHeader.nextDiveOffset - currentDiveOffset);
+            } else {
+                // the dive wraps around the end of the ring buffer
+                bytes = readMemory(status, memory, currentDiveOffset, (Memory.SIZE - currentDiveOffset)
+                        + (diveProfileHeader.nextDiveOffset - MemoryHeader.SIZE));
+            }
+            currentDiveOffset = previousDiveOffset;
+            diveProfileHeader = new DiveProfileHeader(bytes);
+
+            LogEntry logEntry = new LogEntry(diveProfileHeader);
+
+            // copy dive profile data into separate array
+            byte[] diveProfile = new byte[bytes.length - diveProfileHeader.getSize()];
+
+            System.arraycopy(bytes, diveProfileHeader.getSize(), diveProfile, 0, diveProfile.length);
+
+            DiveProfileData diveProfileData = new DiveProfileData(diveProfile,
+                    diveProfileHeader.sampleRecordingInterval, diveProfileHeader.temperatureRecordingInterval,
+                    diveProfileHeader.offsetToFirstMarker, diveProfileHeader.hasTankPressureInformation());
+
+            logEntry.setProfile(diveProfileData.getProfile());
+            newEntries.addFirst(logEntry);
+        }
+        for (LogEntry logEntry : newEntries) {
+            logBook.addLogEntry(logEntry);
+        }
+
+        return logBook;
+    }
+
     /**
      * Finish progress bar, close comm port.
      * 
@@ -583,6 +628,8 @@ public class SuuntoNGInterface implements ComputerInterface {
      * 
      * @param status
      *            status object
+     * @param memory
+     *            memory of the dive computer
      * @param address
      *            start address
      * @param count
@@ -596,13 +643,13 @@ public class SuuntoNGInterface implements ComputerInterface {
      * @throws InterruptedException
      *             Thrown if any thread has interrupted the current thread.
      */
-    private byte[] readMemory(StatusInterface status, int address, int count) throws IOException, ChecksumException,
-            InterruptedException {
+    private static byte[] readMemory(StatusInterface status, Memory memory, int address, int count)
+            throws IOException, ChecksumException, InterruptedException {
         ByteArrayOutputStream result = new ByteArrayOutputStream();
         byte[] bytes = null;
 
         status.commSend();
-        if (address + count < Memory.SIZE) {
+        if (address + count <= Memory.SIZE) {
             result.write(memory.read(address, count));
         } else {
             bytes = memory.read(address, Memory.SIZE - address);
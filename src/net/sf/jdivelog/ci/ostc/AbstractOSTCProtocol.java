@@ -26,13 +26,12 @@ import java.awt.Font;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.TreeSet;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.swing.JDialog;
@@ -48,6 +47,7 @@ import net.sf.jdivelog.comm.CommUtil;
 import net.sf.jdivelog.comm.PortInUseException;
 import net.sf.jdivelog.comm.PortNotFoundException;
 import net.sf.jdivelog.comm.SerialPort;
+import net.sf.jdivelog.comm.SerialTransport;
 import net.sf.jdivelog.comm.UnsupportedCommOperationException;
 import net.sf.jdivelog.gui.resources.Messages;
 import net.sf.jdivelog.gui.statusbar.StatusInterface;
@@ -65,11 +65,8 @@ public abstract class AbstractOSTCProtocol {
 
     private CommPortIdentifier portIdentifier;
 
-    private SerialPort commPort;
+    private SerialTransport transport;
 
-    private OutputStream out;
-
-    private InputStream in;
 
     protected Map<Feature, OSTCValue> data;
 
@@ -78,7 +75,7 @@ public abstract class AbstractOSTCProtocol {
     public static Feature FEATURE_PROFILES = new Feature("profiles", Profiles.class);
 
     public AbstractOSTCProtocol() {
-        commPort = null;
+        transport = null;
     }
 
     /**
@@ -191,7 +188,7 @@ public abstract class AbstractOSTCProtocol {
                 if (len != 1 || res[0] != buf[0]) {
                     LOGGER.severe("Timeout on byte " + i + " len=" + len + " res[0]=" + Hexadecimal.valueOf(res[0])
                             + ", read-time=" + (System.currentTimeMillis() - start));
-                    printout(status, in);
+                    printout(transport);
                     throw new TransferException(Messages.getString("suunto.comm_timeout"));
                 }
             }
@@ -204,24 +201,18 @@ public abstract class AbstractOSTCProtocol {
         return 252;
     }
 
-    private static void printout(StatusInterface status, InputStream in) {
-        long lastrec = System.currentTimeMillis();
-        long current = lastrec;
-        while (current - lastrec < 400) {
-            try {
-                byte[] b = new byte[256];
-                int len = in.read(b);
-                current = System.currentTimeMillis();
-                if (len > 0) {
-                    status.commReceive();
-                    byte[] b2 = new byte[len];
-                    System.arraycopy(b, 0, b2, 0, len);
-                    LOGGER.fine("< " + Hexadecimal.valueOf(b2));
-                    lastrec = current;
-                }
-            } catch (IOException e) {
-                current = System.currentTimeMillis();
+    private static void printout(SerialTransport transport) {
+        try {
+            byte[] b = new byte[256];
+            int len = transport.readFully(b, 400);
+            while (len > 0) {
+                byte[] b2 = new byte[len];
+                System.arraycopy(b, 0, b2, 0, len);
+                LOGGER.fine("< " + Hexadecimal.valueOf(b2));
+                len = transport.readFully(b, 400);
             }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "printout stopped", e);
         }
     }
 
@@ -256,12 +247,10 @@ public abstract class AbstractOSTCProtocol {
             UnsupportedCommOperationException, IOException, TransferException {
         status.infiniteProgressbarStart();
         status.messageClear();
-        commPort = CommUtil.getInstance().open(portIdentifier);
+        SerialPort commPort = CommUtil.getInstance().open(portIdentifier);
         commPort.setSerialPortParams(115200, SerialPort.DataBits.DataBits_8, SerialPort.Parity.NONE,
                 SerialPort.StopBits.StopBits_1);
-        commPort.enableReceiveTimeout(20);
-        out = commPort.getOutputStream();
-        in = commPort.getInputStream();
+        transport = new SerialTransport(commPort, status);
         try {
             write(status, new byte[] { 0x68 });
             byte[] res = new byte[1];
@@ -314,25 +303,11 @@ public abstract class AbstractOSTCProtocol {
     }
 
     protected final void write(StatusInterface status, byte[] data) throws IOException {
-        status.commSend();
-        out.write(data);
-        out.flush();
+        transport.write(data);
     }
 
     protected final int read(StatusInterface status, byte[] ret, int timeout) throws IOException {
-        long starttime = System.currentTimeMillis();
-        int count = 0;
-        while (count < ret.length) {
-            int read = in.read(ret, count, ret.length - count);
-            if (read > 0) {
-                status.commReceive();
-                count += read;
-            }
-            if (System.currentTimeMillis() - starttime > timeout) {
-                return count;
-            }
-        }
-        return ret.length;
+        return transport.readFully(ret, timeout);
     }
 
     private void checkFeature(Feature feature) throws UnknownFeatureException {
@@ -355,19 +330,18 @@ public abstract class AbstractOSTCProtocol {
     protected void startCommunication(StatusInterface status) throws PortNotFoundException, PortInUseException,
             UnsupportedCommOperationException, IOException {
         status.infiniteProgressbarStart();
-        commPort = CommUtil.getInstance().open(portIdentifier);
+        SerialPort commPort = CommUtil.getInstance().open(portIdentifier);
         commPort.setSerialPortParams(115200, SerialPort.DataBits.DataBits_8, SerialPort.Parity.NONE,
                 SerialPort.StopBits.StopBits_1);
-        commPort.enableReceiveTimeout(10);
-        out = commPort.getOutputStream();
-        in = commPort.getInputStream();
+        transport = new SerialTransport(commPort, status);
     }
 
     /**
      * @param status
      */
     protected void endCommunication(StatusInterface status) {
-        commPort.close();
+        transport.close();
+        transport = null;
         status.infiniteProgressbarEnd();
     }
 
@@ -34,10 +34,14 @@ public class ParseUtil {
     static final byte[] SEQ_END = {toByte(0xfd), toByte(0xfd), toByte(0xfe)};
 
     static int seekSequence(byte[] data, byte[] sequence, int offset) {
+        byte first = sequence[0];
         for (int i=offset; i<data.length-sequence.length; i++) {
+            if (data[i] != first) {
+                continue;
+            }
             boolean match = true;
-            for (int j=0; match && j<sequence.length; j++) {
-                match &= data[i+j] == sequence[j];
+            for (int j=1; match && j<sequence.length; j++) {
+                match = data[i+j] == sequence[j];
             }
             if (match) {
                 return i;
@@ -46,6 +50,55 @@ public class ParseUtil {
         return -1;
     }
 
+    /**
+     * Search a sequence in a ring buffer, a match may wrap around the end of the ring.
+     * 
+     * @param data the array containing the ring
+     * @param ringStart index of the first byte of the ring in data
+     * @param ringLength length of the ring
+     * @param sequence the sequence to search
+     * @param offset position in the ring where the search starts
+     * @return position of the sequence counted from offset without wrapping, so it
+     *         may be beyond ringLength, or -1 if the ring does not contain the sequence
+     */
+    static int seekSequenceInRing(byte[] data, int ringStart, int ringLength, byte[] sequence, int offset) {
+        int start = offset % ringLength;
+        // from the offset to the end of the ring, then from the beginning
+        // of the ring, so the scan itself does not need to wrap
+        int pos = seekSequenceInRing(data, ringStart, ringLength, sequence, start, ringLength);
+        if (pos != -1) {
+            return offset + pos - start;
+        }
+        pos = seekSequenceInRing(data, ringStart, ringLength, sequence, 0, start);
+        if (pos != -1) {
+            return offset + ringLength - start + pos;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the position in the ring of the first match starting between from and to, or -1
+     */
+    private static int seekSequenceInRing(byte[] data, int ringStart, int ringLength, byte[] sequence, int from, int to) {
+        byte first = sequence[0];
+        for (int pos=from; pos<to; pos++) {
+            if (data[ringStart+pos] != first) {
+                continue;
+            }
+            boolean match = true;
+            for (int j=1, p=pos+1; match && j<sequence.length; j++, p++) {
+                if (p == ringLength) {
+                    p = 0;
+                }
+                match = data[ringStart+p] == sequence[j];
+            }
+            if (match) {
+                return pos;
+            }
+        }
+        return -1;
+    }
+
     static byte toByte(int i) {
         return (byte)i;
     }
@@ -53,25 +106,30 @@ public class ParseUtil {
     static byte[] extractAndSortProfiles(byte[] data) {
         int configlength = 266;
         int len = data.length - configlength;
-        byte[] profiles1 = new byte[len*3];
-        // now we stretch the ring
-        System.arraycopy(data, configlength, profiles1, 0, len);
-        System.arraycopy(data, configlength, profiles1, len, len);
-        System.arraycopy(data, configlength, profiles1, len*2, len);
-                
+        if (len <= 0) {
+            return new byte[0];
+        }
+        // the profiles are stored in a ring, it is searched in place
+        
         // find the 1st end tag
-        int firstEnd = seekSequence(profiles1, ParseUtil.SEQ_END, 0);
+        int firstEnd = seekSequenceInRing(data, configlength, len, ParseUtil.SEQ_END, 0);
         
         // from there find the first start tag
-        int firstStart = seekSequence(profiles1, SEQ_START_DIVE_HEADER, firstEnd > 0 ? firstEnd : 0);
-        
-        // find the 2nd end tag
-        int secondEnd = firstStart + len;
+        int firstStart = seekSequenceInRing(data, configlength, len, SEQ_START_DIVE_HEADER, firstEnd > 0 ? firstEnd : 0);
+        if (firstStart == -1) {
+            return new byte[0];
+        }
         
-        byte[] profiles2 = new byte[secondEnd+ParseUtil.SEQ_END.length-firstStart];
-        System.arraycopy(profiles1, firstStart, profiles2, 0, secondEnd+ParseUtil.SEQ_END.length-firstStart);
+        // copy one round of the ring from there, followed by the end tag
+        byte[] profiles = new byte[len+ParseUtil.SEQ_END.length];
+        int pos = firstStart % len;
+        for (int copied = 0; copied < profiles.length; pos = 0) {
+            int count = Math.min(profiles.length - copied, len - pos);
+            System.arraycopy(data, configlength + pos, profiles, copied, count);
+            copied += count;
+        }
         
-        return profiles2;
+        return profiles;
     }
 
     static int parseCFValue(byte[] data, int offset) {
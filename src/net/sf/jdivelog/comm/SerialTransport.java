@@ -0,0 +1,314 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: SerialTransport.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.comm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.sf.jdivelog.gui.statusbar.StatusInterface;
+
+/**
+ * Buffered access to a serial port.
+ * <p>
+ * A reader thread blocks on the input stream of the port and puts all
+ * received bytes into a ring buffer. The read methods wait on the buffer
+ * until enough bytes have arrived or the timeout has passed, so no thread
+ * polls the port. Once per second the throughput and the cpu time of the
+ * reader thread are reported to the {@link StatusInterface}.
+ */
+public class SerialTransport {
+
+    private static final Logger LOGGER = Logger.getLogger(SerialTransport.class.getName());
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** receive timeout of the port, only limits how long close() waits for the reader */
+    private static final int PORT_TIMEOUT = 100;
+
+    private static final long STATISTICS_INTERVAL = 1000;
+
+    private static int threadCount = 0;
+
+    private final SerialPort port;
+
+    private final StatusInterface status;
+
+    private final OutputStream out;
+
+    private final InputStream in;
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    private int head = 0;
+
+    private int count = 0;
+
+    private boolean closed = false;
+
+    private IOException error;
+
+    private final Thread reader;
+
+    private long received = 0;
+
+    private long statisticsTime;
+
+    private long statisticsReceived = 0;
+
+    private long statisticsCpuTime = -1;
+
+    /**
+     * @param port the opened and configured port.
+     * @param status gets the receive events and the statistics.
+     */
+    public SerialTransport(SerialPort port, StatusInterface status) throws IOException {
+        this.port = port;
+        this.status = status;
+        out = port.getOutputStream();
+        in = port.getInputStream();
+        try {
+            port.enableReceiveTimeout(PORT_TIMEOUT);
+        } catch (UnsupportedCommOperationException e) {
+            LOGGER.log(Level.FINE, "receive timeout not supported, close may block", e);
+        }
+        statisticsTime = System.currentTimeMillis();
+        reader = new Thread(new Reader(), "serial-reader-" + nextThreadNumber());
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    public void write(byte[] data) throws IOException {
+        status.commSend();
+        out.write(data);
+        out.flush();
+    }
+
+    /**
+     * read until the array is full or the timeout has passed.
+     * @param ret the array to fill.
+     * @param timeout in milliseconds, 0 waits without limit.
+     * @return the number of bytes read, less than the length of the array on timeout.
+     */
+    public int readFully(byte[] ret, int timeout) throws IOException {
+        return readFully(ret, 0, ret.length, timeout);
+    }
+
+    /**
+     * read until len bytes have been read or the timeout has passed.
+     * @param timeout in milliseconds, 0 waits without limit.
+     * @return the number of bytes read, less than len on timeout.
+     */
+    public synchronized int readFully(byte[] ret, int off, int len, int timeout) throws IOException {
+        long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : Long.MAX_VALUE;
+        int done = 0;
+        while (done < len) {
+            int n = Math.min(len - done, Math.min(count, BUFFER_SIZE - head));
+            if (n > 0) {
+                System.arraycopy(buffer, head, ret, off + done, n);
+                take(n);
+                done += n;
+            } else if (!await(deadline)) {
+                break;
+            }
+        }
+        return done;
+    }
+
+    /**
+     * read up to and including the first occurrence of the marker.
+     * @param marker the bytes which end the block.
+     * @param maxLength the maximum length of the block.
+     * @param timeout in milliseconds, 0 waits without limit.
+     * @return the block including the marker, or <code>null</code> if the
+     *         marker has not been received within the timeout or the maximum
+     *         length. The bytes in front of the marker stay in the buffer then.
+     */
+    public synchronized byte[] readUntil(byte[] marker, int maxLength, int timeout) throws IOException {
+        long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : Long.MAX_VALUE;
+        int checked = 0;
+        while (true) {
+            int limit = Math.min(count, maxLength);
+            for (int i = checked; i + marker.length <= limit; i++) {
+                if (matches(i, marker)) {
+                    byte[] result = new byte[i + marker.length];
+                    for (int j = 0; j < result.length; j++) {
+                        result[j] = buffer[(head + j) % BUFFER_SIZE];
+                    }
+                    take(result.length);
+                    return result;
+                }
+                checked = i + 1;
+            }
+            if (limit >= maxLength || !await(deadline)) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * stop the reader thread and close the port.
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            reader.join(2 * PORT_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        port.close();
+    }
+
+    //
+    // private methods
+    //
+
+    private static synchronized int nextThreadNumber() {
+        return ++threadCount;
+    }
+
+    private boolean matches(int offset, byte[] marker) {
+        for (int j = 0; j < marker.length; j++) {
+            if (buffer[(head + offset + j) % BUFFER_SIZE] != marker[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void take(int n) {
+        head = (head + n) % BUFFER_SIZE;
+        count -= n;
+        // wake up the reader if the buffer was full
+        notifyAll();
+    }
+
+    /**
+     * wait for more data.
+     * @return <code>false</code> if the deadline has passed.
+     */
+    private boolean await(long deadline) throws IOException {
+        if (error != null) {
+            throw error;
+        }
+        if (closed) {
+            throw new IOException("serial transport closed");
+        }
+        long wait = deadline - System.currentTimeMillis();
+        if (wait <= 0) {
+            return false;
+        }
+        try {
+            wait(wait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for data");
+        }
+        return true;
+    }
+
+    private synchronized void put(byte[] data, int len) throws InterruptedException {
+        int off = 0;
+        while (off < len && !closed) {
+            if (count == BUFFER_SIZE) {
+                wait();
+                continue;
+            }
+            int tail = (head + count) % BUFFER_SIZE;
+            int n = Math.min(len - off, Math.min(BUFFER_SIZE - count, BUFFER_SIZE - tail));
+            System.arraycopy(data, off, buffer, tail, n);
+            count += n;
+            off += n;
+        }
+        received += len;
+        notifyAll();
+    }
+
+    private void reportStatistics() {
+        long now = System.currentTimeMillis();
+        if (now - statisticsTime < STATISTICS_INTERVAL) {
+            return;
+        }
+        long bytes;
+        synchronized (this) {
+            bytes = received;
+        }
+        long cpuTime = -1;
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads.isCurrentThreadCpuTimeSupported()) {
+            cpuTime = threads.getCurrentThreadCpuTime();
+        }
+        int bytesPerSecond = (int) ((bytes - statisticsReceived) * 1000 / (now - statisticsTime));
+        int cpuPercent = -1;
+        if (cpuTime >= 0 && statisticsCpuTime >= 0) {
+            cpuPercent = (int) ((cpuTime - statisticsCpuTime) / 10000 / (now - statisticsTime));
+        }
+        status.commStatistics(bytesPerSecond, cpuPercent);
+        statisticsTime = now;
+        statisticsReceived = bytes;
+        statisticsCpuTime = cpuTime;
+    }
+
+    /**
+     * blocks on the port and copies the received bytes into the buffer.
+     */
+    private class Reader implements Runnable {
+
+        public void run() {
+            byte[] chunk = new byte[4096];
+            try {
+                while (true) {
+                    synchronized (SerialTransport.this) {
+                        if (closed) {
+                            return;
+                        }
+                    }
+                    int len = in.read(chunk);
+                    if (len < 0) {
+                        throw new IOException("end of stream");
+                    }
+                    if (len > 0) {
+                        status.commReceive();
+                        put(chunk, len);
+                    }
+                    reportStatistics();
+                }
+            } catch (IOException e) {
+                synchronized (SerialTransport.this) {
+                    if (!closed) {
+                        LOGGER.log(Level.FINE, "serial reader stopped", e);
+                        error = e;
+                    }
+                    SerialTransport.this.notifyAll();
+                }
+            } catch (InterruptedException e) {
+                // closed
+            }
+        }
+    }
+
+}
@@ -1511,6 +1511,9 @@ public class DiveDetailPanel extends JPanel implements ActionListener, ItemListe
                     
                 }
 
+                public void commStatistics(int bytesPerSecond, int cpuPercent) {
+                }
+
                 public void countingProgressbarEnd() {
                     // TODO Auto-generated method stub
                     
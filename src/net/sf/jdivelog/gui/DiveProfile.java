@@ -33,21 +33,19 @@ import java.awt.FontMetrics;
 import java.awt.Frame;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.Image;
 import java.awt.Polygon;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
-import java.awt.Shape;
 import java.awt.Stroke;
 import java.awt.Toolkit;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionAdapter;
-import java.awt.geom.AffineTransform;
 import java.awt.geom.GeneralPath;
-import java.awt.geom.PathIterator;
-import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.text.DateFormat;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -57,6 +55,8 @@ import java.util.Iterator;
 import java.util.Map.Entry;
 import java.util.StringTokenizer;
 import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.swing.JComponent;
 
@@ -85,6 +85,8 @@ import net.sf.jdivelog.util.UnitConverter;
  */
 public class DiveProfile extends JComponent {
 
+    private static final Logger LOGGER = Logger.getLogger(DiveProfile.class.getName());
+
     private static final BasicStroke PPO2_STROKE = new BasicStroke(2, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND, 1, new float[] { 1, 3 }, 0);
 
     private static final long serialVersionUID = 3257565101040088629L;
@@ -164,19 +166,17 @@ public class DiveProfile extends JComponent {
 
     private HashMap<Integer, String> gases = null;
 
-    private HashMap<Integer, TreeSet<TimeDepth>> depths = null;
+    private HashMap<Integer, ProfileSeries> depths = null;
 
-    private HashMap<String, TreeSet<TimeDepth>> ppo2s = null;
-    
-    private HashMap<Integer, String> time_ppo2s = null;
+    private HashMap<String, ProfileSeries> ppo2s = null;
 
     private TreeSet<TimeAlarm> alarms = null;
 
     private HashMap<Rectangle, String> alarmPositions = null;
 
-    private TreeSet<TimeTemperature> temperatures = null;
+    private ProfileSeries temperatures = null;
 
-    private TreeSet<TimeDepth> decoinfos;
+    private ProfileSeries decoinfos;
 
     private double timeScale = 1;
 
@@ -202,6 +202,15 @@ public class DiveProfile extends JComponent {
 
     private final ProfileSettings profileSettings;
 
+    /** background, grid, temperature, ppO2, deco and depth graphs, rendered once per size and dive */
+    private transient BufferedImage staticLayers;
+
+    private boolean staticLayersValid = false;
+
+    private Rectangle graphCoords;
+
+    private Dimension graphCoordsSize;
+
     public DiveProfile(ProfileSettings profileSettings) {
         this.profileSettings = profileSettings;
         setSize(10, 10);
@@ -248,24 +257,23 @@ public class DiveProfile extends JComponent {
         return isCrossHairMode;
     }
 
+    /**
+     * Paints the cached static layers and the alarm icons on top of them.
+     * The static layers are only rendered again when the size, the dive or
+     * the comparison profiles change, so repaints caused by the tooltips of
+     * the crosshair mode only copy the cached image.
+     */
     public void paint(Graphics g) {
         Dimension d = getPreferredSize();
-        if (d.getWidth() > 0 && d.getHeight() > 0) {
-            BufferedImage img = new BufferedImage(Double.valueOf(d.getWidth()).intValue(), Double.valueOf(d.getHeight()).intValue(), BufferedImage.TYPE_INT_ARGB);
-            Graphics2D g2d = img.createGraphics();
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,RenderingHints.VALUE_ANTIALIAS_ON);
-            g2d.setBackground(profileSettings.getBackgroundColor());
-            g2d.clearRect(0, 0, Double.valueOf(d.getWidth()).intValue(), Double.valueOf(d.getHeight()).intValue());
-            drawTemperatureGraph(g2d);
-            drawGrid(g2d);
-            drawPPO2Graph(g2d);
-            drawDecoGraph(g2d);
-            drawDepthGraphs(this, g2d, new PositionColorIndex(), comparisonProfile);
-            drawAlarms(g2d);
-            if (this.dive.getDive() == null) {
-                drawNoProfileData(g2d);
+        if (d.width > 0 && d.height > 0) {
+            long start = System.nanoTime();
+            BufferedImage img = getStaticLayers(d);
+            g.drawImage(img, 0, 0, d.width, d.height, profileSettings.getBackgroundColor(), this);
+            // the icons are loaded asynchronously, so they are not part of the cached layers
+            drawAlarms((Graphics2D) g);
+            if (LOGGER.isLoggable(Level.FINEST)) {
+                LOGGER.log(Level.FINEST, "paint() time: " + (System.nanoTime() - start) / 1000 + " usecs"); //$NON-NLS-1$ //$NON-NLS-2$
             }
-            g.drawImage(img, 0, 0, Double.valueOf(d.getWidth()).intValue(), Double.valueOf(d.getHeight()).intValue(), profileSettings.getBackgroundColor(), this);
         }
     }
     
@@ -278,7 +286,41 @@ public class DiveProfile extends JComponent {
     // private methods
     //
 
+    private BufferedImage getStaticLayers(Dimension d) {
+        if (staticLayers == null || staticLayers.getWidth() != d.width || staticLayers.getHeight() != d.height) {
+            GraphicsConfiguration gc = getGraphicsConfiguration();
+            if (gc != null) {
+                staticLayers = gc.createCompatibleImage(d.width, d.height);
+            } else {
+                staticLayers = new BufferedImage(d.width, d.height, BufferedImage.TYPE_INT_RGB);
+            }
+            staticLayersValid = false;
+        }
+        if (!staticLayersValid) {
+            long start = System.nanoTime();
+            Graphics2D g2d = staticLayers.createGraphics();
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,RenderingHints.VALUE_ANTIALIAS_ON);
+            g2d.setBackground(profileSettings.getBackgroundColor());
+            g2d.clearRect(0, 0, d.width, d.height);
+            drawTemperatureGraph(g2d);
+            drawGrid(g2d);
+            drawPPO2Graph(g2d);
+            drawDecoGraph(g2d);
+            drawDepthGraphs(this, g2d, new PositionColorIndex(), comparisonProfile);
+            if (this.dive.getDive() == null) {
+                drawNoProfileData(g2d);
+            }
+            g2d.dispose();
+            staticLayersValid = true;
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE, "render layers time: " + (System.nanoTime() - start) / 1000 + " usecs"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+        return staticLayers;
+    }
+
     private void initialize() {
+        this.staticLayersValid = false;
         this.maxTime = null;
         this.maxDepth = null;
         this.maxTemp = null;
@@ -302,7 +344,7 @@ public class DiveProfile extends JComponent {
         safetystopceilingpassedImage = Toolkit.getDefaultToolkit().getImage(getClass().getResource("/net/sf/jdivelog/gui/resources/icons/alarm.png")); //$NON-NLS-1$
         alarmPositions = new HashMap<Rectangle, String>();
 
-        if (this.dive.getDive() != null && this.dive.getDive().getSamples() != null) {
+        if (this.dive.getDive() != null && this.dive.getDive().getSampleCount() > 0) {
             Iterator<Gas> it = this.dive.getDive().getGases().iterator();
             while (it.hasNext()) {
                 Gas gas = it.next();
@@ -352,10 +394,11 @@ public class DiveProfile extends JComponent {
         int subprofileId = 0;
         addSubprofile(subprofileId, mixname);
         UnitConverter c = new UnitConverter(UnitConverter.getSystem(this.dive.getUnits()), UnitConverter.getDisplaySystem());
-        Iterator<Sample> it = this.dive.getDive().getSamples().iterator();
+        Dive d = this.dive.getDive();
+        int count = d.getSampleCount();
         double depth = 0.0;
-        while (it.hasNext()) {
-            Sample s = it.next();
+        for (int i = 0; i < count; i++) {
+            Sample s = d.getSample(i);
             if (s instanceof Depth) {
                 time += delta;
                 depth = c.convertAltitude((Double) s.getValue()).doubleValue();
@@ -413,9 +456,10 @@ public class DiveProfile extends JComponent {
         int subprofileId = 0;
         addSubprofile(subprofileId, mixname);
         double depth = 0.0;
-        Iterator<Sample> it = this.dive.getDive().getSamples().iterator();
-        while (it.hasNext()) {
-            Sample s = it.next();
+        Dive d = this.dive.getDive();
+        int count = d.getSampleCount();
+        for (int i = 0; i < count; i++) {
+            Sample s = d.getSample(i);
             if (s instanceof Depth) {
                 depth = c.convertAltitude((Double) s.getValue()).doubleValue();
                 if (this.maxDepth == null || this.maxDepth.doubleValue() < depth) {
@@ -469,38 +513,38 @@ public class DiveProfile extends JComponent {
             gases = new HashMap<Integer, String>();
         }
         if (depths == null) {
-            depths = new HashMap<Integer, TreeSet<TimeDepth>>();
+            depths = new HashMap<Integer, ProfileSeries>();
         }
         gases.put(subprofileId, gas);
-        depths.put(subprofileId, new TreeSet<TimeDepth>());
+        depths.put(subprofileId, new ProfileSeries());
     }
 
     private void addDepth(double time, double depth, int subprofileId) {
-        TreeSet<TimeDepth> set = depths.get(subprofileId);
-        if (set != null) {
-            set.add(new TimeDepth(time, depth));
+        ProfileSeries series = depths.get(subprofileId);
+        if (series != null) {
+            series.add(time, depth);
         }
     }
 
     private void addPPO2(double time, double ppo2, String sensor) {
         if (ppo2s == null) {
-            ppo2s = new HashMap<String, TreeSet<TimeDepth>>();
+            ppo2s = new HashMap<String, ProfileSeries>();
         }
-        TreeSet<TimeDepth> set = ppo2s.get(sensor);
-        if (set == null) {
-            set = new TreeSet<TimeDepth>();
-            ppo2s.put(sensor, set);
+        ProfileSeries series = ppo2s.get(sensor);
+        if (series == null) {
+            series = new ProfileSeries();
+            ppo2s.put(sensor, series);
         }
-        set.add(new TimeDepth(time, ppo2));
+        series.add(time, ppo2);
         if (ppo2 > maxPPO2) {
             maxPPO2 = ppo2;
         }
     }
 
     private void addGasSwitch(double time, int subprofileId) {
-        TreeSet<TimeDepth> set = depths.get(subprofileId);
-        if (set != null) {
-            set.add(new TimeDepth(time));
+        ProfileSeries series = depths.get(subprofileId);
+        if (series != null) {
+            series.addBreak(time);
         }
     }
 
@@ -508,9 +552,9 @@ public class DiveProfile extends JComponent {
         if (profileSettings.isShowTemperature()) {
             if (temperatures == null) {
                 drawTemp = true;
-                temperatures = new TreeSet<TimeTemperature>();
+                temperatures = new ProfileSeries();
             }
-            temperatures.add(new TimeTemperature(time, temp));
+            temperatures.add(time, temp);
         }
     }
 
@@ -518,9 +562,9 @@ public class DiveProfile extends JComponent {
         if (profileSettings.isShowDeco()) {
             if (decoinfos == null) {
                 drawDeco = true;
-                decoinfos = new TreeSet<TimeDepth>();
+                decoinfos = new ProfileSeries();
             }
-            decoinfos.add(new TimeDepth(time, depth));
+            decoinfos.add(time, depth);
         }
     }
 
@@ -532,8 +576,12 @@ public class DiveProfile extends JComponent {
     }
 
     private Rectangle getGraphCoords() {
-        return new Rectangle(LEFTLABEL_SIZE, TOPLABEL_SIZE, Double.valueOf(getPreferredSize().getWidth() - LEFTLABEL_SIZE - RIGHTLABEL_SIZE).intValue(),
-                Double.valueOf(getPreferredSize().getHeight() - BOTTOMLABEL_SIZE - TOPLABEL_SIZE).intValue());
+        Dimension d = getSize();
+        if (graphCoords == null || !d.equals(graphCoordsSize)) {
+            graphCoords = new Rectangle(LEFTLABEL_SIZE, TOPLABEL_SIZE, d.width - LEFTLABEL_SIZE - RIGHTLABEL_SIZE, d.height - BOTTOMLABEL_SIZE - TOPLABEL_SIZE);
+            graphCoordsSize = d;
+        }
+        return graphCoords;
     }
 
     private void drawNoProfileData(Graphics2D g2d) {
@@ -761,18 +809,17 @@ public class DiveProfile extends JComponent {
     }
 
     private void drawDepthGraph(DiveProfile profile, Graphics2D g, int subprofileId, Color c, boolean nofill) {
-        TreeSet<TimeDepth> depths = profile.depths.get(subprofileId);
+        ProfileSeries depths = profile.depths.get(subprofileId);
         if (depths != null) {
+            Rectangle r = getGraphCoords();
             PolyShape p = createNewPoly(nofill);
-            Iterator<TimeDepth> it = depths.iterator();
-            while (it.hasNext()) {
-                TimeDepth td = it.next();
-                if (td.isGasSwitch()) {
+            for (int i = 0; i < depths.size(); i++) {
+                if (depths.isBreak(i)) {
                     drawPoly(g, c, nofill, p);
                     p = createNewPoly(nofill);
                 } else {
-                    int x = Double.valueOf(getGraphCoords().getX() + (td.getTime() * timeScale) * getGraphCoords().getWidth() / GRID_X).intValue();
-                    int y = Double.valueOf(getGraphCoords().getY() + (td.getDepth() * altScale) * getGraphCoords().getHeight() / GRID_Y).intValue();
+                    int x = getX(r, depths.getTime(i));
+                    int y = (int) (r.getY() + (depths.getValue(i) * altScale) * r.getHeight() / GRID_Y);
                     p.addPoint(x, y);
                 }
             }
@@ -811,24 +858,17 @@ public class DiveProfile extends JComponent {
 
     private void drawPPO2Graph(Graphics2D g) {
         if (!comparisonProfile && profileSettings.isShowPpo2() && ppo2s != null && ppo2s.size() > 0) {
-        	time_ppo2s = new HashMap<Integer, String>();
             Color[] colors = new Color[] { profileSettings.getPpo2Color1(), profileSettings.getPpo2Color2(), profileSettings.getPpo2Color3(),
                     profileSettings.getPpo2Color4() };
             int count = 0;
-            for (Entry<String, TreeSet<TimeDepth>> entry : ppo2s.entrySet()) {
-                TreeSet<TimeDepth> tds = entry.getValue();
+            Rectangle r = getGraphCoords();
+            for (Entry<String, ProfileSeries> entry : ppo2s.entrySet()) {
+                ProfileSeries series = entry.getValue();
                 PolyShape p = createNewPoly(true);
-                for (TimeDepth td : tds) {
-                    int x = Double.valueOf(getGraphCoords().getX() + (td.getTime() * timeScale) * getGraphCoords().getWidth() / GRID_X).intValue();
-                    int y = Double.valueOf(getGraphCoords().getY() + getGraphCoords().getHeight() - (td.getDepth() * ppo2Scale) * getGraphCoords().getHeight()
-                            / GRID_Y).intValue();
+                for (int i = 0; i < series.size(); i++) {
+                    int x = getX(r, series.getTime(i));
+                    int y = (int) (r.getY() + r.getHeight() - (series.getValue(i) * ppo2Scale) * r.getHeight() / GRID_Y);
                     p.addPoint(x, y);
-                    if (time_ppo2s.get(x) == null) {
-                    	time_ppo2s.put(x, "#" + entry.getKey() + ": " + td.getDepth());
-                    }
-                    else {
-                       time_ppo2s.put(x, time_ppo2s.get(x) + " #" + entry.getKey() + ": " + td.getDepth());
-                    }
                 }
                 Stroke stroke = PPO2_STROKE;
                 Color color = colors[count++ % 4];
@@ -856,11 +896,14 @@ public class DiveProfile extends JComponent {
             temperatureSegments = new Double[segments];
             temperatureSegmentMin = null;
             temperatureSegmentMax = null;
-            Collection<TreeSet<TimeDepth>> timedepthgraphs = depths.values();
-            for (TreeSet<TimeDepth> tdg : timedepthgraphs) {
-                for (TimeDepth td : tdg) {
-                    int segment = getSegment(segments, td.depth);
-                    double t = getTemperature(td.time);
+            Collection<ProfileSeries> timedepthgraphs = depths.values();
+            for (ProfileSeries tdg : timedepthgraphs) {
+                for (int i = 0; i < tdg.size(); i++) {
+                    if (tdg.isBreak(i)) {
+                        continue;
+                    }
+                    int segment = getSegment(segments, tdg.getValue(i));
+                    double t = getTemperature(tdg.getTime(i));
                     if (temperatureSegments[segment] == null) {
                         temperatureSegments[segment] = t;
                     }
@@ -897,12 +940,11 @@ public class DiveProfile extends JComponent {
     }
 
     private double getTemperature(double time) {
-        TimeTemperature reftt = new TimeTemperature(time, 0.0);
-        TimeTemperature tt = temperatures.ceiling(reftt);
-        if (tt == null) {
-            tt = temperatures.floor(reftt);
+        int i = temperatures.ceilingIndex(time);
+        if (i == temperatures.size()) {
+            i--;
         }
-        return tt.temperature;
+        return temperatures.getValue(i);
     }
 
     private double getMinTempRounded() {
@@ -928,14 +970,13 @@ public class DiveProfile extends JComponent {
 
     private void drawDecoGraph(Graphics2D g) {
         if (!comparisonProfile && drawDeco && decoinfos != null && decoinfos.size() > 0) {
+            Rectangle r = getGraphCoords();
             PolyShape p = createNewPoly(true);
-            Iterator<TimeDepth> it = decoinfos.iterator();
-            int lasty = Double.valueOf(getGraphCoords().getY()).intValue();
-            while (it.hasNext()) {
-                TimeDepth td = it.next();
-                int x = Double.valueOf(getGraphCoords().getX() + (td.getTime() * timeScale) * getGraphCoords().getWidth() / GRID_X).intValue();
+            int lasty = (int) r.getY();
+            for (int i = 0; i < decoinfos.size(); i++) {
+                int x = getX(r, decoinfos.getTime(i));
                 p.addPoint(x, lasty);
-                int y = Double.valueOf(getGraphCoords().getY() + (td.getDepth() * altScale) * getGraphCoords().getHeight() / GRID_Y).intValue();
+                int y = (int) (r.getY() + (decoinfos.getValue(i) * altScale) * r.getHeight() / GRID_Y);
                 p.addPoint(x, y);
                 lasty = y;
             }
@@ -978,84 +1019,13 @@ public class DiveProfile extends JComponent {
         g.setStroke(defaultStroke);
     }
 
-    private static class PolyShape implements Shape {
-
-        private final Shape delegate;
-
-        private final boolean polygon;
-
-        private boolean firstPoint;
-
-        public PolyShape(Polygon poly) {
-            delegate = poly;
-            polygon = true;
-        }
-
-        public PolyShape(GeneralPath path) {
-            delegate = path;
-            firstPoint = true;
-            polygon = false;
-        }
-
-        public void addPoint(int x, int y) {
-            if (polygon) {
-                ((Polygon) delegate).addPoint(x, y);
-            }
-            else {
-                if (firstPoint) {
-                    firstPoint = false;
-                    ((GeneralPath) delegate).moveTo(x, y);
-                }
-                else {
-                    ((GeneralPath) delegate).lineTo(x, y);
-                }
-            }
-        }
-
-        public Rectangle getBounds() {
-            return delegate.getBounds();
-        }
-
-        public Rectangle2D getBounds2D() {
-            return delegate.getBounds2D();
-        }
-
-        public boolean contains(double x, double y) {
-            return delegate.contains(x, y);
-        }
-
-        public boolean contains(Point2D p) {
-            return delegate.contains(p);
-        }
-
-        public boolean intersects(double x, double y, double w, double h) {
-            return delegate.intersects(x, y, w, h);
-        }
-
-        public boolean intersects(Rectangle2D r) {
-            return delegate.intersects(r);
-        }
-
-        public boolean contains(double x, double y, double w, double h) {
-            return delegate.contains(x, y, w, h);
-        }
-
-        public boolean contains(Rectangle2D r) {
-            return delegate.contains(r);
-        }
-
-        public PathIterator getPathIterator(AffineTransform at) {
-            return delegate.getPathIterator(at);
-        }
-
-        public PathIterator getPathIterator(AffineTransform at, double flatness) {
-            return delegate.getPathIterator(at, flatness);
-        }
-
-    }
-
     private String getLabel() {
-        return dive.getDate() == null ? "" : DateFormatUtil.getDateTimeFormat().format(dive.getDate());
+        if (dive.getDate() == null) {
+            return "";
+        }
+        // profiles are also drawn by the export workers, the shared format is not thread safe
+        DateFormat format = (DateFormat) DateFormatUtil.getDateTimeFormat().clone();
+        return format.format(dive.getDate());
     }
 
     private String getDepth(int y) {
@@ -1075,11 +1045,36 @@ public class DiveProfile extends JComponent {
         return sb.toString();
     }
 
-    private String getppO2(int x) {  	
-    	if (time_ppo2s.get(x) == null) {
-    		return "";
-    	}
-    	return time_ppo2s.get(x);
+    private int getX(Rectangle r, double time) {
+        return (int) (r.getX() + (time * timeScale) * r.getWidth() / GRID_X);
+    }
+
+    /**
+     * @return the ppO2 values of all sensors drawn into the pixel column x.
+     */
+    private String getppO2(int x) {
+        Rectangle r = getGraphCoords();
+        double from = (x - r.getX()) * GRID_X / (timeScale * r.getWidth());
+        StringBuffer sb = new StringBuffer();
+        for (Entry<String, ProfileSeries> entry : ppo2s.entrySet()) {
+            ProfileSeries series = entry.getValue();
+            int i = series.ceilingIndex(from);
+            while (i > 0 && getX(r, series.getTime(i - 1)) == x) {
+                i--;
+            }
+            for (; i < series.size() && getX(r, series.getTime(i)) <= x; i++) {
+                if (getX(r, series.getTime(i)) == x) {
+                    if (sb.length() > 0) {
+                        sb.append(" ");
+                    }
+                    sb.append("#");
+                    sb.append(entry.getKey());
+                    sb.append(": ");
+                    sb.append(series.getValue(i));
+                }
+            }
+        }
+        return sb.toString();
     }
     
     
@@ -1207,75 +1202,6 @@ public class DiveProfile extends JComponent {
         }
     }
 
-    private class TimeDepth implements Comparable<TimeDepth> {
-        private double time;
-
-        private double depth;
-
-        private boolean gasSwitch;
-
-        public TimeDepth(double time, double depth) {
-            this.time = time;
-            this.depth = depth;
-            this.gasSwitch = false;
-        }
-
-        /**
-         * Constructor for Breaks (GasSwitches)
-         * 
-         * @param time
-         */
-        public TimeDepth(double time) {
-            this.time = time;
-            this.gasSwitch = true;
-        }
-
-        public int compareTo(TimeDepth td) {
-            if (this == td)
-                return 0;
-            return Double.compare(time, td.time);
-        }
-
-        public double getTime() {
-            return time;
-        }
-
-        public double getDepth() {
-            return depth;
-        }
-
-        public boolean isGasSwitch() {
-            return gasSwitch;
-        }
-    }
-
-    private class TimeTemperature implements Comparable<TimeTemperature> {
-        private double time;
-
-        private double temperature;
-
-        public TimeTemperature(double time, double temperature) {
-            this.time = time;
-            this.temperature = temperature;
-        }
-
-        public int compareTo(TimeTemperature tt) {
-            if (this == tt)
-                return 0;
-            return Double.compare(time, tt.time);
-        }
-
-        @SuppressWarnings("unused")
-      public double getTime() {
-            return time;
-        }
-
-        @SuppressWarnings("unused")
-      public double getTemperature() {
-            return temperature;
-        }
-    }
-
     private class TimeAlarm implements Comparable<TimeAlarm> {
         private double time;
 
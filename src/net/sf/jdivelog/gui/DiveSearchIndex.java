@@ -0,0 +1,489 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: DiveSearchIndex.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.gui;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import net.sf.jdivelog.gui.resources.Messages;
+import net.sf.jdivelog.model.DiveSite;
+import net.sf.jdivelog.model.JDive;
+import net.sf.jdivelog.model.JDiveLog;
+import net.sf.jdivelog.model.Picture;
+import net.sf.jdivelog.model.Tank;
+import net.sf.jdivelog.util.DateFormatUtil;
+import net.sf.jdivelog.util.UnitConverter;
+
+/**
+ * Description: Inverted index for the search box of the dive list.
+ * <p>
+ * The searchable text of every dive is extracted once and split into upper
+ * case tokens, each token pointing to the dives containing it. The tokens
+ * are indexed by their trigrams (substrings of three characters), so the
+ * tokens containing a search word are found among the tokens sharing its
+ * rarest trigram; words shorter than a trigram are compared with all
+ * tokens. A query checks the original search rules on the dives of those
+ * tokens alone. Search words still match anywhere inside the text, as they
+ * always did. Unlike an index of all suffixes, the trigram index grows
+ * linearly with the length of the tokens.
+ * <p>
+ * After a logbook change the index is brought up to date on the next
+ * search. If the change event names the changed dives, only those are
+ * indexed again resp. dropped, otherwise the text of every dive is compared.
+ */
+public class DiveSearchIndex {
+
+    private static final DateFormat TIMEFORMAT = new SimpleDateFormat(Messages.getString("timeformat")); //$NON-NLS-1$
+
+    private static final int GRAM = 3;
+
+    private final MainWindow mainWindow;
+
+    /** searchable text of each dive */
+    private HashMap<JDive, String> texts = new HashMap<JDive, String>();
+
+    /** upper case searchable text of each dive */
+    private HashMap<JDive, String> upperTexts = new HashMap<JDive, String>();
+
+    /** token -> dives containing the token */
+    private HashMap<String, Set<JDive>> postings = new HashMap<String, Set<JDive>>();
+
+    /** trigram -> tokens containing the trigram */
+    private HashMap<String, Set<String>> trigrams = new HashMap<String, Set<String>>();
+
+    /** all dives have to be checked */
+    private boolean outdated = true;
+
+    /** the dives to index again, if not outdated */
+    private HashSet<JDive> changedDives = new HashSet<JDive>();
+
+    public DiveSearchIndex(MainWindow mainWindow) {
+        this.mainWindow = mainWindow;
+    }
+
+    /**
+     * must be called whenever the dives or the master data of the logbook have changed.
+     */
+    public void logbookChanged(LogbookChangeEvent e) {
+        if (LogbookChangeEvent.EventType.LOGBOOK_LOADED.equals(e.getType()) || LogbookChangeEvent.EventType.LOGBOOK_UNLOADED.equals(e.getType())) {
+            texts.clear();
+            upperTexts.clear();
+            postings.clear();
+            trigrams.clear();
+        }
+        if (LogbookChangeEvent.EventType.LOGBOOK_TITLE_CHANGED.equals(e.getType())) {
+            return;
+        }
+        if (e.getChangedDives() == null) {
+            outdated = true;
+            changedDives.clear();
+        } else if (!outdated) {
+            changedDives.addAll(e.getChangedDives());
+        }
+    }
+
+    /**
+     * @param searchString the search string, supporting +mandatory, -forbidden and "quoted phrases".
+     * @return the matching dives of the logbook.
+     */
+    public TreeSet<JDive> search(String searchString) {
+        update();
+        Query query = new Query(searchString);
+        HashMap<String, Set<JDive>> cache = new HashMap<String, Set<JDive>>();
+        Set<JDive> candidates = new HashSet<JDive>(candidates(query.whole.toUpperCase(), cache));
+        candidates.addAll(candidates(searchString.toUpperCase(), cache));
+        if (!query.keywords.isEmpty()) {
+            Set<JDive> keywordCandidates = new HashSet<JDive>();
+            for (String word : query.keywords) {
+                keywordCandidates.addAll(candidates(word.toUpperCase(), cache));
+            }
+            for (String word : query.mandatory) {
+                keywordCandidates.retainAll(candidates(word.toUpperCase(), cache));
+            }
+            candidates.addAll(keywordCandidates);
+        }
+        TreeSet<JDive> result = new TreeSet<JDive>();
+        for (JDive dive : candidates) {
+            if (query.matches(texts.get(dive), upperTexts.get(dive))) {
+                result.add(dive);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return all dives which might contain the given upper case word.
+     */
+    private Set<JDive> candidates(String upperWord, Map<String, Set<JDive>> cache) {
+        ArrayList<String> tokens = tokenize(upperWord);
+        if (tokens.isEmpty()) {
+            return texts.keySet();
+        }
+        Set<JDive> result = null;
+        for (String token : tokens) {
+            Set<JDive> dives = cache.get(token);
+            if (dives == null) {
+                dives = new HashSet<JDive>();
+                // search words match inside of words as well
+                for (String word : containing(token)) {
+                    if (word.contains(token)) {
+                        dives.addAll(postings.get(word));
+                    }
+                }
+                cache.put(token, dives);
+            }
+            if (result == null) {
+                result = new HashSet<JDive>(dives);
+            } else {
+                result.retainAll(dives);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the tokens which might contain the given token, a superset of them.
+     */
+    private Set<String> containing(String token) {
+        if (token.length() < GRAM) {
+            return postings.keySet();
+        }
+        Set<String> rarest = null;
+        for (int i = 0; i + GRAM <= token.length(); i++) {
+            Set<String> words = trigrams.get(token.substring(i, i + GRAM));
+            if (words == null) {
+                return new HashSet<String>();
+            }
+            if (rarest == null || words.size() < rarest.size()) {
+                rarest = words;
+            }
+        }
+        return rarest;
+    }
+
+    private void update() {
+        JDiveLog logbook = mainWindow.getLogBook();
+        if (outdated) {
+            Set<JDive> current = new HashSet<JDive>(logbook.getDives());
+            for (JDive dive : new ArrayList<JDive>(texts.keySet())) {
+                if (!current.contains(dive)) {
+                    remove(dive);
+                }
+            }
+            for (JDive dive : current) {
+                update(logbook, dive);
+            }
+            outdated = false;
+        } else {
+            for (JDive dive : changedDives) {
+                if (logbook.getDives().contains(dive)) {
+                    update(logbook, dive);
+                } else {
+                    remove(dive);
+                }
+            }
+        }
+        changedDives.clear();
+    }
+
+    private void update(JDiveLog logbook, JDive dive) {
+        String text = extractString(logbook, dive);
+        if (!text.equals(texts.get(dive))) {
+            remove(dive);
+            add(dive, text);
+        }
+    }
+
+    private void add(JDive dive, String text) {
+        String upperText = text.toUpperCase();
+        texts.put(dive, text);
+        upperTexts.put(dive, upperText);
+        for (String token : tokenize(upperText)) {
+            Set<JDive> dives = postings.get(token);
+            if (dives == null) {
+                dives = new HashSet<JDive>();
+                postings.put(token, dives);
+                addTrigrams(token);
+            }
+            dives.add(dive);
+        }
+    }
+
+    private void remove(JDive dive) {
+        String upperText = upperTexts.remove(dive);
+        texts.remove(dive);
+        if (upperText != null) {
+            for (String token : tokenize(upperText)) {
+                Set<JDive> dives = postings.get(token);
+                if (dives != null) {
+                    dives.remove(dive);
+                    if (dives.isEmpty()) {
+                        postings.remove(token);
+                        removeTrigrams(token);
+                    }
+                }
+            }
+        }
+    }
+
+    private void addTrigrams(String token) {
+        for (int i = 0; i + GRAM <= token.length(); i++) {
+            String gram = token.substring(i, i + GRAM);
+            Set<String> words = trigrams.get(gram);
+            if (words == null) {
+                words = new HashSet<String>();
+                trigrams.put(gram, words);
+            }
+            words.add(token);
+        }
+    }
+
+    private void removeTrigrams(String token) {
+        for (int i = 0; i + GRAM <= token.length(); i++) {
+            String gram = token.substring(i, i + GRAM);
+            Set<String> words = trigrams.get(gram);
+            if (words != null) {
+                words.remove(token);
+                if (words.isEmpty()) {
+                    trigrams.remove(gram);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the distinct runs of letters and digits.
+     */
+    private static ArrayList<String> tokenize(String text) {
+        ArrayList<String> tokens = new ArrayList<String>();
+        HashSet<String> seen = new HashSet<String>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean letter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                String token = text.substring(start, i);
+                if (seen.add(token)) {
+                    tokens.add(token);
+                }
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private static String extractString(JDiveLog logbook, JDive dive) {
+        UnitConverter c = new UnitConverter(UnitConverter.getSystem(dive.getUnits()), UnitConverter.getDisplaySystem());
+        DiveSite site = logbook.getMasterdata().getDiveSiteByPrivateId(dive.getDiveSiteId());
+        StringBuffer sb = new StringBuffer();
+        sb.append(c.convertAMV(dive.getAMV()));
+        sb.append(" $ ");
+        sb.append(c.convertAltitude(dive.getAverageDepth()));
+        sb.append(" $ ");
+        sb.append(dive.getBuddy());
+        sb.append(" $ ");
+        sb.append(dive.getComment());
+        sb.append(" $ ");
+        sb.append(DateFormatUtil.getDateFormat().format(dive.getDate()));
+        sb.append(" $ ");
+        sb.append(TIMEFORMAT.format(dive.getDate()));
+        sb.append(" $ ");
+        sb.append(c.convertAltitude(dive.getDepth()));
+        sb.append(" $ ");
+        sb.append(dive.getDiveActivity());
+        sb.append(" $ ");
+        sb.append(dive.getDiveType());
+        sb.append(" $ ");
+        sb.append(c.convertTime(dive.getDuration()));
+        if (dive.getEquipment() != null) {
+            sb.append(" $ ");
+            sb.append(dive.getEquipment().getComment());
+            sb.append(" $ ");
+            sb.append(dive.getEquipment().getGloves());
+            sb.append(" $ ");
+            sb.append(dive.getEquipment().getName());
+            sb.append(" $ ");
+            sb.append(dive.getEquipment().getSuit());
+            Iterator<Tank> tankIt = dive.getEquipment().getTanks().iterator();
+            while(tankIt.hasNext()) {
+                Tank tank = tankIt.next();
+                sb.append(" $ ");
+                sb.append(c.convertVolume(tank.getGas().getTankvolume()));
+                sb.append(" $ ");
+                sb.append(tank.getType());
+            }
+            sb.append(" $ ");
+            sb.append(dive.getEquipment().getWeight());
+        }
+        if (dive.getPictures() != null) {
+            Iterator<Picture> picIt = dive.getPictures().iterator();
+            while (picIt.hasNext()) {
+                Picture pic = picIt.next();
+                sb.append(" $ ");
+                sb.append(pic.getName());
+                sb.append(" $ ");
+                sb.append(pic.getDescription());
+            }
+        }
+        sb.append(" $ ");
+        if (site != null) {
+            sb.append(site.getCountry());
+            sb.append(" $ ");
+            sb.append(site.getSpot());
+            sb.append(" $ ");
+            sb.append(site.getCity());
+            sb.append(" $ ");
+            sb.append(site.getState());
+            sb.append(" $ ");
+            sb.append(site.getWaters());
+            sb.append(" $ ");
+            sb.append(site.getDescription());
+            sb.append(" $ ");
+            sb.append(site.getDirections());
+            sb.append(" $ ");
+            sb.append(site.getWarnings());
+            sb.append(" $ ");
+            sb.append(site.getPrivateRemarks());
+            sb.append(" $ ");
+        }
+        sb.append(c.convertTemperature(dive.getTemperature()));
+        sb.append(" $ ");
+        sb.append(dive.getVisibility());
+        return sb.toString();
+    }
+
+    /**
+     * A parsed search string. Words are separated by blanks, "quoted phrases"
+     * form one word, a leading + makes a word mandatory, a leading - forbidden.
+     */
+    private static class Query {
+
+        private final String upperKeyword;
+        private final String whole;
+        private final ArrayList<String> keywords = new ArrayList<String>();
+        private final ArrayList<String> mandatory = new ArrayList<String>();
+        private final ArrayList<String> forbidden = new ArrayList<String>();
+
+        public Query(String keyword) {
+            this.upperKeyword = keyword.toUpperCase();
+            this.whole = keyword.replace('"', ' ').trim();
+            StringBuffer buf = new StringBuffer();
+            boolean quoted = false;
+            boolean isMandatory = false;
+            boolean isForbidden = false;
+            for (int i=0; i<keyword.length(); i++) {
+                if (quoted && keyword.charAt(i) == '"') {
+                    quoted = false;
+                    addWord(buf.toString().trim(), isMandatory, isForbidden);
+                    buf.setLength(0);
+                    isMandatory = false;
+                    isForbidden = false;
+                }
+                else if (!quoted && keyword.charAt(i) == '"') {
+                    quoted = true;
+                    String s = buf.toString().trim();
+                    if (s.length() > 0) {
+                        isMandatory = false;
+                        isForbidden = false;
+                        addWord(s, isMandatory, isForbidden);
+                    }
+                    buf.setLength(0);
+                }
+                else if (!quoted && keyword.charAt(i) == ' ') {
+                    addWord(buf.toString().trim(), isMandatory, isForbidden);
+                    buf.setLength(0);
+                    isMandatory = false;
+                    isForbidden = false;
+                }
+                else if (!quoted && keyword.charAt(i) == '+') {
+                    addWord(buf.toString().trim(), isMandatory, isForbidden);
+                    isMandatory = true;
+                    isForbidden = false;
+                    buf.setLength(0);
+                }
+                else if (!quoted && keyword.charAt(i) == '-') {
+                    if (i == 0 || keyword.charAt(i-1) == ' ') {
+                        isForbidden = true;
+                        isMandatory = false;
+                    } else {
+                        buf.append(keyword.charAt(i));
+                    }
+                }
+                else {
+                    buf.append(keyword.charAt(i));
+                }
+            }
+            addWord(buf.toString().trim(), isMandatory, isForbidden);
+        }
+
+        private void addWord(String s, boolean isMandatory, boolean isForbidden) {
+            if (s.length() > 0) {
+                if (isMandatory) {
+                    mandatory.add(s);
+                    keywords.add(s);
+                } else if (isForbidden) {
+                    forbidden.add(s);
+                } else {
+                    keywords.add(s);
+                }
+            }
+        }
+
+        /**
+         * @return <code>true</code> if the text matches the search string.
+         */
+        public boolean matches(String value, String upperValue) {
+            if (value.contains(whole)) {
+                return true;
+            }
+            if (upperValue.equals(upperKeyword)) {
+                return true;
+            }
+            if (keywords.isEmpty()) {
+                return false;
+            }
+            for (String word : forbidden) {
+                if (upperValue.contains(word.toUpperCase())) {
+                    return false;
+                }
+            }
+            for (String word : mandatory) {
+                if (!upperValue.contains(word.toUpperCase())) {
+                    return false;
+                }
+            }
+            for (String word : keywords) {
+                if (value.contains(word) || upperValue.contains(word.toUpperCase())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+}
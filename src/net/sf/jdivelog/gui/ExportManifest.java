@@ -0,0 +1,157 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: ExportManifest.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.gui;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Description: Records for every file or directory of an HTML export the hash
+ * of the inputs it was created from. An export only needs to write the files
+ * whose inputs have changed, and files the current export does not produce
+ * anymore can be removed.
+ * <p>
+ * Paths are relative to the export directory and use '/' as separator. A
+ * directory entry covers all entries below it. The methods are synchronized,
+ * as the dives are exported by several threads.
+ */
+class ExportManifest {
+
+    private static final Logger LOGGER = Logger.getLogger(ExportManifest.class.getName());
+
+    public static final String FILENAME = ".jdivelog_export"; //$NON-NLS-1$
+
+    private final File dir;
+
+    private final Properties entries = new Properties();
+
+    private final HashSet<String> used = new HashSet<String>();
+
+    /**
+     * @param dir the export directory, an existing manifest in it is loaded.
+     */
+    public ExportManifest(File dir) {
+        this.dir = dir;
+        File f = new File(dir, FILENAME);
+        if (f.isFile()) {
+            try {
+                InputStream in = new FileInputStream(f);
+                try {
+                    entries.load(in);
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "could not read export manifest, exporting everything", e); //$NON-NLS-1$
+                entries.clear();
+            }
+        }
+    }
+
+    /**
+     * @param path the relative path of a generated file or directory.
+     * @param key the hash of the current inputs of the file.
+     * @return <code>true</code> if the file exists and was created from the same inputs.
+     */
+    public synchronized boolean isCurrent(String path, String key) {
+        used.add(path);
+        return key.equals(entries.getProperty(path)) && new File(dir, path).exists();
+    }
+
+    /**
+     * forget a file before it is written, so an interrupted export does not leave it marked as current.
+     */
+    public synchronized void invalidate(String path) {
+        used.add(path);
+        entries.remove(path);
+    }
+
+    /**
+     * record a file after it has been written.
+     */
+    public synchronized void update(String path, String key) {
+        used.add(path);
+        entries.setProperty(path, key);
+    }
+
+    /**
+     * keep a directory and all entries below it, although they have not been checked by this export.
+     */
+    public synchronized void keep(String path) {
+        used.add(path);
+        String prefix = path + "/"; //$NON-NLS-1$
+        for (Object name : entries.keySet()) {
+            if (((String) name).startsWith(prefix)) {
+                used.add((String) name);
+            }
+        }
+    }
+
+    /**
+     * delete all recorded files and directories which have not been used by this export.
+     */
+    public synchronized void removeStale() {
+        ArrayList<String> stale = new ArrayList<String>();
+        for (Object name : entries.keySet()) {
+            if (!used.contains(name)) {
+                stale.add((String) name);
+            }
+        }
+        for (String path : stale) {
+            entries.remove(path);
+            File f = new File(dir, path);
+            if (f.exists()) {
+                LOGGER.fine("removing stale export file " + f.getPath()); //$NON-NLS-1$
+                delete(f);
+            }
+        }
+    }
+
+    public synchronized void save() throws IOException {
+        OutputStream out = new FileOutputStream(new File(dir, FILENAME));
+        try {
+            entries.store(out, "JDiveLog HTML export"); //$NON-NLS-1$
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void delete(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        if (!f.delete()) {
+            LOGGER.warning("could not delete " + f.getPath()); //$NON-NLS-1$
+        }
+    }
+
+}
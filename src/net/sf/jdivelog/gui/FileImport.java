@@ -0,0 +1,239 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: FileImport.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.gui;
+
+import java.awt.BorderLayout;
+import java.awt.Window;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.SwingUtilities;
+
+import net.sf.jdivelog.gui.resources.Messages;
+import net.sf.jdivelog.model.JDive;
+
+/**
+ * Description: Imports the files of a dive computer loader.
+ * <p>
+ * Every file is read with a single read and decoded by a pool of worker
+ * threads. The dives are returned in the order of the files, no matter which
+ * file has been decoded first. When called on the event dispatch thread, a
+ * modal dialog shows the progress and allows to cancel the import.
+ */
+public class FileImport {
+
+    private static final Logger LOGGER = Logger.getLogger(FileImport.class.getName());
+
+    /**
+     * converts the contents of one file into dives. Called by several threads
+     * at once, so it must not change shared state.
+     */
+    public interface Decoder {
+
+        /**
+         * @param file the file, for messages.
+         * @param data the whole contents of the file.
+         * @return the dives of the file.
+         */
+        public Collection<JDive> decode(File file, byte[] data) throws Exception;
+    }
+
+    /**
+     * @param parent parent of the progress dialog, <code>null</code> for no dialog.
+     * @param files the files to import.
+     * @param decoder the decoder of the file format.
+     * @return the dives of all files in the order of the files, <code>null</code>
+     *         if the import has been cancelled. Files which cannot be read or
+     *         decoded are logged and left out.
+     */
+    public static ArrayList<JDive> load(Window parent, File[] files, Decoder decoder) {
+        if (files.length == 0) {
+            return new ArrayList<JDive>();
+        }
+        int threads = Math.max(1, Math.min(files.length, Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ImportThreadFactory());
+        ProgressDialog dialog = null;
+        if (parent != null && SwingUtilities.isEventDispatchThread()) {
+            dialog = new ProgressDialog(parent, files.length, executor);
+        }
+        ArrayList<Future<Collection<JDive>>> results = new ArrayList<Future<Collection<JDive>>>(files.length);
+        for (File file : files) {
+            results.add(executor.submit(new FileTask(file, decoder, dialog)));
+        }
+        executor.shutdown();
+        if (dialog != null) {
+            // modal, the dialog closes itself when all files are done
+            dialog.setVisible(true);
+            if (dialog.isCancelled()) {
+                return null;
+            }
+        }
+        ArrayList<JDive> dives = new ArrayList<JDive>();
+        for (int i = 0; i < files.length; i++) {
+            try {
+                dives.addAll(results.get(i).get());
+            } catch (ExecutionException e) {
+                LOGGER.log(Level.SEVERE, "failed to load file " + files[i].getPath(), e.getCause()); //$NON-NLS-1$
+            } catch (CancellationException e) {
+                return null;
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        return dives;
+    }
+
+    //
+    // inner classes
+    //
+
+    private static class FileTask implements Callable<Collection<JDive>> {
+
+        private final File file;
+        private final Decoder decoder;
+        private final ProgressDialog dialog;
+
+        public FileTask(File file, Decoder decoder, ProgressDialog dialog) {
+            this.file = file;
+            this.decoder = decoder;
+            this.dialog = dialog;
+        }
+
+        public Collection<JDive> call() throws Exception {
+            try {
+                return decoder.decode(file, read(file));
+            } finally {
+                if (dialog != null) {
+                    dialog.fileDone();
+                }
+            }
+        }
+
+        private static byte[] read(File file) throws IOException {
+            return Files.readAllBytes(file.toPath());
+        }
+    }
+
+    private static class ProgressDialog extends JDialog {
+
+        private static final long serialVersionUID = 2651360484913624513L;
+
+        private final int fileCount;
+
+        private final ExecutorService executor;
+
+        private final JProgressBar progressBar;
+
+        private int done = 0;
+
+        private boolean cancelled = false;
+
+        public ProgressDialog(Window parent, int fileCount, ExecutorService executor) {
+            super(parent, Messages.getString("importing_files"), ModalityType.APPLICATION_MODAL); //$NON-NLS-1$
+            this.fileCount = fileCount;
+            this.executor = executor;
+            progressBar = new JProgressBar(0, fileCount);
+            progressBar.setStringPainted(true);
+            progressBar.setString("0/" + fileCount); //$NON-NLS-1$
+            JButton cancelButton = new JButton(Messages.getString("cancel")); //$NON-NLS-1$
+            cancelButton.addActionListener(new ActionListener() {
+                public void actionPerformed(ActionEvent e) {
+                    cancel();
+                }
+            });
+            setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+            addWindowListener(new WindowAdapter() {
+                public void windowClosing(WindowEvent e) {
+                    cancel();
+                }
+            });
+            JPanel panel = new JPanel(new BorderLayout(5, 5));
+            panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+            panel.add(progressBar, BorderLayout.CENTER);
+            JPanel buttonPanel = new JPanel();
+            buttonPanel.add(cancelButton);
+            panel.add(buttonPanel, BorderLayout.SOUTH);
+            getContentPane().add(panel);
+            setSize(300, 120);
+            setLocationRelativeTo(parent);
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * called by the workers when a file has been decoded or has failed.
+         */
+        public void fileDone() {
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    done++;
+                    progressBar.setValue(done);
+                    progressBar.setString(done + "/" + fileCount); //$NON-NLS-1$
+                    if (done == fileCount) {
+                        dispose();
+                    }
+                }
+            });
+        }
+
+        private void cancel() {
+            cancelled = true;
+            executor.shutdownNow();
+            dispose();
+        }
+    }
+
+    private static class ImportThreadFactory implements ThreadFactory {
+
+        private int count = 0;
+
+        public synchronized Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "file-import-" + (++count)); //$NON-NLS-1$
+            t.setDaemon(true);
+            return t;
+        }
+    }
+
+}
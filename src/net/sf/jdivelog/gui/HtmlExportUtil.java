@@ -44,8 +44,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.text.DecimalFormat;
+import java.text.Format;
 import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -53,9 +55,16 @@ import java.util.ConcurrentModificationException;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
@@ -65,10 +74,14 @@ import net.sf.jdivelog.gui.resources.Messages;
 import net.sf.jdivelog.gui.statusbar.StatusInterface;
 import net.sf.jdivelog.gui.util.ImageUtil;
 import net.sf.jdivelog.model.DiveSite;
+import net.sf.jdivelog.model.ExportSettings;
 import net.sf.jdivelog.model.JDive;
 import net.sf.jdivelog.model.JDiveLog;
 import net.sf.jdivelog.model.Picture;
 import net.sf.jdivelog.model.Tank;
+import net.sf.jdivelog.model.jdivelog.ProfileCodec;
+import net.sf.jdivelog.model.udcf.Dive;
+import net.sf.jdivelog.util.HashUtil;
 import net.sf.jdivelog.util.UnitConverter;
 
 import org.apache.batik.ext.awt.image.codec.jpeg.JPEGImageWriter;
@@ -93,6 +106,8 @@ public class HtmlExportUtil {
 
     private static final SimpleDateFormat FORMAT_YEAR = new SimpleDateFormat("yyyy"); //$NON-NLS-1$
 
+    private static final SimpleDateFormat FORMAT_PAGE = new SimpleDateFormat("yyyyMMdd-HHmmss"); //$NON-NLS-1$
+
     private JDiveLog logBook;
 
     private File outputDir;
@@ -105,10 +120,15 @@ public class HtmlExportUtil {
 
     private String date;
 
+    private ExportManifest manifest;
+
+    /** hash of everything besides the dive itself that goes into the exported pages and images */
+    private String settingsKey;
+
     public HtmlExportUtil(StatusInterface status, JDiveLog logBook) {
         this.status = status;
         this.logBook = logBook;
-        this.date = FORMAT_NICEDATE.format(new Date());
+        this.date = format(FORMAT_NICEDATE, new Date());
     }
 
     public int execute() throws ExportException {
@@ -125,42 +145,59 @@ public class HtmlExportUtil {
         status.messageInfo(Messages.getString("export.creating_html_page"));
         status.countingProgressbarStart(logBook.getDives().size(), true);
         indexPages = new HashMap<String, StringBuffer>();
-        createDirectories();
+        ArrayList<JDive> dives;
+        try {
+            dives = new ArrayList<JDive>(logBook.getDives());
+        } catch (ConcurrentModificationException e) {
+            throw new ExportException(Messages.getString("export.error.concurrent_modification")); //$NON-NLS-1$
+        }
+        ArrayList<String> pages = getPageNames(dives);
+        createDirectories(pages);
         createStylesheet();
         startIndexPage();
-        int count = 0;
-        Iterator<JDive> it = logBook.getDives().iterator();
-        while (it.hasNext()) {
-            try {
-                JDive dive = it.next();
-                if (logBook.getExportSettings().isFullExport() || !dive.isHtmlExported()) {
-                    if (logBook.getExportSettings().showDetailProfile() || logBook.getExportSettings().getIndexImages() == 1) {
-                        status.messageInfo(Messages.getString("export.writing_profile")); //$NON-NLS-1$
-                        createProfile(count, dive);
-                    }
-                    if (logBook.getExportSettings().isPictureVisible()) {
-                        status.messageInfo(Messages.getString("export.creating_pictures_page")); //$NON-NLS-1$
-                        createPicturesPage(count, dive);
-                    } else if (logBook.getExportSettings().getIndexImages() == 2) {
-                        status.messageInfo(Messages.getString("export.creating_picture_thumbnail")); //$NON-NLS-1$
-                        if (dive.getPictures() != null && dive.getPictures().size() > 0)
-                            createPicture(count, 0, dive.getPictures().get(0));
-                    }
-                    if (logBook.getExportSettings().isDetailVisible()) {
-                        status.messageInfo(Messages.getString("export.creating_details_page")); //$NON-NLS-1$
-                        createDetailsPage(count, dive);
-                    }
-                }
-                addIndexEntry(count, dive);
-                count++;
-                if (!dive.isHtmlExported()) {
-                    dive.setHtmlExported(true);
-                    exportCount++;
+        manifest = new ExportManifest(outputDir);
+        settingsKey = getSettingsKey();
+        ExecutorService executor = Executors.newFixedThreadPool(getThreadCount(), new ExportThreadFactory());
+        boolean completed = false;
+        try {
+            ArrayList<Future<?>> tasks = new ArrayList<Future<?>>();
+            for (int count = 0; count < dives.size(); count++) {
+                JDive dive = dives.get(count);
+                String page = pages.get(count);
+                String key = getDiveKey(dive);
+                if (logBook.getExportSettings().isFullExport() || !manifest.isCurrent(page, key)) {
+                    manifest.invalidate(page);
+                    tasks.add(executor.submit(new DiveExport(page, dive, key)));
+                } else {
+                    manifest.keep(page);
+                    progress();
                 }
-            } catch (ConcurrentModificationException e) {
-                throw new ExportException(Messages.getString("export.error.concurrent_modification")); //$NON-NLS-1$
             }
-            status.countingProgressbarIncrement();
+            // the index pages only need the dive data, so they are built in order while the workers run
+            for (int count = 0; count < dives.size(); count++) {
+                addIndexEntry(count, pages.get(count), dives.get(count));
+            }
+            for (Future<?> task : tasks) {
+                waitFor(task);
+            }
+            completed = true;
+        } finally {
+            executor.shutdownNow();
+            if (completed) {
+                // directories of deleted dives and images of removed pictures
+                manifest.removeStale();
+            }
+            try {
+                manifest.save();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "could not write export manifest", e); //$NON-NLS-1$
+            }
+        }
+        for (JDive dive : dives) {
+            if (!dive.isHtmlExported()) {
+                dive.setHtmlExported(true);
+                exportCount++;
+            }
         }
         endIndexPage();
         if (logBook.getExportSettings().isScpEnabled() && logBook.getExportSettings().isFullExport()) {
@@ -171,19 +208,147 @@ public class HtmlExportUtil {
         return exportCount;
     }
 
-    private void addIndexEntry(int count, JDive dive) {
+    private int getThreadCount() {
+        String threads = System.getProperty(net.sf.jdivelog.JDiveLog.PROPERTY_EXPORT_THREADS);
+        if (threads != null) {
+            try {
+                return Math.max(1, Integer.parseInt(threads.trim()));
+            } catch (NumberFormatException e) {
+                // use default
+            }
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    private String getSettingsKey() throws ExportException {
+        ExportSettings settings = logBook.getExportSettings().deepClone();
+        // these only decide what is exported, not how it looks
+        settings.setFullExport(false);
+        settings.setKeepImages(false);
+        File skin = getSkinFile();
+        return HashUtil.hash(settings, logBook.getProfileSettings(), UnitConverter.getDisplaySystem(), Messages.getLocale(), skin.getPath(), skin
+                .lastModified());
+    }
+
+    private String getDiveKey(JDive dive) {
+        StringBuffer sb = new StringBuffer();
+        try {
+            dive.write(sb, false);
+        } catch (IOException e) {
+            // a StringBuffer does not throw
+        }
+        String xml = sb.toString().replace("<htmlExported>true</htmlExported>", "<htmlExported>false</htmlExported>"); //$NON-NLS-1$ //$NON-NLS-2$
+        // the profile data is only needed if the profile is exported
+        String profile = null;
+        if (logBook.getExportSettings().showDetailProfile() || logBook.getExportSettings().getIndexImages() == 1) {
+            profile = getProfileKey(dive);
+        }
+        DiveSite site = logBook.getMasterdata().getDiveSiteByPrivateId(dive.getDiveSiteId());
+        StringBuffer pictures = new StringBuffer();
+        if (dive.getPictures() != null) {
+            for (Picture picture : dive.getPictures()) {
+                pictures.append(getPictureKey(picture));
+            }
+        }
+        return HashUtil.hash(settingsKey, xml, profile, site, pictures);
+    }
+
+    /**
+     * hash the binary encoding of the profile, a profile read from a binary
+     * logbook is hashed as it is, without decoding it.
+     */
+    private String getProfileKey(JDive dive) {
+        ByteBuffer encoded = dive.getEncodedDive();
+        if (encoded != null) {
+            return HashUtil.hashBytes(encoded);
+        }
+        Dive profile = dive.getDive();
+        if (profile == null) {
+            return null;
+        }
+        try {
+            return HashUtil.hashBytes(ByteBuffer.wrap(ProfileCodec.encode(profile)));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "could not encode profile, dive is exported again", e); //$NON-NLS-1$
+            return String.valueOf(System.nanoTime());
+        }
+    }
+
+    private String getPictureKey(Picture picture) {
+        long modified = picture.getFilename() == null ? 0 : new File(picture.getFilename()).lastModified();
+        return HashUtil.hash(settingsKey, picture.getFilename(), modified, picture.getRotation());
+    }
+
+    private void waitFor(Future<?> task) throws ExportException {
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            LOGGER.log(Level.SEVERE, "interrupted while exporting", e);
+            throw new ExportException(e.getMessage());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ExportException) {
+                throw (ExportException) cause;
+            }
+            LOGGER.log(Level.SEVERE, "error exporting dive", cause);
+            throw new ExportException(String.valueOf(cause));
+        }
+    }
+
+    /**
+     * writes the profile, the pictures and the details of one dive.
+     */
+    private void exportDive(String page, JDive dive) throws ExportException {
+        if (logBook.getExportSettings().showDetailProfile() || logBook.getExportSettings().getIndexImages() == 1) {
+            info(Messages.getString("export.writing_profile")); //$NON-NLS-1$
+            createProfile(page, dive);
+        }
+        if (logBook.getExportSettings().isPictureVisible()) {
+            info(Messages.getString("export.creating_pictures_page")); //$NON-NLS-1$
+            createPicturesPage(page, dive);
+        } else if (logBook.getExportSettings().getIndexImages() == 2) {
+            info(Messages.getString("export.creating_picture_thumbnail")); //$NON-NLS-1$
+            if (dive.getPictures() != null && dive.getPictures().size() > 0)
+                exportPicture(page, 0, dive.getPictures().get(0));
+        }
+        if (logBook.getExportSettings().isDetailVisible()) {
+            info(Messages.getString("export.creating_details_page")); //$NON-NLS-1$
+            createDetailsPage(page, dive);
+        }
+        progress();
+    }
+
+    private void info(String message) {
+        synchronized (status) {
+            status.messageInfo(message);
+        }
+    }
+
+    private void progress() {
+        synchronized (status) {
+            status.countingProgressbarIncrement();
+        }
+    }
+
+    private static String format(Format format, Object value) {
+        synchronized (format) {
+            return format.format(value);
+        }
+    }
+
+    private void addIndexEntry(int count, String page, JDive dive) {
         StringBuffer sb = new StringBuffer();
         UnitConverter c = new UnitConverter(UnitConverter.getSystem(dive.getUnits()), UnitConverter.getDisplaySystem());
-        sb.append("<a class='diveindexlink' href='" + count + "/details.html'>\n");
-        sb.append("  <div class='diveindexrow-" + getOddEvenString(count) + "' id='d" + count + "'>\n");
+        sb.append("<a class='diveindexlink' href='" + page + "/details.html'>\n");
+        sb.append("  <div class='diveindexrow-" + getOddEvenString(count) + "' id='" + page + "'>\n");
         sb.append("    <div class='diveindexrow-content'>\n");
 
         if (logBook.getExportSettings().getIndexImages() == 1) {
-            sb.append("      <div class='diveindexcell-" + getOddEvenString(count) + "' id='thumb'><img class='thumb' src='" + count
+            sb.append("      <div class='diveindexcell-" + getOddEvenString(count) + "' id='thumb'><img class='thumb' src='" + page
                     + "/profile_thumb.jpg'></div>\n");
         } else if (logBook.getExportSettings().getIndexImages() == 2) {
             if (dive.getPictures() != null && dive.getPictures().size() > 0) {
-                sb.append("      <div class='diveindexcell-" + getOddEvenString(count) + "' id='thumb'><img class='thumb' src='" + count
+                sb.append("      <div class='diveindexcell-" + getOddEvenString(count) + "' id='thumb'><img class='thumb' src='" + page
                         + "/image0_thumb.jpg'></div>\n");
             } else {
                 sb.append("      <div class='diveindexcell-" + getOddEvenString(count) + "' id='thumb'>&nbsp;</div>\n");
@@ -191,14 +356,14 @@ public class HtmlExportUtil {
         }
         if (logBook.getExportSettings().showIndexDate()) {
             if (dive.getDate() != null) {
-                sb.append("      <div class='diveindexcell-" + getOddEvenString(count) + "' id='date'>" + FORMAT_DATE.format(dive.getDate()) + "</div>\n");
+                sb.append("      <div class='diveindexcell-" + getOddEvenString(count) + "' id='date'>" + format(FORMAT_DATE, dive.getDate()) + "</div>\n");
             } else {
                 sb.append("      <div class='diveindexcell-" + getOddEvenString(count) + "' id='date'>&nbsp;</div>\n");
             }
         }
         if (logBook.getExportSettings().showIndexTime()) {
             if (dive.getDate() != null) {
-                sb.append("      <div class='diveindexcell-" + getOddEvenString(count) + "' id='time'>" + FORMAT_TIME.format(dive.getDate()) + "</div>\n");
+                sb.append("      <div class='diveindexcell-" + getOddEvenString(count) + "' id='time'>" + format(FORMAT_TIME, dive.getDate()) + "</div>\n");
             } else {
                 sb.append("      <div class='diveindexcell-" + getOddEvenString(count) + "' id='time'>&nbsp;</div>\n");
             }
@@ -228,7 +393,7 @@ public class HtmlExportUtil {
         if (logBook.getExportSettings().showIndexDepth()) {
             if (dive.getDepth() != null) {
                 sb.append("      <div class='diveindexcell-" + getOddEvenString(count) + "' id='depth'>"
-                        + DECIMALFORMAT.format(c.convertAltitude(dive.getDepth())) + " " + UnitConverter.getDisplayAltitudeUnit() + "</div>\n");
+                        + format(DECIMALFORMAT, c.convertAltitude(dive.getDepth())) + " " + UnitConverter.getDisplayAltitudeUnit() + "</div>\n");
             } else {
                 sb.append("      <div class='diveindexcell-" + getOddEvenString(count) + "' id='depth'>&nbsp;</div>\n");
             }
@@ -236,7 +401,7 @@ public class HtmlExportUtil {
         if (logBook.getExportSettings().showIndexDuration()) {
             if (dive.getDuration() != null) {
                 sb.append("      <div class='diveindexcell-" + getOddEvenString(count) + "' id='duration'>"
-                        + DECIMALFORMAT.format(c.convertTime(dive.getDuration())) + " " + UnitConverter.getDisplayTimeUnit() + "</div>\n");
+                        + format(DECIMALFORMAT, c.convertTime(dive.getDuration())) + " " + UnitConverter.getDisplayTimeUnit() + "</div>\n");
             } else {
                 sb.append("      <div class='diveindexcell-" + getOddEvenString(count) + "' id='duration'>&nbsp;</div>\n");
             }
@@ -264,7 +429,7 @@ public class HtmlExportUtil {
 
     private StringBuffer getIndexPage(JDive dive) {
         if (logBook.getExportSettings().groupByYear()) {
-            String year = FORMAT_YEAR.format(dive.getDate());
+            String year = format(FORMAT_YEAR, dive.getDate());
             StringBuffer indexPage = indexPages.get(year);
             if (indexPage == null) {
                 indexPage = new StringBuffer();
@@ -473,7 +638,7 @@ public class HtmlExportUtil {
         sb.append("<div id='pagetitle'>" + logBook.getExportSettings().getIndexTitle() + "</div>\n");
         sb.append("<span id='spacer'></span>\n");
         if (dive != null && dive.getDate() != null) {
-            sb.append("<div id='date'>" + FORMAT_DATE.format(dive.getDate()) + "</div>\n");
+            sb.append("<div id='date'>" + format(FORMAT_DATE, dive.getDate()) + "</div>\n");
         }
         if (dive != null && dive.getDiveSiteId() != null && !"".equals(dive.getDiveSiteId())) {
             DiveSite site = logBook.getMasterdata().getDiveSiteByPrivateId(dive.getDiveSiteId());
@@ -543,13 +708,39 @@ public class HtmlExportUtil {
         return sb.toString();
     }
 
-    private void createDirectories() {
-        for (int i = 0; i < logBook.getDives().size(); i++) {
-            File f = new File(outputDir, String.valueOf(i));
+    private void createDirectories(ArrayList<String> pages) {
+        for (String page : pages) {
+            File f = new File(outputDir, page);
             f.mkdir();
         }
     }
 
+    /**
+     * @return the names of the page directories of the dives. They depend on
+     * number and date of the dive only, not on its position in the logbook,
+     * so adding or removing a dive does not rename the pages of the others.
+     */
+    private ArrayList<String> getPageNames(ArrayList<JDive> dives) {
+        ArrayList<String> pages = new ArrayList<String>(dives.size());
+        HashSet<String> used = new HashSet<String>();
+        for (JDive dive : dives) {
+            StringBuffer sb = new StringBuffer("dive"); //$NON-NLS-1$
+            if (dive.getDiveNumber() != null) {
+                sb.append(dive.getDiveNumber());
+            }
+            if (dive.getDate() != null) {
+                sb.append('-');
+                sb.append(format(FORMAT_PAGE, dive.getDate()));
+            }
+            String page = sb.toString();
+            for (int i = 2; !used.add(page); i++) {
+                page = sb.toString() + "_" + i; //$NON-NLS-1$
+            }
+            pages.add(page);
+        }
+        return pages;
+    }
+
     private File getSkinFile() throws ExportException {
         String skinname = logBook.getExportSettings().getSkinFile();
         File skinfile = null;
@@ -615,9 +806,9 @@ public class HtmlExportUtil {
         }
     }
 
-    private void createProfile(int i, JDive dive) throws ExportException {
+    private void createProfile(String page, JDive dive) throws ExportException {
         DiveProfile dp = new DiveProfile(logBook.getProfileSettings(), dive);
-        File diveDir = new File(outputDir, String.valueOf(i));
+        File diveDir = new File(outputDir, page);
         int width = logBook.getExportSettings().getDetailProfileWidth();
         int height = logBook.getExportSettings().getDetailProfileHeight();
         int thumbMaxWidth = logBook.getExportSettings().getPictureThumbnailMaxWidth();
@@ -637,12 +828,12 @@ public class HtmlExportUtil {
 
     }
 
-    private void createDetailsPage(int diveNumber, JDive dive) throws ExportException {
-        File diveDir = new File(outputDir, String.valueOf(diveNumber));
+    private void createDetailsPage(String page, JDive dive) throws ExportException {
+        File diveDir = new File(outputDir, page);
         UnitConverter c = new UnitConverter(UnitConverter.getSystem(dive.getUnits()), UnitConverter.getDisplaySystem());
         StringBuffer sb = new StringBuffer();
         sb.append(getPageHeader(getTitle(dive), dive));
-        sb.append(getDetailsPageHeader(diveNumber, dive));
+        sb.append(getDetailsPageHeader(page, dive));
         if (logBook.getExportSettings().showDetailProfile()) {
             sb.append("<div class='profilecontainer'>\n");
             sb.append("<div id='br'><div id='tr'><div id='tl'><div id='bl'>\n");
@@ -663,7 +854,7 @@ public class HtmlExportUtil {
             sb.append("</div>\n");
             sb.append("<div class='datavalue' id='datevalue'>");
             if (dive.getDate() != null) {
-                sb.append(FORMAT_DATE.format(dive.getDate()));
+                sb.append(format(FORMAT_DATE, dive.getDate()));
             } else {
                 sb.append("&nbsp;");
             }
@@ -677,7 +868,7 @@ public class HtmlExportUtil {
             sb.append("</div>\n");
             sb.append("<div class='datavalue' id='timevalue'>");
             if (dive.getDate() != null) {
-                sb.append(FORMAT_TIME.format(dive.getDate()));
+                sb.append(format(FORMAT_TIME, dive.getDate()));
             } else {
                 sb.append("&nbsp;");
             }
@@ -733,7 +924,7 @@ public class HtmlExportUtil {
             sb.append(Messages.getString("export.depth"));
             sb.append("</div>\n");
             sb.append("<div class='datavalue' id='depthvalue'>");
-            sb.append(DECIMALFORMAT.format(c.convertAltitude(dive.getDepth())));
+            sb.append(format(DECIMALFORMAT, c.convertAltitude(dive.getDepth())));
             sb.append(" ");
             sb.append(UnitConverter.getDisplayAltitudeUnit());
             sb.append("</div>\n");
@@ -745,7 +936,7 @@ public class HtmlExportUtil {
             sb.append(Messages.getString("export.duration"));
             sb.append("</div>\n");
             sb.append("<div class='datavalue' id='durationvalue'>");
-            sb.append(DECIMALFORMAT.format(c.convertTime(dive.getDuration())));
+            sb.append(format(DECIMALFORMAT, c.convertTime(dive.getDuration())));
             sb.append(" "); //$NON-NLS-1$
             sb.append(UnitConverter.getDisplayTimeUnit());
             sb.append("</div>\n");
@@ -822,7 +1013,7 @@ public class HtmlExportUtil {
                         sb.append(", ");
                     }
                     if (t.getGas().getTankvolume() != null) {
-                        sb.append(DECIMALFORMAT.format(c.convertVolume(t.getGas().getTankvolume())));
+                        sb.append(format(DECIMALFORMAT, c.convertVolume(t.getGas().getTankvolume())));
                         sb.append(UnitConverter.getDisplayVolumeUnit());
                         sb.append(" ");
                     }
@@ -865,11 +1056,11 @@ public class HtmlExportUtil {
         }
     }
 
-    private void createPicturesPage(int diveNumber, JDive dive) throws ExportException {
-        File diveDir = new File(outputDir, String.valueOf(diveNumber));
+    private void createPicturesPage(String page, JDive dive) throws ExportException {
+        File diveDir = new File(outputDir, page);
         StringBuffer sb = new StringBuffer();
         sb.append(getPageHeader(getTitle(dive), dive));
-        sb.append(getPicturesPageHeader(diveNumber, dive));
+        sb.append(getPicturesPageHeader(page, dive));
 
         ArrayList<Picture> pics = removeInvalidPictures(dive.getPictures());
         if (pics != null) {
@@ -877,12 +1068,7 @@ public class HtmlExportUtil {
             Iterator<Picture> it = pics.iterator();
             while (it.hasNext()) {
                 Picture pic = it.next();
-                if ((logBook.getExportSettings().isFullExport() && !logBook.getExportSettings().isKeepImages()) || !dive.isHtmlExported()) {
-                    createPicture(diveNumber, count, pic);
-                }
-                createPicturePage(diveNumber, count, dive, pic, pics.size());
-                Runtime.getRuntime().runFinalization();
-                Runtime.getRuntime().gc();
+                createPicturePage(page, count, dive, pic, pics.size());
 
                 sb.append("<a class='imagelink' href='picture");
                 sb.append(count);
@@ -913,7 +1099,7 @@ public class HtmlExportUtil {
         }
     }
 
-    private String getPicturesPageHeader(int diveNumber, JDive dive) {
+    private String getPicturesPageHeader(String page, JDive dive) {
         StringBuffer sb = new StringBuffer();
         sb.append("<!-- begin navigation -->\n");
         sb.append("<div class='navigation'>\n");
@@ -921,13 +1107,13 @@ public class HtmlExportUtil {
         sb.append("<a class='menulink' id='go_to_index' href='../index");
         if (logBook.getExportSettings().groupByYear()) {
             if (dive.getDate() != null) {
-                sb.append(FORMAT_YEAR.format(dive.getDate()));
+                sb.append(format(FORMAT_YEAR, dive.getDate()));
             } else {
                 sb.append("XXXX");
             }
         }
         sb.append(".html#");
-        sb.append(diveNumber);
+        sb.append(page);
         sb.append("'><div class='menuitem'><div id='br'><div id='tr'><div id='tl'><div id='bl'>");
         sb.append(Messages.getString("export.return_to_index"));
         sb.append("</div></div></div></div></div></a>\n");
@@ -972,19 +1158,19 @@ public class HtmlExportUtil {
         return sb.toString();
     }
 
-    private String getPicturePageHeader(int diveNumber, JDive dive) {
+    private String getPicturePageHeader(String page, JDive dive) {
         StringBuffer sb = new StringBuffer();
         sb.append("<!-- begin navigation -->\n");
         sb.append("<div class='navigation'>\n");
         sb.append("<div id='tl'><div id='tr'><div id='br'><div id='bl'>\n");
         sb.append("<a class='menulink' id='go_to_index' href='../index");
         if (dive.getDate() != null) {
-            sb.append(FORMAT_YEAR.format(dive.getDate()));
+            sb.append(format(FORMAT_YEAR, dive.getDate()));
         } else {
             sb.append("XXXX");
         }
         sb.append(".html#");
-        sb.append(diveNumber);
+        sb.append(page);
         sb.append("'><div class='menuitem'><div id='br'><div id='tr'><div id='tl'><div id='bl'>");
         sb.append(Messages.getString("export.return_to_index"));
         sb.append("</div></div></div></div></div></a>\n");
@@ -1006,7 +1192,7 @@ public class HtmlExportUtil {
         return sb.toString();
     }
 
-    private String getDetailsPageHeader(int diveNumber, JDive dive) {
+    private String getDetailsPageHeader(String page, JDive dive) {
         StringBuffer sb = new StringBuffer();
         sb.append("<!-- begin navigation -->\n");
         sb.append("<div class='navigation'>\n");
@@ -1014,13 +1200,13 @@ public class HtmlExportUtil {
         sb.append("<a class='menulink' id='go_to_index' href='../index");
         if (logBook.getExportSettings().groupByYear()) {
             if (dive.getDate() != null) {
-                sb.append(FORMAT_YEAR.format(dive.getDate()));
+                sb.append(format(FORMAT_YEAR, dive.getDate()));
             } else {
                 sb.append("XXXX");
             }
         }
         sb.append(".html#");
-        sb.append(diveNumber);
+        sb.append(page);
         sb.append("'><div class='menuitem'><div id='br'><div id='tr'><div id='tl'><div id='bl'>");
         sb.append(Messages.getString("export.return_to_index"));
         sb.append("</div></div></div></div></div></a>\n");
@@ -1061,7 +1247,7 @@ public class HtmlExportUtil {
         StringBuffer title = new StringBuffer(logBook.getExportSettings().getIndexTitle());
         if (dive.getDate() != null) {
             title.append(" - "); //$NON-NLS-1$
-            title.append(FORMAT_DATE.format(dive.getDate()));
+            title.append(format(FORMAT_DATE, dive.getDate()));
         }
         DiveSite site = logBook.getMasterdata().getDiveSiteByPrivateId(dive.getDiveSiteId());
         if (site != null && site.getSpot() != null && !"".equals(site.getSpot())) { //$NON-NLS-1$
@@ -1082,16 +1268,12 @@ public class HtmlExportUtil {
         return title.toString();
     }
 
-    private void createPicturePage(int diveNumber, int pictureNumber, JDive dive, Picture picture, int numberOfImages) throws ExportException {
-        File diveDir = new File(outputDir, String.valueOf(diveNumber));
-        if ((logBook.getExportSettings().isFullExport() && !logBook.getExportSettings().isKeepImages()) || !dive.isHtmlExported()) {
-            createPicture(diveNumber, pictureNumber, picture);
-        }
-        Runtime.getRuntime().runFinalization();
-        Runtime.getRuntime().gc();
+    private void createPicturePage(String page, int pictureNumber, JDive dive, Picture picture, int numberOfImages) throws ExportException {
+        File diveDir = new File(outputDir, page);
+        exportPicture(page, pictureNumber, picture);
         StringBuffer sb = new StringBuffer();
         sb.append(getPageHeader(getTitle(dive), dive));
-        sb.append(getPicturePageHeader(diveNumber, dive));
+        sb.append(getPicturePageHeader(page, dive));
 
         sb.append("<!-- begin picture -->\n");
         sb.append("<div class='picture'>\n");
@@ -1160,7 +1342,7 @@ public class HtmlExportUtil {
         } catch (IOException ioe) {
             LOGGER.log(Level.SEVERE, "error writing picture page", ioe);
             throw new ExportException(
-                    Messages.getString("export.error.could_not_write_picture_page_for_picture") + " " + pictureNumber + " " + Messages.getString("export.of_dive") + " " + diveNumber); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+                    Messages.getString("export.error.could_not_write_picture_page_for_picture") + " " + pictureNumber + " " + Messages.getString("export.of_dive") + " " + page); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
         }
     }
 
@@ -1176,8 +1358,26 @@ public class HtmlExportUtil {
         return text;
     }
 
-    private void createPicture(int diveNumber, int pictureNumber, Picture picture) throws ExportException {
-        File diveDir = new File(outputDir, String.valueOf(diveNumber));
+    /**
+     * creates the image and thumbnail of a picture, unless they are current.
+     */
+    private void exportPicture(String page, int pictureNumber, Picture picture) throws ExportException {
+        String key = getPictureKey(picture);
+        String img = page + "/image" + pictureNumber + ".jpg"; //$NON-NLS-1$ //$NON-NLS-2$
+        String thumb = page + "/image" + pictureNumber + "_thumb.jpg"; //$NON-NLS-1$ //$NON-NLS-2$
+        boolean force = logBook.getExportSettings().isFullExport() && !logBook.getExportSettings().isKeepImages();
+        // no short circuit, both files have to be marked as used in the manifest
+        if (force | !manifest.isCurrent(img, key) | !manifest.isCurrent(thumb, key)) {
+            manifest.invalidate(img);
+            manifest.invalidate(thumb);
+            createPicture(page, pictureNumber, picture);
+            manifest.update(img, key);
+            manifest.update(thumb, key);
+        }
+    }
+
+    private void createPicture(String page, int pictureNumber, Picture picture) throws ExportException {
+        File diveDir = new File(outputDir, page);
         File imgFile = new File(diveDir, "image" + pictureNumber + ".jpg"); //$NON-NLS-1$ //$NON-NLS-2$
         File thumbFile = new File(diveDir, "image" + pictureNumber + "_thumb.jpg"); //$NON-NLS-1$ //$NON-NLS-2$
         int thumbMaxX = logBook.getExportSettings().getPictureThumbnailMaxWidth();
@@ -1185,7 +1385,16 @@ public class HtmlExportUtil {
         int imgMaxX = logBook.getExportSettings().getPictureImageMaxWidth();
         int imgMaxY = logBook.getExportSettings().getPictureImageMaxHeight();
         String filename = picture.getFilename();
-        Image img = loadImage(filename);
+        // decoded once for the image and the thumbnail
+        Image img = null;
+        try {
+            img = ImageUtil.read(new File(filename), Math.max(imgMaxX, thumbMaxX), Math.max(imgMaxY, thumbMaxY), picture.getRotation());
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "ImageIO could not read " + filename, e); //$NON-NLS-1$
+        }
+        if (img == null) {
+            img = loadImage(filename);
+        }
         try {
             writeScaledJPG(img, imgMaxX, imgMaxY, picture.getRotation(), imgFile, logBook.getExportSettings().isWatermarkEnabled());
             writeScaledJPG(img, thumbMaxX, thumbMaxY, picture.getRotation(), thumbFile, false);
@@ -1392,4 +1601,37 @@ public class HtmlExportUtil {
         in.close();
         out.close();
     }
-}
\ No newline at end of file
+    private class DiveExport implements Callable<Object> {
+
+        private final String page;
+
+        private final JDive dive;
+
+        private final String key;
+
+        public DiveExport(String page, JDive dive, String key) {
+            this.page = page;
+            this.dive = dive;
+            this.key = key;
+        }
+
+        public Object call() throws ExportException {
+            exportDive(page, dive);
+            manifest.update(page, key);
+            return null;
+        }
+    }
+
+    private static class ExportThreadFactory implements ThreadFactory {
+
+        private int count = 0;
+
+        public synchronized Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "html-export-" + (++count)); //$NON-NLS-1$
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        }
+    }
+
+}
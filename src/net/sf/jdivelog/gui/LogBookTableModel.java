@@ -26,14 +26,9 @@ import java.awt.Toolkit;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.text.DateFormat;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.TreeSet;
 
 import net.sf.jdivelog.gui.LogbookChangeEvent.EventType;
@@ -41,10 +36,9 @@ import net.sf.jdivelog.gui.resources.Messages;
 import net.sf.jdivelog.gui.util.SortableTableModel;
 import net.sf.jdivelog.gui.util.TableSorter;
 import net.sf.jdivelog.model.DiveSite;
+import net.sf.jdivelog.model.DiveStatistics;
 import net.sf.jdivelog.model.JDive;
 import net.sf.jdivelog.model.JDiveLog;
-import net.sf.jdivelog.model.Picture;
-import net.sf.jdivelog.model.Tank;
 import net.sf.jdivelog.util.DateFormatUtil;
 import net.sf.jdivelog.util.UnitConverter;
 
@@ -57,8 +51,6 @@ public class LogBookTableModel extends TableSorter implements SortableTableModel
 
     private static final long serialVersionUID = 3834306220185170488L;
 
-    private static final DateFormat TIMEFORMAT = new SimpleDateFormat(Messages.getString("timeformat")); //$NON-NLS-1$
-
     private static final NumberFormat DECIMALFORMAT = new DecimalFormat(Messages.getString("numberformat")); //$NON-NLS-1$
     
     private static Image PROFILE_ICON = Toolkit.getDefaultToolkit().getImage(LogBookTableModel.class.getResource("/net/sf/jdivelog/gui/resources/icons/profile.gif"));
@@ -70,12 +62,19 @@ public class LogBookTableModel extends TableSorter implements SortableTableModel
     private MainWindow mainWindow;
     private JDiveLog logbook;
     private TreeSet<JDive> dives;
+    /** indexed snapshot of {@link #getDives()}, so rows can be accessed without copying the set */
+    private JDive[] rows;
+    private TreeSet<JDive> rowsSource;
+    private DiveStatistics statistics;
+    private TreeSet<JDive> statisticsSource;
     private int columnCount;
     private String searchString_new = null;
     private String searchString_old = "";
+    private DiveSearchIndex searchIndex;
 
     public LogBookTableModel(MainWindow mainWindow) {
         this.mainWindow = mainWindow;
+        this.searchIndex = new DiveSearchIndex(mainWindow);
         this.mainWindow.getLogbookChangeNotifier().addLogbookChangeListener(this);
         columnCount = 9;
     }
@@ -112,7 +111,7 @@ public class LogBookTableModel extends TableSorter implements SortableTableModel
     }
             
     public Object getValueAt(int rowIndex, int columnIndex) {
-        JDive dive = (JDive)dives.toArray()[rowIndex];
+        JDive dive = getRows()[rowIndex];
         DiveSite site;
         UnitConverter c = new UnitConverter(UnitConverter.getSystem(dive.getUnits()), UnitConverter.getDisplaySystem());
         switch (columnIndex) {
@@ -152,7 +151,7 @@ public class LogBookTableModel extends TableSorter implements SortableTableModel
     
     public Object getUnformattedValueAt(int rowIndex, int columnIndex) {
         if (rowIndex < dives.size() && rowIndex >= 0) {
-            JDive dive = (JDive)dives.toArray()[rowIndex];
+            JDive dive = getRows()[rowIndex];
             DiveSite site;
             UnitConverter c = new UnitConverter(UnitConverter.getSystem(dive.getUnits()), UnitConverter.getDisplaySystem());
             switch (columnIndex) {
@@ -191,217 +190,6 @@ public class LogBookTableModel extends TableSorter implements SortableTableModel
         return null;
     }
     
-    private String extractString(JDive dive) {
-        UnitConverter c = new UnitConverter(UnitConverter.getSystem(dive.getUnits()), UnitConverter.getDisplaySystem());
-        DiveSite site = mainWindow.getLogBook().getMasterdata().getDiveSiteByPrivateId(dive.getDiveSiteId());
-        StringBuffer sb = new StringBuffer();
-        sb.append(c.convertAMV(dive.getAMV()));
-        sb.append(" $ ");
-        sb.append(c.convertAltitude(dive.getAverageDepth()));
-        sb.append(" $ ");
-        sb.append(dive.getBuddy());
-        sb.append(" $ ");
-        sb.append(dive.getComment());
-        sb.append(" $ ");
-        sb.append(DateFormatUtil.getDateFormat().format(dive.getDate()));
-        sb.append(" $ ");
-        sb.append(TIMEFORMAT.format(dive.getDate()));
-        sb.append(" $ ");
-        sb.append(c.convertAltitude(dive.getDepth()));
-        sb.append(" $ ");
-        sb.append(dive.getDiveActivity());
-        sb.append(" $ ");
-        sb.append(dive.getDiveType());
-        sb.append(" $ ");
-        sb.append(c.convertTime(dive.getDuration()));
-        if (dive.getEquipment() != null) {
-            sb.append(" $ ");
-            sb.append(dive.getEquipment().getComment());
-            sb.append(" $ ");
-            sb.append(dive.getEquipment().getGloves());
-            sb.append(" $ ");
-            sb.append(dive.getEquipment().getName());
-            sb.append(" $ ");
-            sb.append(dive.getEquipment().getSuit());
-            Iterator<Tank> tankIt = dive.getEquipment().getTanks().iterator();
-            while(tankIt.hasNext()) {
-                Tank tank = tankIt.next();
-                sb.append(" $ ");
-                sb.append(c.convertVolume(tank.getGas().getTankvolume()));
-                sb.append(" $ ");
-                sb.append(tank.getType());
-            }
-            sb.append(" $ ");
-            sb.append(dive.getEquipment().getWeight());
-        }
-        if (dive.getPictures() != null) {
-            Iterator<Picture> picIt = dive.getPictures().iterator();
-            while (picIt.hasNext()) {
-                Picture pic = picIt.next();
-                sb.append(" $ ");
-                sb.append(pic.getName());
-                sb.append(" $ ");
-                sb.append(pic.getDescription());
-            }
-        }
-        sb.append(" $ ");
-        if (site != null) {
-            sb.append(site.getCountry());
-            sb.append(" $ ");
-            sb.append(site.getSpot());
-            sb.append(" $ ");
-            sb.append(site.getCity());
-            sb.append(" $ ");
-            sb.append(site.getState());
-            sb.append(" $ ");
-            sb.append(site.getWaters());
-            sb.append(" $ ");
-            sb.append(site.getDescription());
-            sb.append(" $ ");
-            sb.append(site.getDirections());
-            sb.append(" $ ");
-            sb.append(site.getWarnings());
-            sb.append(" $ ");
-            sb.append(site.getPrivateRemarks());
-            sb.append(" $ ");
-        }
-        sb.append(c.convertTemperature(dive.getTemperature()));
-        sb.append(" $ ");
-        sb.append(dive.getVisibility());
-        return sb.toString();
-    }
-    
-    private double matchString(String keyword, String value) {
-        if (value.contains(keyword.replace('"', ' ').trim())) {
-            return 100.0;
-        }
-        String upperValue = value.toUpperCase();
-        if (upperValue.equals(keyword.toUpperCase())) {
-            return 99.0;
-        }
-        ArrayList<String> keywordList = new ArrayList<String>();
-        ArrayList<String> mandatoryList = new ArrayList<String>();
-        ArrayList<String> forbiddenList = new ArrayList<String>();
-        StringBuffer buf = new StringBuffer();
-        boolean quoted = false;
-        boolean mandatory = false;
-        boolean forbidden = false;
-        for (int i=0; i<keyword.length(); i++) {
-            if (quoted && keyword.charAt(i) == '"') {
-                quoted = false;
-                String s = buf.toString().trim();
-                if (s.length() > 0) {
-                    if (mandatory) {
-                        mandatoryList.add(s);
-                        keywordList.add(s);
-                    } else if (forbidden) {
-                        forbiddenList.add(s);
-                    } else {
-                        keywordList.add(s);
-                    }
-                }
-                buf.setLength(0);
-                mandatory = false;
-                forbidden = false;
-            }
-            else if (!quoted && keyword.charAt(i) == '"') {
-                quoted = true;
-                String s = buf.toString().trim();
-                if (s.length() > 0) {
-                    mandatory = false;
-                    forbidden = false;
-                    if (mandatory) {
-                        mandatoryList.add(s);
-                        keywordList.add(s);
-                    } else if (forbidden) {
-                        forbiddenList.add(s);
-                    } else {
-                        keywordList.add(s);
-                    }
-                }
-                buf.setLength(0);
-            }
-            else if (!quoted && keyword.charAt(i) == ' ') {
-                String s = buf.toString().trim();
-                if (s.length() > 0) {
-                    if (mandatory) {
-                        mandatoryList.add(s);
-                        keywordList.add(s);
-                    } else if (forbidden) {
-                        forbiddenList.add(s);
-                    } else {
-                        keywordList.add(s);
-                    }
-                }
-                buf.setLength(0);
-                mandatory = false;
-                forbidden = false;
-            }
-            else if (!quoted && keyword.charAt(i) == '+') {
-                String s = buf.toString().trim();
-                if (s.length() > 0) {
-                    if (mandatory) {
-                        mandatoryList.add(s);
-                        keywordList.add(s);
-                    } else if (forbidden) {
-                        forbiddenList.add(s);
-                    } else {
-                        keywordList.add(s);
-                    }
-                }
-                mandatory = true;
-                forbidden = false;
-                buf.setLength(0);
-            }
-            else if (!quoted && keyword.charAt(i) == '-') {
-                if (i == 0 || keyword.charAt(i-1) == ' ') {
-                    forbidden = true;
-                    mandatory = false;
-                } else {
-                    buf.append(keyword.charAt(i));
-                }
-            }
-            else {
-                buf.append(keyword.charAt(i));
-            }
-        }
-        String s = buf.toString().trim();
-        if (s.length() > 0) {
-            if (mandatory) {
-                mandatoryList.add(s);
-                keywordList.add(s);
-            }
-            else if (forbidden) { forbiddenList.add(s); }
-            else { keywordList.add(s); }
-        }
-        double caseSensitivePoints = 100.0 / keywordList.size();
-        double caseInsensitivePoints = 99.0 / keywordList.size();
-        double points = 0.0;
-        Iterator<String> forbiddenIt = forbiddenList.iterator();
-        while (forbiddenIt.hasNext()) {
-            String word = forbiddenIt.next();
-            if (upperValue.contains(word.toUpperCase())) {
-                return 0;
-            }
-        }
-        Iterator<String> mandatoryIt = mandatoryList.iterator();
-        while (mandatoryIt.hasNext()) {
-            String word = mandatoryIt.next();
-            if (!upperValue.contains(word.toUpperCase())) {
-                return 0;
-            }
-        }
-        Iterator<String> wordIt = keywordList.iterator();
-        while (wordIt.hasNext()) {
-            String word = wordIt.next();
-            if (value.contains(word)) { points += caseSensitivePoints; }
-            else if (upperValue.contains(word.toUpperCase())) { points += caseInsensitivePoints; }
-        }
-        return points;
-    }
-    
-    
-    
     public Class<?> getColumnClass(int columnIndex) {
         switch (columnIndex) {
         case 0:
@@ -456,7 +244,7 @@ public class LogBookTableModel extends TableSorter implements SortableTableModel
      * @return The JDive at the specified row.
      */
     public JDive getDive(int row) {
-        return (JDive) dives.toArray()[row];
+        return getRows()[row];
     }
     
     /**
@@ -465,10 +253,13 @@ public class LogBookTableModel extends TableSorter implements SortableTableModel
      * @return The JDive at the specified row.
      */
     public JDive getRow(int row) {
-        return (JDive) dives.toArray()[row];
+        return getRows()[row];
     }
     
     public void logbookChanged(LogbookChangeEvent e) {
+        if (searchIndex != null) {
+            searchIndex.logbookChanged(e);
+        }
         if (EventType.LOGBOOK_LOADED.equals(e.getType())) {
             searchString_new = null;
             searchString_old = "";
@@ -477,6 +268,8 @@ public class LogBookTableModel extends TableSorter implements SortableTableModel
             if (mainWindow != null) {
                 dives = null;
             }
+            rows = null;
+            statistics = null;
             fireTableDataChanged();
         }        
     }
@@ -491,16 +284,8 @@ public class LogBookTableModel extends TableSorter implements SortableTableModel
     public TreeSet<JDive> getDives() {
         if (mainWindow != null && (dives == null || searchString_new != searchString_old)) {
             if (searchString_new != null) {
-                Iterator<JDive> diveIt = this.mainWindow.getLogBook().getDives().iterator();
-                dives = new TreeSet<JDive>();
-                while (diveIt.hasNext()) {
-                    JDive dive = diveIt.next();
-                    String value = extractString(dive);
-                    double points = matchString(searchString_new, value);
-                    if (points > 0) {
-                        dives.add(dive);
-                    }
-                }
+                dives = searchIndex.search(searchString_new);
+                searchString_old = searchString_new;
             } else {
                dives =  mainWindow.getLogBook().getDives();
             }
@@ -508,63 +293,50 @@ public class LogBookTableModel extends TableSorter implements SortableTableModel
         return dives;        
     }
     
-    public BigDecimal getAverageAmv() {
-        int count_dives = 0;
-        BigDecimal averageAmv = new BigDecimal(0);
-        Iterator<JDive> diveIt = dives.iterator();
-        while (diveIt.hasNext()) {            
-            JDive dive = diveIt.next();
-            if (dive != null && dive.getAMV() != null && dive.getAMV() != 0) {
-                UnitConverter c = new UnitConverter(UnitConverter.getSystem(dive.getUnits()), UnitConverter.getDisplaySystem());
-                averageAmv = averageAmv.add(new BigDecimal(c.convertAMV(dive.getAMV())));
-                count_dives++;
-            }
+    /**
+     * @return the dives as array, rebuilt only if the dive set has changed.
+     */
+    private JDive[] getRows() {
+        TreeSet<JDive> current = getDives();
+        if (rows == null || rowsSource != current || rows.length != current.size()) {
+            rows = current.toArray(new JDive[current.size()]);
+            rowsSource = current;
         }
-        if (averageAmv == null || averageAmv.equals(new BigDecimal(0))) {
-            return new BigDecimal(0);
-        }        
-        return count_dives==0 ? new BigDecimal(0) : averageAmv.divide(new BigDecimal(count_dives),2 , RoundingMode.HALF_UP);
+        return rows;
     }
-
-    public BigDecimal getAverageTemperature() {
-        BigDecimal averageTemperature = new BigDecimal(0);
-        int count_dives = 0;
-        Iterator<JDive> diveIt = dives.iterator();
-        while (diveIt.hasNext()) {            
-            JDive dive = diveIt.next();
-            if (dive != null && dive.getTemperature() != null && dive.getTemperature() != 0) {
-                UnitConverter uc = new UnitConverter(UnitConverter.getSystem(dive.getUnits()), UnitConverter.getDisplaySystem());
-                averageTemperature = averageTemperature.add(new BigDecimal(uc.convertTemperature(dive.getTemperature())));
-                count_dives++;
-            }
+    
+    /**
+     * @return the statistics of the listed dives, shared with the logbook if no search is active.
+     */
+    private DiveStatistics getStatistics() {
+        TreeSet<JDive> current = getDives();
+        if (current == getLogbook().getDives()) {
+            return getLogbook().getStatistics();
         }
-        if (averageTemperature == null || averageTemperature.equals(new BigDecimal(0))) {
-            return new BigDecimal(0);
+        if (statistics == null || statisticsSource != current) {
+            statistics = DiveStatistics.of(current);
+            statisticsSource = current;
         }
-        return count_dives==0 ? new BigDecimal(0) : averageTemperature.divide(new BigDecimal(count_dives),2 , RoundingMode.HALF_UP);
+        return statistics;
+    }
+
+    public BigDecimal getAverageAmv() {
+        return getStatistics().getAverageAmv();
+    }
+
+    public BigDecimal getAverageTemperature() {
+        return getStatistics().getAverageTemperature();
     }
     
     public String getComplete_Divetime() {
-        BigDecimal divetime = new BigDecimal(0);
-        Integer days = Integer.valueOf(0);
-        Integer hours = Integer.valueOf(0);
-        Integer minutes = Integer.valueOf(0);
-        Iterator<JDive> it = dives.iterator();
-        while (it.hasNext()) {
-            JDive dive = it.next();
-            if (dive.getDuration() != null) {
-                UnitConverter c = new UnitConverter(UnitConverter.getSystem(dive.getUnits()), UnitConverter.getDisplaySystem());
-                divetime = divetime.add(new BigDecimal(c.convertTime(dive.getDuration())));
-            }
-        }
-
+        int divetime = (int) getStatistics().getTotalDuration();
         // change the complete divetime in days, hours and minutes
-        if (divetime == null || divetime.equals(new BigDecimal(0))) {
+        if (divetime == 0) {
             return "00:00:00";
         }
-        days = divetime.intValue() / 1440;
-        hours = (divetime.intValue() % 1440) / 60;
-        minutes = divetime.intValue() % 60;
+        int days = divetime / 1440;
+        int hours = (divetime % 1440) / 60;
+        int minutes = divetime % 60;
         StringWriter sw = new StringWriter();
         PrintWriter pw = new PrintWriter(sw);
         pw.printf("%0,2d:%0,2d:%0,2d", days, hours, minutes);
@@ -572,39 +344,11 @@ public class LogBookTableModel extends TableSorter implements SortableTableModel
     }
     
     public BigDecimal getAverageDepth() {
-        BigDecimal averageDepth = new BigDecimal(0);
-        int count_dives = 0;
-        Iterator<JDive> diveIt = dives.iterator();
-        while (diveIt.hasNext()) {            
-            JDive dive = diveIt.next();
-            if (dive.getDepth() != null) {
-                UnitConverter c = new UnitConverter(UnitConverter.getSystem(dive.getUnits()), UnitConverter.getDisplaySystem());
-                averageDepth = averageDepth.add(new BigDecimal(c.convertAltitude(dive.getDepth())));
-                count_dives++;
-            }
-        }
-        if (averageDepth == null || averageDepth.equals(new BigDecimal(0))) {
-            return new BigDecimal(0);
-        }
-        return count_dives==0 ? new BigDecimal(0) : averageDepth.divide(new BigDecimal(count_dives),2 , RoundingMode.HALF_UP);
+        return getStatistics().getAverageDepth();
     }
     
     public BigDecimal getAverageDuration() {
-        BigDecimal averageDuration = new BigDecimal(0);
-        int count_dives = 0;
-        Iterator<JDive> diveIt = dives.iterator();
-        while (diveIt.hasNext()) {            
-            JDive dive = diveIt.next();
-            if (dive.getDepth() != null) {
-                UnitConverter c = new UnitConverter(UnitConverter.getSystem(dive.getUnits()), UnitConverter.getDisplaySystem());
-                averageDuration = averageDuration.add(new BigDecimal(c.convertTime(dive.getDuration())));
-                count_dives++;
-            }
-        }
-        if (averageDuration == null || averageDuration.equals(new BigDecimal(0))) {
-            return new BigDecimal(0);
-        }
-        return count_dives==0 ? new BigDecimal(0) : averageDuration.divide(new BigDecimal(count_dives),2 , RoundingMode.HALF_UP);
+        return getStatistics().getAverageDuration();
     }
     
 }
\ No newline at end of file
@@ -21,16 +21,31 @@
  */
 package net.sf.jdivelog.gui;
 
+import java.util.Collection;
+
+import net.sf.jdivelog.model.JDive;
+
 public class LogbookChangeEvent {
     
     private final EventType type;
 
+    private final Collection<JDive> changedDives;
+
     public static enum EventType {
         LOGBOOK_LOADED, LOGBOOK_UNLOADED, LOGBOOK_DATA_CHANGED, LOGBOOK_TITLE_CHANGED
     }
     
     public LogbookChangeEvent(EventType type) {
+        this(type, null);
+    }
+
+    /**
+     * @param type the type of the change.
+     * @param changedDives the only dives added, removed or replaced by the change.
+     */
+    public LogbookChangeEvent(EventType type, Collection<JDive> changedDives) {
         this.type = type;
+        this.changedDives = changedDives;
     }
 
     /**
@@ -40,4 +55,12 @@ public class LogbookChangeEvent {
         return type;
     }
 
+    /**
+     * @return the dives added, removed or replaced by the change, <code>null</code>
+     *         if anything in the logbook may have changed.
+     */
+    public Collection<JDive> getChangedDives() {
+        return changedDives;
+    }
+
 }
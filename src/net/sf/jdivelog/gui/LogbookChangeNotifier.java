@@ -22,13 +22,18 @@
 package net.sf.jdivelog.gui;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
 
+import net.sf.jdivelog.gui.commands.LogbookJournal;
+import net.sf.jdivelog.model.JDive;
+
 public class LogbookChangeNotifier {
     
     private Set<LogbookChangeListener> listeners;
     private boolean changed;
+    private LogbookJournal journal;
     
     public LogbookChangeNotifier() {
         listeners = new HashSet<LogbookChangeListener>();
@@ -57,6 +62,14 @@ public class LogbookChangeNotifier {
         LogbookChangeEvent e = new LogbookChangeEvent(LogbookChangeEvent.EventType.LOGBOOK_DATA_CHANGED);
         notify(e);
     }
+
+    /**
+     * @param changedDives the only dives which have been added, removed or replaced.
+     */
+    public synchronized void notifyLogbookDataChanged(Collection<JDive> changedDives) {
+        LogbookChangeEvent e = new LogbookChangeEvent(LogbookChangeEvent.EventType.LOGBOOK_DATA_CHANGED, changedDives);
+        notify(e);
+    }
     
     public synchronized void notifyLogbookTitleChanged() {
         LogbookChangeEvent e = new LogbookChangeEvent(LogbookChangeEvent.EventType.LOGBOOK_TITLE_CHANGED);
@@ -74,9 +87,19 @@ public class LogbookChangeNotifier {
         return changed;
     }
 
+    /**
+     * @param journal the journal to note every change in, <code>null</code> for none.
+     */
+    public void setJournal(LogbookJournal journal) {
+        this.journal = journal;
+    }
+
     public void setChanged(boolean changed) {
         boolean oldChanged = this.changed;
         this.changed = changed;
+        if (changed && journal != null) {
+            journal.markDirty();
+        }
         if (changed != oldChanged) {
             this.notifyLogbookTitleChanged();
         }
@@ -97,6 +97,7 @@ import net.sf.jdivelog.gui.commands.CommandManager;
 import net.sf.jdivelog.gui.commands.CommandManagerListener;
 import net.sf.jdivelog.gui.commands.CommandNewFile;
 import net.sf.jdivelog.gui.commands.CommandSaveFile;
+import net.sf.jdivelog.gui.commands.LogbookJournal;
 import net.sf.jdivelog.gui.commands.UndoableCommand;
 import net.sf.jdivelog.gui.dr5.Dr5SettingsPanel;
 import net.sf.jdivelog.gui.gasblending.GasBlendingPanel;
@@ -121,6 +122,7 @@ import net.sf.jdivelog.model.aladin.AladinFileLoader;
 import net.sf.jdivelog.model.cressi.CressiFileLoader;
 import net.sf.jdivelog.model.cressi.CressiLGB;
 import net.sf.jdivelog.model.datatrak.DataTrakFileLoader;
+import net.sf.jdivelog.model.jdivelog.BinaryLogbookFile;
 import net.sf.jdivelog.model.jdivelog.JDiveLogFileLoader;
 import net.sf.jdivelog.model.macdivelog.MacDiveLogFileLoader;
 import net.sf.jdivelog.model.memomouse.MemoMouseFileLoader;
@@ -361,6 +363,8 @@ public class MainWindow extends JFrame implements ActionListener, CommandManager
 
     private LogbookChangeNotifier logbookChangeNotifier;
 
+    private LogbookJournal journal;
+
     private MixDatabase gasDatabase;
 
     private DiveComputerDownloadThread downloadThread;
@@ -372,6 +376,9 @@ public class MainWindow extends JFrame implements ActionListener, CommandManager
         logbookChangeNotifier = new LogbookChangeNotifier();
         logbookChangeNotifier.addLogbookChangeListener(this);
         initialize();
+        journal = new LogbookJournal(this);
+        CommandManager.getInstance().setJournal(journal);
+        logbookChangeNotifier.setJournal(journal);
 
         SwingUtilities.invokeLater(new Runnable() {
             public void run() {
@@ -391,6 +398,10 @@ public class MainWindow extends JFrame implements ActionListener, CommandManager
         return logbookChangeNotifier;
     }
 
+    public LogbookJournal getJournal() {
+        return journal;
+    }
+
     public void sortLogBookModel() {
         logBookModel.sortColumn(0, isStartSortEnabled());
     }
@@ -1705,20 +1716,27 @@ public class MainWindow extends JFrame implements ActionListener, CommandManager
         MainWindow application = new MainWindow();
         JDiveLogExceptionHandler.setMainWindow(application);
         try {
+            File f = null;
             if (args.length > 0) {
-                CommandLoadFile cmd = new CommandLoadFile(application, new File(args[0]));
-                CommandManager.getInstance().execute(cmd);
+                f = new File(args[0]);
             } else {
                 Properties p = application.loadProperties();
                 String filename = p.getProperty(net.sf.jdivelog.JDiveLog.PROPERTY_LASTFILE);
                 if (filename != null) {
-                    File f = new File(filename);
-                    if (f.exists() && f.canRead()) {
-                        CommandLoadFile cmd = new CommandLoadFile(application, f);
-                        CommandManager.getInstance().execute(cmd);
+                    f = new File(filename);
+                    if (!f.exists() || !f.canRead()) {
+                        f = null;
                     }
                 }
             }
+            if (f != null) {
+                // opens the journal when the file has been loaded
+                CommandLoadFile cmd = new CommandLoadFile(application, f);
+                CommandManager.getInstance().execute(cmd);
+            } else {
+                // recover a crashed logbook which had not been saved yet
+                application.getJournal().open();
+            }
         } finally {
             application.setVisible(true);
         }
@@ -2018,10 +2036,13 @@ public class MainWindow extends JFrame implements ActionListener, CommandManager
 
         if (isChanged()) {
             if (askSave()) {
+                journal.discard();
+                journal.close();
                 saveDefaults();
                 System.exit(0);
             }
         } else {
+            journal.close();
             saveDefaults();
             System.exit(0);
         }
@@ -2152,7 +2173,9 @@ public class MainWindow extends JFrame implements ActionListener, CommandManager
             JDive dive = (JDive) logBookModel.getRow(rows[i]);
             dive.setDiveNumber(Long.valueOf(i + 1));
         }
+        getLogBook().invalidateStatistics();
         setChanged(true);
+        journal.snapshot();
     }
 
     private void importWLOG() {
@@ -2250,6 +2273,7 @@ public class MainWindow extends JFrame implements ActionListener, CommandManager
     private void importJDiveLog() {
         ExtensionFileFilter ff = new ExtensionFileFilter(Messages.getString("ADiveLog_files"), "jlb"); //$NON-NLS-1$
         ff.addExtension("jlb"); //$NON-NLS-1$
+        ff.addExtension(BinaryLogbookFile.EXTENSION);
         FileChooser fc = new FileChooser();
         fc.setMultiSelectionEnabled(false);
         fc.setFileFilter(ff);
@@ -2507,6 +2531,7 @@ public class MainWindow extends JFrame implements ActionListener, CommandManager
         }
         ExtensionFileFilter ff = new ExtensionFileFilter(Messages.getString("jdivelog_files"), "jlb"); //$NON-NLS-1$
         ff.addExtension("jlb"); //$NON-NLS-1$
+        ff.addExtension(BinaryLogbookFile.EXTENSION);
         FileChooser fc = new FileChooser();
         fc.setFileFilter(ff);
         int ret = fc.showOpenDialog(this);
@@ -2539,6 +2564,7 @@ public class MainWindow extends JFrame implements ActionListener, CommandManager
     private void saveAsFile() {
         ExtensionFileFilter ff = new ExtensionFileFilter(Messages.getString("jdivelog_files"), "jlb"); //$NON-NLS-1$
         ff.addExtension("jlb"); //$NON-NLS-1$
+        ff.addExtension(BinaryLogbookFile.EXTENSION);
         FileChooser fc = new FileChooser();
         fc.setFileFilter(ff);
         int ret = fc.showSaveDialog(this);
@@ -2603,6 +2629,9 @@ public class MainWindow extends JFrame implements ActionListener, CommandManager
     }
 
     public void logbookChanged(LogbookChangeEvent e) {
+        if (LogbookChangeEvent.EventType.LOGBOOK_DATA_CHANGED.equals(e.getType()) && getLogBook() != null) {
+            getLogBook().updateStatistics(e.getChangedDives());
+        }
         updateHeaderData();
         StringBuffer sb = new StringBuffer(Messages.getString("adivelog")); //$NON-NLS-1$
         sb.append(" "); //$NON-NLS-1$
@@ -0,0 +1,216 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: PicturePrefetcher.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.gui;
+
+import java.awt.Image;
+import java.awt.Toolkit;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.sf.jdivelog.gui.util.ImageUtil;
+import net.sf.jdivelog.model.Picture;
+
+/**
+ * Description: Decodes the pictures of a slideshow in the background, scaled
+ * and rotated to the size of the screen.
+ * <p>
+ * Around the shown picture, the next and previous pictures are prepared, as
+ * many as fit into the memory limit. Pictures which have left this window are
+ * dropped, pending decodes of them are cancelled.
+ */
+class PicturePrefetcher {
+
+    private static final Logger LOGGER = Logger.getLogger(PicturePrefetcher.class.getName());
+
+    /** bytes of prepared pictures kept in memory */
+    private static final long MEMORY_LIMIT = 64L * 1024 * 1024;
+
+    /** maximum number of pictures prepared in each direction */
+    private static final int MAX_RANGE = 3;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new PrefetchThreadFactory());
+
+    private final HashMap<String, Future<BufferedImage>> images = new HashMap<String, Future<BufferedImage>>();
+
+    private int width;
+
+    private int height;
+
+    /**
+     * set the size the pictures are scaled to, prepared pictures of another size are dropped.
+     */
+    public synchronized void setSize(int width, int height) {
+        if (width != this.width || height != this.height) {
+            this.width = width;
+            this.height = height;
+            for (Future<BufferedImage> f : images.values()) {
+                f.cancel(false);
+            }
+            images.clear();
+        }
+    }
+
+    /**
+     * @return the scaled and rotated picture, or <code>null</code> if it could not be read.
+     *         Waits if the picture has not been prepared yet.
+     */
+    public BufferedImage get(Picture p) {
+        Future<BufferedImage> f = request(p);
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return f.get();
+                } catch (InterruptedException e) {
+                    // the slideshow thread is interrupted to change its state, keep waiting
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            LOGGER.log(Level.WARNING, "could not load picture " + p.getFilename(), e.getCause()); //$NON-NLS-1$
+        } catch (CancellationException e) {
+            LOGGER.fine("loading of " + p.getFilename() + " has been cancelled"); //$NON-NLS-1$ //$NON-NLS-2$
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * prepare the pictures around the given one and drop all others.
+     * @param pictures the pictures of the slideshow.
+     * @param index the index of the picture which is shown now.
+     */
+    public synchronized void prefetch(List<Picture> pictures, int index) {
+        int count = pictures.size();
+        HashSet<String> keep = new HashSet<String>();
+        keep.add(getKey(pictures.get(index)));
+        request(pictures.get(index));
+        int range = getRange();
+        for (int d = 1; d <= range; d++) {
+            Picture next = pictures.get((index + d) % count);
+            keep.add(getKey(next));
+            request(next);
+            Picture previous = pictures.get(((index - d) % count + count) % count);
+            keep.add(getKey(previous));
+            request(previous);
+        }
+        Iterator<Map.Entry<String, Future<BufferedImage>>> it = images.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Future<BufferedImage>> e = it.next();
+            if (!keep.contains(e.getKey())) {
+                e.getValue().cancel(false);
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized void shutdown() {
+        executor.shutdownNow();
+        images.clear();
+    }
+
+    //
+    // private methods
+    //
+
+    private synchronized Future<BufferedImage> request(Picture p) {
+        String key = getKey(p);
+        Future<BufferedImage> f = images.get(key);
+        if (f == null || f.isCancelled()) {
+            f = executor.submit(new Loader(p.getFilename(), p.getRotation(), width, height));
+            images.put(key, f);
+        }
+        return f;
+    }
+
+    private int getRange() {
+        long pictureSize = 4L * Math.max(1, width) * Math.max(1, height);
+        int range = (int) ((MEMORY_LIMIT / pictureSize - 1) / 2);
+        return Math.max(1, Math.min(MAX_RANGE, range));
+    }
+
+    private static String getKey(Picture p) {
+        return p.getRotation() + ":" + p.getFilename(); //$NON-NLS-1$
+    }
+
+    private static class Loader implements Callable<BufferedImage> {
+
+        private final String filename;
+        private final int rotation;
+        private final int width;
+        private final int height;
+
+        public Loader(String filename, int rotation, int width, int height) {
+            this.filename = filename;
+            this.rotation = rotation;
+            this.width = width;
+            this.height = height;
+        }
+
+        public BufferedImage call() {
+            File f = new File(filename);
+            if (!f.isFile() || !f.canRead()) {
+                LOGGER.warning("cannot read picture " + filename); //$NON-NLS-1$
+                return null;
+            }
+            long start = System.currentTimeMillis();
+            Image img = null;
+            try {
+                img = ImageUtil.read(f, width, height, rotation);
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "ImageIO could not read " + filename, e); //$NON-NLS-1$
+            }
+            if (img == null) {
+                img = Toolkit.getDefaultToolkit().getImage(filename);
+            }
+            BufferedImage scaled = ImageUtil.transform(img, width, height, rotation);
+            LOGGER.fine("prepared " + filename + " in " + (System.currentTimeMillis() - start) + "ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            return scaled;
+        }
+    }
+
+    private static class PrefetchThreadFactory implements ThreadFactory {
+
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "picture-prefetch"); //$NON-NLS-1$
+            t.setDaemon(true);
+            return t;
+        }
+    }
+
+}
@@ -21,40 +21,29 @@
  */
 package net.sf.jdivelog.gui;
 
-import java.awt.Container;
 import java.awt.Image;
-import java.awt.MediaTracker;
 import java.awt.Toolkit;
-import java.awt.image.BufferedImage;
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
+import javax.swing.event.TableModelEvent;
 import javax.swing.table.AbstractTableModel;
 
 import net.sf.jdivelog.gui.resources.Messages;
 import net.sf.jdivelog.gui.statusbar.StatusInterface;
-import net.sf.jdivelog.gui.util.ImageUtil;
 import net.sf.jdivelog.model.Picture;
 
-import org.apache.batik.ext.awt.image.codec.jpeg.JPEGImageWriter;
-import org.apache.batik.ext.awt.image.spi.ImageWriterParams;
-
 /**
  * Description: Table of pictures showing the name, the picture, the description and the rating
+ * <p>
+ * The thumbnails are loaded in the background by the {@link ThumbnailService},
+ * a placeholder is shown until a thumbnail arrives.
  * 
  * @author Pascal Pellmont <jdivelog@pellmont.dyndns.org>
  */
 public class PictureTableModel extends AbstractTableModel {
 
-    private static final Logger LOGGER = Logger.getLogger(PictureTableModel.class.getName());
-    
     private static final long serialVersionUID = 4049916069575865906L;
 
     private static final String[] COLUMN_NAMES = { Messages.getString("image"), Messages.getString("rotation"), Messages.getString("name"), //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
@@ -64,11 +53,17 @@ public class PictureTableModel extends AbstractTableModel {
 
     public static final int THUMB_MAX_Y = 100;
 
-    private HashMap<Picture,Image> thumbs = new HashMap<Picture,Image>();
-
     private ArrayList<Picture> pictures = null;
 
-    private HashSet<File> filenames = new HashSet<File>();
+    private final Image placeholder = Toolkit.getDefaultToolkit().getImage(getClass().getResource("/net/sf/jdivelog/gui/resources/icons/cam.gif")); //$NON-NLS-1$
+
+    private final ThumbnailService.Listener thumbsLoaded = new ThumbnailService.Listener() {
+        public void thumbnailLoaded(File file) {
+            thumbsLoaded(file);
+        }
+    };
+
+    private boolean loading = false;
     
     private String[] rotationLabels;
     
@@ -110,7 +105,7 @@ public class PictureTableModel extends AbstractTableModel {
             Picture p = pictures.get(rowIndex);
             switch (columnIndex) {
             case 0:
-                return thumbs.get(p);
+                return getThumb(p);
             case 1:
                 return rotationLabels[p.getRotation()];
             case 2:
@@ -131,7 +126,7 @@ public class PictureTableModel extends AbstractTableModel {
                 int newRotation = rotationLabelMap.get(aValue);
                 if (newRotation != p.getRotation()) {
                     p.setRotation(newRotation);
-                    updateThumb(p);
+                    fireTableCellUpdated(rowIndex, 0);
                 }
                 break;
             case 2 : p.setName(aValue.toString());
@@ -151,98 +146,79 @@ public class PictureTableModel extends AbstractTableModel {
 
     public void setPictures(ArrayList<Picture> pictures) {
         this.pictures = pictures;
-        this.thumbs = new HashMap<Picture,Image>();
-        reloadThumbs(false);
+        fireTableDataChanged();
     }
 
     public ArrayList<Picture> getPictures() {
         return pictures;
     }
 
+    /**
+     * show the thumbnails again, they are loaded in the background.
+     * @param recreateThumbs <code>true</code> to create the thumbnails from the pictures, even if they are cached.
+     */
     public void reloadThumbs(boolean recreateThumbs) {
-        if (pictures != null && pictures.size() > 0) {
-            status.messageInfo(Messages.getString("loading_images"));
-            status.countingProgressbarStart(pictures.size(), true);
-            for (int i = 0; i < pictures.size(); i++) {
-                Picture p = pictures.get(i);
-                File thumbFile = getThumbFile(new File(p.getFilename()));
-                if (!recreateThumbs && thumbFile.exists() && thumbFile.canRead()) {
-                    Image thumb = Toolkit.getDefaultToolkit().createImage(
-                            thumbFile.getPath());
-                    MediaTracker mt = new MediaTracker(new Container());
-                    mt.addImage(thumb, i);
-                    try {
-                        mt.waitForID(i);
-                    } catch (InterruptedException e) {
-                        LOGGER.log(Level.SEVERE, "interrupted while loading image", e);
-                    }
-                    setThumb(p, thumb);
-                } else {
-                    updateThumb(pictures.get(i));
-                }
-                status.countingProgressbarIncrement();
+        if (recreateThumbs && pictures != null) {
+            for (Picture p : pictures) {
+                ThumbnailService.getInstance().recreate(new File(p.getFilename()), p.getRotation(), thumbsLoaded);
             }
-            status.countingProgressbarEnd();
-            status.messageClear();
-        } else {
-            thumbs.clear();
-            filenames.clear();
+            startLoading();
         }
+        fireThumbsUpdated();
     }
 
     //
     // private methods
     //
 
-    private void setThumb(Picture p, Image img) {
-        thumbs.put(p, img);
-        fireTableCellUpdated(indexOf(p), 0);
+    private Image getThumb(Picture p) {
+        Image thumb = ThumbnailService.getInstance().getThumbnail(new File(p.getFilename()), p.getRotation(), thumbsLoaded);
+        if (thumb == null) {
+            startLoading();
+            return placeholder;
+        }
+        return thumb;
     }
 
-    private void updateThumb(Picture picture) {
-        File f = new File(picture.getFilename());
-        filenames.add(f);
-        if (f.exists() && f.canRead()) {
-            Image img = Toolkit.getDefaultToolkit().getImage(picture.getFilename());
-            BufferedImage thumb = ImageUtil.transform(img, THUMB_MAX_X, THUMB_MAX_Y, picture.getRotation());
-            setThumb(picture, thumb);
-            try {
-                BufferedOutputStream out = new BufferedOutputStream(
-                        new FileOutputStream(
-                                getThumbFile(new File(picture.getFilename()))));
-                JPEGImageWriter w = new JPEGImageWriter();
-                ImageWriterParams params = new ImageWriterParams();
-                int quality = 100;
-                quality = Math.max(0, Math.min(quality, 100));
-                params.setJPEGQuality(quality/100.0f, false);
-                w.writeImage(thumb, out, params);
-                out.close();
-            } catch (IOException e) {
-                LOGGER.log(Level.SEVERE, "error while updating thumbnail", e);
-            }
-        } else {
-            setThumb(picture, Toolkit.getDefaultToolkit().getImage(getClass().getResource("/net/sf/jdivelog/gui/resources/icons/image_error_icon.gif")));
+    private void startLoading() {
+        if (!loading) {
+            loading = true;
+            status.messageInfo(Messages.getString("loading_images")); //$NON-NLS-1$
+            status.infiniteProgressbarStart();
         }
     }
 
-    private File getThumbFile(File image) {
-        File f = new File(image.getParent(), image.getName().substring(0,
-                image.getName().lastIndexOf(".")) //$NON-NLS-1$
-                + ".tmb"); //$NON-NLS-1$
-        return f;
+    private void thumbsLoaded(File file) {
+        if (loading && ThumbnailService.getInstance().getPendingCount() == 0) {
+            loading = false;
+            status.infiniteProgressbarEnd();
+            status.messageClear();
+        }
+        if (pictures != null) {
+            // only repaint the rows showing this picture
+            for (int i = 0; i < pictures.size(); i++) {
+                if (file.equals(new File(pictures.get(i).getFilename()))) {
+                    fireTableCellUpdated(i, 0);
+                }
+            }
+        }
     }
 
-    private int indexOf(Picture p) {
-        for (int i = 0; i < pictures.size(); i++) {
-            if (p.equals(pictures.get(i))) {
-                return i;
-            }
+    private void fireThumbsUpdated() {
+        if (getRowCount() > 0) {
+            fireTableChanged(new TableModelEvent(this, 0, getRowCount() - 1, 0));
         }
-        return -1;
     }
 
     public boolean containsFile(File file) {
-        return filenames.contains(file);
+        if (pictures != null) {
+            for (Picture p : pictures) {
+                if (file.equals(new File(p.getFilename()))) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
     public void add(Picture p) {
@@ -250,7 +226,6 @@ public class PictureTableModel extends AbstractTableModel {
             pictures = new ArrayList<Picture>();
         }
         pictures.add(p);
-        updateThumb(p);
         fireTableDataChanged();
     }
     
@@ -268,7 +243,6 @@ public class PictureTableModel extends AbstractTableModel {
             pictures = new ArrayList<Picture>();
         }
         pictures.addAll(pics);
-        reloadThumbs(false);
         fireTableDataChanged();
     }
 
@@ -37,8 +37,6 @@ import java.awt.GraphicsDevice;
 import java.awt.GraphicsEnvironment;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
-import java.awt.Image;
-import java.awt.MediaTracker;
 import java.awt.MenuComponent;
 import java.awt.Toolkit;
 import java.awt.Window;
@@ -51,7 +49,6 @@ import java.awt.event.MouseWheelListener;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.StringTokenizer;
-import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.swing.JButton;
@@ -62,7 +59,6 @@ import javax.swing.JTextField;
 import javax.swing.SwingUtilities;
 
 import net.sf.jdivelog.gui.resources.Messages;
-import net.sf.jdivelog.gui.util.ImageUtil;
 import net.sf.jdivelog.model.JDiveLog;
 import net.sf.jdivelog.model.Picture;
 
@@ -74,6 +70,8 @@ public class PictureViewerWindow extends JDialog {
 
     private PictureCyclingThread thread;
 
+    private final PicturePrefetcher prefetcher = new PicturePrefetcher();
+
     private ImageCanvas imageCanvas;
 
     private KeyListener keyListener;
@@ -119,19 +117,33 @@ public class PictureViewerWindow extends JDialog {
 
     public void setPicture(Picture p) {
         setCursor(new Cursor(Cursor.WAIT_CURSOR));
-        Image img = Toolkit.getDefaultToolkit().getImage(p.getFilename());
         currentPicture = p;
-        MediaTracker mediaTracker = new MediaTracker(this);
-        mediaTracker.addImage(img, 0);
-        try {
-            mediaTracker.waitForID(0);
-        } catch (InterruptedException e) {
-            LOGGER.log(Level.SEVERE, "interrupted while loading picture", e);
-        }
-        getImageCanvas().setImage(img, p.getRotation(), displayTitle ? p.getName() : null, displayDescription ? p.getDescription() : null);
+        updatePrefetchSize();
+        BufferedImage img = prefetcher.get(p);
+        getImageCanvas().setImage(img, displayTitle ? p.getName() : null, displayDescription ? p.getDescription() : null);
         setCursor(new Cursor(Cursor.DEFAULT_CURSOR));
     }
 
+    /**
+     * show a picture of a slideshow and prepare the pictures around it in the background.
+     */
+    public void setPicture(ArrayList<Picture> pictures, int index) {
+        updatePrefetchSize();
+        prefetcher.prefetch(pictures, index);
+        setPicture(pictures.get(index));
+    }
+
+    @Override
+    public void dispose() {
+        prefetcher.shutdown();
+        super.dispose();
+    }
+
+    private void updatePrefetchSize() {
+        Dimension d = getImageCanvas().getPreferredSize();
+        prefetcher.setSize(Math.max(1, d.width), Math.max(1, d.height));
+    }
+
     private void initialize() {
         setIconImage(Toolkit.getDefaultToolkit().getImage(getClass().getResource("/net/sf/jdivelog/gui/resources/icons/logo.gif")));
         keyListener = new KeyListener() {
@@ -293,7 +305,7 @@ public class PictureViewerWindow extends JDialog {
         public void run() {
             pictureIdx = 0;
             if (pictures.size() > 0) {
-                window.setPicture(pictures.get(pictureIdx));
+                window.setPicture(pictures, pictureIdx);
                 while (runState != STATE_ABORTED) {
                     window.requestFocus();
                     try {
@@ -315,7 +327,7 @@ public class PictureViewerWindow extends JDialog {
                 }
             }
             if (pictureTableModel != null) {
-                pictureTableModel.reloadThumbs(true);
+                pictureTableModel.reloadThumbs(false);
                 pictureTableModel.fireTableDataChanged();
             }
             window.dispose();
@@ -331,7 +343,7 @@ public class PictureViewerWindow extends JDialog {
             if (pictureIdx == 0 && !repeat) {
                 runState = STATE_ABORTED;
             } else {
-                window.setPicture(pictures.get(pictureIdx));
+                window.setPicture(pictures, pictureIdx);
             }
         }
 
@@ -340,7 +352,7 @@ public class PictureViewerWindow extends JDialog {
             if (pictureIdx < 0) {
                 pictureIdx = pictures.size() - 1;
             }
-            window.setPicture(pictures.get(pictureIdx));
+            window.setPicture(pictures, pictureIdx);
         }
     }
 
@@ -348,38 +360,34 @@ public class PictureViewerWindow extends JDialog {
 
         private static final long serialVersionUID = -507771455667791226L;
 
-        private int rotation;
-
-        private Image image;
-
         private BufferedImage doubleBuffer;
 
         public ImageCanvas() {
             super();
         }
 
-        @SuppressWarnings("unused")
-      public void setImage(Image img, int rotation) {
-            setImage(img, rotation, null, null);
-        }
-
-        public void setImage(Image img, int rotation, String title, String description) {
-            image = img;
-            this.rotation = rotation;
+        /**
+         * @param img the picture, already scaled and rotated to fit the canvas.
+         */
+        public synchronized void setImage(BufferedImage img, String title, String description) {
             Dimension d = getPreferredSize();
-            int sizeX = (int) d.getWidth();
-            int sizeY = (int) d.getHeight();
-            doubleBuffer = new BufferedImage((int) d.getWidth(), (int) d.getHeight(), BufferedImage.TYPE_INT_RGB);
-            ImageUtil.transform(image, doubleBuffer, sizeX, sizeY, this.rotation, this);
+            int sizeX = Math.max(1, (int) d.getWidth());
+            int sizeY = Math.max(1, (int) d.getHeight());
+            if (doubleBuffer == null || doubleBuffer.getWidth() != sizeX || doubleBuffer.getHeight() != sizeY) {
+                doubleBuffer = new BufferedImage(sizeX, sizeY, BufferedImage.TYPE_INT_RGB);
+            }
+            Graphics g = doubleBuffer.getGraphics();
+            g.setColor(Color.BLACK);
+            g.fillRect(0, 0, sizeX, sizeY);
+            if (img != null) {
+                g.drawImage(img, (sizeX - img.getWidth()) / 2, (sizeY - img.getHeight()) / 2, null);
+            }
+            g.setColor(Color.WHITE);
+            FontMetrics fm = g.getFontMetrics();
             if (title != null) {
-                Graphics g = doubleBuffer.getGraphics();
-                g.setColor(Color.WHITE);
-                FontMetrics fm = g.getFontMetrics();
                 g.drawString(title, 5, 5 + fm.getHeight());
             }
             if (description != null) {
-                Graphics g = doubleBuffer.getGraphics();
-                FontMetrics fm = g.getFontMetrics();
                 int spacing = fm.getHeight() + 5;
                 StringTokenizer st = new StringTokenizer(description, "\n");
                 int c = st.countTokens();
@@ -388,11 +396,12 @@ public class PictureViewerWindow extends JDialog {
                     g.drawString(line, 5, sizeY - 5 - (i * spacing));
                 }
             }
+            g.dispose();
             repaint();
         }
 
         @Override
-        public void paint(Graphics g) {
+        public synchronized void paint(Graphics g) {
             if (doubleBuffer != null) {
                 g.drawImage(doubleBuffer, 0, 0, this);
             }
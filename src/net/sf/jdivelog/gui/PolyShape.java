@@ -0,0 +1,189 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: PolyShape.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.gui;
+
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * Description: Polygon or path of the {@link DiveProfile}, built from screen
+ * coordinates. Consecutive points in the same pixel column are reduced to
+ * the first, the minimum, the maximum and the last point of the column, in
+ * the order they were added. This keeps every peak and the exact outline at
+ * screen resolution, while long dives with thousands of samples only add a
+ * few points per column.
+ */
+class PolyShape implements Shape {
+
+    private final Shape delegate;
+
+    private final boolean polygon;
+
+    private boolean firstPoint;
+
+    private boolean pending;
+
+    private int columnX;
+
+    private int firstY;
+
+    private int minY;
+
+    private int maxY;
+
+    private int lastY;
+
+    private boolean minBeforeMax;
+
+    private int lastAddedX;
+
+    private int lastAddedY;
+
+    private boolean added;
+
+    public PolyShape(Polygon poly) {
+        delegate = poly;
+        polygon = true;
+    }
+
+    public PolyShape(GeneralPath path) {
+        delegate = path;
+        firstPoint = true;
+        polygon = false;
+    }
+
+    public void addPoint(int x, int y) {
+        if (pending && x == columnX) {
+            if (y < minY) {
+                minY = y;
+                minBeforeMax = false;
+            }
+            if (y > maxY) {
+                maxY = y;
+                minBeforeMax = true;
+            }
+            lastY = y;
+        }
+        else {
+            flush();
+            pending = true;
+            columnX = x;
+            firstY = y;
+            minY = y;
+            maxY = y;
+            lastY = y;
+            minBeforeMax = true;
+        }
+    }
+
+    private void flush() {
+        if (pending) {
+            pending = false;
+            addDecimatedPoint(columnX, firstY);
+            if (minBeforeMax) {
+                addDecimatedPoint(columnX, minY);
+                addDecimatedPoint(columnX, maxY);
+            }
+            else {
+                addDecimatedPoint(columnX, maxY);
+                addDecimatedPoint(columnX, minY);
+            }
+            addDecimatedPoint(columnX, lastY);
+        }
+    }
+
+    private void addDecimatedPoint(int x, int y) {
+        if (added && x == lastAddedX && y == lastAddedY) {
+            return;
+        }
+        added = true;
+        lastAddedX = x;
+        lastAddedY = y;
+        if (polygon) {
+            ((Polygon) delegate).addPoint(x, y);
+        }
+        else {
+            if (firstPoint) {
+                firstPoint = false;
+                ((GeneralPath) delegate).moveTo(x, y);
+            }
+            else {
+                ((GeneralPath) delegate).lineTo(x, y);
+            }
+        }
+    }
+
+    public Rectangle getBounds() {
+        flush();
+        return delegate.getBounds();
+    }
+
+    public Rectangle2D getBounds2D() {
+        flush();
+        return delegate.getBounds2D();
+    }
+
+    public boolean contains(double x, double y) {
+        flush();
+        return delegate.contains(x, y);
+    }
+
+    public boolean contains(Point2D p) {
+        flush();
+        return delegate.contains(p);
+    }
+
+    public boolean intersects(double x, double y, double w, double h) {
+        flush();
+        return delegate.intersects(x, y, w, h);
+    }
+
+    public boolean intersects(Rectangle2D r) {
+        flush();
+        return delegate.intersects(r);
+    }
+
+    public boolean contains(double x, double y, double w, double h) {
+        flush();
+        return delegate.contains(x, y, w, h);
+    }
+
+    public boolean contains(Rectangle2D r) {
+        flush();
+        return delegate.contains(r);
+    }
+
+    public PathIterator getPathIterator(AffineTransform at) {
+        flush();
+        return delegate.getPathIterator(at);
+    }
+
+    public PathIterator getPathIterator(AffineTransform at, double flatness) {
+        flush();
+        return delegate.getPathIterator(at, flatness);
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: ProfileSeries.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.gui;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Description: Samples of one graph of the {@link DiveProfile} as parallel
+ * arrays sorted by time. Like a set ordered by time, only the first sample
+ * added for a given time is kept. Samples are usually added in time order,
+ * so sorting is only needed for the few points inserted around gas switches.
+ */
+class ProfileSeries {
+
+    private double[] times = new double[64];
+
+    private double[] values = new double[64];
+
+    private int size = 0;
+
+    private boolean sorted = true;
+
+    public void add(double time, double value) {
+        if (sorted && size > 0) {
+            if (time == times[size - 1]) {
+                return;
+            }
+            if (time < times[size - 1]) {
+                sorted = false;
+            }
+        }
+        if (size == times.length) {
+            times = Arrays.copyOf(times, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        times[size] = time;
+        values[size] = value;
+        size++;
+    }
+
+    /**
+     * add a break in the graph (gas switch).
+     */
+    public void addBreak(double time) {
+        add(time, Double.NaN);
+    }
+
+    public int size() {
+        sort();
+        return size;
+    }
+
+    public double getTime(int index) {
+        sort();
+        return times[index];
+    }
+
+    public double getValue(int index) {
+        sort();
+        return values[index];
+    }
+
+    public boolean isBreak(int index) {
+        return Double.isNaN(getValue(index));
+    }
+
+    /**
+     * @return the index of the first sample at or after the given time, size() if there is none.
+     */
+    public int ceilingIndex(double time) {
+        sort();
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void sort() {
+        if (sorted) {
+            return;
+        }
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = Integer.valueOf(i);
+        }
+        // stable, so the first sample added for a time comes first
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer o1, Integer o2) {
+                return Double.compare(times[o1.intValue()], times[o2.intValue()]);
+            }
+        });
+        double[] sortedTimes = new double[times.length];
+        double[] sortedValues = new double[values.length];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            int index = order[i].intValue();
+            if (n == 0 || times[index] != sortedTimes[n - 1]) {
+                sortedTimes[n] = times[index];
+                sortedValues[n] = values[index];
+                n++;
+            }
+        }
+        times = sortedTimes;
+        values = sortedValues;
+        size = n;
+        sorted = true;
+    }
+
+}
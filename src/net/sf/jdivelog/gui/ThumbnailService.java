@@ -0,0 +1,395 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: ThumbnailService.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.gui;
+
+import java.awt.Image;
+import java.awt.Toolkit;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.swing.SwingUtilities;
+
+import net.sf.jdivelog.gui.util.ImageUtil;
+import net.sf.jdivelog.util.HashUtil;
+
+/**
+ * Description: Creates the thumbnails of the picture table in the background.
+ * <p>
+ * Decoded thumbnails are kept in memory, the least recently used ones are
+ * dropped when the memory limit is reached. Created thumbnails are also
+ * written to a cache directory in the home directory of the user, named by a
+ * hash of the path, the modification time and the rotation of the picture, so
+ * nothing is written next to the pictures and a changed picture gets a new
+ * thumbnail. In memory the thumbnails are kept by path, modification time
+ * and rotation as well, so a picture changed while the program is running
+ * is not shown with its old thumbnail.
+ * <p>
+ * The cache directory is pruned once per session in the background: cached
+ * thumbnails not used for {@link #DISK_MAX_AGE} are removed, then the least
+ * recently used ones until the cache is smaller than {@link #DISK_LIMIT}.
+ * Using a cached thumbnail updates its modification time.
+ */
+public class ThumbnailService {
+
+    private static final Logger LOGGER = Logger.getLogger(ThumbnailService.class.getName());
+
+    public static final File CACHE_DIR = new File(System.getProperty("user.home"), ".jdivelog_thumbs"); //$NON-NLS-1$ //$NON-NLS-2$
+
+    /** bytes of decoded thumbnails kept in memory */
+    private static final long MEMORY_LIMIT = 16L * 1024 * 1024;
+
+    /** bytes of thumbnails kept in the cache directory */
+    private static final long DISK_LIMIT = 64L * 1024 * 1024;
+
+    /** milliseconds a thumbnail is kept in the cache directory without being used */
+    private static final long DISK_MAX_AGE = 180L * 24 * 60 * 60 * 1000;
+
+    private static final String ERROR_ICON = "/net/sf/jdivelog/gui/resources/icons/image_error_icon.gif"; //$NON-NLS-1$
+
+    private static ThumbnailService instance;
+
+    static {
+        instance = new ThumbnailService(PictureTableModel.THUMB_MAX_X, PictureTableModel.THUMB_MAX_Y);
+    }
+
+    public static ThumbnailService getInstance() {
+        return instance;
+    }
+
+    private final int maxWidth;
+
+    private final int maxHeight;
+
+    private final ExecutorService executor;
+
+    private final LinkedHashMap<String, Image> thumbs = new LinkedHashMap<String, Image>(16, 0.75f, true);
+
+    private long thumbsSize = 0;
+
+    private final HashMap<String, ArrayList<Listener>> pending = new HashMap<String, ArrayList<Listener>>();
+
+    private final Image errorImage;
+
+    private ThumbnailService(int maxWidth, int maxHeight) {
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        executor = Executors.newFixedThreadPool(threads, new LoaderThreadFactory());
+        errorImage = Toolkit.getDefaultToolkit().getImage(getClass().getResource(ERROR_ICON));
+        executor.execute(new Pruner());
+    }
+
+    /**
+     * @param file the picture file.
+     * @param rotation the rotation of the picture.
+     * @param onLoaded notified on the event dispatch thread when the thumbnail
+     *            has been loaded, may be <code>null</code>.
+     * @return the thumbnail, or <code>null</code> if it is still being loaded.
+     */
+    public synchronized Image getThumbnail(File file, int rotation, Listener onLoaded) {
+        String key = getKey(file, rotation);
+        Image thumb = thumbs.get(key);
+        if (thumb != null) {
+            return thumb;
+        }
+        ArrayList<Listener> callbacks = pending.get(key);
+        if (callbacks == null) {
+            callbacks = new ArrayList<Listener>();
+            pending.put(key, callbacks);
+            executor.execute(new Loader(file, rotation, key, false));
+        }
+        if (onLoaded != null && !callbacks.contains(onLoaded)) {
+            callbacks.add(onLoaded);
+        }
+        return null;
+    }
+
+    /**
+     * create the thumbnail again from the picture, even if there is a cached one.
+     * @param onLoaded notified on the event dispatch thread when the thumbnail
+     *            has been created, may be <code>null</code>.
+     */
+    public synchronized void recreate(File file, int rotation, Listener onLoaded) {
+        String key = getKey(file, rotation);
+        remove(key);
+        ArrayList<Listener> callbacks = pending.get(key);
+        if (callbacks == null) {
+            callbacks = new ArrayList<Listener>();
+            pending.put(key, callbacks);
+        }
+        if (onLoaded != null && !callbacks.contains(onLoaded)) {
+            callbacks.add(onLoaded);
+        }
+        executor.execute(new Loader(file, rotation, key, true));
+    }
+
+    /**
+     * @return the number of thumbnails waiting to be loaded.
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    //
+    // private methods
+    //
+
+    private static String getKey(File file, int rotation) {
+        return file.getAbsolutePath() + '|' + file.lastModified() + '|' + rotation;
+    }
+
+    /**
+     * @return the name of the thumbnail in the cache directory, reads the
+     *         modification time of the file.
+     */
+    private String getCacheName(File file, int rotation) {
+        return HashUtil.hash(file.getAbsolutePath(), Long.valueOf(file.lastModified()), Integer.valueOf(rotation), Integer.valueOf(maxWidth), Integer.valueOf(maxHeight));
+    }
+
+    private void loaded(final File file, String key, Image thumb) {
+        ArrayList<Listener> callbacks;
+        synchronized (this) {
+            callbacks = pending.remove(key);
+            remove(key);
+            thumbs.put(key, thumb);
+            thumbsSize += sizeOf(thumb);
+            Iterator<Map.Entry<String, Image>> it = thumbs.entrySet().iterator();
+            while (thumbsSize > MEMORY_LIMIT && thumbs.size() > 1) {
+                thumbsSize -= sizeOf(it.next().getValue());
+                it.remove();
+            }
+        }
+        if (callbacks != null) {
+            for (final Listener callback : callbacks) {
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        callback.thumbnailLoaded(file);
+                    }
+                });
+            }
+        }
+    }
+
+    private void remove(String key) {
+        Image old = thumbs.remove(key);
+        if (old != null) {
+            thumbsSize -= sizeOf(old);
+        }
+    }
+
+    private static long sizeOf(Image img) {
+        if (img instanceof BufferedImage) {
+            BufferedImage bi = (BufferedImage) img;
+            return 4L * bi.getWidth() * bi.getHeight();
+        }
+        return 0;
+    }
+
+    private BufferedImage create(File file, int rotation) {
+        Image img = null;
+        try {
+            img = ImageUtil.read(file, maxWidth, maxHeight, rotation);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "ImageIO could not read " + file.getPath(), e); //$NON-NLS-1$
+        }
+        if (img == null) {
+            img = Toolkit.getDefaultToolkit().getImage(file.getPath());
+        }
+        return ImageUtil.transform(img, maxWidth, maxHeight, rotation);
+    }
+
+    private static void write(BufferedImage thumb, File f) {
+        if (!CACHE_DIR.isDirectory() && !CACHE_DIR.mkdirs()) {
+            LOGGER.warning("could not create thumbnail cache " + CACHE_DIR.getPath()); //$NON-NLS-1$
+            return;
+        }
+        // write to a temporary file, so a reader never sees a partial thumbnail
+        File tmp = new File(f.getPath() + ".tmp"); //$NON-NLS-1$
+        try {
+            // written with ImageIO like it is read, the JPEG encoder of Batik
+            // needs com.sun.image.codec.jpeg, which newer runtimes do not have
+            ImageWriter w = ImageIO.getImageWritersByFormatName("jpeg").next(); //$NON-NLS-1$
+            ImageWriteParam params = w.getDefaultWriteParam();
+            params.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            params.setCompressionQuality(0.9f);
+            // the stream does not truncate a file left over by an interrupted write
+            tmp.delete();
+            ImageOutputStream out = new FileImageOutputStream(tmp);
+            try {
+                w.setOutput(out);
+                w.write(null, new IIOImage(thumb, null, null), params);
+            } finally {
+                w.dispose();
+                out.close();
+            }
+            if (!tmp.renameTo(f)) {
+                f.delete();
+                if (!tmp.renameTo(f)) {
+                    tmp.delete();
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "error while writing thumbnail", e); //$NON-NLS-1$
+            tmp.delete();
+        }
+    }
+
+    /**
+     * loads a thumbnail from the cache directory or creates it from the picture.
+     */
+    private class Loader implements Runnable {
+
+        private final File file;
+        private final int rotation;
+        private final String key;
+        private final boolean recreate;
+
+        public Loader(File file, int rotation, String key, boolean recreate) {
+            this.file = file;
+            this.rotation = rotation;
+            this.key = key;
+            this.recreate = recreate;
+        }
+
+        public void run() {
+            Image thumb = null;
+            try {
+                if (file.isFile() && file.canRead()) {
+                    File cached = new File(CACHE_DIR, getCacheName(file, rotation) + ".jpg"); //$NON-NLS-1$
+                    if (!recreate && cached.isFile()) {
+                        try {
+                            thumb = ImageIO.read(cached);
+                            // keeps the thumbnail when the cache is pruned
+                            cached.setLastModified(System.currentTimeMillis());
+                        } catch (IOException e) {
+                            LOGGER.log(Level.FINE, "could not read cached thumbnail " + cached.getPath(), e); //$NON-NLS-1$
+                        }
+                    }
+                    if (thumb == null) {
+                        BufferedImage created = create(file, rotation);
+                        write(created, cached);
+                        thumb = created;
+                    }
+                }
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "could not create thumbnail of " + file.getPath(), e); //$NON-NLS-1$
+            }
+            loaded(file, key, thumb != null ? thumb : errorImage);
+        }
+    }
+
+    /**
+     * removes old thumbnails from the cache directory.
+     */
+    private static class Pruner implements Runnable {
+
+        public void run() {
+            File[] files = CACHE_DIR.listFiles();
+            if (files == null) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            long size = 0;
+            ArrayList<File> kept = new ArrayList<File>();
+            for (File f : files) {
+                if (!f.isFile()) {
+                    continue;
+                }
+                if (now - f.lastModified() > DISK_MAX_AGE) {
+                    delete(f);
+                } else {
+                    size += f.length();
+                    kept.add(f);
+                }
+            }
+            if (size <= DISK_LIMIT) {
+                return;
+            }
+            File[] oldestFirst = kept.toArray(new File[kept.size()]);
+            final long[] modified = new long[oldestFirst.length];
+            for (int i = 0; i < oldestFirst.length; i++) {
+                modified[i] = oldestFirst[i].lastModified();
+            }
+            Integer[] order = new Integer[oldestFirst.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = Integer.valueOf(i);
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                public int compare(Integer a, Integer b) {
+                    return Long.compare(modified[a.intValue()], modified[b.intValue()]);
+                }
+            });
+            for (int i = 0; i < order.length && size > DISK_LIMIT; i++) {
+                File f = oldestFirst[order[i].intValue()];
+                size -= f.length();
+                delete(f);
+            }
+        }
+
+        private static void delete(File f) {
+            if (!f.delete()) {
+                LOGGER.fine("could not delete cached thumbnail " + f.getPath()); //$NON-NLS-1$
+            }
+        }
+    }
+
+    /**
+     * gets notified when a requested thumbnail is available.
+     */
+    public interface Listener {
+
+        /**
+         * @param file the picture file of the thumbnail.
+         */
+        public void thumbnailLoaded(File file);
+    }
+
+    private static class LoaderThreadFactory implements ThreadFactory {
+
+        private int count = 0;
+
+        public synchronized Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "thumbnail-" + (++count)); //$NON-NLS-1$
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        }
+    }
+
+}
@@ -24,7 +24,6 @@ package net.sf.jdivelog.gui.commands;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.StringTokenizer;
-import java.util.TreeSet;
 
 import net.sf.jdivelog.gui.MainWindow;
 import net.sf.jdivelog.model.Buddy;
@@ -38,12 +37,11 @@ import net.sf.jdivelog.model.JDiveLog;
  * 
  * @author Pascal Pellmont <jdivelog@pellmont.dyndns.org>
  */
-public class CommandAddDives implements UndoableCommand {
+public class CommandAddDives implements DiveListCommand {
     
     private MainWindow mainWindow = null;
     private Collection<JDive> divesToAdd = null;
-    private TreeSet<JDive> oldDives = null;
-    private TreeSet<JDive> newDives = null;
+    private DiveListChange change = null;
     private boolean oldChanged = false;
     private JDiveLog import_logbook = null;
     
@@ -61,26 +59,33 @@ public class CommandAddDives implements UndoableCommand {
      * @see net.sf.jdivelog.gui.commands.UndoableCommand#undo()
      */
     public void undo() {
-        mainWindow.getLogBook().setDives(new TreeSet<JDive>(oldDives));
+        change.undo(mainWindow.getLogBook());
         mainWindow.setChanged(oldChanged);
-        mainWindow.getLogbookChangeNotifier().notifyLogbookDataChanged();
+        mainWindow.getLogbookChangeNotifier().notifyLogbookDataChanged(change.getChangedDives());
     }
 
     /**
      * @see net.sf.jdivelog.gui.commands.UndoableCommand#redo()
      */
     public void redo() {
-        mainWindow.getLogBook().setDives(new TreeSet<JDive>(newDives));
+        change.redo(mainWindow.getLogBook());
         mainWindow.setChanged(true);
-        mainWindow.getLogbookChangeNotifier().notifyLogbookDataChanged();
+        mainWindow.getLogbookChangeNotifier().notifyLogbookDataChanged(change.getChangedDives());
+    }
+
+    /**
+     * @see net.sf.jdivelog.gui.commands.DiveListCommand#getChange()
+     */
+    public DiveListChange getChange() {
+        return change;
     }
 
     /**
      * @see net.sf.jdivelog.gui.commands.Command#execute()
      */
     public void execute() {
-        // save dives for undo
-        this.oldDives = new TreeSet<JDive>(this.mainWindow.getLogBook().getDives());
+        // remember the added dives for undo
+        this.change = new DiveListChange(false);
         this.oldChanged = this.mainWindow.isChanged();
         
         // add the collection to the logbook
@@ -138,14 +143,11 @@ public class CommandAddDives implements UndoableCommand {
             	}            
             }
 
-            this.mainWindow.getLogBook().addDive(dive);
+            change.add(this.mainWindow.getLogBook(), dive);
         }
         
-        // save new dives for redo
-        this.newDives = new TreeSet<JDive>(this.mainWindow.getLogBook().getDives());
-        
         // notify about table change, file change
         mainWindow.setChanged(true);
-        mainWindow.getLogbookChangeNotifier().notifyLogbookDataChanged();
+        mainWindow.getLogbookChangeNotifier().notifyLogbookDataChanged(change.getChangedDives());
     }
 }
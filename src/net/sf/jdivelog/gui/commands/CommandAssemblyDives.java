@@ -36,12 +36,6 @@ public class CommandAssemblyDives implements Command {
     
     private MainWindow mainWindow = null;
     private TreeSet<JDive> divesToAssembly = null;
-	@SuppressWarnings("unused")
-	private TreeSet<JDive> oldDiveList = null;
-    @SuppressWarnings("unused")
-	private boolean oldChanged = false;
-    @SuppressWarnings("unused")
-	private TreeSet<JDive> newDiveList = null;
     
     public CommandAssemblyDives(MainWindow mainWindow, TreeSet<JDive> divesToAssembly) {
         this.mainWindow = mainWindow;
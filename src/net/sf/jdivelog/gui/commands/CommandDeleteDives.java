@@ -23,7 +23,6 @@ package net.sf.jdivelog.gui.commands;
 
 import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.TreeSet;
 
 import net.sf.jdivelog.gui.MainWindow;
 import net.sf.jdivelog.model.JDive;
@@ -33,13 +32,12 @@ import net.sf.jdivelog.model.JDive;
  * 
  * @author Pascal Pellmont <jdivelog@pellmont.dyndns.org>
  */
-public class CommandDeleteDives implements UndoableCommand {
+public class CommandDeleteDives implements DiveListCommand {
     
     private MainWindow mainWindow = null;
     private ArrayList<JDive> divesToDelete = null;
-    private TreeSet<JDive> oldDiveList = null;
+    private DiveListChange change = null;
     private boolean oldChanged = false;
-    private TreeSet<JDive> newDiveList = null;
     
     public CommandDeleteDives(MainWindow mainWindow, ArrayList<JDive> divesToDelete) {
         this.mainWindow = mainWindow;
@@ -50,35 +48,40 @@ public class CommandDeleteDives implements UndoableCommand {
      * @see net.sf.jdivelog.gui.commands.UndoableCommand#undo()
      */
     public void undo() {
-        this.mainWindow.getLogBook().setDives(new TreeSet<JDive>(this.oldDiveList));
+        change.undo(mainWindow.getLogBook());
         mainWindow.setChanged(oldChanged);
-        mainWindow.getLogbookChangeNotifier().notifyLogbookDataChanged();
+        mainWindow.getLogbookChangeNotifier().notifyLogbookDataChanged(change.getChangedDives());
     }
 
     /**
      * @see net.sf.jdivelog.gui.commands.UndoableCommand#redo()
      */
     public void redo() {
-        mainWindow.getLogBook().setDives(new TreeSet<JDive>(this.newDiveList));
+        change.redo(mainWindow.getLogBook());
         mainWindow.setChanged(true);
-        mainWindow.getLogbookChangeNotifier().notifyLogbookDataChanged();
+        mainWindow.getLogbookChangeNotifier().notifyLogbookDataChanged(change.getChangedDives());
+    }
+
+    /**
+     * @see net.sf.jdivelog.gui.commands.DiveListCommand#getChange()
+     */
+    public DiveListChange getChange() {
+        return change;
     }
 
     /**
      * @see net.sf.jdivelog.gui.commands.Command#execute()
      */
     public void execute() {
-        // Backup current divelist for undo
-        this.oldDiveList = (new TreeSet<JDive>(this.mainWindow.getLogBook().getDives()));
+        // remember the deleted dives for undo
+        this.change = new DiveListChange(false);
         this.oldChanged = mainWindow.isChanged();
         Iterator<JDive> it = this.divesToDelete.iterator();
         while(it.hasNext()) {
-            this.mainWindow.getLogBook().getDives().remove(it.next());
+            change.remove(this.mainWindow.getLogBook(), it.next());
         }
-        // Backup new dive list for redo
-        this.newDiveList = (new TreeSet<JDive>(this.mainWindow.getLogBook().getDives()));
         mainWindow.setChanged(true);
-        mainWindow.getLogbookChangeNotifier().notifyLogbookDataChanged();
+        mainWindow.getLogbookChangeNotifier().notifyLogbookDataChanged(change.getChangedDives());
     }
 
 }
@@ -43,6 +43,7 @@ public class CommandHtmlExport implements Command {
                 try {
                     if (exportUtil.execute() > 0) { 
                         mainwindow.setChanged(true);
+                        mainwindow.getJournal().exported();
                     }
                 } catch (ExportException ex) {
                     new MessageDialog(mainwindow, Messages.getString("error.export_failed"), ex.getReason(), null, MessageDialog.MessageType.ERROR);
@@ -23,7 +23,6 @@ package net.sf.jdivelog.gui.commands;
 
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.TreeSet;
 
 import net.sf.jdivelog.gui.MainWindow;
 import net.sf.jdivelog.model.JDive;
@@ -34,12 +33,11 @@ import net.sf.jdivelog.model.JDive;
  * 
  * @author Pascal Pellmont <jdivelog@pellmont.dyndns.org>
  */
-public class CommandIgnoreDives implements UndoableCommand {
+public class CommandIgnoreDives implements DiveListCommand {
     
     private MainWindow mainWindow = null;
     private Collection<JDive> divesToIgnore = null;
-    private TreeSet<JDive> oldDives = null;
-    private TreeSet<JDive> newDives = null;
+    private DiveListChange change = null;
     private boolean oldChanged = false;
     
     public CommandIgnoreDives(MainWindow mainWindow, Collection<JDive> divesToIgnore) {
@@ -51,41 +49,45 @@ public class CommandIgnoreDives implements UndoableCommand {
      * @see net.sf.jdivelog.gui.commands.UndoableCommand#undo()
      */
     public void undo() {
-        this.mainWindow.getLogBook().setIgnoredDives(new TreeSet<JDive>(oldDives));
+        change.undo(mainWindow.getLogBook());
         mainWindow.setChanged(oldChanged);
-        mainWindow.getLogbookChangeNotifier().notifyLogbookDataChanged();
+        mainWindow.getLogbookChangeNotifier().notifyLogbookDataChanged(change.getChangedDives());
     }
 
     /**
      * @see net.sf.jdivelog.gui.commands.UndoableCommand#redo()
      */
     public void redo() {
-        this.mainWindow.getLogBook().setIgnoredDives(new TreeSet<JDive>(newDives));
+        change.redo(mainWindow.getLogBook());
         mainWindow.setChanged(true);
-        mainWindow.getLogbookChangeNotifier().notifyLogbookDataChanged();
+        mainWindow.getLogbookChangeNotifier().notifyLogbookDataChanged(change.getChangedDives());
+    }
+
+    /**
+     * @see net.sf.jdivelog.gui.commands.DiveListCommand#getChange()
+     */
+    public DiveListChange getChange() {
+        return change;
     }
 
     /**
      * @see net.sf.jdivelog.gui.commands.Command#execute()
      */
     public void execute() {
-        // save dives for undo
-        this.oldDives = new TreeSet<JDive>(this.mainWindow.getLogBook().getDives());
+        // remember the ignored dives for undo
+        this.change = new DiveListChange(true);
         this.oldChanged = this.mainWindow.isChanged();
         
         // add the collection to the logbook
         Iterator<JDive> it = this.divesToIgnore.iterator();
         while (it.hasNext()) {
             JDive dive = it.next();
-            this.mainWindow.getLogBook().addIgnoredDive(dive);
+            change.add(this.mainWindow.getLogBook(), dive);
         }
         
-        // save new dives for redo
-        this.newDives = new TreeSet<JDive>(this.mainWindow.getLogBook().getDives());
-        
         // notify about table change, file change
         mainWindow.setChanged(true);
-        mainWindow.getLogbookChangeNotifier().notifyLogbookDataChanged();
+        mainWindow.getLogbookChangeNotifier().notifyLogbookDataChanged(change.getChangedDives());
     }
 
 }
@@ -21,15 +21,24 @@
  */
 package net.sf.jdivelog.gui.commands;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringWriter;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
 
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
 
 import net.sf.jdivelog.gui.JDiveLogException;
+import net.sf.jdivelog.gui.JDiveLogExceptionHandler;
 import net.sf.jdivelog.gui.MainWindow;
 import net.sf.jdivelog.gui.MessageDialog;
 import net.sf.jdivelog.gui.resources.Messages;
@@ -57,13 +66,17 @@ import net.sf.jdivelog.model.gasblending.GasBlendingSettings;
 import net.sf.jdivelog.model.gasblending.GasSource;
 import net.sf.jdivelog.model.gasoverflow.GasOverflowSettings;
 import net.sf.jdivelog.model.gasoverflow.GasOverflowSource;
+import net.sf.jdivelog.model.jdivelog.BinaryLogbookFile;
 import net.sf.jdivelog.model.jdivelog.JDiveLogFileLoader;
 import net.sf.jdivelog.model.udcf.Dive;
 import net.sf.jdivelog.model.udcf.Gas;
 import net.sf.jdivelog.util.UnitConverter;
 
 import org.apache.commons.digester3.Digester;
+import org.apache.commons.digester3.Rule;
+import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 
 /**
  * Command for loading .jlb-files.
@@ -103,40 +116,61 @@ public class CommandLoadFile implements Command {
      * @see net.sf.jdivelog.gui.commands.Command#execute()
      */
     public void execute() {
-        try {
-            Digester d = new Digester();
-            try {
-                d.setFeature("http://apache.org/xml/features/allow-java-encodings", true);
-            } catch (ParserConfigurationException e) {
-                // tried it, but never mind
+        mainWindow.getStatusBar().messageInfo(Messages.getString("loading_logbook")); //$NON-NLS-1$
+        mainWindow.getStatusBar().infiniteProgressbarStart();
+        SwingWorker<JDiveLog, Object> worker = new SwingWorker<JDiveLog, Object>() {
+            @Override
+            protected JDiveLog doInBackground() throws Exception {
+                return loadLogbook();
             }
-            d.setValidating(false);
-            d.addObjectCreate("JDiveLog", VersionBean.class); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/Version", "setVersion", 1);
-            d.addCallParam("JDiveLog/Version", 0);
 
+            @Override
+            protected void done() {
+                mainWindow.getStatusBar().infiniteProgressbarEnd();
+                mainWindow.getStatusBar().messageClear();
+                JDiveLog jdl = null;
+                try {
+                    jdl = get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    new JDiveLogExceptionHandler().handle(e.getCause());
+                }
+                loaded(jdl);
+            }
+        };
+        worker.execute();
+    }
+
+    /**
+     * parse the file, called on a background thread.
+     * @return the logbook, <code>null</code> if the file has an unknown version.
+     */
+    private JDiveLog loadLogbook() {
+        try {
             JDiveLog jdl = null;
-            VersionBean vb = (VersionBean) d.parse(file);
+            BinaryLogbookFile binaryFile = BinaryLogbookFile.isBinary(file) ? BinaryLogbookFile.open(file) : null;
+            VersionBean vb = readVersion(openStream(binaryFile));
             if (vb.getVersion() != null && !"".equals(vb.getVersion())) {
                 FileLoader fl = fileLoaders.get(vb.getVersion());
                 if (fl != null) {
-                    jdl = fl.loadFile(file);
+                    jdl = load(fl, binaryFile);
                 } else {
-                    new MessageDialog(mainWindow, Messages.getString("error.could_not_open_file"), Messages.getString("error.could_not_open_file")+" "+file.getName()+", "+Messages.getString("unknown_version")+": "+vb.getVersion(), null, MessageDialog.MessageType.ERROR);
+                    final String version = vb.getVersion();
+                    SwingUtilities.invokeLater(new Runnable() {
+                        public void run() {
+                            new MessageDialog(mainWindow, Messages.getString("error.could_not_open_file"), Messages.getString("error.could_not_open_file")+" "+file.getName()+", "+Messages.getString("unknown_version")+": "+version, null, MessageDialog.MessageType.ERROR);
+                        }
+                    });
                 }
             } else {
                 FileLoader fl = new FileLoaderPre1_0();
-                jdl = fl.loadFile(file);
+                jdl = load(fl, binaryFile);
             }
-
-            if (jdl != null && !import_logbook) {
-                mainWindow.setFile(file);
-                mainWindow.setChanged(false);
-                mainWindow.setLogBook(jdl);
-            }
-            if (jdl != null && import_logbook) {
-            	jdivelogfileloader.setImport_logbook(jdl);     
+            if (jdl != null && binaryFile != null) {
+                binaryFile.attachProfiles(jdl);
             }
+            return jdl;
         } catch (SAXException ex) {
             StringWriter sw = new StringWriter();
             sw.write(Messages.getString("error.could_not_open_file")); //$NON-NLS-1$
@@ -154,6 +188,87 @@ public class CommandLoadFile implements Command {
         }
     }
 
+    /**
+     * take over the loaded logbook, called on the event dispatch thread.
+     * @param jdl the logbook, <code>null</code> if it could not be loaded.
+     */
+    private void loaded(JDiveLog jdl) {
+        if (import_logbook) {
+            if (jdl != null) {
+                jdivelogfileloader.loaded(jdl);
+            }
+            return;
+        }
+        if (jdl != null) {
+            mainWindow.setFile(file);
+            mainWindow.setChanged(false);
+            mainWindow.setLogBook(jdl);
+            mainWindow.getJournal().open();
+        } else {
+            // the previous logbook stays open, only a logbook which failed
+            // at startup leaves the journal to be opened here
+            mainWindow.getJournal().openIfClosed();
+        }
+    }
+
+    /**
+     * parse a logbook in the current file format, as written by {@link JDiveLog#write(Appendable)}.
+     * @param in the logbook XML.
+     * @return the parsed logbook.
+     */
+    static JDiveLog parseCurrentVersion(InputStream in) throws SAXException, IOException {
+        return new CommandLoadFile(null, null).new FileLoader2_13().loadFile(in);
+    }
+
+    /**
+     * @return the logbook XML, for binary logbooks the part without the dive profiles.
+     */
+    private InputStream openStream(BinaryLogbookFile binaryFile) throws IOException {
+        if (binaryFile != null) {
+            return binaryFile.getMetadataStream();
+        }
+        return new BufferedInputStream(new FileInputStream(file));
+    }
+
+    private JDiveLog load(FileLoader fl, BinaryLogbookFile binaryFile) throws SAXException, IOException {
+        InputStream in = openStream(binaryFile);
+        try {
+            return fl.loadFile(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads only the leading part of the stream until the version element has
+     * been seen, so the versioned loader is the only one parsing the whole file.
+     * Files older than 1.0 have no version element; for them the parse stops
+     * at the first dive at the latest.
+     */
+    static VersionBean readVersion(InputStream in) throws SAXException, IOException {
+        VersionBean vb = new VersionBean();
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setValidating(false);
+        try {
+            factory.setFeature("http://apache.org/xml/features/allow-java-encodings", true);
+        } catch (ParserConfigurationException e) {
+            // tried it, but never mind
+        } catch (SAXException e) {
+            // feature not supported by this parser, never mind
+        }
+        try {
+            SAXParser parser = factory.newSAXParser();
+            parser.parse(in, new VersionHandler(vb));
+        } catch (VersionFoundException e) {
+            // parsing has been stopped on purpose
+        } catch (ParserConfigurationException e) {
+            throw new SAXException(e);
+        } finally {
+            in.close();
+        }
+        return vb;
+    }
+
     @Deprecated
     private static void migrateDiveSites(JDiveLog logbook) {
         Iterator<JDive> dit = logbook.getDives().iterator();
@@ -179,13 +294,102 @@ public class CommandLoadFile implements Command {
     // inner classes
     //
     
+    /**
+     * Adds a sample to the {@link Dive} on top of the stack. The samples make
+     * up most of a logbook, so they are added with direct calls instead of
+     * reflective call method rules.
+     */
+    private static class SampleRule extends Rule {
+        private String sensor;
+        private String tfs;
+        private String tts;
+
+        @Override
+        public void begin(String namespace, String name, Attributes attributes) throws Exception {
+            sensor = attributes.getValue("sensor"); //$NON-NLS-1$
+            tfs = attributes.getValue("tfs"); //$NON-NLS-1$
+            tts = attributes.getValue("tts"); //$NON-NLS-1$
+        }
+
+        @Override
+        public void body(String namespace, String name, String text) throws Exception {
+            Dive dive = getDigester().peek();
+            String value = text.trim();
+            if ("T".equals(name)) { //$NON-NLS-1$
+                dive.addTime(value);
+            } else if ("D".equals(name)) { //$NON-NLS-1$
+                dive.addDepth(value);
+            } else if ("TEMPERATURE".equals(name)) { //$NON-NLS-1$
+                dive.addTemperature(value);
+            } else if ("DELTA".equals(name)) { //$NON-NLS-1$
+                dive.addDelta(value);
+            } else if ("SWITCH".equals(name)) { //$NON-NLS-1$
+                dive.addSwitch(value);
+            } else if ("SPSWITCH".equals(name)) { //$NON-NLS-1$
+                dive.addSetpointSwitch(value);
+            } else if ("ALARM".equals(name)) { //$NON-NLS-1$
+                dive.addAlarm(value);
+            } else if ("DECOINFO".equals(name)) { //$NON-NLS-1$
+                dive.addDecoInfo(value, tfs, tts);
+            } else if ("PPO2".equals(name)) { //$NON-NLS-1$
+                dive.addPPO2(sensor, value);
+            }
+        }
+    }
+
+    private static class VersionFoundException extends SAXException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static class VersionHandler extends DefaultHandler {
+        private final VersionBean versionBean;
+        private final StringBuilder text = new StringBuilder();
+        private int depth = 0;
+        private boolean inVersion = false;
+
+        public VersionHandler(VersionBean versionBean) {
+            this.versionBean = versionBean;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+            depth++;
+            if (depth == 1 && !"JDiveLog".equals(qName)) { //$NON-NLS-1$
+                throw new VersionFoundException();
+            }
+            if (depth == 2) {
+                if ("Version".equals(qName)) { //$NON-NLS-1$
+                    inVersion = true;
+                } else if ("JDive".equals(qName)) { //$NON-NLS-1$
+                    throw new VersionFoundException();
+                }
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inVersion) {
+                text.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            depth--;
+            if (inVersion) {
+                versionBean.setVersion(text.toString().trim());
+                throw new VersionFoundException();
+            }
+        }
+    }
+
     private interface FileLoader {
 
-        public JDiveLog loadFile(File file) throws SAXException, IOException;
+        public JDiveLog loadFile(InputStream in) throws SAXException, IOException;
     }
 
     private class FileLoaderPre1_0 implements FileLoader {
-        public JDiveLog loadFile(File file) throws SAXException, IOException {
+        public JDiveLog loadFile(InputStream in) throws SAXException, IOException {
             Digester d = new Digester();
             try {
                 d.setFeature("http://apache.org/xml/features/allow-java-encodings", true);
@@ -359,23 +563,17 @@ public class CommandLoadFile implements Command {
             d.addSetNext("JDiveLog/JDive/DIVE/GASES/MIX", "addGas"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addCallMethod("JDiveLog/JDive/DIVE/TIMEDEPTHMODE", "setTimeDepthMode"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addCallMethod("JDiveLog/JDive/DIVE/DELTAMODE", "setDeltaMode"); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/DELTA", "addDelta", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/DELTA", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/SWITCH", "addSwitch", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/SWITCH", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/T", "addTime", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/T", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/D", "addDepth", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/D", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/TEMPERATURE", "addTemperature", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/TEMPERATURE", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/ALARM", "addAlarm", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/ALARM", 0); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/DELTA", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/SWITCH", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/T", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/D", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/TEMPERATURE", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/ALARM", new SampleRule()); //$NON-NLS-1$
 
             d.addSetNext("JDiveLog/JDive/DIVE", "setDive"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addSetNext("JDiveLog/JDive", "addDive"); //$NON-NLS-1$ //$NON-NLS-2$
 
-            JDiveLog log = (JDiveLog) d.parse(file);
+            JDiveLog log = (JDiveLog) d.parse(in);
             Iterator<JDive> diveIt = log.getDives().iterator();
             while(diveIt.hasNext()) {
                 JDive dive = diveIt.next();
@@ -390,7 +588,7 @@ public class CommandLoadFile implements Command {
     }
 
     private class FileLoader1_0 implements FileLoader {
-        public JDiveLog loadFile(File file) throws SAXException, IOException {
+        public JDiveLog loadFile(InputStream in) throws SAXException, IOException {
             Digester d = new Digester();
             try {
                 d.setFeature("http://apache.org/xml/features/allow-java-encodings", true);
@@ -626,23 +824,17 @@ public class CommandLoadFile implements Command {
             d.addSetNext("JDiveLog/JDive/DIVE/GASES/MIX", "addGas"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addCallMethod("JDiveLog/JDive/DIVE/TIMEDEPTHMODE", "setTimeDepthMode"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addCallMethod("JDiveLog/JDive/DIVE/DELTAMODE", "setDeltaMode"); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/DELTA", "addDelta", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/DELTA", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/SWITCH", "addSwitch", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/SWITCH", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/T", "addTime", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/T", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/D", "addDepth", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/D", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/TEMPERATURE", "addTemperature", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/TEMPERATURE", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/ALARM", "addAlarm", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/ALARM", 0); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/DELTA", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/SWITCH", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/T", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/D", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/TEMPERATURE", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/ALARM", new SampleRule()); //$NON-NLS-1$
 
             d.addSetNext("JDiveLog/JDive/DIVE", "setDive"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addSetNext("JDiveLog/JDive", "addDive"); //$NON-NLS-1$ //$NON-NLS-2$
 
-            JDiveLog log = (JDiveLog) d.parse(file);
+            JDiveLog log = (JDiveLog) d.parse(in);
             Iterator<JDive> diveIt = log.getDives().iterator();
             while(diveIt.hasNext()) {
                 JDive dive = diveIt.next();
@@ -657,7 +849,7 @@ public class CommandLoadFile implements Command {
     }
 
     private class FileLoader1_2 implements FileLoader {
-        public JDiveLog loadFile(File file) throws SAXException, IOException {
+        public JDiveLog loadFile(InputStream in) throws SAXException, IOException {
             Digester d = new Digester();
             try {
                 d.setFeature("http://apache.org/xml/features/allow-java-encodings", true);
@@ -905,18 +1097,12 @@ public class CommandLoadFile implements Command {
             d.addSetNext("JDiveLog/JDive/DIVE/GASES/MIX", "addGas"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addCallMethod("JDiveLog/JDive/DIVE/TIMEDEPTHMODE", "setTimeDepthMode"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addCallMethod("JDiveLog/JDive/DIVE/DELTAMODE", "setDeltaMode"); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/DELTA", "addDelta", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/DELTA", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/SWITCH", "addSwitch", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/SWITCH", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/T", "addTime", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/T", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/D", "addDepth", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/D", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/TEMPERATURE", "addTemperature", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/TEMPERATURE", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/ALARM", "addAlarm", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/ALARM", 0); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/DELTA", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/SWITCH", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/T", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/D", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/TEMPERATURE", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/ALARM", new SampleRule()); //$NON-NLS-1$
 
             d.addSetNext("JDiveLog/JDive/DIVE", "setDive"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addSetNext("JDiveLog/JDive", "addDive"); //$NON-NLS-1$ //$NON-NLS-2$
@@ -992,28 +1178,22 @@ public class CommandLoadFile implements Command {
             d.addSetNext("JDiveLog/IgnoredDives/JDive/DIVE/GASES/MIX", "addGas"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/TIMEDEPTHMODE", "setTimeDepthMode"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/DELTAMODE", "setDeltaMode"); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/DELTA", "addDelta", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/DELTA", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/SWITCH", "addSwitch", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/SWITCH", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/T", "addTime", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/T", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/D", "addDepth", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/D", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/TEMPERATURE", "addTemperature", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/TEMPERATURE", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/ALARM", "addAlarm", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/ALARM", 0); //$NON-NLS-1$
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/DELTA", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/SWITCH", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/T", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/D", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/TEMPERATURE", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/ALARM", new SampleRule()); //$NON-NLS-1$
             d.addSetNext("JDiveLog/IgnoredDives/JDive/DIVE", "setDive"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addSetNext("JDiveLog/IgnoredDives/JDive", "addIgnoredDive"); //$NON-NLS-1$ //$NON-NLS-2$
-            JDiveLog log = (JDiveLog) d.parse(file);
+            JDiveLog log = (JDiveLog) d.parse(in);
             migrateDiveSites(log);
             return log;
         }
     }
 
     private class FileLoader2_0 implements FileLoader {
-        public JDiveLog loadFile(File file) throws SAXException, IOException {
+        public JDiveLog loadFile(InputStream in) throws SAXException, IOException {
             Digester d = new Digester();
             try {
                 d.setFeature("http://apache.org/xml/features/allow-java-encodings", true);
@@ -1299,18 +1479,12 @@ public class CommandLoadFile implements Command {
             d.addSetNext("JDiveLog/JDive/DIVE/GASES/MIX", "addGas"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addCallMethod("JDiveLog/JDive/DIVE/TIMEDEPTHMODE", "setTimeDepthMode"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addCallMethod("JDiveLog/JDive/DIVE/DELTAMODE", "setDeltaMode"); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/DELTA", "addDelta", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/DELTA", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/SWITCH", "addSwitch", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/SWITCH", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/T", "addTime", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/T", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/D", "addDepth", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/D", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/TEMPERATURE", "addTemperature", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/TEMPERATURE", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/ALARM", "addAlarm", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/ALARM", 0); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/DELTA", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/SWITCH", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/T", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/D", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/TEMPERATURE", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/ALARM", new SampleRule()); //$NON-NLS-1$
 
             d.addSetNext("JDiveLog/JDive/DIVE", "setDive"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addSetNext("JDiveLog/JDive", "addDive"); //$NON-NLS-1$ //$NON-NLS-2$
@@ -1386,27 +1560,21 @@ public class CommandLoadFile implements Command {
             d.addSetNext("JDiveLog/IgnoredDives/JDive/DIVE/GASES/MIX", "addGas"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/TIMEDEPTHMODE", "setTimeDepthMode"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/DELTAMODE", "setDeltaMode"); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/DELTA", "addDelta", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/DELTA", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/SWITCH", "addSwitch", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/SWITCH", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/T", "addTime", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/T", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/D", "addDepth", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/D", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/TEMPERATURE", "addTemperature", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/TEMPERATURE", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/ALARM", "addAlarm", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/ALARM", 0); //$NON-NLS-1$
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/DELTA", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/SWITCH", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/T", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/D", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/TEMPERATURE", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/ALARM", new SampleRule()); //$NON-NLS-1$
             d.addSetNext("JDiveLog/IgnoredDives/JDive/DIVE", "setDive"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addSetNext("JDiveLog/IgnoredDives/JDive", "addIgnoredDive"); //$NON-NLS-1$ //$NON-NLS-2$
-            JDiveLog log = (JDiveLog) d.parse(file);
+            JDiveLog log = (JDiveLog) d.parse(in);
             return log;
         }
     }
 
     private class FileLoader2_3 implements FileLoader {
-        public JDiveLog loadFile(File file) throws SAXException, IOException {
+        public JDiveLog loadFile(InputStream in) throws SAXException, IOException {
             Digester d = new Digester();
             try {
                 d.setFeature("http://apache.org/xml/features/allow-java-encodings", true);
@@ -1719,18 +1887,12 @@ public class CommandLoadFile implements Command {
             d.addSetNext("JDiveLog/JDive/DIVE/GASES/MIX", "addGas"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addCallMethod("JDiveLog/JDive/DIVE/TIMEDEPTHMODE", "setTimeDepthMode"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addCallMethod("JDiveLog/JDive/DIVE/DELTAMODE", "setDeltaMode"); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/DELTA", "addDelta", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/DELTA", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/SWITCH", "addSwitch", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/SWITCH", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/T", "addTime", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/T", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/D", "addDepth", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/D", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/TEMPERATURE", "addTemperature", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/TEMPERATURE", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/ALARM", "addAlarm", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/ALARM", 0); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/DELTA", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/SWITCH", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/T", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/D", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/TEMPERATURE", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/ALARM", new SampleRule()); //$NON-NLS-1$
 
             d.addSetNext("JDiveLog/JDive/DIVE", "setDive"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addSetNext("JDiveLog/JDive", "addDive"); //$NON-NLS-1$ //$NON-NLS-2$
@@ -1810,27 +1972,21 @@ public class CommandLoadFile implements Command {
             d.addSetNext("JDiveLog/IgnoredDives/JDive/DIVE/GASES/MIX", "addGas"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/TIMEDEPTHMODE", "setTimeDepthMode"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/DELTAMODE", "setDeltaMode"); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/DELTA", "addDelta", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/DELTA", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/SWITCH", "addSwitch", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/SWITCH", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/T", "addTime", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/T", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/D", "addDepth", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/D", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/TEMPERATURE", "addTemperature", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/TEMPERATURE", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/ALARM", "addAlarm", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/ALARM", 0); //$NON-NLS-1$
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/DELTA", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/SWITCH", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/T", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/D", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/TEMPERATURE", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/ALARM", new SampleRule()); //$NON-NLS-1$
             d.addSetNext("JDiveLog/IgnoredDives/JDive/DIVE", "setDive"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addSetNext("JDiveLog/IgnoredDives/JDive", "addIgnoredDive"); //$NON-NLS-1$ //$NON-NLS-2$
-            JDiveLog log = (JDiveLog) d.parse(file);
+            JDiveLog log = (JDiveLog) d.parse(in);
             return log;
         }
     }
 
     private class FileLoader2_6 implements FileLoader {
-        public JDiveLog loadFile(File file) throws SAXException, IOException {
+        public JDiveLog loadFile(InputStream in) throws SAXException, IOException {
             Digester d = new Digester();
             try {
                 d.setFeature("http://apache.org/xml/features/allow-java-encodings", true);
@@ -2204,25 +2360,14 @@ public class CommandLoadFile implements Command {
             d.addSetNext("JDiveLog/JDive/DIVE/GASES/MIX", "addGas"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addCallMethod("JDiveLog/JDive/DIVE/TIMEDEPTHMODE", "setTimeDepthMode"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addCallMethod("JDiveLog/JDive/DIVE/DELTAMODE", "setDeltaMode"); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/DELTA", "addDelta", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/DELTA", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/SWITCH", "addSwitch", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/SWITCH", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/T", "addTime", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/T", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/D", "addDepth", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/D", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/TEMPERATURE", "addTemperature", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/TEMPERATURE", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/ALARM", "addAlarm", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/ALARM", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/DECOINFO", "addDecoInfo", 3);
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/DECOINFO", 0);
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/DECOINFO", 1, "tfs");
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/DECOINFO", 2, "tts");
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/PPO2", "addPPO2", 2);
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/PPO2", 0, "sensor");
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/PPO2", 1);
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/DELTA", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/SWITCH", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/T", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/D", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/TEMPERATURE", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/ALARM", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/DECOINFO", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/PPO2", new SampleRule()); //$NON-NLS-1$
 
             d.addSetNext("JDiveLog/JDive/DIVE", "setDive"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addSetNext("JDiveLog/JDive", "addDive"); //$NON-NLS-1$ //$NON-NLS-2$
@@ -2302,35 +2447,24 @@ public class CommandLoadFile implements Command {
             d.addSetNext("JDiveLog/IgnoredDives/JDive/DIVE/GASES/MIX", "addGas"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/TIMEDEPTHMODE", "setTimeDepthMode"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/DELTAMODE", "setDeltaMode"); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/DELTA", "addDelta", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/DELTA", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/SWITCH", "addSwitch", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/SWITCH", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/T", "addTime", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/T", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/D", "addDepth", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/D", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/TEMPERATURE", "addTemperature", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/TEMPERATURE", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/ALARM", "addAlarm", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/ALARM", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/DECOINFO", "addDecoInfo", 3);
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/DECOINFO", 0);
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/DECOINFO", 1, "tfs");
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/DECOINFO", 2, "tts");
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/PPO2", "addPPO2", 2);
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/PPO2", 0, "sensor");
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/PPO2", 1);
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/DELTA", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/SWITCH", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/T", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/D", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/TEMPERATURE", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/ALARM", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/DECOINFO", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/PPO2", new SampleRule()); //$NON-NLS-1$
             d.addSetNext("JDiveLog/IgnoredDives/JDive/DIVE", "setDive"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addSetNext("JDiveLog/IgnoredDives/JDive", "addIgnoredDive"); //$NON-NLS-1$ //$NON-NLS-2$
-            JDiveLog log = (JDiveLog) d.parse(file);
+            JDiveLog log = (JDiveLog) d.parse(in);
             return log;
         }
     }
 
 
     private class FileLoader2_13 implements FileLoader {
-        public JDiveLog loadFile(File file) throws SAXException, IOException {
+        public JDiveLog loadFile(InputStream in) throws SAXException, IOException {
             Digester d = new Digester();
             try {
                 d.setFeature("http://apache.org/xml/features/allow-java-encodings", true);
@@ -2745,25 +2879,14 @@ public class CommandLoadFile implements Command {
             d.addSetNext("JDiveLog/JDive/DIVE/GASES/MIX", "addGas"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addCallMethod("JDiveLog/JDive/DIVE/TIMEDEPTHMODE", "setTimeDepthMode"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addCallMethod("JDiveLog/JDive/DIVE/DELTAMODE", "setDeltaMode"); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/DELTA", "addDelta", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/DELTA", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/SWITCH", "addSwitch", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/SWITCH", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/T", "addTime", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/T", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/D", "addDepth", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/D", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/TEMPERATURE", "addTemperature", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/TEMPERATURE", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/ALARM", "addAlarm", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/ALARM", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/DECOINFO", "addDecoInfo", 3);
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/DECOINFO", 0);
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/DECOINFO", 1, "tfs");
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/DECOINFO", 2, "tts");
-            d.addCallMethod("JDiveLog/JDive/DIVE/SAMPLES/PPO2", "addPPO2", 2);
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/PPO2", 0, "sensor");
-            d.addCallParam("JDiveLog/JDive/DIVE/SAMPLES/PPO2", 1);
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/DELTA", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/SWITCH", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/T", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/D", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/TEMPERATURE", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/ALARM", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/DECOINFO", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/JDive/DIVE/SAMPLES/PPO2", new SampleRule()); //$NON-NLS-1$
 
             d.addSetNext("JDiveLog/JDive/DIVE", "setDive"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addSetNext("JDiveLog/JDive", "addDive"); //$NON-NLS-1$ //$NON-NLS-2$
@@ -2843,30 +2966,18 @@ public class CommandLoadFile implements Command {
             d.addSetNext("JDiveLog/IgnoredDives/JDive/DIVE/GASES/MIX", "addGas"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/TIMEDEPTHMODE", "setTimeDepthMode"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/DELTAMODE", "setDeltaMode"); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/DELTA", "addDelta", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/DELTA", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/SWITCH", "addSwitch", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/SWITCH", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/SPSWITCH", "addSetpointSwitch", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/SPSWITCH", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/T", "addTime", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/T", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/D", "addDepth", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/D", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/TEMPERATURE", "addTemperature", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/TEMPERATURE", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/ALARM", "addAlarm", 1); //$NON-NLS-1$ //$NON-NLS-2$
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/ALARM", 0); //$NON-NLS-1$
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/DECOINFO", "addDecoInfo", 3);
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/DECOINFO", 0);
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/DECOINFO", 1, "tfs");
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/DECOINFO", 2, "tts");
-            d.addCallMethod("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/PPO2", "addPPO2", 2);
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/PPO2", 0, "sensor");
-            d.addCallParam("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/PPO2", 1);
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/DELTA", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/SWITCH", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/SPSWITCH", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/T", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/D", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/TEMPERATURE", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/ALARM", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/DECOINFO", new SampleRule()); //$NON-NLS-1$
+            d.addRule("JDiveLog/IgnoredDives/JDive/DIVE/SAMPLES/PPO2", new SampleRule()); //$NON-NLS-1$
             d.addSetNext("JDiveLog/IgnoredDives/JDive/DIVE", "setDive"); //$NON-NLS-1$ //$NON-NLS-2$
             d.addSetNext("JDiveLog/IgnoredDives/JDive", "addIgnoredDive"); //$NON-NLS-1$ //$NON-NLS-2$
-            JDiveLog log = (JDiveLog) d.parse(file);
+            JDiveLog log = (JDiveLog) d.parse(in);
             return log;
         }
     }
@@ -24,6 +24,8 @@ package net.sf.jdivelog.gui.commands;
 import java.util.ArrayList;
 import java.util.Iterator;
 
+import net.sf.jdivelog.JDiveLog;
+
 /**
  * Description: Main class managing the different commands
  * 
@@ -31,6 +33,9 @@ import java.util.Iterator;
  */
 public class CommandManager {
 
+    /** default number of undoable commands kept in the history */
+    public static final int DEFAULT_HISTORY_LIMIT = 100;
+
     private static CommandManager instance = null;
 
     static {
@@ -47,14 +52,56 @@ public class CommandManager {
 
     private Command lastCommand = null;
 
+    private int historyLimit;
+
+    private LogbookJournal journal = null;
+
     private CommandManager() {
+        historyLimit = DEFAULT_HISTORY_LIMIT;
+        String limit = System.getProperty(JDiveLog.PROPERTY_UNDO_LIMIT);
+        if (limit != null) {
+            try {
+                historyLimit = Integer.parseInt(limit.trim());
+            } catch (NumberFormatException e) {
+                // keep default
+            }
+        }
+    }
 
+    /**
+     * @param journal journal recording every command, <code>null</code> for none.
+     */
+    public void setJournal(LogbookJournal journal) {
+        this.journal = journal;
+    }
+
+    public int getHistoryLimit() {
+        return historyLimit;
+    }
+
+    /**
+     * @param historyLimit maximum number of commands which can be undone, the oldest are dropped first.
+     */
+    public synchronized void setHistoryLimit(int historyLimit) {
+        boolean undo = canUndo();
+        boolean redo = canRedo();
+        this.historyLimit = historyLimit;
+        trimHistory();
+        if (undo != canUndo() || redo != canRedo()) {
+            notifyListeners();
+        }
     }
 
     public synchronized void execute(Command cmd) {
         boolean undo = canUndo();
         boolean redo = canRedo();
+        if (journal != null) {
+            journal.flush();
+        }
         cmd.execute();
+        if (journal != null) {
+            journal.executed(cmd);
+        }
         if (!(cmd instanceof UndoableCommand)) {
             // command has no undo function.
             // clean history
@@ -73,6 +120,7 @@ public class CommandManager {
             }
             commandHistory.add(cmd);
             lastCommand = cmd;
+            trimHistory();
         }
         if (undo != canUndo() || redo != canRedo()) {
             notifyListeners();
@@ -85,7 +133,13 @@ public class CommandManager {
             boolean redo = canRedo();
             int idx = commandHistory.lastIndexOf(lastCommand);
             UndoableCommand cmd = (UndoableCommand) commandHistory.get(idx);
+            if (journal != null) {
+                journal.flush();
+            }
             cmd.undo();
+            if (journal != null) {
+                journal.undone(cmd);
+            }
             if (idx > 0) {
                 lastCommand = commandHistory.get(idx - 1);
             } else {
@@ -108,7 +162,13 @@ public class CommandManager {
                 idx = commandHistory.lastIndexOf(lastCommand);
             }
             UndoableCommand cmd = (UndoableCommand) commandHistory.get(idx + 1);
+            if (journal != null) {
+                journal.flush();
+            }
             cmd.redo();
+            if (journal != null) {
+                journal.redone(cmd);
+            }
             lastCommand = cmd;
             if (undo != canUndo() || redo != canRedo()) {
                 notifyListeners();
@@ -116,6 +176,25 @@ public class CommandManager {
         }
     }
 
+    /**
+     * drop the oldest commands beyond the history limit, they can not be undone anymore.
+     */
+    private void trimHistory() {
+        int excess = commandHistory.size() - Math.max(historyLimit, 0);
+        if (excess > 0) {
+            int idx = lastCommand == null ? -1 : commandHistory.lastIndexOf(lastCommand);
+            if (idx < excess - 1) {
+                // commands to redo would be dropped as well
+                commandHistory.clear();
+            } else {
+                commandHistory.subList(0, excess).clear();
+            }
+            if (idx < excess) {
+                lastCommand = null;
+            }
+        }
+    }
+
     public boolean canUndo() {
         if (lastCommand != null && commandHistory.size() > 0) {
             return true;
@@ -21,8 +21,6 @@
  */
 package net.sf.jdivelog.gui.commands;
 
-import java.util.TreeSet;
-
 import net.sf.jdivelog.gui.MainWindow;
 import net.sf.jdivelog.model.JDive;
 
@@ -32,13 +30,12 @@ import net.sf.jdivelog.model.JDive;
  * 
  * @author Pascal Pellmont <jdivelog@pellmont.dyndns.org>
  */
-public class CommandSaveDive implements UndoableCommand {
+public class CommandSaveDive implements DiveListCommand {
     
     MainWindow mainWindow = null;
     JDive oldDive = null;
     JDive newDive = null;
-    TreeSet<JDive> oldDives = null;
-    TreeSet<JDive> newDives = null;
+    DiveListChange change = null;
     boolean oldChanged = false;
     
     public CommandSaveDive(MainWindow mainWindow, JDive oldDive, JDive newDive) {
@@ -52,41 +49,39 @@ public class CommandSaveDive implements UndoableCommand {
      * @see net.sf.jdivelog.gui.commands.UndoableCommand#undo()
      */
     public void undo() {
-        this.mainWindow.getLogBook().setDives(new TreeSet<JDive>(oldDives));
+        change.undo(mainWindow.getLogBook());
         mainWindow.setChanged(this.oldChanged);
-        mainWindow.getLogbookChangeNotifier().notifyLogbookDataChanged();
+        mainWindow.getLogbookChangeNotifier().notifyLogbookDataChanged(change.getChangedDives());
     }
 
     /**
      * @see net.sf.jdivelog.gui.commands.UndoableCommand#redo()
      */
     public void redo() {
-        this.mainWindow.getLogBook().setDives(new TreeSet<JDive>(newDives));
+        change.redo(mainWindow.getLogBook());
         mainWindow.setChanged(true);
-        mainWindow.getLogbookChangeNotifier().notifyLogbookDataChanged();
+        mainWindow.getLogbookChangeNotifier().notifyLogbookDataChanged(change.getChangedDives());
+    }
+
+    /**
+     * @see net.sf.jdivelog.gui.commands.DiveListCommand#getChange()
+     */
+    public DiveListChange getChange() {
+        return change;
     }
 
     /**
      * @see net.sf.jdivelog.gui.commands.Command#execute()
      */
     public void execute() {
-        // Backup old divelist
-        this.oldDives = new TreeSet<JDive>(mainWindow.getLogBook().getDives());
-        
-        // replace old dive or add new dive
-        if (this.mainWindow.getLogBook().getDives().contains(this.oldDive)) {
-            this.mainWindow.getLogBook().getDives().remove(oldDive);
-            this.mainWindow.getLogBook().getDives().add(newDive);
-        } else {
-            this.mainWindow.getLogBook().getDives().add(newDive);
-        }
-        
-        // Backup new divelist
-        this.newDives = new TreeSet<JDive>(mainWindow.getLogBook().getDives());
+        // replace old dive or add new dive, remembering the change for undo
+        this.change = new DiveListChange(false);
+        change.remove(mainWindow.getLogBook(), oldDive);
+        change.add(mainWindow.getLogBook(), newDive);
         
         // notify mainwindow
         mainWindow.setChanged(true);
-        mainWindow.getLogbookChangeNotifier().notifyLogbookDataChanged();
+        mainWindow.getLogbookChangeNotifier().notifyLogbookDataChanged(change.getChangedDives());
     }
 
 }
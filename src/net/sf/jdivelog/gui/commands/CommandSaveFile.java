@@ -23,13 +23,20 @@ package net.sf.jdivelog.gui.commands;
 
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
 import net.sf.jdivelog.gui.JDiveLogException;
 import net.sf.jdivelog.gui.MainWindow;
 import net.sf.jdivelog.gui.resources.Messages;
+import net.sf.jdivelog.model.jdivelog.BinaryLogbookFile;
 
 /**
  * Description: Save the logbook file into the defind files
@@ -38,6 +45,8 @@ import net.sf.jdivelog.gui.resources.Messages;
  */
 public class CommandSaveFile implements Command {
     
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     private MainWindow mainWindow = null;
     private File file = null;
     
@@ -50,15 +59,23 @@ public class CommandSaveFile implements Command {
      * @see net.sf.jdivelog.gui.commands.Command#execute()
      */
     public void execute() {
+        File tmpFile = null;
         try {
-            String stream = mainWindow.getLogBook().toString();
-            FileWriter fw = new FileWriter(file);
-            BufferedWriter bw = new BufferedWriter(fw);
-            bw.write("<?xml version=\"1.0\" encoding=\""); //$NON-NLS-1$
-            bw.write(fw.getEncoding());
-            bw.write("\" ?>\n"); //$NON-NLS-1$
-            bw.write(stream);
-            bw.close();
+            File dir = file.getAbsoluteFile().getParentFile();
+            tmpFile = File.createTempFile(file.getName(), ".tmp", dir); //$NON-NLS-1$
+            if (BinaryLogbookFile.isBinary(file)) {
+                BinaryLogbookFile.write(mainWindow.getLogBook(), tmpFile);
+            } else {
+                Writer bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8), BUFFER_SIZE);
+                try {
+                    bw.write("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n"); //$NON-NLS-1$
+                    mainWindow.getLogBook().write(bw);
+                } finally {
+                    bw.close();
+                }
+            }
+            replace(tmpFile, file);
+            tmpFile = null;
             mainWindow.setFile(file);
             mainWindow.setChanged(false);
             mainWindow.getLogbookChangeNotifier().notifyLogbookDataChanged();
@@ -69,6 +86,22 @@ public class CommandSaveFile implements Command {
             sw.write(file.getName());
             sw.write("!"); //$NON-NLS-1$
             throw new JDiveLogException(Messages.getString("error.could_not_save_file"), sw.toString(), ioe);
+        } finally {
+            if (tmpFile != null) {
+                tmpFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Move the completely written temporary file over the target, so that a
+     * failing save never leaves a truncated logbook behind.
+     */
+    private static void replace(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
         }
     }
 
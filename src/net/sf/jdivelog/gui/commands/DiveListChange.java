@@ -0,0 +1,137 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: DiveListChange.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.gui.commands;
+
+import java.util.ArrayList;
+
+import net.sf.jdivelog.model.JDive;
+import net.sf.jdivelog.model.JDiveLog;
+
+/**
+ * Description: Undo record of a change of the dive list or the ignored dive
+ * list of a logbook. Only the added and removed dives are kept, not copies of
+ * the whole list.
+ */
+class DiveListChange {
+
+    private final boolean ignoredDives;
+    private final ArrayList<JDive> added = new ArrayList<JDive>();
+    private final ArrayList<JDive> removed = new ArrayList<JDive>();
+
+    /**
+     * @param ignoredDives <code>true</code> to change the ignored dives instead of the dives.
+     */
+    DiveListChange(boolean ignoredDives) {
+        this.ignoredDives = ignoredDives;
+    }
+
+    /**
+     * add a dive to the logbook and record it.
+     */
+    void add(JDiveLog logbook, JDive dive) {
+        if (!contains(logbook, dive)) {
+            insert(logbook, dive);
+            if (!removed.remove(dive)) {
+                added.add(dive);
+            }
+        }
+    }
+
+    /**
+     * remove a dive from the logbook and record it.
+     */
+    void remove(JDiveLog logbook, JDive dive) {
+        if (contains(logbook, dive)) {
+            delete(logbook, dive);
+            if (!added.remove(dive)) {
+                removed.add(dive);
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the change affects the ignored dives.
+     */
+    boolean isIgnoredDives() {
+        return ignoredDives;
+    }
+
+    ArrayList<JDive> getAdded() {
+        return added;
+    }
+
+    ArrayList<JDive> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * @return the added and the removed dives.
+     */
+    ArrayList<JDive> getChangedDives() {
+        ArrayList<JDive> dives = new ArrayList<JDive>(added);
+        dives.addAll(removed);
+        return dives;
+    }
+
+    /**
+     * apply the recorded change again.
+     */
+    void redo(JDiveLog logbook) {
+        for (JDive dive : removed) {
+            delete(logbook, dive);
+        }
+        for (JDive dive : added) {
+            insert(logbook, dive);
+        }
+    }
+
+    /**
+     * revert the recorded change.
+     */
+    void undo(JDiveLog logbook) {
+        for (JDive dive : added) {
+            delete(logbook, dive);
+        }
+        for (JDive dive : removed) {
+            insert(logbook, dive);
+        }
+    }
+
+    private boolean contains(JDiveLog logbook, JDive dive) {
+        return ignoredDives ? logbook.getIgnoredDives().contains(dive) : logbook.getDives().contains(dive);
+    }
+
+    private void insert(JDiveLog logbook, JDive dive) {
+        if (ignoredDives) {
+            logbook.addIgnoredDive(dive);
+        } else {
+            logbook.addDive(dive);
+        }
+    }
+
+    private void delete(JDiveLog logbook, JDive dive) {
+        if (ignoredDives) {
+            logbook.removeIgnoredDive(dive);
+        } else {
+            logbook.removeDive(dive);
+        }
+    }
+
+}
@@ -0,0 +1,566 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: LogbookJournal.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.gui.commands;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+import net.sf.jdivelog.gui.MainWindow;
+import net.sf.jdivelog.gui.resources.Messages;
+import net.sf.jdivelog.model.JDive;
+import net.sf.jdivelog.model.JDiveLog;
+import net.sf.jdivelog.model.jdivelog.BinaryLogbookFile;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Description: Write-ahead journal of the unsaved changes of the logbook.
+ * <p>
+ * Every command executed, undone or redone by the {@link CommandManager} is
+ * appended to a journal file next to the logbook file (<code>.journal</code>
+ * appended to its name, <code>~/.jdivelog.journal</code> for a logbook which
+ * has not been saved yet). Commands which only add and remove dives, edits
+ * included, are journaled as those dives, commands which change dives in
+ * place as a snapshot of the whole logbook and all others as a copy of the
+ * masterdata and the settings. Changes made without a command only mark the
+ * logbook as changed, see {@link #markDirty()}, and are journaled the same
+ * way. The calling thread only takes copies, they are serialized and written
+ * by a background thread.
+ * <p>
+ * Periodically, and whenever the journal has grown too large, it is compacted
+ * into a single snapshot. Saving the logbook empties the journal, discarding
+ * the changes deletes it. If a journal is found when a logbook is opened, the
+ * changes of the crashed session can be replayed.
+ * <p>
+ * Record format: type byte, length int, a {@link BinaryLogbookFile}
+ * container. The profiles are copied into it as they are, without decoding.
+ */
+public class LogbookJournal {
+
+    private static final Logger LOGGER = Logger.getLogger(LogbookJournal.class.getName());
+
+    private static final String SUFFIX = ".journal"; //$NON-NLS-1$
+    private static final String UNNAMED = ".jdivelog.journal"; //$NON-NLS-1$
+
+    /** the whole logbook, replaces everything before */
+    private static final byte SNAPSHOT = 1;
+    /** dives and ignored dives to add */
+    private static final byte ADD = 2;
+    /** dives and ignored dives to remove, identified by number and date */
+    private static final byte REMOVE = 3;
+    /** masterdata and settings, replace those before, the dives are kept */
+    private static final byte SETTINGS = 4;
+    /** an edited dive, replaces the ignored dive of the record which identifies the dive by number and date */
+    private static final byte EDIT = 5;
+
+    private static final int RECORD_HEADER_SIZE = 5;
+
+    private static final long COMPACT_SIZE = 4 * 1024 * 1024;
+    private static final int COMPACT_INTERVAL = 5 * 60 * 1000;
+
+    private final MainWindow mainWindow;
+    private final ExecutorService writer;
+    private final Timer compactTimer;
+
+    private File journalFile;
+    /** size of the journal file, updated by the writer */
+    private volatile long journalSize;
+    private int recordsSinceCompaction;
+    /** the logbook has been changed since the last record */
+    private volatile boolean dirty;
+    private final AtomicBoolean dirtyCheckPending = new AtomicBoolean();
+
+    public LogbookJournal(MainWindow mainWindow) {
+        this.mainWindow = mainWindow;
+        this.writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "LogbookJournal"); //$NON-NLS-1$
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        this.compactTimer = new Timer(COMPACT_INTERVAL, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                flush();
+                if (recordsSinceCompaction > 1) {
+                    compact();
+                }
+            }
+        });
+        compactTimer.start();
+    }
+
+    /**
+     * @param logbookFile the logbook file, <code>null</code> for a logbook without file.
+     * @return the journal file belonging to the logbook file.
+     */
+    public static File getJournalFile(File logbookFile) {
+        if (logbookFile == null) {
+            return new File(System.getProperty("user.home"), UNNAMED); //$NON-NLS-1$
+        }
+        File file = logbookFile.getAbsoluteFile();
+        return new File(file.getParentFile(), file.getName() + SUFFIX);
+    }
+
+    /**
+     * use the journal of the current logbook file and offer to replay it, if there is one.
+     * When called on another thread, this is done later on the event dispatch thread.
+     */
+    public void open() {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    open();
+                }
+            });
+            return;
+        }
+        File old = journalFile;
+        journalFile = getJournalFile(mainWindow.getFile());
+        if (old != null) {
+            // the changes of the previous logbook have been saved or dropped
+            delete(old);
+            if (old.equals(journalFile)) {
+                return;
+            }
+        }
+        recover();
+    }
+
+    /**
+     * {@link #open()} the journal, unless a journal is in use already.
+     */
+    public void openIfClosed() {
+        if (journalFile == null) {
+            open();
+        }
+    }
+
+    /**
+     * journal an executed command.
+     */
+    public void executed(Command cmd) {
+        if (cmd instanceof CommandSaveFile || cmd instanceof CommandNewFile) {
+            File old = getJournalFile();
+            journalFile = getJournalFile(mainWindow.getFile());
+            if (!old.equals(journalFile)) {
+                delete(old);
+            }
+            delete(journalFile);
+        } else if (cmd instanceof CommandLoadFile) {
+            // the file is loaded in the background, the command opens the journal when it is done
+        } else if (cmd instanceof DiveListCommand) {
+            DiveListChange change = ((DiveListCommand) cmd).getChange();
+            appendChange(change, false);
+        } else if (cmd instanceof CommandAssemblyDives) {
+            snapshot();
+        } else if (cmd instanceof CommandHtmlExport) {
+            // the export marks the dives when it is done, see exported()
+        } else if (mainWindow.isChanged()) {
+            appendSettings();
+        }
+    }
+
+    /**
+     * journal an undone command.
+     */
+    public void undone(UndoableCommand cmd) {
+        if (cmd instanceof DiveListCommand) {
+            appendChange(((DiveListCommand) cmd).getChange(), true);
+        } else {
+            appendSettings();
+        }
+    }
+
+    /**
+     * journal the changes noted by {@link #markDirty()} now, before a command changes the logbook.
+     */
+    public void flush() {
+        if (dirty && mainWindow.isChanged()) {
+            appendSettings();
+        }
+    }
+
+    /**
+     * journal a redone command.
+     */
+    public void redone(UndoableCommand cmd) {
+        if (cmd instanceof DiveListCommand) {
+            appendChange(((DiveListCommand) cmd).getChange(), false);
+        } else {
+            appendSettings();
+        }
+    }
+
+    /**
+     * note a change made without a command. Unless a command journals it,
+     * the change is journaled as masterdata and settings once the current
+     * event has been handled. May be called on any thread.
+     */
+    public void markDirty() {
+        dirty = true;
+        if (dirtyCheckPending.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    dirtyCheckPending.set(false);
+                    flush();
+                }
+            });
+        }
+    }
+
+    /**
+     * journal the export marks of the dives set by an HTML export.
+     */
+    public void exported() {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    exported();
+                }
+            });
+            return;
+        }
+        snapshot();
+    }
+
+    /**
+     * journal the complete logbook, for changes of the dives made without a command.
+     */
+    public void snapshot() {
+        // nothing before a snapshot is needed anymore
+        compact();
+    }
+
+    /**
+     * fold the journal into a single snapshot of the logbook.
+     */
+    public void compact() {
+        if (mainWindow.getLogBook() == null) {
+            return;
+        }
+        final File target = getJournalFile();
+        final JDiveLog snapshot = mainWindow.getLogBook().copy();
+        dirty = false;
+        journalSize = 0;
+        recordsSinceCompaction = 1;
+        submit(new Runnable() {
+            public void run() {
+                try {
+                    File tmpFile = File.createTempFile(target.getName(), ".tmp", target.getParentFile()); //$NON-NLS-1$
+                    try {
+                        long size = write(tmpFile, SNAPSHOT, snapshot, false);
+                        replace(tmpFile, target);
+                        journalSize = size;
+                    } finally {
+                        tmpFile.delete();
+                    }
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "failed to compact journal " + target, e); //$NON-NLS-1$
+                }
+            }
+        });
+    }
+
+    /**
+     * delete the journal, the unsaved changes are not wanted anymore.
+     */
+    public void discard() {
+        dirty = false;
+        delete(getJournalFile());
+    }
+
+    /**
+     * wait until all pending records have been written and stop the writer.
+     */
+    public void close() {
+        compactTimer.stop();
+        writer.shutdown();
+        try {
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void recover() {
+        final File file = journalFile;
+        try {
+            // let pending writes to an earlier journal finish
+            writer.submit(new Runnable() {
+                public void run() {
+                }
+            }).get();
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "journal writer failed", e); //$NON-NLS-1$
+        }
+        if (!file.exists() || file.length() == 0) {
+            return;
+        }
+        int ret = JOptionPane.showConfirmDialog(mainWindow, Messages.getString("message.recover_journal"), Messages.getString("message.recover_journal_title"), JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE); //$NON-NLS-1$ //$NON-NLS-2$
+        if (ret != JOptionPane.YES_OPTION) {
+            delete(file);
+            return;
+        }
+        try {
+            JDiveLog logbook = replay(file, mainWindow.getLogBook());
+            if (logbook != mainWindow.getLogBook()) {
+                mainWindow.setLogBook(logbook);
+            }
+            mainWindow.setChanged(true);
+            mainWindow.getLogbookChangeNotifier().notifyLogbookDataChanged();
+            compact();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "failed to replay journal " + file, e); //$NON-NLS-1$
+        } catch (SAXException e) {
+            LOGGER.log(Level.WARNING, "failed to replay journal " + file, e); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * apply the records of a journal to a logbook. A record cut off by a crash ends the replay.
+     * @return the given logbook, or the logbook of the last snapshot.
+     */
+    private static JDiveLog replay(File file, JDiveLog logbook) throws IOException, SAXException {
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        while (data.remaining() >= RECORD_HEADER_SIZE) {
+            byte type = data.get();
+            int length = data.getInt();
+            if (type < SNAPSHOT || type > EDIT || length <= 0 || length > data.remaining()) {
+                break;
+            }
+            ByteBuffer payload = data.slice();
+            payload.limit(length);
+            data.position(data.position() + length);
+            BinaryLogbookFile container = BinaryLogbookFile.wrap(payload);
+            JDiveLog record = CommandLoadFile.parseCurrentVersion(container.getMetadataStream());
+            container.attachProfiles(record);
+            if (type == SNAPSHOT) {
+                logbook = record;
+            } else if (type == ADD) {
+                for (JDive dive : record.getDives()) {
+                    logbook.addDive(dive);
+                }
+                for (JDive dive : record.getIgnoredDives()) {
+                    logbook.addIgnoredDive(dive);
+                }
+            } else if (type == REMOVE) {
+                for (JDive dive : record.getDives()) {
+                    JDive match = find(logbook.getDives(), dive);
+                    if (match != null) {
+                        logbook.removeDive(match);
+                    }
+                }
+                for (JDive dive : record.getIgnoredDives()) {
+                    JDive match = find(logbook.getIgnoredDives(), dive);
+                    if (match != null) {
+                        logbook.removeIgnoredDive(match);
+                    }
+                }
+            } else if (type == SETTINGS) {
+                logbook.setSettings(record);
+            } else if (type == EDIT) {
+                for (JDive dive : record.getIgnoredDives()) {
+                    JDive match = find(logbook.getDives(), dive);
+                    if (match != null) {
+                        logbook.removeDive(match);
+                    }
+                }
+                for (JDive dive : record.getDives()) {
+                    logbook.addDive(dive);
+                }
+            }
+        }
+        return logbook;
+    }
+
+    private static JDive find(Collection<JDive> dives, JDive dive) {
+        Iterator<JDive> it = dives.iterator();
+        while (it.hasNext()) {
+            JDive candidate = it.next();
+            if (equal(candidate.getDiveNumber(), dive.getDiveNumber()) && equal(candidate.getDate(), dive.getDate())) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private void appendChange(DiveListChange change, boolean undo) {
+        if (change == null) {
+            return;
+        }
+        // the changes made before the command have been flushed, this records those of the command
+        dirty = false;
+        Collection<JDive> removed = undo ? change.getAdded() : change.getRemoved();
+        Collection<JDive> added = undo ? change.getRemoved() : change.getAdded();
+        if (removed.size() == 1 && added.size() == 1 && !change.isIgnoredDives()) {
+            JDiveLog record = new JDiveLog();
+            addCopies(record, removed, true, false);
+            addCopies(record, added, false, true);
+            append(EDIT, record);
+            return;
+        }
+        // removals first, a replaced dive may have the same number and date
+        if (!removed.isEmpty()) {
+            JDiveLog record = new JDiveLog();
+            addCopies(record, removed, change.isIgnoredDives(), false);
+            append(REMOVE, record);
+        }
+        if (!added.isEmpty()) {
+            JDiveLog record = new JDiveLog();
+            addCopies(record, added, change.isIgnoredDives(), true);
+            append(ADD, record);
+        }
+    }
+
+    private void appendSettings() {
+        if (mainWindow.getLogBook() == null) {
+            return;
+        }
+        dirty = false;
+        append(SETTINGS, mainWindow.getLogBook().copySettings());
+    }
+
+    private void append(final byte type, final JDiveLog record) {
+        final File target = getJournalFile();
+        recordsSinceCompaction++;
+        if (journalSize > COMPACT_SIZE) {
+            compact();
+            return;
+        }
+        submit(new Runnable() {
+            public void run() {
+                try {
+                    journalSize = write(target, type, record, true);
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "failed to write journal " + target, e); //$NON-NLS-1$
+                }
+            }
+        });
+    }
+
+    private File getJournalFile() {
+        return journalFile != null ? journalFile : getJournalFile(null);
+    }
+
+    private void delete(final File file) {
+        dirty = false;
+        journalSize = 0;
+        recordsSinceCompaction = 0;
+        submit(new Runnable() {
+            public void run() {
+                file.delete();
+            }
+        });
+    }
+
+    private void submit(Runnable task) {
+        if (!writer.isShutdown()) {
+            writer.execute(task);
+        }
+    }
+
+    /**
+     * write a record, the header last so a record cut off by a crash ends the replay.
+     * @return the size of the journal.
+     */
+    private static long write(File file, byte type, JDiveLog record, boolean append) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            long start = append ? channel.size() : 0;
+            channel.truncate(start);
+            try {
+                long end = BinaryLogbookFile.write(record, channel, start + RECORD_HEADER_SIZE);
+                channel.force(false);
+                ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+                header.put(type);
+                header.putInt((int) (end - start - RECORD_HEADER_SIZE));
+                header.flip();
+                long position = start;
+                while (header.hasRemaining()) {
+                    position += channel.write(header, position);
+                }
+                channel.force(false);
+                return end;
+            } catch (IOException e) {
+                // do not leave a partial record in front of the following ones
+                channel.truncate(start);
+                throw e;
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static void replace(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * add copies of dives to a record, to be written by the writer thread.
+     * @param withProfiles <code>false</code> if only number and date of the dives are needed.
+     */
+    private static void addCopies(JDiveLog record, Collection<JDive> dives, boolean ignoredDives, boolean withProfiles) {
+        for (JDive dive : dives) {
+            JDive copy;
+            if (withProfiles) {
+                copy = dive.copy();
+            } else {
+                copy = dive.deepClone();
+                copy.setDive(null);
+            }
+            if (ignoredDives) {
+                record.addIgnoredDive(copy);
+            } else {
+                record.addDive(copy);
+            }
+        }
+    }
+
+}
@@ -21,24 +21,24 @@
  */
 package net.sf.jdivelog.gui.commands;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import net.sf.jdivelog.gui.MainWindow;
 import net.sf.jdivelog.model.JDive;
+import net.sf.jdivelog.model.JDiveLog;
 
 /**
  * Command for fixing the salinity
  * 
  * @author Pascal Pellmont <jdivelog@pellmont.dyndns.org>
  */
-public class SalinityFixCommand implements UndoableCommand {
+public class SalinityFixCommand implements DiveListCommand {
     
     private final MainWindow mainWindow;
     private final List<JDive> dives;
     private final double oldSalinity;
     private final double newSalinity;
-    private ArrayList<JDive> newDives;
+    private DiveListChange change;
     private boolean oldChanged;
 
     public SalinityFixCommand(MainWindow mainWindow, List<JDive> dives, double oldSalinity, double newSalinity) {
@@ -49,26 +49,37 @@ public class SalinityFixCommand implements UndoableCommand {
     }
 
     public void redo() {
-        mainWindow.getLogBook().getDives().removeAll(dives);
-        mainWindow.getLogBook().getDives().addAll(newDives);
+        change.redo(mainWindow.getLogBook());
         mainWindow.setChanged(true);
+        mainWindow.getLogbookChangeNotifier().notifyLogbookDataChanged(change.getChangedDives());
     }
 
     public void undo() {
-        mainWindow.getLogBook().getDives().removeAll(newDives);
-        mainWindow.getLogBook().getDives().addAll(dives);
+        change.undo(mainWindow.getLogBook());
         mainWindow.setChanged(oldChanged);
+        mainWindow.getLogbookChangeNotifier().notifyLogbookDataChanged(change.getChangedDives());
+    }
+
+    /**
+     * @see net.sf.jdivelog.gui.commands.DiveListCommand#getChange()
+     */
+    public DiveListChange getChange() {
+        return change;
     }
 
     public void execute() {
         oldChanged = mainWindow.isChanged();
         SalinityFixTool ft = new SalinityFixTool(oldSalinity, newSalinity);
-        newDives = new ArrayList<JDive>();
+        JDiveLog logbook = mainWindow.getLogBook();
+        // the fixed dives replace the old ones, so the journal only needs these dives
+        change = new DiveListChange(false);
         for (JDive oldDive : dives) {
             JDive newDive = ft.fix(oldDive);
-            newDives.add(newDive);
+            change.remove(logbook, oldDive);
+            change.add(logbook, newDive);
         }
-        redo();
+        mainWindow.setChanged(true);
+        mainWindow.getLogbookChangeNotifier().notifyLogbookDataChanged(change.getChangedDives());
     }
 
 }
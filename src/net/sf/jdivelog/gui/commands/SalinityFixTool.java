@@ -21,12 +21,8 @@
  */
 package net.sf.jdivelog.gui.commands;
 
-import java.util.ArrayList;
-
 import net.sf.jdivelog.model.JDive;
-import net.sf.jdivelog.model.udcf.Depth;
 import net.sf.jdivelog.model.udcf.Dive;
-import net.sf.jdivelog.model.udcf.Sample;
 
 /**
  * Tool for fixing Salinity of a dive.
@@ -40,6 +36,10 @@ public class SalinityFixTool {
         factor = newSalinity / oldSalinity;
     }
     
+    /**
+     * @param dive the dive to fix, it is not modified.
+     * @return a fixed copy of the dive.
+     */
     public JDive fix(JDive dive) {
         JDive result = null;
         if (dive != null) {
@@ -53,15 +53,10 @@ public class SalinityFixTool {
     private void scaleSamples(JDive dive) {
         Dive d = dive.getDive();
         if (d != null) {
-            ArrayList<Sample> samples = d.getSamples();
-            for (Sample sample : samples) {
-                if (sample instanceof Depth) {
-                    Depth depth = (Depth) sample;
-                    if (depth.getValue() != null) {
-                        depth.setValue(Double.valueOf(factor * depth.getValue().doubleValue()));
-                    }
-                }
-            }
+            // the clone shares the profile with the original dive, scale a copy of it
+            d = d.deepClone();
+            d.scaleDepths(factor);
+            dive.setDive(d);
         }
     }
 
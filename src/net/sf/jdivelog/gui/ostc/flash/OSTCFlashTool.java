@@ -430,6 +430,9 @@ public class OSTCFlashTool {
         public void commReceive() {
         }
 
+        public void commStatistics(int bytesPerSecond, int cpuPercent) {
+        }
+
         public void messageError(String message) {
             LOGGER.severe(message);
         }
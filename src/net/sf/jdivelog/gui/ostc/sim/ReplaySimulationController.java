@@ -198,8 +198,9 @@ public class ReplaySimulationController extends Thread implements SimulationEven
             UnitConverter c = new UnitConverter(UnitConverter.getSystem(this.dive.getUnits()), UnitConverter.SYSTEM_SI);
             int interval = 0;
             int time = 0;
-            for (Iterator<Sample> it = dive.getDive().getSamples().iterator(); it.hasNext(); ) {
-                Sample sample = it.next();
+            Dive d = dive.getDive();
+            for (int i = 0; i < d.getSampleCount(); i++) {
+                Sample sample = d.getSample(i);
                 if (sample.getType() == Sample.TYPE_DELTA) {
                     Delta delta = (Delta) sample;
                     interval = c.convertTime(delta.getValue()).intValue();
@@ -214,8 +215,9 @@ public class ReplaySimulationController extends Thread implements SimulationEven
         } else {
             UnitConverter c = new UnitConverter(UnitConverter.getSystem(this.dive.getUnits()), UnitConverter.SYSTEM_SI);
             int time = 0;
-            for (Iterator<Sample> it = dive.getDive().getSamples().iterator(); it.hasNext(); ) {
-                Sample sample = it.next();
+            Dive d = dive.getDive();
+            for (int i = 0; i < d.getSampleCount(); i++) {
+                Sample sample = d.getSample(i);
                 if (sample.getType() == Sample.TYPE_TIME) {
                     Time stime = (Time) sample;
                     time = (int)(c.convertTime(stime.getValue())*1000);
@@ -56,7 +56,6 @@ import net.sf.jdivelog.printing.PrintJob;
 import net.sf.jdivelog.printing.PrinterOutputDevice;
 import net.sf.jdivelog.printing.Report;
 import net.sf.jdivelog.printing.report.ImageUtil;
-import net.sf.jdivelog.printing.report.ProfileUtil;
 import net.sf.jdivelog.printing.report.ReportManager;
 
 public class PrintWindow extends JDialog implements ActionListener {
@@ -351,11 +350,11 @@ public class PrintWindow extends JDialog implements ActionListener {
     private void run() {
         Report r = getSelectedReport();
         OutputDevice od = getSelectedOutputDevice();
-        JDiveLog lb = allDives() ? logbook : selectedLogbook;
         if (od != null) {
+            // printing runs in the background, while the logbook may be changed
+            JDiveLog lb = (allDives() ? logbook : selectedLogbook).copy();
             ImageUtil.setLogbook(lb);
-            ProfileUtil.setLogbook(lb);
-            PrintJob pj = new PrintJob(lb.toString(), r, od);
+            PrintJob pj = new PrintJob(lb, r, od);
             PrintRunner pr = new PrintRunner(status, pj);
             pr.start();
             dispose();
@@ -27,9 +27,11 @@ import java.awt.Dimension;
 import java.awt.FlowLayout;
 import java.awt.Font;
 
+import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JProgressBar;
 import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
 
 import net.sf.jdivelog.gui.statusbar.LedCanvas.LedShape;
 
@@ -44,6 +46,7 @@ public class StatusBar extends JPanel implements StatusInterface {
     private static final long serialVersionUID = -8373083612057228448L;
     private LedCanvas sendLed;
     private LedCanvas receiveLed;
+    private JLabel commStatisticsLabel;
     private JProgressBar progressBar;
     private JTextField messageField;
     private boolean showInPercent;
@@ -59,6 +62,7 @@ public class StatusBar extends JPanel implements StatusInterface {
         innerPanel.setLayout(new FlowLayout());
         innerPanel.add(getSendLed());
         innerPanel.add(getReceiveLed());
+        innerPanel.add(getCommStatisticsLabel());
         innerPanel.add(getProgressBar());
         
         add(innerPanel, BorderLayout.WEST);
@@ -69,8 +73,32 @@ public class StatusBar extends JPanel implements StatusInterface {
         getSendLed().flash();
     }
 
+    /**
+     * called by the reader thread of the port, the LED is flashed on the event dispatch thread.
+     */
     public void commReceive() {
-        getReceiveLed().flash();
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                getReceiveLed().flash();
+            }
+        });
+    }
+
+    /**
+     * called by the reader thread of the port, the label is set on the event dispatch thread.
+     */
+    public void commStatistics(int bytesPerSecond, int cpuPercent) {
+        StringBuffer sb = new StringBuffer();
+        sb.append(bytesPerSecond).append(" B/s");
+        if (cpuPercent >= 0) {
+            sb.append(", ").append(cpuPercent).append("% CPU");
+        }
+        final String text = sb.toString();
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                getCommStatisticsLabel().setText(text);
+            }
+        });
     }
 
     public void messageError(String message) {
@@ -99,6 +127,7 @@ public class StatusBar extends JPanel implements StatusInterface {
 
     public void messageClear() {
         getMessageField().setText("");
+        getCommStatisticsLabel().setText("");
     }
 
     public void infiniteProgressbarStart() {
@@ -173,6 +202,13 @@ public class StatusBar extends JPanel implements StatusInterface {
         return receiveLed;
     }
     
+    private JLabel getCommStatisticsLabel() {
+        if (commStatisticsLabel == null) {
+            commStatisticsLabel = new JLabel();
+        }
+        return commStatisticsLabel;
+    }
+    
     private JProgressBar getProgressBar() {
         if (progressBar == null) {
             progressBar = new JProgressBar();
@@ -37,6 +37,13 @@ public interface StatusInterface {
      */
     public void commReceive();
     
+    /**
+     * can be called periodically during a transfer to show the performance of the comm port.
+     * @param bytesPerSecond the bytes received per second.
+     * @param cpuPercent the cpu time used to receive, in percent of one core, -1 if unknown.
+     */
+    public void commStatistics(int bytesPerSecond, int cpuPercent);
+    
     /**
      * should be called if the user should be notified about an error which has occured.
      * @param message the message to show to the user.
@@ -28,6 +28,14 @@ import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
 import java.awt.image.ImageObserver;
 import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 
 import org.jfree.util.WaitingImageObserver;
 
@@ -44,18 +52,83 @@ public class ImageUtil {
         int type =
             (img.getTransparency() == Transparency.OPAQUE) ? BufferedImage.TYPE_INT_RGB
                 : BufferedImage.TYPE_INT_ARGB;
-        BufferedImage ret = new BufferedImage(targetWidth, targetHeight, type);
-        Graphics2D g = ret.createGraphics();
-        AffineTransform at =
-            AffineTransform.getScaleInstance(
-                (double) targetWidth / img.getWidth(), (double) targetHeight
-                    / img.getHeight());
-
-        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, hint);
-        g.drawRenderedImage(img, at);
+        targetWidth = Math.max(1, targetWidth);
+        targetHeight = Math.max(1, targetHeight);
+        BufferedImage ret = img;
+        int w = img.getWidth();
+        int h = img.getHeight();
+        do {
+            // a single interpolation step only looks at a few source pixels
+            // per target pixel, so large reductions are done by halving first
+            Object stepHint = hint;
+            if (w / 2 >= targetWidth && h / 2 >= targetHeight) {
+                w /= 2;
+                h /= 2;
+                stepHint = RenderingHints.VALUE_INTERPOLATION_BILINEAR;
+            }
+            else {
+                w = targetWidth;
+                h = targetHeight;
+            }
+            BufferedImage tmp = new BufferedImage(w, h, type);
+            Graphics2D g = tmp.createGraphics();
+            AffineTransform at =
+                AffineTransform.getScaleInstance(
+                    (double) w / ret.getWidth(), (double) h / ret.getHeight());
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, stepHint);
+            g.drawRenderedImage(ret, at);
+            g.dispose();
+            ret = tmp;
+        } while (w != targetWidth || h != targetHeight);
         return ret;
     }
 
+    /**
+     * Decodes an image file with ImageIO. Large images are subsampled while
+     * decoding, so only about twice the pixels needed for the given size are
+     * read into memory, the rest is done by {@link #transform(Image, int, int, int)}.
+     * Decode once with the largest size needed and transform the result for
+     * every output size.
+     * 
+     * @param file the image file
+     * @param maxWidth maximum width the image will be scaled to
+     * @param maxHeight maximum height the image will be scaled to
+     * @param rotation rotation the image will be shown with (0=0 degrees, 1=90 degrees, 2=180 degrees, 3=270 degrees)
+     * @return the decoded image, <code>null</code> if ImageIO cannot read the file.
+     * @throws IOException if the file could not be read.
+     */
+    public static BufferedImage read(
+        File file, int maxWidth, int maxHeight, int rotation) throws IOException {
+        ImageInputStream in = ImageIO.createImageInputStream(file);
+        if (in == null) {
+            return null;
+        }
+        try {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                double factor =
+                    getFactor(reader.getWidth(0), reader.getHeight(0), maxWidth,
+                        maxHeight, rotation);
+                int subsampling = 1;
+                if (factor < 0.5) {
+                    subsampling = (int) (0.5 / factor);
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
     public static void transform(
         Image sourceImg, BufferedImage targetImg, int targetWidth,
         int targetHeight, int rotation, ImageObserver observer) {
@@ -70,10 +143,16 @@ public class ImageUtil {
 
         AffineTransform at = new AffineTransform();
 
-        BufferedImage temp =
-            new BufferedImage(sizeX, sizeY, BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g2d_temp = temp.createGraphics();
-        g2d_temp.drawImage(sourceImg, at, new WaitingImageObserver(sourceImg));
+        BufferedImage temp;
+        if (sourceImg instanceof BufferedImage) {
+            temp = (BufferedImage) sourceImg;
+        }
+        else {
+            temp = new BufferedImage(sizeX, sizeY, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2d_temp = temp.createGraphics();
+            g2d_temp.drawImage(sourceImg, at, new WaitingImageObserver(sourceImg));
+            g2d_temp.dispose();
+        }
 
         BufferedImage scaledImage =
             getScaledInstance(temp, (int) scaledX, (int) scaledY,
@@ -75,6 +75,9 @@ public class TableSorter extends AbstractTableModel implements TableModelListene
     /** the collator with the current locale */
     protected java.text.Collator collator;
 
+    /** sort keys of the sorted column, valid until the model changes */
+    private SortKeys sortKeys;
+
     /**
      * Default-Constructor
      */
@@ -104,6 +107,7 @@ public class TableSorter extends AbstractTableModel implements TableModelListene
      */
     public void setModel(SortableTableModel model) {
         this.model = model;
+        sortKeys = null;
         rebuildIndexList();
         model.addTableModelListener(this);
     }
@@ -120,69 +124,20 @@ public class TableSorter extends AbstractTableModel implements TableModelListene
     }
 
     /**
-     * Compares two rows by the column specified by the global variable column
-     * @param row1 index of the first row
-     * @param row2 index of the second row
-     * @return 0 if both row are equal, 1 if row1 > row2, -1 if row1 < row2
+     * Extracts the sort key of every row for the column specified by the
+     * global variable column, so the model and the collator are asked only
+     * once per row and not on every comparison.
+     * @return the sort keys of the current column.
      */
-    private int compareRowsByColumn(int row1, int row2) {
-        Class<?> type = model.getUnformattedColumnClass(column);
-
-        // check for null
-        Object obj1 = model.getUnformattedValueAt(row1, column);
-        Object obj2 = model.getUnformattedValueAt(row2, column);
-        if (obj1 == null && obj2 == null)
-            return 0;
-        if (obj1 == null)
-            return -1;
-        if (obj2 == null)
-            return 1;
-
-        // Check for possible classes
-        if (type.getSuperclass() == java.lang.Number.class || type.getSuperclass().getSuperclass() == java.lang.Number.class) {
-            double d1 = ((Number) obj1).doubleValue();
-            double d2 = ((Number) obj2).doubleValue();
-            if (d1 < d2)
-                return -1;
-            if (d1 > d2)
-                return 1;
-            return 0;
-        }
-        if (type == String.class) {
-            String str1 = (String) obj1;
-            String str2 = (String) obj2;
-            return collator.compare(str1, str2);
-        }
-        if (type == Boolean.class) {
-            boolean b1 = ((Boolean) obj1).booleanValue();
-            boolean b2 = ((Boolean) obj2).booleanValue();
-            if (b1 == b2)
-                return 0;
-            if (b1)
-                return 1;
-            return -1;
-        }
-        if (type == java.util.Date.class) {
-            long n1 = ((java.util.Date) obj1).getTime();
-            long n2 = ((java.util.Date) obj2).getTime();
-            if (n1 < n2)
-                return -1;
-            if (n1 > n2)
-                return 1;
-            return 0;
+    private SortKeys getSortKeys() {
+        if (sortKeys == null || sortKeys.column != column || sortKeys.size() != model.getRowCount()) {
+            sortKeys = new SortKeys(model, column, collator);
         }
-        String str1 = obj1.toString();
-        String str2 = obj2.toString();
-        int res = str1.compareTo(str2);
-        if (res < 0)
-            return -1;
-        if (res > 0)
-            return 1;
-        return 0;
+        return sortKeys;
     }
 
     private int compare(int row1, int row2) {
-        int result = compareRowsByColumn(row1, row2);
+        int result = sortKeys.compare(row1, row2);
         if (result != 0)
             return asc ? result : -result;
         return 0;
@@ -227,6 +182,7 @@ public class TableSorter extends AbstractTableModel implements TableModelListene
      * Starts the sort-Method and fire a TableChanged-Event
      */
     synchronized private void sort() {
+        getSortKeys();
         if (fixedRows == null)
             shuttlesort(indexList.clone(), indexList, 0, indexList.length);
         else if (fixedRows.length == 0)
@@ -366,6 +322,7 @@ public class TableSorter extends AbstractTableModel implements TableModelListene
      * @param e the event.
      */
     public void tableChanged(TableModelEvent e) {
+        sortKeys = null;
         rebuildIndexList();
         fireTableChanged(e);
     }
@@ -514,4 +471,99 @@ public class TableSorter extends AbstractTableModel implements TableModelListene
     public int[] getFixedRows() {
         return fixedRows;
     }
+
+    /**
+     * The typed sort keys of one column: primitive arrays for numbers, dates
+     * and booleans, collation keys for strings.
+     */
+    private static class SortKeys {
+
+        private static final int KIND_NUMBER = 0;
+        private static final int KIND_LONG = 1;
+        private static final int KIND_COLLATION = 2;
+        private static final int KIND_STRING = 3;
+
+        private final int column;
+        private final int kind;
+        private final boolean[] nulls;
+        private double[] numbers;
+        private long[] longs;
+        private java.text.CollationKey[] collationKeys;
+        private String[] strings;
+
+        public SortKeys(SortableTableModel model, int column, java.text.Collator collator) {
+            this.column = column;
+            Class<?> type = model.getUnformattedColumnClass(column);
+            int rows = model.getRowCount();
+            nulls = new boolean[rows];
+            if (Number.class.isAssignableFrom(type)) {
+                kind = KIND_NUMBER;
+                numbers = new double[rows];
+            } else if (type == java.util.Date.class || type == Boolean.class) {
+                kind = KIND_LONG;
+                longs = new long[rows];
+            } else if (type == String.class) {
+                kind = KIND_COLLATION;
+                collationKeys = new java.text.CollationKey[rows];
+            } else {
+                kind = KIND_STRING;
+                strings = new String[rows];
+            }
+            for (int row = 0; row < rows; row++) {
+                Object obj = model.getUnformattedValueAt(row, column);
+                if (obj == null) {
+                    nulls[row] = true;
+                    continue;
+                }
+                switch (kind) {
+                case KIND_NUMBER:
+                    numbers[row] = ((Number) obj).doubleValue();
+                    break;
+                case KIND_LONG:
+                    if (obj instanceof Boolean) {
+                        longs[row] = ((Boolean) obj).booleanValue() ? 1 : 0;
+                    } else {
+                        longs[row] = ((java.util.Date) obj).getTime();
+                    }
+                    break;
+                case KIND_COLLATION:
+                    collationKeys[row] = collator.getCollationKey((String) obj);
+                    break;
+                default:
+                    strings[row] = obj.toString();
+                }
+            }
+        }
+
+        public int size() {
+            return nulls.length;
+        }
+
+        /**
+         * @return 0 if both row are equal, 1 if row1 > row2, -1 if row1 < row2
+         */
+        public int compare(int row1, int row2) {
+            if (nulls[row1] || nulls[row2]) {
+                if (nulls[row1] && nulls[row2])
+                    return 0;
+                return nulls[row1] ? -1 : 1;
+            }
+            switch (kind) {
+            case KIND_NUMBER:
+                double d1 = numbers[row1];
+                double d2 = numbers[row2];
+                if (d1 < d2)
+                    return -1;
+                if (d1 > d2)
+                    return 1;
+                return 0;
+            case KIND_LONG:
+                return Long.compare(longs[row1], longs[row2]);
+            case KIND_COLLATION:
+                return Integer.signum(collationKeys[row1].compareTo(collationKeys[row2]));
+            default:
+                return Integer.signum(strings[row1].compareTo(strings[row2]));
+            }
+        }
+    }
 }
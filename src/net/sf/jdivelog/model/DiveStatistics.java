@@ -0,0 +1,369 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: DiveStatistics.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.TreeMap;
+
+import net.sf.jdivelog.util.UnitConverter;
+
+/**
+ * Description: Aggregate statistics over a set of dives.
+ * <p>
+ * Sums, counts and extreme values are kept per unit system of the dives, in
+ * the units the dives were stored in, and are updated incrementally when dives
+ * are added or removed. Conversion into the display unit system is done when
+ * a value is read, so changing the display units does not require a rebuild.
+ * The values the dive contributed are remembered, so a dive can be removed
+ * again even if it has been changed in the meantime.
+ */
+public class DiveStatistics {
+
+    private static final int SYSTEMS = UnitConverter.SYSTEMS.length;
+
+    private final HashMap<JDive, Contribution> contributions = new HashMap<JDive, Contribution>();
+
+    private final double[] depthSum = new double[SYSTEMS];
+    private final int[] depthCount = new int[SYSTEMS];
+    private final Extremes[] depths = new Extremes[SYSTEMS];
+
+    private final double[] amvSum = new double[SYSTEMS];
+    private final int[] amvCount = new int[SYSTEMS];
+
+    private final double[] temperatureSum = new double[SYSTEMS];
+    private final int[] temperatureCount = new int[SYSTEMS];
+    private final Extremes[] temperatures = new Extremes[SYSTEMS];
+
+    private final double[] durationSum = new double[SYSTEMS];
+    private final int[] durationCount = new int[SYSTEMS];
+
+    /** durations of dives with a depth, the old statistics ignored dives without depth here */
+    private final double[] timedDurationSum = new double[SYSTEMS];
+    private final int[] timedDurationCount = new int[SYSTEMS];
+    private final Extremes[] timedDurations = new Extremes[SYSTEMS];
+
+    private final Extremes diveNumbers = new Extremes();
+
+    public DiveStatistics() {
+        for (int i = 0; i < SYSTEMS; i++) {
+            depths[i] = new Extremes();
+            temperatures[i] = new Extremes();
+            timedDurations[i] = new Extremes();
+        }
+    }
+
+    /**
+     * @param dives the dives to aggregate.
+     * @return the statistics of the given dives.
+     */
+    public static DiveStatistics of(Collection<JDive> dives) {
+        DiveStatistics statistics = new DiveStatistics();
+        for (JDive dive : dives) {
+            statistics.add(dive);
+        }
+        return statistics;
+    }
+
+    /**
+     * @return the number of dives in the statistics.
+     */
+    public int getDiveCount() {
+        return contributions.size();
+    }
+
+    public void add(JDive dive) {
+        if (dive == null || contributions.containsKey(dive)) {
+            return;
+        }
+        Contribution c = new Contribution(dive);
+        contributions.put(dive, c);
+        int s = c.system;
+        if (c.depth != null) {
+            depthSum[s] += c.depth.doubleValue();
+            depthCount[s]++;
+            depths[s].add(c.depth.doubleValue());
+            if (c.duration != null) {
+                timedDurationSum[s] += c.duration.doubleValue();
+                timedDurationCount[s]++;
+                timedDurations[s].add(c.duration.doubleValue());
+            }
+        }
+        if (c.amv != null) {
+            amvSum[s] += c.amv.doubleValue();
+            amvCount[s]++;
+        }
+        if (c.temperature != null) {
+            temperatureSum[s] += c.temperature.doubleValue();
+            temperatureCount[s]++;
+            temperatures[s].add(c.temperature.doubleValue());
+        }
+        if (c.duration != null) {
+            durationSum[s] += c.duration.doubleValue();
+            durationCount[s]++;
+        }
+        if (c.diveNumber != null) {
+            diveNumbers.add(c.diveNumber.doubleValue());
+        }
+    }
+
+    public void remove(JDive dive) {
+        Contribution c = contributions.remove(dive);
+        if (c == null) {
+            return;
+        }
+        int s = c.system;
+        if (c.depth != null) {
+            depthSum[s] = subtract(depthSum[s], c.depth, --depthCount[s]);
+            depths[s].remove(c.depth.doubleValue());
+            if (c.duration != null) {
+                timedDurationSum[s] = subtract(timedDurationSum[s], c.duration, --timedDurationCount[s]);
+                timedDurations[s].remove(c.duration.doubleValue());
+            }
+        }
+        if (c.amv != null) {
+            amvSum[s] = subtract(amvSum[s], c.amv, --amvCount[s]);
+        }
+        if (c.temperature != null) {
+            temperatureSum[s] = subtract(temperatureSum[s], c.temperature, --temperatureCount[s]);
+            temperatures[s].remove(c.temperature.doubleValue());
+        }
+        if (c.duration != null) {
+            durationSum[s] = subtract(durationSum[s], c.duration, --durationCount[s]);
+        }
+        if (c.diveNumber != null) {
+            diveNumbers.remove(c.diveNumber.doubleValue());
+        }
+    }
+
+    /**
+     * @return the maximum depth in display units.
+     */
+    public BigDecimal getMaxDepth() {
+        double max = 0;
+        for (int s = 0; s < SYSTEMS; s++) {
+            if (!depths[s].isEmpty()) {
+                max = Math.max(max, converter(s).convertAltitude(depths[s].last()).doubleValue());
+            }
+        }
+        return max == 0 ? new BigDecimal(0) : new BigDecimal(max);
+    }
+
+    /**
+     * @return the maximum duration of the dives with a depth in display units.
+     */
+    public Double getMaxDiveTime() {
+        double max = 0;
+        for (int s = 0; s < SYSTEMS; s++) {
+            if (!timedDurations[s].isEmpty()) {
+                max = Math.max(max, converter(s).convertTime(timedDurations[s].last()).doubleValue());
+            }
+        }
+        return Double.valueOf(max);
+    }
+
+    /**
+     * @return the maximum temperature in display units, temperatures of 0 are ignored.
+     */
+    public BigDecimal getMaxTemperature() {
+        double max = 0;
+        for (int s = 0; s < SYSTEMS; s++) {
+            if (!temperatures[s].isEmpty()) {
+                max = Math.max(max, converter(s).convertTemperature(temperatures[s].last()).doubleValue());
+            }
+        }
+        return max == 0 ? new BigDecimal(0) : new BigDecimal(max);
+    }
+
+    /**
+     * @return the minimum temperature in display units, temperatures of 0 are ignored.
+     */
+    public BigDecimal getMinTemperature() {
+        double min = 100;
+        for (int s = 0; s < SYSTEMS; s++) {
+            if (!temperatures[s].isEmpty()) {
+                min = Math.min(min, converter(s).convertTemperature(temperatures[s].first()).doubleValue());
+            }
+        }
+        return min == 0 ? new BigDecimal(0) : new BigDecimal(min);
+    }
+
+    /**
+     * @return the sum of all durations in display units.
+     */
+    public double getTotalDuration() {
+        double total = 0;
+        for (int s = 0; s < SYSTEMS; s++) {
+            if (durationCount[s] > 0) {
+                total += converter(s).convertTime(Double.valueOf(durationSum[s])).doubleValue();
+            }
+        }
+        return total;
+    }
+
+    public BigDecimal getAverageDepth() {
+        double total = 0;
+        int count = 0;
+        for (int s = 0; s < SYSTEMS; s++) {
+            if (depthCount[s] > 0) {
+                total += converter(s).convertAltitude(Double.valueOf(depthSum[s])).doubleValue();
+                count += depthCount[s];
+            }
+        }
+        return average(total, count);
+    }
+
+    /**
+     * @return the average AMV in display units, AMVs of 0 are ignored.
+     */
+    public BigDecimal getAverageAmv() {
+        double total = 0;
+        int count = 0;
+        for (int s = 0; s < SYSTEMS; s++) {
+            if (amvCount[s] > 0) {
+                total += converter(s).convertAMV(Double.valueOf(amvSum[s])).doubleValue();
+                count += amvCount[s];
+            }
+        }
+        return average(total, count);
+    }
+
+    /**
+     * @return the average temperature in display units, temperatures of 0 are ignored.
+     */
+    public BigDecimal getAverageTemperature() {
+        double total = 0;
+        int count = 0;
+        for (int s = 0; s < SYSTEMS; s++) {
+            if (temperatureCount[s] > 0) {
+                // temperature conversion has an offset, so the mean is converted
+                double mean = temperatureSum[s] / temperatureCount[s];
+                total += converter(s).convertTemperature(Double.valueOf(mean)).doubleValue() * temperatureCount[s];
+                count += temperatureCount[s];
+            }
+        }
+        return average(total, count);
+    }
+
+    /**
+     * @return the average duration of the dives with a depth in display units.
+     */
+    public BigDecimal getAverageDuration() {
+        double total = 0;
+        int count = 0;
+        for (int s = 0; s < SYSTEMS; s++) {
+            if (timedDurationCount[s] > 0) {
+                total += converter(s).convertTime(Double.valueOf(timedDurationSum[s])).doubleValue();
+                count += timedDurationCount[s];
+            }
+        }
+        return average(total, count);
+    }
+
+    /**
+     * @return the highest dive number plus one.
+     */
+    public Long getNextDiveNumber() {
+        long number = 0;
+        if (!diveNumbers.isEmpty() && diveNumbers.last() > 0) {
+            number = (long) diveNumbers.last();
+        }
+        return Long.valueOf(number + 1);
+    }
+
+    private static BigDecimal average(double total, int count) {
+        if (total == 0 || count == 0) {
+            return new BigDecimal(0);
+        }
+        return new BigDecimal(total).divide(new BigDecimal(count), 2, RoundingMode.HALF_UP);
+    }
+
+    private static double subtract(double sum, Double value, int count) {
+        // start over from an exact zero instead of accumulating rounding errors
+        return count == 0 ? 0 : sum - value.doubleValue();
+    }
+
+    private static UnitConverter converter(int system) {
+        return new UnitConverter(system, UnitConverter.getDisplaySystem());
+    }
+
+    /**
+     * the values a dive has been added with.
+     */
+    private static class Contribution {
+        private final int system;
+        private final Double depth;
+        private final Double amv;
+        private final Double temperature;
+        private final Double duration;
+        private final Long diveNumber;
+
+        public Contribution(JDive dive) {
+            system = UnitConverter.getSystem(dive.getUnits());
+            depth = dive.getDepth();
+            Double a = dive.getAMV();
+            amv = a != null && a.doubleValue() != 0 ? a : null;
+            Double t = dive.getTemperature();
+            temperature = t != null && t.doubleValue() != 0 ? t : null;
+            duration = dive.getDuration();
+            diveNumber = dive.getDiveNumber();
+        }
+    }
+
+    /**
+     * sorted multiset of values, giving minimum and maximum after removals.
+     */
+    private static class Extremes {
+        private final TreeMap<Double, int[]> counts = new TreeMap<Double, int[]>();
+
+        public void add(double value) {
+            Double key = Double.valueOf(value);
+            int[] count = counts.get(key);
+            if (count == null) {
+                counts.put(key, new int[] { 1 });
+            } else {
+                count[0]++;
+            }
+        }
+
+        public void remove(double value) {
+            Double key = Double.valueOf(value);
+            int[] count = counts.get(key);
+            if (count != null && --count[0] == 0) {
+                counts.remove(key);
+            }
+        }
+
+        public boolean isEmpty() {
+            return counts.isEmpty();
+        }
+
+        public double first() {
+            return counts.firstKey().doubleValue();
+        }
+
+        public double last() {
+            return counts.lastKey().doubleValue();
+        }
+    }
+
+}
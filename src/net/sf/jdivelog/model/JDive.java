@@ -22,11 +22,13 @@
 package net.sf.jdivelog.model;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Iterator;
 
+import net.sf.jdivelog.model.jdivelog.ProfileCodec;
 import net.sf.jdivelog.model.udcf.Dive;
 import net.sf.jdivelog.model.udcf.Gas;
 import net.sf.jdivelog.util.UnitConverter;
@@ -121,6 +123,9 @@ public class JDive implements Comparable<JDive> {
     /** Dive data in udcf format from dive computer */
     private Dive dive;
 
+    /** Not yet decoded dive data from a binary logbook, see {@link #getDive()} */
+    private ByteBuffer encodedDive;
+
     /** Dive data in udcf format from dive computer */
 
     public JDive() {
@@ -166,6 +171,14 @@ public class JDive implements Comparable<JDive> {
     }
     
     public void write(Appendable sb) throws IOException {
+        write(sb, true);
+    }
+
+    /**
+     * @param sb target of the XML representation.
+     * @param withProfile <code>false</code> to leave out the udcf dive data.
+     */
+    public void write(Appendable sb, boolean withProfile) throws IOException {
         sb.append("<JDive>");
         Calendar gc = null;
         Date date = getDate();
@@ -247,8 +260,8 @@ public class JDive implements Comparable<JDive> {
             }
         }
         sb.append("</Pictures>");
-        if (dive != null) {
-            dive.write(sb);
+        if (withProfile && getDive() != null) {
+            getDive().write(sb);
         }
         sb.append("</JDive>");
     }
@@ -287,9 +300,27 @@ public class JDive implements Comparable<JDive> {
             dive.pictures = null;
         }
         dive.comment = comment;
-        dive.dive = this.dive;
+        synchronized (this) {
+            dive.dive = this.dive;
+            dive.encodedDive = this.encodedDive;
+        }
         return dive;
     }
+
+    /**
+     * @return a copy which shares nothing mutable with this dive, the profile
+     * and the export flag included, to be handed to another thread.
+     */
+    public JDive copy() {
+        JDive copy = deepClone();
+        copy.htmlExported = htmlExported;
+        synchronized (this) {
+            if (encodedDive == null && dive != null) {
+                copy.dive = dive.deepClone();
+            }
+        }
+        return copy;
+    }
     
     /**
      * add a picture to the list.
@@ -394,11 +425,40 @@ public class JDive implements Comparable<JDive> {
             this.average_depth = Double.valueOf(average_depth);
         }
     }
-    public Dive getDive() {
+    /**
+     * @return the dive data, decoded from the binary logbook on the first
+     *         call. Safe to call from several threads.
+     */
+    public synchronized Dive getDive() {
+        if (dive == null && encodedDive != null) {
+            try {
+                dive = ProfileCodec.decode(encodedDive.duplicate());
+            } catch (IOException e) {
+                throw new IllegalStateException("corrupt dive profile", e);
+            }
+            encodedDive = null;
+        }
         return dive;
     }
-    public void setDive(Dive dive) {
+    public synchronized void setDive(Dive dive) {
         this.dive = dive;
+        this.encodedDive = null;
+    }
+
+    /**
+     * @return the dive data as read from a binary logbook, <code>null</code> once it has been decoded.
+     */
+    public synchronized ByteBuffer getEncodedDive() {
+        return encodedDive;
+    }
+
+    /**
+     * set dive data which is decoded on the first call of {@link #getDive()}.
+     * @param encodedDive dive data encoded by {@link ProfileCodec}.
+     */
+    public synchronized void setEncodedDive(ByteBuffer encodedDive) {
+        this.dive = null;
+        this.encodedDive = encodedDive;
     }
     public Long getDiveNumber() {
         return diveNumber;
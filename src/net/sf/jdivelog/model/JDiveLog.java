@@ -23,7 +23,7 @@ package net.sf.jdivelog.model;
 
 import java.io.IOException;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.util.Collection;
 import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.Properties;
@@ -33,7 +33,6 @@ import net.sf.jdivelog.model.dr5.Dr5Settings;
 import net.sf.jdivelog.model.gasblending.GasBlendingSettings;
 import net.sf.jdivelog.model.gasoverflow.GasOverflowSettings;
 import net.sf.jdivelog.model.udcf.Gas;
-import net.sf.jdivelog.util.UnitConverter;
 
 /**
  * Description: main class
@@ -69,12 +68,18 @@ public class JDiveLog {
     private String dr5Directory;
     private Dr5Settings dr5Settings;
 
+    private DiveStatistics statistics;
+
     public void addDive(JDive dive) {
-        dives.add(dive);
+        if (dives.add(dive) && statistics != null) {
+            statistics.add(dive);
+        }
     }
 
     public void removeDive(JDive dive) {
-        dives.remove(dive);
+        if (dives.remove(dive) && statistics != null) {
+            statistics.remove(dive);
+        }
     }
 
     public void addIgnoredDive(JDive dive) {
@@ -96,14 +101,43 @@ public class JDiveLog {
     }
     
     public void write(Appendable sb) throws IOException {
+        write(sb, true);
+    }
+
+    /**
+     * @param sb target of the XML representation.
+     * @param withProfiles <code>false</code> to leave out the udcf dive data of all dives.
+     */
+    public void write(Appendable sb, boolean withProfiles) throws IOException {
         sb.append("<JDiveLog>");
+        writeHead(sb);
+        Iterator<JDive> it = dives.iterator();
+        while (it.hasNext()) {
+            it.next().write(sb, withProfiles);
+        }
+        if (ignoredDives.size() > 0) {
+            sb.append("<IgnoredDives>");
+            it = ignoredDives.iterator();
+            while (it.hasNext()) {
+                it.next().write(sb, withProfiles);
+            }
+            sb.append("</IgnoredDives>");
+        }
+        writeTail(sb);
+        sb.append("</JDiveLog>");
+    }
+
+    /**
+     * @param sb target of the elements of the logbook before the dives.
+     */
+    public void writeHead(Appendable sb) throws IOException {
         sb.append("<Version>2.13</Version>");
         if (exportSettings != null) {
             sb.append(exportSettings.toString());
         }
         sb.append(getStatisticSettings().toString());
         if (masterdata != null) {
-            sb.append(masterdata.toString());
+            masterdata.write(sb);
         }
         if (computerDriver != null) {
             sb.append("<ComputerDriver>");
@@ -129,18 +163,12 @@ public class JDiveLog {
         sb.append("<ComputerDownloadInterval>");
         sb.append(String.valueOf(computerDownloadInterval));
         sb.append("</ComputerDownloadInterval>");
-        Iterator<JDive> it = dives.iterator();
-        while (it.hasNext()) {
-            it.next().write(sb);
-        }
-        if (ignoredDives.size() > 0) {
-            sb.append("<IgnoredDives>");
-            it = ignoredDives.iterator();
-            while (it.hasNext()) {
-                it.next().write(sb);
-            }
-            sb.append("</IgnoredDives>");
-        }
+    }
+
+    /**
+     * @param sb target of the elements of the logbook after the dives and the ignored dives.
+     */
+    public void writeTail(Appendable sb) throws IOException {
         sb.append(getSlideshowSettings().toString());
         if (gasBlendingSettings != null) {
             sb.append(gasBlendingSettings.toString());
@@ -160,8 +188,63 @@ public class JDiveLog {
             sb.append(dr5Settings.toString());
             sb.append("\n");
         }
-        sb.append("</JDiveLog>");
-        
+    }
+
+    /**
+     * Copy of the logbook for background threads, so they do not see the
+     * changes made on the event dispatch thread while they run. The dives
+     * are copies with their own decoded profiles, encoded profiles are not
+     * changed and stay shared, the master data gets its own lists and the
+     * settings are shared.
+     * @return the copy, must be made on the event dispatch thread.
+     */
+    public JDiveLog copy() {
+        JDiveLog copy = copySettings();
+        for (JDive dive : dives) {
+            copy.dives.add(dive.copy());
+        }
+        for (JDive dive : ignoredDives) {
+            copy.ignoredDives.add(dive.copy());
+        }
+        return copy;
+    }
+
+    /**
+     * @return a copy of the masterdata and the settings, without any dives.
+     */
+    public JDiveLog copySettings() {
+        JDiveLog copy = new JDiveLog();
+        copy.exportSettings = exportSettings;
+        copy.statisticSettings = statisticSettings;
+        copy.masterdata = masterdata == null ? null : masterdata.copy();
+        copy.computerDriver = computerDriver;
+        copy.computerSettings = computerSettings == null ? null : (Properties) computerSettings.clone();
+        copy.computerDownloadInterval = computerDownloadInterval;
+        copy.slideshowSettings = slideshowSettings;
+        copy.gasBlendingSettings = gasBlendingSettings;
+        copy.gasOverflowSettings = gasOverflowSettings;
+        copy.profileSettings = profileSettings;
+        copy.dr5Directory = dr5Directory;
+        copy.dr5Settings = dr5Settings;
+        return copy;
+    }
+
+    /**
+     * replace the masterdata and the settings by those of another logbook, the dives are kept.
+     */
+    public void setSettings(JDiveLog other) {
+        exportSettings = other.exportSettings;
+        statisticSettings = other.statisticSettings;
+        masterdata = other.masterdata;
+        computerDriver = other.computerDriver;
+        computerSettings = other.computerSettings;
+        computerDownloadInterval = other.computerDownloadInterval;
+        slideshowSettings = other.slideshowSettings;
+        gasBlendingSettings = other.gasBlendingSettings;
+        gasOverflowSettings = other.gasOverflowSettings;
+        profileSettings = other.profileSettings;
+        dr5Directory = other.dr5Directory;
+        dr5Settings = other.dr5Settings;
     }
 
     public TreeSet<JDive> getDives() {
@@ -172,163 +255,91 @@ public class JDiveLog {
         return ignoredDives;
     }
 
-    // avl
-    public BigDecimal getMaxDepth() {
-       BigDecimal maxDepth = new BigDecimal(0);
-       Iterator<JDive> it = dives.iterator();
-       
-       while (it.hasNext()) { // iterate through dives, compare depth with previous max. depth
-          JDive dive = it.next();
-          if (dive.getDepth() != null) {
-              UnitConverter c = new UnitConverter(UnitConverter.getSystem(dive.getUnits()), UnitConverter.getDisplaySystem());
-              BigDecimal tmp = new BigDecimal(c.convertAltitude(dive.getDepth()));
-              maxDepth = tmp.max(maxDepth);
-          }
-      }
-      if (maxDepth == null || maxDepth.equals(new BigDecimal(0))) {
-          return new BigDecimal(0);
-      }
-
-       return maxDepth;
+    /**
+     * @return the aggregate statistics of the dives, built on first use and
+     * kept up to date by {@link #addDive(JDive)}, {@link #removeDive(JDive)}
+     * and {@link #updateStatistics(Collection)}.
+     */
+    public DiveStatistics getStatistics() {
+        if (statistics == null) {
+            statistics = DiveStatistics.of(dives);
+        }
+        return statistics;
     }
-    
-    public Double getMaxDiveTime() {
-    	Double maxDiveTime = Double.valueOf(0.0);
-    	Iterator<JDive> it = dives.iterator();
 
-        while (it.hasNext()) { // iterate through dives, compare depth with previous max. depth
-            JDive dive = it.next();
-            if (dive.getDepth() != null) {
-                UnitConverter c = new UnitConverter(UnitConverter.getSystem(dive.getUnits()), UnitConverter.getDisplaySystem());
-                Double tmp = Double.valueOf(c.convertTime(dive.getDuration()));
-                maxDiveTime = Double.max(tmp, maxDiveTime);
-            }
+    /**
+     * must be called after dives have been changed in place.
+     */
+    public void invalidateStatistics() {
+        statistics = null;
+    }
+
+    /**
+     * bring the statistics up to date after a change of the logbook.
+     * @param changedDives the dives which have been added, removed or changed
+     * in place, <code>null</code> if any dive may have changed.
+     */
+    public void updateStatistics(Collection<JDive> changedDives) {
+        if (statistics == null) {
+            return;
         }
-        if (maxDiveTime == null || maxDiveTime.equals(Double.valueOf(0.0))) {
-            return Double.valueOf(0.0);
+        if (changedDives == null) {
+            statistics = null;
+            return;
         }
+        for (JDive dive : changedDives) {
+            statistics.remove(dive);
+            if (dives.contains(dive)) {
+                statistics.add(dive);
+            }
+        }
+    }
 
-    	return maxDiveTime;
+    // avl
+    public BigDecimal getMaxDepth() {
+        return getStatistics().getMaxDepth();
+    }
+    
+    public Double getMaxDiveTime() {
+        return getStatistics().getMaxDiveTime();
     }
     
     public BigDecimal getMaxTemperature() {
-       BigDecimal maxTemperature = new BigDecimal(0);
-       Iterator<JDive> it = dives.iterator();
-       
-       while (it.hasNext()) { // iterate through dives, compare temperature with previous max. temperature
-           JDive dive = it.next();
-           if (dive != null && dive.getTemperature() != null && dive.getTemperature() != 0) {
-               UnitConverter uc = new UnitConverter(UnitConverter.getSystem(dive.getUnits()), UnitConverter.getDisplaySystem());
-               BigDecimal tmp = new BigDecimal(uc.convertTemperature(dive.getTemperature()));
-               maxTemperature = tmp.max(maxTemperature);
-           }
-       }
-       if (maxTemperature == null || maxTemperature.equals(new BigDecimal(0))) {
-           return new BigDecimal(0);
-       }
-       return maxTemperature;
-   }
+        return getStatistics().getMaxTemperature();
+    }
     
     public BigDecimal getMinTemperature() {
-       BigDecimal minTemperature = new BigDecimal(100); // set to 100, rather than 0, otherwise no minimum will ever be found
-       Iterator<JDive> it = dives.iterator();
-       
-       while (it.hasNext()) { // iterate through dives, compare temperature with previous max. temperature
-          JDive dive = it.next();
-          if (dive != null && dive.getTemperature() != null && dive.getTemperature() != 0) {
-              UnitConverter uc = new UnitConverter(UnitConverter.getSystem(dive.getUnits()), UnitConverter.getDisplaySystem());
-              BigDecimal tmp = new BigDecimal(uc.convertTemperature(dive.getTemperature()));
-              minTemperature = tmp.min(minTemperature);
-          }
-      }
-      if (minTemperature == null || minTemperature.equals(new BigDecimal(0))) {
-          return new BigDecimal(0);
-      }
-      return minTemperature;
-   }
+        return getStatistics().getMinTemperature();
+    }
     // end of avl
     
     public String getComplete_Divetime() {
-        BigDecimal divetime = new BigDecimal(0);
-        Integer days = Integer.valueOf(0);
-        Integer hours = Integer.valueOf(0);
-        Integer minutes = Integer.valueOf(0);
-        Iterator<JDive> it = dives.iterator();
-        while (it.hasNext()) {
-            JDive dive = it.next();
-            if (dive.getDuration() != null) {
-                UnitConverter c = new UnitConverter(UnitConverter.getSystem(dive.getUnits()), UnitConverter.getDisplaySystem());
-                divetime = divetime.add(new BigDecimal(c.convertTime(dive.getDuration())));
-            }
-        }
-
+        int divetime = (int) getStatistics().getTotalDuration();
         // change the complete divetime in days, hours and minutes
-        if (divetime == null || divetime.equals(new BigDecimal(0))) {
+        if (divetime == 0) {
             return "00:00:00";
         }
-        days = divetime.intValue() / 1440;
-        hours = (divetime.intValue() % 1440) / 60;
-        minutes = divetime.intValue() % 60;
-        //return days.toString() + ":" + hours.toString() + ":" + minutes.toString();
+        int days = divetime / 1440;
+        int hours = (divetime % 1440) / 60;
+        int minutes = divetime % 60;
         return String.format("%02d", days) + ":" + String.format("%02d", hours) + ":" + String.format("%02d", minutes); // avl 
     }
 
     public BigDecimal getAverageDepth() {
-        BigDecimal averageDepth = new BigDecimal(0);
-        int i = 0;
-        Iterator<JDive> it = dives.iterator();
-        while (it.hasNext()) {
-            JDive dive = it.next();
-            if (dive.getDepth() != null) {
-                UnitConverter c = new UnitConverter(UnitConverter.getSystem(dive.getUnits()), UnitConverter.getDisplaySystem());
-                averageDepth = averageDepth.add(new BigDecimal(c.convertAltitude(dive.getDepth())));
-                i++;
-            }
-        }
-        if (averageDepth == null || averageDepth.equals(new BigDecimal(0))) {
-            return new BigDecimal(0);
-        }
-        return i == 0 ? new BigDecimal(0) : averageDepth.divide(new BigDecimal(i), 2, RoundingMode.HALF_UP);
+        return getStatistics().getAverageDepth();
     }
 
     public BigDecimal getAverageAmv() {
-        BigDecimal averageAmv = new BigDecimal(0);
-        int i = 0;
-        Iterator<JDive> it = dives.iterator();
-        while (it.hasNext()) {
-            JDive dive = it.next();
-            if (dive != null && dive.getAMV() != null && dive.getAMV() != 0) {
-                UnitConverter c = new UnitConverter(UnitConverter.getSystem(dive.getUnits()), UnitConverter.getDisplaySystem());
-                averageAmv = averageAmv.add(new BigDecimal(c.convertAMV(dive.getAMV())));
-                i++;
-            }
-        }
-        if (averageAmv == null || averageAmv.equals(new BigDecimal(0))) {
-            return new BigDecimal(0);
-        }
-        return i == 0 ? new BigDecimal(0) : averageAmv.divide(new BigDecimal(i), 2, RoundingMode.HALF_UP);
+        return getStatistics().getAverageAmv();
     }
 
     public BigDecimal getAverageTemperature() {
-        BigDecimal averageTemperature = new BigDecimal(0);
-        int i = 0;
-        Iterator<JDive> it = dives.iterator();
-        while (it.hasNext()) {
-            JDive dive = it.next();
-            if (dive != null && dive.getTemperature() != null && dive.getTemperature() != 0) {
-                UnitConverter uc = new UnitConverter(UnitConverter.getSystem(dive.getUnits()), UnitConverter.getDisplaySystem());
-                averageTemperature = averageTemperature.add(new BigDecimal(uc.convertTemperature(dive.getTemperature())));
-                i++;
-            }
-        }
-        if (averageTemperature == null || averageTemperature.equals(new BigDecimal(0))) {
-            return new BigDecimal(0);
-        }
-        return i == 0 ? new BigDecimal(0) : averageTemperature.divide(new BigDecimal(i), 2, RoundingMode.HALF_UP);
+        return getStatistics().getAverageTemperature();
     }
 
     public void setDives(TreeSet<JDive> dives) {
         this.dives = dives;
+        this.statistics = null;
     }
 
     public void setIgnoredDives(TreeSet<JDive> dives) {
@@ -336,15 +347,7 @@ public class JDiveLog {
     }
 
     public Long getNextDiveNumber() {
-        Iterator<JDive> it = dives.iterator();
-        long number = 0;
-        while (it.hasNext()) {
-            JDive dive = it.next();
-            if (dive.getDiveNumber() != null && dive.getDiveNumber().longValue() > number) {
-                number = dive.getDiveNumber().longValue();
-            }
-        }
-        return Long.valueOf(number + 1);
+        return getStatistics().getNextDiveNumber();
     }
 
     public ExportSettings getExportSettings() {
@@ -500,9 +503,9 @@ public class JDiveLog {
             }
 
             // assembly the profiles
-            if (firstDive.getDive().getSamples() != null && dive.getDive().getSamples() != null) {
+            if (firstDive.getDive().hasSamples() && dive.getDive().hasSamples()) {
                 dive.getDive().addSampleTimeOffset(firstDive.getDive().getDuration());
-                firstDive.getDive().getSamples().addAll(dive.getDive().getSamples());
+                firstDive.getDive().appendSamples(dive.getDive());
             }
 
             // set the new average depth
@@ -533,7 +536,7 @@ public class JDiveLog {
             // remove this dive after assembly
             this.getDives().remove(dive);
         }
-
+        invalidateStatistics();
     }
 
     public void setComputerDownloadInterval(int downloadInterval) {
@@ -21,6 +21,7 @@
  */
 package net.sf.jdivelog.model;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -183,7 +184,17 @@ public class Masterdata {
 
     @Override
     public String toString() {
-        StringBuffer sb = new StringBuffer("<Masterdata>");
+        StringBuffer sb = new StringBuffer();
+        try {
+            write(sb);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return sb.toString();
+    }
+
+    public void write(Appendable sb) throws IOException {
+        sb.append("<Masterdata>");
         sb.append("<Buddys>");
         Iterator<Buddy> it = getBuddys().iterator();
         while (it.hasNext()) {
@@ -226,9 +237,8 @@ public class Masterdata {
             sb.append(dsit.next().toString());
         }
         sb.append("</DiveSites>");
-        sb.append(getFavoriteMixes());
+        sb.append(String.valueOf(getFavoriteMixes()));
         sb.append("</Masterdata>");
-        return sb.toString();
     }
     
     public synchronized long getNextPrivateDiveSiteId() {
@@ -267,6 +277,28 @@ public class Masterdata {
         getFavoriteMixes().addFavorite(new Mix(name, oxygen, helium, ppO2, mod, change));
     }
 
+    /**
+     * @return a copy with its own lists, sharing the entries with this master data.
+     */
+    public Masterdata copy() {
+        Masterdata copy = new Masterdata();
+        copy.buddys = new ArrayList<Buddy>(buddys);
+        copy.divetypes = new ArrayList<DiveType>(divetypes);
+        copy.diveactivities = new ArrayList<DiveActivity>(diveactivities);
+        copy.suits = new ArrayList<Suit>(suits);
+        copy.gloveTypes = new ArrayList<GloveType>(gloveTypes);
+        copy.equipmentSets = new ArrayList<EquipmentSet>(equipmentSets);
+        copy.diveSites = new TreeSet<DiveSite>(diveSites);
+        copy.diveSitesByPrivateId = new HashMap<String, DiveSite>(diveSitesByPrivateId);
+        copy.diveSitesBySpotAndCountry = new HashMap<String, DiveSite>(diveSitesBySpotAndCountry);
+        copy.diveSitesBySpotAndCity = new HashMap<String, DiveSite>(diveSitesBySpotAndCity);
+        copy.diveSitesBySpot = new HashMap<String, DiveSite>(diveSitesBySpot);
+        copy.buddyBySurnameAndFirstname = new HashMap<String, Buddy>(buddyBySurnameAndFirstname);
+        copy.lastPrivateDiveSiteId = lastPrivateDiveSiteId;
+        copy.favoriteMixes = favoriteMixes;
+        return copy;
+    }
+
     //
     // private methods
     //
@@ -32,8 +32,6 @@ import net.sf.jdivelog.model.suuntong.LogBook;
 import net.sf.jdivelog.model.suuntong.LogEntry;
 import net.sf.jdivelog.model.udcf.Dive;
 import net.sf.jdivelog.model.udcf.Gas;
-import net.sf.jdivelog.model.udcf.Sample;
-import net.sf.jdivelog.model.udcf.Temperature;
 
 /**
  * Description: adapts the Suunto D6 data structure to JDiveLog format
@@ -187,31 +185,11 @@ public class SuuntoNGAdapter extends TreeSet<JDive> {
 	}
 
 	private Double calculateBottomTemparature(Dive result) {
-		Double bottomTemp = null;
-		for (Sample sample : result.getSamples()) {
-			if (sample instanceof Temperature) {
-				Temperature temp = (Temperature) sample;
-				Double value = (Double) temp.getValue();
-				if (bottomTemp == null || value.compareTo(bottomTemp) < 0) {
-					bottomTemp = value;
-				}
-			}
-		}
-		return bottomTemp;
+		return result.getMinTemperature();
 	}
 
 	private Double calculateSurfaceTemparature(Dive result) {
-		Double surfaceTemp = null;
-		for (Sample sample : result.getSamples()) {
-			if (sample instanceof Temperature) {
-				Temperature temp = (Temperature) sample;
-				Double value = (Double) temp.getValue();
-				if (surfaceTemp == null || value.compareTo(surfaceTemp) > 0) {
-					surfaceTemp = value;
-				}
-			}
-		}
-		return surfaceTemp;
+		return result.getMaxTemperature();
 	}
 
 	/**
@@ -24,12 +24,10 @@ package net.sf.jdivelog.model.aladin;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.TreeSet;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.Collection;
 
 import net.sf.jdivelog.gui.DiveImportWindow;
+import net.sf.jdivelog.gui.FileImport;
 import net.sf.jdivelog.gui.MainWindow;
 import net.sf.jdivelog.gui.resources.Messages;
 import net.sf.jdivelog.model.AladinAdapter;
@@ -44,25 +42,22 @@ import net.sf.jdivelog.model.JDive;
  */
 public class AladinFileLoader {
 
-    private static final Logger LOGGER = Logger
-            .getLogger(AladinFileLoader.class.getName());
-
-    private ArrayList<JDive> diveToAdd = new ArrayList<JDive>();
-
     public AladinFileLoader(MainWindow mainWindow, File[] files)
             throws IOException {
-        for (int i = 0; i < files.length; i++) {
-            try {
-                TreeSet<JDive> dives = new AladinAdapter(new AladinData(
-                        files[i].toString()));
-                Iterator<JDive> iterator = dives.iterator();
-
-                while (iterator.hasNext()) {
-                    diveToAdd.add((JDive) iterator.next());
-                }
-            } catch (Exception e) {
-                LOGGER.log(Level.SEVERE, "failed to load aladin file", e);
-            }
+        ArrayList<JDive> diveToAdd = FileImport.load(mainWindow, files,
+                new FileImport.Decoder() {
+                    public Collection<JDive> decode(File file, byte[] data) {
+                        int[] readData = new int[AladinData.DATA_SIZE];
+                        for (int i = 0; i < readData.length; i++) {
+                            // missing bytes are read as 0xFF, like EOF before
+                            readData[i] = i < data.length ? data[i] & 0xFF : 0xFF;
+                        }
+                        return new AladinAdapter(new AladinData(readData));
+                    }
+                });
+        if (diveToAdd == null) {
+            // cancelled
+            return;
         }
 
         // open the diveImportDataTrak window to mark the dives for import
@@ -3,7 +3,6 @@ package net.sf.jdivelog.model.cressi;
 import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
@@ -67,33 +66,26 @@ public class CressiLGB {
         this.loadedFile = inputFile;
     }
 
-    private boolean SkipString(RandomAccessFile rd, byte[] arrMark)
+    /**
+     * moves the position of the reader right behind the next occurrence of
+     * the given signature
+     *
+     * @param rd reader to search
+     * @param arrMark signature to find
+     * @return <code>true</code> if the signature has been found
+     * @throws EOFException if the signature does not occur anymore
+     */
+    private boolean SkipString(LgbReader rd, byte[] arrMark)
     throws IOException
     {
-        /* single character read from file */
-        int ch = 0;
-
-        /* current cursor position in input string */
-        int pos = 0;
-
-        while (pos < arrMark.length && ch >= 0)
-        {
-            ch = rd.readUnsignedByte() & 0xff;
-            if (ch == arrMark[pos])
-            {
-                pos++;
-            }
-            else
-            {
-                pos = 0;
-            }
-        }
-        if (ch >= 0)
+        int pos = rd.indexOf(arrMark);
+        if (pos < 0)
         {
-            return true;
+            rd.seek(rd.length());
+            throw new EOFException();
         }
-
-        return false;
+        rd.seek(pos + arrMark.length);
+        return true;
     }
 
     public void Load(MainWindow wnd, JDiveLog wholeLog)
@@ -129,8 +121,8 @@ public class CressiLGB {
         /* single created dive */
         JDive dive = null;
 
-        /* file being read */
-        RandomAccessFile fle = new RandomAccessFile(loadedFile, "r");
+        /* contents of the file being read */
+        LgbReader fle = new LgbReader(loadedFile);
 
         /* sampling delta value */
         Delta delta = null;
@@ -377,11 +369,6 @@ public class CressiLGB {
         {
             /* do nothing on end of file */
         }
-        finally
-        {
-            try { fle.close(); }
-            catch (Exception e) { }
-        }
 
         /* add all the created dives */
         CommandAddDives cmd = new CommandAddDives(wnd, dives);
@@ -397,7 +384,7 @@ public class CressiLGB {
      * @param dive dive to add this tank to
      * @throws IOException on reading errors
      */
-    private void addTank(RandomAccessFile fle, JDive dive) throws IOException
+    private void addTank(LgbReader fle, JDive dive) throws IOException
     {
         /* volume of this tank */
         double volume = 0;
@@ -530,7 +517,7 @@ public class CressiLGB {
      * @return requested string
      * @throws IOException
      */
-    private String readNextString(RandomAccessFile fle)
+    private String readNextString(LgbReader fle)
     throws IOException
     {
         /* length of this string */
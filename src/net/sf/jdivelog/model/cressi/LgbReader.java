@@ -0,0 +1,152 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: LgbReader.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.model.cressi;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+/**
+ * Reader on the contents of a Cressi LGB file, see {@link CressiLGB}. The
+ * file is read into memory with a single read, the methods mirror the ones
+ * of {@link RandomAccessFile} used before, including the big endian byte
+ * order and {@link EOFException} at the end of the data, so reading a field
+ * does not cost a system call anymore.
+ */
+class LgbReader
+{
+    /** contents of the file */
+    private final byte[] data;
+
+    /** view on the contents for decoding the fields */
+    private final ByteBuffer buf;
+
+    public LgbReader(File file) throws IOException
+    {
+        RandomAccessFile fle = new RandomAccessFile(file, "r");
+        try
+        {
+            data = new byte[(int)fle.length()];
+            fle.readFully(data);
+        }
+        finally
+        {
+            fle.close();
+        }
+        buf = ByteBuffer.wrap(data);
+    }
+
+    public int length()
+    {
+        return data.length;
+    }
+
+    public int getFilePointer()
+    {
+        return buf.position();
+    }
+
+    public void seek(long pos)
+    {
+        buf.position((int)Math.min(pos, data.length));
+    }
+
+    public int skipBytes(int n)
+    {
+        int skipped = Math.min(n, buf.remaining());
+        buf.position(buf.position() + skipped);
+        return skipped;
+    }
+
+    public int read(byte[] b)
+    {
+        if (!buf.hasRemaining())
+        {
+            return -1;
+        }
+        int len = Math.min(b.length, buf.remaining());
+        buf.get(b, 0, len);
+        return len;
+    }
+
+    public byte readByte() throws EOFException
+    {
+        require(1);
+        return buf.get();
+    }
+
+    public int readUnsignedByte() throws EOFException
+    {
+        require(1);
+        return buf.get() & 0xff;
+    }
+
+    public int readUnsignedShort() throws EOFException
+    {
+        require(2);
+        return buf.getShort() & 0xffff;
+    }
+
+    public int readInt() throws EOFException
+    {
+        require(4);
+        return buf.getInt();
+    }
+
+    /**
+     * @param mark signature to find
+     * @return the position of the next occurrence of the signature at or
+     *         after the current position, -1 if there is none
+     */
+    public int indexOf(byte[] mark)
+    {
+        byte first = mark[0];
+        int last = data.length - mark.length;
+        for (int i = buf.position(); i <= last; i++)
+        {
+            /* scan for the first byte, then compare the rest */
+            if (data[i] != first)
+            {
+                continue;
+            }
+            int j = 1;
+            while (j < mark.length && data[i + j] == mark[j])
+            {
+                j++;
+            }
+            if (j == mark.length)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void require(int n) throws EOFException
+    {
+        if (buf.remaining() < n)
+        {
+            buf.position(data.length);
+            throw new EOFException();
+        }
+    }
+}
@@ -21,23 +21,27 @@
  */
 package net.sf.jdivelog.model.datatrak;
 
-import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.GregorianCalendar;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.Locale;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import net.sf.jdivelog.gui.DiveImportDataTrakWindow;
+import net.sf.jdivelog.gui.FileImport;
 import net.sf.jdivelog.gui.MainWindow;
 import net.sf.jdivelog.gui.resources.Messages;
 import net.sf.jdivelog.model.DiveSite;
@@ -59,15 +63,49 @@ public class DataTrakFileLoader {
     private Gas  divegas  = null;
     private Tank  divetank  = null;
     private Equipment  diveequipment  = null;
-    private ArrayList<JDive> diveToAdd = new ArrayList<JDive>();;
+    private ArrayList<JDive> diveToAdd = new ArrayList<JDive>();
     
     private SimpleDateFormat df = new SimpleDateFormat("dd.MM.yy");
     private MainWindow mainWindow = null;
+    private Map<JDive, String[]> sites = null;
     
     
     public DataTrakFileLoader(MainWindow mainWindow, File[] files) throws IOException {
         this.mainWindow = mainWindow;
-        DataInputStream in = null;
+        final Map<JDive, String[]> sites = Collections.synchronizedMap(new IdentityHashMap<JDive, String[]>());
+        diveToAdd = FileImport.load(mainWindow, files, new FileImport.Decoder() {
+            public Collection<JDive> decode(File file, byte[] data) throws IOException {
+                return new DataTrakFileLoader(sites).parse(data);
+            }
+        });
+        if (diveToAdd == null) {
+            // cancelled
+            return;
+        }
+
+        // the files are decoded in parallel, so the dive sites are created
+        // afterwards in the order of the dives to get the same ids every time
+        Masterdata masterdata = mainWindow.getLogBook().getMasterdata();
+        for (JDive d : diveToAdd) {
+            String[] site = sites.get(d);
+            d.setDiveSiteId(getDiveSitePrivateId(masterdata, site[0], site[1]));
+        }
+
+        //open the diveImportDataTrak window to mark the dives for import
+        DiveImportDataTrakWindow daw = new DiveImportDataTrakWindow(this.mainWindow, this.mainWindow, diveToAdd);
+        daw.setVisible(true);
+    }
+    
+    private DataTrakFileLoader(Map<JDive, String[]> sites) {
+        this.sites = sites;
+    }
+
+    /**
+     * @param data the contents of a DataTrak file.
+     * @return the dives of the file.
+     */
+    private ArrayList<JDive> parse(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
         byte[] line = null;
         Double divesecond = null;
         Double depth = null;
@@ -81,409 +119,401 @@ public class DataTrakFileLoader {
         cal.set(Calendar.HOUR_OF_DAY, 0);
         cal.set(Calendar.MINUTE, 0);
 
-            for (int i = 0; i < files.length; i++) {
-                try {
+        try {
+
+            //jump over the header
+            in.skipBytes(6);
+
+            //read count of dives
+            line = new byte[2];
+            in.read(line);
+            count_tg = unsigned_int(line[1]) * 0x100 + unsigned_int(line[0]);
+
+            //jump over the rest of the header
+            in.skipBytes(4);
+
+            for (int k = 0; k < count_tg; k++) {
+                int profiledataOffset = 24;
+                int profiledataPacketLength = 8;
+                boolean workAlarms = true;
+
+                dive = new JDive();
+                //Dive Data for the Profil
+                divedata = new Dive();
+                divegas  = new Gas();
+                divetank  = new Tank();
+                diveequipment  = new Equipment();
+
+
+                //generate the air gas
+                divegas.setName(Messages.getString("default_mixname"));
+                divegas.setOxygen(new Double(0.21));
+                divegas.setNitrogen(new Double(0.79));
+                divegas.setHelium(new Double(0));
+
+                divedata.setSurfaceinterval("");
+                divedata.setDensity(new Double(0));
+                divedata.setAltitude(new Double(0));
+
+                //jump over first $A000 from the dive
+                in.skipBytes(2);
+
+                //read divedate in days since 01.01.1600
+                line = new byte[4];
+                in.read(line);
+                count = unsigned_int(line[3]) * 0x1000000 + unsigned_int(line[2]) * 0x10000 + unsigned_int(line[1]) * 0x100 + unsigned_int(line[0]);
+                cal.add(Calendar.DATE, count);
+                //set the dive date
+                try  {
+                    dive.setDate(df.parse(cal.get(Calendar.DATE) + "." + (cal.get(Calendar.MONTH)+1) + "." + cal.get(Calendar.YEAR)));
+                    divedata.setDate(df.parse(cal.get(Calendar.DATE) + "." + (cal.get(Calendar.MONTH)+1) + "." + cal.get(Calendar.YEAR)));
+                    cal.add(Calendar.DATE, -1 * count);
+                } catch (Exception ex) {
+                    LOGGER.log(Level.WARNING, "error parsing date", ex);
+                }
+
+
+                //read divetime in minutes since 00:00
+                line = new byte[2];
+                in.read(line);
+                count = unsigned_int(line[1]) * 0x100 + unsigned_int(line[0]);
+                cal.add(Calendar.MINUTE, count);
+                //set the dive time
+                dive.setTime(new Integer(cal.get(Calendar.HOUR_OF_DAY)).toString(), new Integer(cal.get(Calendar.MINUTE)).toString());
+                cal.add(Calendar.MINUTE, -1 * count);
+
+                //read country
+                line = new byte[1];
+                in.read(line);
+                count = unsigned_int(line[0]);
+                String country = "";
+                if (count != 0) {
+                    String s = readText(in, count);
+                    //set the country
+                    country = s;
+                }
+
+                //read divingplace
+                line = new byte[1];
+                in.read(line);
+                count = unsigned_int(line[0]);
+                String place = "";
+                if (count != 0) {
+                    //set the place
+                    place = readText(in, count);
+                }
+
+                sites.put(dive, new String[] { place, country });
+
+                //skip the altitude
+                in.skipBytes(1);
+                //skip the surface intervall in minutes
+                in.skipBytes(2);
+
+                //read weather
+                line = new byte[1];
+                in.read(line);
+                switch (line[0]) {
+                case 1:
+                    help_string = Messages.getString("clear");
+                    break;
+                case 2:
+                    help_string = Messages.getString("misty");
+                    break;
+                case 3:
+                    help_string = Messages.getString("fog");
+                    break;
+                case 4:
+                    help_string = Messages.getString("rain");
+                    break;
+                case 5:
+                    help_string = Messages.getString("storm");
+                    break;
+                case 6:
+                    help_string = Messages.getString("snow");
+                    break;
+                }
+                if (dive.getVisibility() != null) {
+                    dive.setVisibility(dive.getVisibility() + " m  " + Messages.getString("weather") + ": " + help_string);
+                } else {
+                    dive.setVisibility(Messages.getString("weather") + ": " + help_string);
+                }
+
+                //skip the air temparature
+                in.skipBytes(2);
+                //read suit
+                line = new byte[1];
+                in.read(line);
+                switch (line[0]) {
+                case 1:
+                    help_string = Messages.getString("nosuit");
+                    break;
+                case 2:
+                    help_string = Messages.getString("shorty");
+                    break;
+                case 3:
+                    help_string = Messages.getString("combi");
+                    break;
+                case 4:
+                    help_string = Messages.getString("wet");
+                    break;
+                case 5:
+                    help_string = Messages.getString("semidry");
+                    break;
+                case 6:
+                    help_string = Messages.getString("dry");
+                    break;
+                }
+                diveequipment.setSuit(help_string);
+
+                //read tank size
+                line = new byte[2];
+                in.read(line);
+                count = unsigned_int(line[1]) * 0x100 + unsigned_int(line[0]);
+                //set tank size
+                if (count != 32767) {
+                    divegas.setTankvolume(new Double(count) / 100000);
+                }
+
+                //read maximum dive depth
+                line = new byte[2];
+                in.read(line);
+                count = unsigned_int(line[1]) * 0x100 + unsigned_int(line[0]);
+                //set maximum dive depth
+                if (count != 32767) {
+                    dive.setDepth(new Double(count) / 100);
+                }
+
+                //read dive duration
+                line = new byte[2];
+                in.read(line);
+                count = unsigned_int(line[1]) * 0x100 + unsigned_int(line[0]);
+                //set dive duration
+                if (count != 32767) {
+                    dive.setDuration(new Double(count));
+                }
+
+                //read water temperature
+                line = new byte[2];
+                in.read(line);
+                count = unsigned_int(line[1]) * 0x100 + unsigned_int(line[0]);
+                //set the water temperature
+                if (count != 32767) {
+                    dive.setTemperature(new Double(count) / 100);
+                    divedata.setTemperature(new Double(count) / 100);
+                }
+
+                //read air consumption
+                line = new byte[2];
+                in.read(line);
+                count = unsigned_int(line[1]) * 0x100 + unsigned_int(line[0]);
+                //set air consumption
+                if (count != 32767) {
+                    divegas.setPstart(new Double(Messages.getString("standard_pressure")));
+                    divegas.setPend(divegas.getPstart() - (new Double(count)/ 100));
+                }
+
+                //read divingtype
+                line = new byte[2];
+                in.read(line);
+                //set the divingtype
+                ArrayList<String> types = new ArrayList<String>();
+                if ((line[0] & 4) != 0 ) {
+                    types.add(Messages.getString("nostop"));
+                }
+                if ((line[0] & 8) != 0 ) {
+                    types.add(Messages.getString("decompression"));
+                }
+                if ((line[0] & 16) != 0 ) {
+                    types.add(Messages.getString("single_ascent"));
+                }
+                if ((line[0] & 32) != 0 ) {
+                    types.add(Messages.getString("multiple_ascent"));
+                }
+                if ((line[0] & 64) != 0 ) {
+                    types.add(Messages.getString("freshwater"));
+                }
+                if ((line[0] & 128) != 0 ) {
+                    types.add(Messages.getString("seawater"));
+                }
+                if ((line[1] & 1) != 0 ) {
+                    types.add(Messages.getString("nitrox"));
+                }
+                if ((line[1] & 2) != 0 ) {
+                    types.add(Messages.getString("rebreather"));
+                }
+
+                dive.setDiveType(getCommaSeparatedList(types));
+
+                //read divingactivity
+                line = new byte[2];
+                in.read(line);
+                help_string = "";
+                //set the divingactivity
+                ArrayList<String> activities = new ArrayList<String>();
+                if ((line[0] & 1) != 0 ) {
+                    activities.add(Messages.getString("sightseeing"));
+                }
+                if ((line[0] & 2) != 0 ) {
+                    activities.add(Messages.getString("clubdive"));
+                }
+                if ((line[0] & 4) != 0 ) {
+                    activities.add(Messages.getString("education"));
+                }
+                if ((line[0] & 8) != 0 ) {
+                    activities.add(Messages.getString("instruction"));
+                }
+                if ((line[0] & 16) != 0 ) {
+                    activities.add(Messages.getString("night"));
+                }
+                if ((line[0] & 32) != 0 ) {
+                    activities.add(Messages.getString("cave"));
+                }
+                if ((line[0] & 64) != 0 ) {
+                    activities.add(Messages.getString("ice"));
+                }
+                if ((line[0] & 128) != 0 ) {
+                    activities.add(Messages.getString("search"));
+                }
+                if ((line[1] & 1) != 0 ) {
+                    activities.add(Messages.getString("wreck"));
+                }
+                if ((line[1] & 2) != 0 ) {
+                    activities.add(Messages.getString("river"));
+                }
+                if ((line[1] & 4) != 0 ) {
+                    activities.add(Messages.getString("drift"));
+                }
+                if ((line[1] & 8) != 0 ) {
+                    activities.add(Messages.getString("photo"));
+                }
+                if ((line[1] & 16) != 0 ) {
+                    activities.add(Messages.getString("other"));
+                }
+                dive.setDiveActivity(getCommaSeparatedList(activities));
+
+                //read diving activity
+                line = new byte[1];
+                in.read(line);
+                count = unsigned_int(line[0]);
+                if (count != 0) {
+                    //set the diving activity
+                    dive.setDiveActivity(dive.getDiveActivity() + "," + readText(in, count));
+                }
+
+                //read diving Buddy
+                line = new byte[1];
+                in.read(line);
+                count = unsigned_int(line[0]);
+                if (count != 0) {
+                    //set the diving Buddy
+                    dive.setBuddy(readText(in, count));
+                }
 
-                    in = new DataInputStream(new BufferedInputStream(new FileInputStream(files[i])));
+                //read diving comment
+                line = new byte[1];
+                in.read(line);
+                count = unsigned_int(line[0]);
+                if (count != 0) {
+                    //set the diving comment
+                    dive.setComment(readText(in, count));
+                }
 
-                    //jump over the header
-                    in.skipBytes(6);
-                    
-                    //read count of dives
-                    line = new byte[2];
+                //skip the alerts and other
+                in.skipBytes(8);
+
+                line = new byte[1];
+                in.read(line);
+                int model = unsigned_int(line[0]);
+
+                if (model == 0x1e || model == 0x1f || model == 0x3f) {
+                    // Offset and Packet length for Aladin Pro & Aladin Sport
+                    profiledataOffset = 21; // 21 is not bad
+                    profiledataPacketLength = 7;
+                    workAlarms = false;
+                }
+
+                if (model == 0xff) {
+                    // Offset and Packet length for Aladin Pro Nitrox
+                    profiledataOffset = 23;
+                    profiledataPacketLength = 7;
+                    workAlarms = false;
+                }
+
+                if (model == 0x44) {
+                    // Offset and Packet length for Aladin Air X
+                    profiledataOffset = 21;
+                    profiledataPacketLength = 7;
+                    workAlarms = false;
+                }
+
+                if (model == 0xf4) {
+                    // Offset and Packet length for Aladin Ait Z
+                    profiledataOffset = 23;
+                    profiledataPacketLength = 7;
+                    workAlarms = false;
+                }
+
+                //skip saturation and air usage
+                in.skipBytes(7);
+
+                //read diving profile
+                line = new byte[2];
+                in.read(line);
+                count = unsigned_int(line[1]) * 0x100 + unsigned_int(line[0]);
+                if (count != 0) {
+                    line = new byte[count];
                     in.read(line);
-                    count_tg = unsigned_int(line[1]) * 0x100 + unsigned_int(line[0]);
-                    
-                    //jump over the rest of the header
-                    in.skipBytes(4);
-                    
-                    for (int k = 0; k < count_tg; k++) {
-                        int profiledataOffset = 24;
-                        int profiledataPacketLength = 8;
-                        boolean workAlarms = true;
-
-                        dive = new JDive();
-                        //Dive Data for the Profil
-                        divedata = new Dive();
-                        divegas  = new Gas();
-                        divetank  = new Tank();
-                        diveequipment  = new Equipment();
-                        
-        
-                        //generate the air gas
-                        divegas.setName(Messages.getString("default_mixname"));
-                        divegas.setOxygen(new Double(0.21));
-                        divegas.setNitrogen(new Double(0.79));
-                        divegas.setHelium(new Double(0));
-                        
-                        divedata.setSurfaceinterval("");
-                        divedata.setDensity(new Double(0));
-                        divedata.setAltitude(new Double(0));
-
-                        //jump over first $A000 from the dive
-                        in.skipBytes(2);
-                        
-                       //read divedate in days since 01.01.1600
-                       line = new byte[4];
-                       in.read(line);
-                       count = unsigned_int(line[3]) * 0x1000000 + unsigned_int(line[2]) * 0x10000 + unsigned_int(line[1]) * 0x100 + unsigned_int(line[0]);
-                       cal.add(Calendar.DATE, count);
-                       //set the dive date
-                       try  {
-                           dive.setDate(df.parse(cal.get(Calendar.DATE) + "." + (cal.get(Calendar.MONTH)+1) + "." + cal.get(Calendar.YEAR)));
-                           divedata.setDate(df.parse(cal.get(Calendar.DATE) + "." + (cal.get(Calendar.MONTH)+1) + "." + cal.get(Calendar.YEAR)));                                                                                                            
-                           cal.add(Calendar.DATE, -1 * count);
-                       } catch (Exception ex) {
-                           LOGGER.log(Level.WARNING, "error parsing date", ex);
-                       }
-
-
-                       //read divetime in minutes since 00:00
-                       line = new byte[2];
-                       in.read(line);
-                       count = unsigned_int(line[1]) * 0x100 + unsigned_int(line[0]);
-                       cal.add(Calendar.MINUTE, count);
-                       //set the dive time
-                       dive.setTime(new Integer(cal.get(Calendar.HOUR_OF_DAY)).toString(), new Integer(cal.get(Calendar.MINUTE)).toString());
-                       cal.add(Calendar.MINUTE, -1 * count);
-                       
-                       //read country
-                       line = new byte[1];
-                       in.read(line);
-                       count = unsigned_int(line[0]);
-                       String country = "";
-                       if (count != 0) { 
-                           String s = readText(in, count);
-                           //set the country
-                           country = s;
-                       }
-                       
-                       //read divingplace
-                       line = new byte[1];
-                       in.read(line);
-                       count = unsigned_int(line[0]);
-                       String place = "";
-                       if (count != 0) {
-                           //set the place
-                           place = readText(in, count);
-                       }
-                       
-                       dive.setDiveSiteId(getDiveSitePrivateId(mainWindow.getLogBook().getMasterdata(), place, country));
-                       
-                       //skip the altitude
-                       in.skipBytes(1);
-                       //skip the surface intervall in minutes
-                       in.skipBytes(2);
-                       
-                       //read weather
-                       line = new byte[1];
-                       in.read(line);
-                       switch (line[0]) {
-                           case 1:
-                             help_string = Messages.getString("clear");
-                           break;
-                           case 2:
-                            help_string = Messages.getString("misty");
-                           break;
-                           case 3:
-                            help_string = Messages.getString("fog");
-                           break;
-                           case 4:
-                            help_string = Messages.getString("rain");
-                           break;
-                           case 5:
-                            help_string = Messages.getString("storm");
-                           break;
-                           case 6:
-                            help_string = Messages.getString("snow");
-                           break;
-                       }
-                       if (dive.getVisibility() != null) {
-                           dive.setVisibility(dive.getVisibility() + " m  " + Messages.getString("weather") + ": " + help_string);
-                       } else {
-                           dive.setVisibility(Messages.getString("weather") + ": " + help_string);
-                       }
-                       
-                       //skip the air temparature
-                       in.skipBytes(2);
-                       //read suit
-                       line = new byte[1];
-                       in.read(line);
-                       switch (line[0]) {
-                           case 1:
-                            help_string = Messages.getString("nosuit");
-                           break;
-                           case 2:
-                            help_string = Messages.getString("shorty");
-                           break;
-                           case 3:
-                            help_string = Messages.getString("combi");
-                           break;
-                           case 4:
-                            help_string = Messages.getString("wet");
-                           break;
-                           case 5:
-                            help_string = Messages.getString("semidry");
-                           break;
-                           case 6:
-                            help_string = Messages.getString("dry");
-                           break;
-                       }
-                       diveequipment.setSuit(help_string);
-
-                       //read tank size
-                       line = new byte[2];
-                       in.read(line);
-                       count = unsigned_int(line[1]) * 0x100 + unsigned_int(line[0]);
-                       //set tank size
-                       if (count != 32767) {
-                           divegas.setTankvolume(new Double(count) / 100000);
-                       }
-
-                       //read maximum dive depth
-                       line = new byte[2];
-                       in.read(line);
-                       count = unsigned_int(line[1]) * 0x100 + unsigned_int(line[0]);
-                       //set maximum dive depth
-                       if (count != 32767) {
-                           dive.setDepth(new Double(count) / 100);
-                       }
-                       
-                       //read dive duration
-                       line = new byte[2];
-                       in.read(line);
-                       count = unsigned_int(line[1]) * 0x100 + unsigned_int(line[0]);
-                       //set dive duration
-                       if (count != 32767) {
-                           dive.setDuration(new Double(count));
-                       }
-                       
-                       //read water temperature
-                       line = new byte[2];
-                       in.read(line);
-                       count = unsigned_int(line[1]) * 0x100 + unsigned_int(line[0]);
-                       //set the water temperature
-                       if (count != 32767) {
-                           dive.setTemperature(new Double(count) / 100);
-                           divedata.setTemperature(new Double(count) / 100);
-                       }
-                       
-                       //read air consumption
-                       line = new byte[2];
-                       in.read(line);
-                       count = unsigned_int(line[1]) * 0x100 + unsigned_int(line[0]);
-                       //set air consumption
-                       if (count != 32767) {
-                            divegas.setPstart(new Double(Messages.getString("standard_pressure")));
-                            divegas.setPend(divegas.getPstart() - (new Double(count)/ 100));
-                       }
-                       
-                       //read divingtype
-                       line = new byte[2];
-                       in.read(line);
-                       //set the divingtype
-                       ArrayList<String> types = new ArrayList<String>();
-                       if ((line[0] & 4) != 0 ) {
-                           types.add(Messages.getString("nostop"));
-                       }
-                       if ((line[0] & 8) != 0 ) {
-                           types.add(Messages.getString("decompression"));
-                       }
-                       if ((line[0] & 16) != 0 ) {
-                           types.add(Messages.getString("single_ascent"));
-                       }
-                       if ((line[0] & 32) != 0 ) {
-                           types.add(Messages.getString("multiple_ascent"));
-                       }
-                       if ((line[0] & 64) != 0 ) {
-                           types.add(Messages.getString("freshwater"));
-                       }
-                       if ((line[0] & 128) != 0 ) {
-                           types.add(Messages.getString("seawater"));
-                       }
-                       if ((line[1] & 1) != 0 ) {
-                           types.add(Messages.getString("nitrox"));
-                       }
-                       if ((line[1] & 2) != 0 ) {
-                           types.add(Messages.getString("rebreather"));
-                       }
-                       
-                       dive.setDiveType(getCommaSeparatedList(types));
-                       
-                       //read divingactivity
-                       line = new byte[2];
-                       in.read(line);
-                       help_string = "";
-                       //set the divingactivity
-                       ArrayList<String> activities = new ArrayList<String>();
-                       if ((line[0] & 1) != 0 ) {
-                           activities.add(Messages.getString("sightseeing"));
-                       }
-                       if ((line[0] & 2) != 0 ) {
-                           activities.add(Messages.getString("clubdive"));
-                       }
-                       if ((line[0] & 4) != 0 ) {
-                           activities.add(Messages.getString("education"));
-                       }
-                       if ((line[0] & 8) != 0 ) {
-                           activities.add(Messages.getString("instruction"));
-                       }
-                       if ((line[0] & 16) != 0 ) {
-                           activities.add(Messages.getString("night"));
-                       }
-                       if ((line[0] & 32) != 0 ) {
-                           activities.add(Messages.getString("cave"));
-                       }
-                       if ((line[0] & 64) != 0 ) {
-                           activities.add(Messages.getString("ice"));
-                       }
-                       if ((line[0] & 128) != 0 ) {
-                           activities.add(Messages.getString("search"));
-                       }
-                       if ((line[1] & 1) != 0 ) {
-                           activities.add(Messages.getString("wreck"));
-                       }
-                       if ((line[1] & 2) != 0 ) {
-                           activities.add(Messages.getString("river"));
-                       }
-                       if ((line[1] & 4) != 0 ) {
-                           activities.add(Messages.getString("drift"));
-                       }
-                       if ((line[1] & 8) != 0 ) {
-                           activities.add(Messages.getString("photo"));
-                       }
-                       if ((line[1] & 16) != 0 ) {
-                           activities.add(Messages.getString("other"));
-                       }
-                       dive.setDiveActivity(getCommaSeparatedList(activities));
-
-                       //read diving activity
-                       line = new byte[1];
-                       in.read(line);
-                       count = unsigned_int(line[0]);
-                       if (count != 0) {
-                           //set the diving activity
-                           dive.setDiveActivity(dive.getDiveActivity() + "," + readText(in, count));
-                       }
-                       
-                       //read diving Buddy
-                       line = new byte[1];
-                       in.read(line);
-                       count = unsigned_int(line[0]);
-                       if (count != 0) {
-                           //set the diving Buddy
-                           dive.setBuddy(readText(in, count));
-                       }
-                       
-                       //read diving comment
-                       line = new byte[1];
-                       in.read(line);
-                       count = unsigned_int(line[0]);
-                       if (count != 0) {                       
-                           //set the diving comment
-                           dive.setComment(readText(in, count));
-                       }
-
-                       //skip the alerts and other
-                       in.skipBytes(8);
-                       
-                       line = new byte[1];
-                       in.read(line);
-                       int model = unsigned_int(line[0]);
-                       
-                       if (model == 0x1e || model == 0x1f || model == 0x3f) {
-                           // Offset and Packet length for Aladin Pro & Aladin Sport
-                           profiledataOffset = 21; // 21 is not bad
-                           profiledataPacketLength = 7;
-                           workAlarms = false;
-                       }
-                       
-                       if (model == 0xff) {
-                           // Offset and Packet length for Aladin Pro Nitrox
-                           profiledataOffset = 23;
-                           profiledataPacketLength = 7;
-                           workAlarms = false;
-                       }
-                       
-                       if (model == 0x44) {
-                           // Offset and Packet length for Aladin Air X
-                           profiledataOffset = 21;
-                           profiledataPacketLength = 7;
-                           workAlarms = false;
-                       }
-                       
-                       if (model == 0xf4) {
-                           // Offset and Packet length for Aladin Ait Z
-                           profiledataOffset = 23;
-                           profiledataPacketLength = 7;
-                           workAlarms = false;
-                       }
-                       
-                       //skip saturation and air usage
-                       in.skipBytes(7);
-
-                       //read diving profile
-                       line = new byte[2];
-                       in.read(line);
-                       count = unsigned_int(line[1]) * 0x100 + unsigned_int(line[0]);
-                       if (count != 0) {
-                           line = new byte[count];
-                           in.read(line);
-                           divesecond = new Double(0);
-                           divedata.addTime(divesecond.toString());
-                           divedata.addDepth("0");
-                           divedata.addGas(divegas);            
-                           for (int j = profiledataOffset ; j < count - profiledataPacketLength; j = j + profiledataPacketLength) {
-                               depth = new Double((unsigned_int(line[j+1]) * 0x100 + unsigned_int(line[j])) & 0xffc0) / 410 ;
-                               divedata.addTime(new Double(divesecond / 60).toString());
-                               divedata.addDepth(depth.toString());
-                               setAlarms(line[j+1], line[j], workAlarms);
-                               divesecond = divesecond + 20;
-
-                               depth = new Double((unsigned_int(line[j+3]) * 0x100 + unsigned_int(line[j+2])) & 0xffc0) / 410 ;
-                               divedata.addTime(new Double(divesecond / 60).toString());
-                               divedata.addDepth(depth.toString());
-                               setAlarms(line[j+3], line[j+2], workAlarms);
-                               divesecond = divesecond + 20;
-
-                               depth = new Double((unsigned_int(line[j+5]) * 0x100 + unsigned_int(line[j+4])) & 0xffc0) / 410 ;
-                               divedata.addTime(new Double(divesecond / 60).toString());
-                               divedata.addDepth(depth.toString());
-                               setAlarms(line[j+5], line[j+4], workAlarms);
-                               divesecond = divesecond + 20;                                                     
-                           }
-                           divedata.addTime(new Double(divesecond / 60).toString());
-                           divedata.addDepth("0");                    
-                       }
-                                                                                                
-                       //Generate the diveprofil
-                        if (divedata.getSamples() != null) {
-                            divedata.setTimeDepthMode();
-                            dive.setDive(divedata);
-                            dive.setAverageDepth(divedata.getAverageDepth());
-                        }
-                        dive.setUnits("metric");
-                        
-                        //set the Equipment
-                        divetank.setGas(divegas);
-                        diveequipment.addTank(divetank);
-                        dive.setEquipment(diveequipment);
-                        
-                        //add the dive
-                        diveToAdd.add(dive);
-                }
-            } catch (EOFException ex) {
-                LOGGER.log(Level.FINE, "end of file reached", ex);
-                //End of File
+                    divesecond = new Double(0);
+                    divedata.addTime(divesecond.toString());
+                    divedata.addDepth("0");
+                    divedata.addGas(divegas);
+                    for (int j = profiledataOffset ; j < count - profiledataPacketLength; j = j + profiledataPacketLength) {
+                        depth = new Double((unsigned_int(line[j+1]) * 0x100 + unsigned_int(line[j])) & 0xffc0) / 410 ;
+                        divedata.addTime(new Double(divesecond / 60).toString());
+                        divedata.addDepth(depth.toString());
+                        setAlarms(line[j+1], line[j], workAlarms);
+                        divesecond = divesecond + 20;
+
+                        depth = new Double((unsigned_int(line[j+3]) * 0x100 + unsigned_int(line[j+2])) & 0xffc0) / 410 ;
+                        divedata.addTime(new Double(divesecond / 60).toString());
+                        divedata.addDepth(depth.toString());
+                        setAlarms(line[j+3], line[j+2], workAlarms);
+                        divesecond = divesecond + 20;
+
+                        depth = new Double((unsigned_int(line[j+5]) * 0x100 + unsigned_int(line[j+4])) & 0xffc0) / 410 ;
+                        divedata.addTime(new Double(divesecond / 60).toString());
+                        divedata.addDepth(depth.toString());
+                        setAlarms(line[j+5], line[j+4], workAlarms);
+                        divesecond = divesecond + 20;
+                    }
+                    divedata.addTime(new Double(divesecond / 60).toString());
+                    divedata.addDepth("0");
+                }
+
+                //Generate the diveprofil
+                if (divedata.hasSamples()) {
+                    divedata.setTimeDepthMode();
+                    dive.setDive(divedata);
+                    dive.setAverageDepth(divedata.getAverageDepth());
+                }
+                dive.setUnits("metric");
+
+                //set the Equipment
+                divetank.setGas(divegas);
+                diveequipment.addTank(divetank);
+                dive.setEquipment(diveequipment);
+
+                //add the dive
+                diveToAdd.add(dive);
             }
-            in.close();            
-         }
-            
-        //open the diveImportDataTrak window to mark the dives for import
-        DiveImportDataTrakWindow daw = new DiveImportDataTrakWindow(this.mainWindow, this.mainWindow, diveToAdd);
-        daw.setVisible(true);
+        } catch (EOFException ex) {
+            LOGGER.log(Level.FINE, "end of file reached", ex);
+            //End of File
+        }
+        return diveToAdd;
     }
-    
+
     private void setAlarms(byte higher, byte lower, boolean workAlarms) {
         //set the RBT Alarm for air integrated computers
         if ((((unsigned_int(higher) * 0x100 + unsigned_int(lower)) & 0x003f) ^ 2) == 0) {
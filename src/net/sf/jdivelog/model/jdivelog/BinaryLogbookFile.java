@@ -0,0 +1,323 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: BinaryLogbookFile.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.model.jdivelog;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import net.sf.jdivelog.model.JDive;
+import net.sf.jdivelog.model.JDiveLog;
+
+/**
+ * Binary container for logbooks (.jlbx).
+ * <p>
+ * Layout: a fixed header, the logbook XML without the dive profiles, the
+ * profile section with one {@link ProfileCodec} record per dive and a dive
+ * index pointing into the profile section. The index follows the order of
+ * the dives in the XML part, ignored dives last.
+ * <p>
+ * On load the XML part and every profile are read into buffers of their
+ * own, the file is not kept open or mapped, so it can be replaced when the
+ * logbook is saved. Only the XML part is parsed eagerly and can be dropped
+ * afterwards. The profiles are handed to the dives and are decoded on the
+ * first call of {@link JDive#getDive()}, which releases the encoded bytes
+ * of that dive.
+ * <p>
+ * All offsets are relative to the start of the container, so it can also be
+ * embedded in another file.
+ */
+public class BinaryLogbookFile {
+
+    public static final String EXTENSION = "jlbx"; //$NON-NLS-1$
+
+    private static final int MAGIC = 0x4A444C42; // "JDLB"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int INDEX_ENTRY_SIZE = 12;
+
+    /** the logbook XML without profiles */
+    private final ByteBuffer metadata;
+    /** the encoded profiles in index order, <code>null</code> for dives without profile */
+    private final ByteBuffer[] profiles;
+
+    private BinaryLogbookFile(ByteBuffer metadata, ByteBuffer[] profiles) {
+        this.metadata = metadata;
+        this.profiles = profiles;
+    }
+
+    /**
+     * @param file the file to check.
+     * @return <code>true</code> if the file name has the binary logbook extension.
+     */
+    public static boolean isBinary(File file) {
+        return file.getName().toLowerCase().endsWith("." + EXTENSION); //$NON-NLS-1$
+    }
+
+    /**
+     * read a binary logbook into memory, the XML part and each profile into a buffer of its own.
+     * @param file the binary logbook.
+     * @return the opened container.
+     * @throws IOException if the file can not be read or is not a binary logbook.
+     */
+    public static BinaryLogbookFile open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            Header header = new Header(read(channel, 0, (int) Math.min(size, HEADER_SIZE)), size);
+            ByteBuffer metadata = read(channel, header.metadataOffset, header.metadataLength);
+            ByteBuffer index = read(channel, header.indexOffset, header.indexLength());
+            ByteBuffer[] profiles = new ByteBuffer[header.diveCount];
+            for (int i = 0; i < profiles.length; i++) {
+                long offset = header.checkedOffset(index.getLong(i * INDEX_ENTRY_SIZE));
+                int length = header.checkedLength(offset, index.getInt(i * INDEX_ENTRY_SIZE + 8));
+                if (length > 0) {
+                    profiles[i] = read(channel, offset, length);
+                }
+            }
+            return new BinaryLogbookFile(metadata, profiles);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * open a container held in memory, the profiles are slices of the data.
+     * @param data the container, from its position to its limit.
+     * @return the opened container.
+     * @throws IOException if the data is not a binary logbook.
+     */
+    public static BinaryLogbookFile wrap(ByteBuffer data) throws IOException {
+        ByteBuffer buffer = data.slice();
+        Header header = new Header(buffer, buffer.limit());
+        ByteBuffer metadata = slice(buffer, header.metadataOffset, header.metadataLength);
+        ByteBuffer index = slice(buffer, header.indexOffset, header.indexLength());
+        ByteBuffer[] profiles = new ByteBuffer[header.diveCount];
+        for (int i = 0; i < profiles.length; i++) {
+            long offset = header.checkedOffset(index.getLong(i * INDEX_ENTRY_SIZE));
+            int length = header.checkedLength(offset, index.getInt(i * INDEX_ENTRY_SIZE + 8));
+            if (length > 0) {
+                profiles[i] = slice(buffer, offset, length);
+            }
+        }
+        return new BinaryLogbookFile(metadata, profiles);
+    }
+
+    /**
+     * @return the logbook XML without profiles, to be parsed by the regular loaders.
+     */
+    public InputStream getMetadataStream() {
+        if (metadata.hasArray()) {
+            return new ByteArrayInputStream(metadata.array(), metadata.arrayOffset() + metadata.position(), metadata.remaining());
+        }
+        byte[] b = new byte[metadata.remaining()];
+        metadata.duplicate().get(b);
+        return new ByteArrayInputStream(b);
+    }
+
+    /**
+     * hand the encoded profiles over to the dives of the logbook loaded from {@link #getMetadataStream()}.
+     * @param logbook the logbook loaded from this file.
+     * @throws IOException if the index does not match the logbook.
+     */
+    public void attachProfiles(JDiveLog logbook) throws IOException {
+        if (logbook.getDives().size() + logbook.getIgnoredDives().size() != profiles.length) {
+            throw new IOException("dive index does not match logbook"); //$NON-NLS-1$
+        }
+        int i = 0;
+        Iterator<JDive> it = allDives(logbook).iterator();
+        while (it.hasNext()) {
+            JDive jdive = it.next();
+            if (profiles[i] != null) {
+                jdive.setEncodedDive(profiles[i]);
+            }
+            i++;
+        }
+    }
+
+    /**
+     * write a logbook as binary container.
+     * @param logbook the logbook to write.
+     * @param file the target file.
+     * @throws IOException on write errors.
+     */
+    public static void write(JDiveLog logbook, File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            write(logbook, channel, 0);
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * write a logbook as binary container into a channel, without forcing it to disk.
+     * @param logbook the logbook to write.
+     * @param channel the target channel.
+     * @param base the position of the container in the channel.
+     * @return the position after the end of the container.
+     * @throws IOException on write errors.
+     */
+    public static long write(JDiveLog logbook, FileChannel channel, long base) throws IOException {
+        channel.position(base + HEADER_SIZE);
+        OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024);
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        w.write("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n"); //$NON-NLS-1$
+        logbook.write(w, false);
+        w.flush();
+        long metadataEnd = channel.position() - base;
+
+        ArrayList<JDive> dives = allDives(logbook);
+        long[] offsets = new long[dives.size()];
+        int[] lengths = new int[dives.size()];
+        long position = metadataEnd;
+        for (int i = 0; i < dives.size(); i++) {
+            JDive jdive = dives.get(i);
+            ByteBuffer encoded = jdive.getEncodedDive();
+            offsets[i] = position;
+            if (encoded != null) {
+                // profile has never been opened, copy it over without decoding
+                byte[] b = new byte[encoded.remaining()];
+                encoded.duplicate().get(b);
+                lengths[i] = b.length;
+                out.write(b);
+            } else if (jdive.getDive() != null) {
+                byte[] b = ProfileCodec.encode(jdive.getDive());
+                lengths[i] = b.length;
+                out.write(b);
+            }
+            position += lengths[i];
+        }
+        out.flush();
+
+        ByteBuffer index = ByteBuffer.allocate(dives.size() * INDEX_ENTRY_SIZE);
+        for (int i = 0; i < dives.size(); i++) {
+            index.putLong(offsets[i]);
+            index.putInt(lengths[i]);
+        }
+        index.flip();
+        writeFully(channel, index, base + position);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(FORMAT_VERSION);
+        header.putLong(HEADER_SIZE);
+        header.putInt((int) (metadataEnd - HEADER_SIZE));
+        header.putLong(position);
+        header.putInt(dives.size());
+        header.flip();
+        writeFully(channel, header, base);
+        return base + position + index.limit();
+    }
+
+    private static ArrayList<JDive> allDives(JDiveLog logbook) {
+        ArrayList<JDive> dives = new ArrayList<JDive>(logbook.getDives().size() + logbook.getIgnoredDives().size());
+        dives.addAll(logbook.getDives());
+        dives.addAll(logbook.getIgnoredDives());
+        return dives;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            position += channel.write(buf, position);
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, position + buf.position());
+            if (n < 0) {
+                throw new IOException("corrupt binary logbook"); //$NON-NLS-1$
+            }
+        }
+        buf.flip();
+        return buf;
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, long offset, int length) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.position((int) offset);
+        slice.limit((int) offset + length);
+        return slice.slice();
+    }
+
+    /**
+     * the fixed header, checked against the size of the container.
+     */
+    private static class Header {
+        private final long size;
+        private final long metadataOffset;
+        private final int metadataLength;
+        private final long indexOffset;
+        private final int diveCount;
+
+        public Header(ByteBuffer buffer, long size) throws IOException {
+            this.size = size;
+            if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw new IOException("not a binary logbook"); //$NON-NLS-1$
+            }
+            int version = buffer.getInt(4);
+            if (version != FORMAT_VERSION) {
+                throw new IOException("unsupported binary logbook version " + version); //$NON-NLS-1$
+            }
+            metadataOffset = checkedOffset(buffer.getLong(8));
+            metadataLength = checkedLength(metadataOffset, buffer.getInt(16));
+            indexOffset = checkedOffset(buffer.getLong(20));
+            diveCount = buffer.getInt(28);
+            if (diveCount < 0 || diveCount > (size - indexOffset) / INDEX_ENTRY_SIZE) {
+                throw new IOException("corrupt binary logbook"); //$NON-NLS-1$
+            }
+        }
+
+        public int indexLength() {
+            return diveCount * INDEX_ENTRY_SIZE;
+        }
+
+        public long checkedOffset(long offset) throws IOException {
+            if (offset < 0 || offset > size) {
+                throw new IOException("corrupt binary logbook"); //$NON-NLS-1$
+            }
+            return offset;
+        }
+
+        public int checkedLength(long offset, int length) throws IOException {
+            if (length < 0 || length > size - offset) {
+                throw new IOException("corrupt binary logbook"); //$NON-NLS-1$
+            }
+            return length;
+        }
+    }
+
+}
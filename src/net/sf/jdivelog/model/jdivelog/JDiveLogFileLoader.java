@@ -45,12 +45,16 @@ public class JDiveLogFileLoader {
 	public void load() {
         CommandLoadFile cmd = new CommandLoadFile(mainWindow, file, true, this);
         CommandManager.getInstance().execute(cmd);
-        ImportWindow iw = new ImportWindow(mainWindow, import_logbook);
-        iw.setVisible(true);    		
 	}
 	
-	public void setImport_logbook(JDiveLog import_logbook) {
+	/**
+	 * show the import window, called by the command when the file has been loaded.
+	 * @param import_logbook the loaded logbook.
+	 */
+	public void loaded(JDiveLog import_logbook) {
 		this.import_logbook = import_logbook;
+		ImportWindow iw = new ImportWindow(mainWindow, import_logbook);
+		iw.setVisible(true);
 	}
 
 }
@@ -0,0 +1,269 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: ProfileCodec.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.model.jdivelog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+
+import net.sf.jdivelog.model.udcf.Alarm;
+import net.sf.jdivelog.model.udcf.Cns;
+import net.sf.jdivelog.model.udcf.DecoInfo;
+import net.sf.jdivelog.model.udcf.Delta;
+import net.sf.jdivelog.model.udcf.Depth;
+import net.sf.jdivelog.model.udcf.Dive;
+import net.sf.jdivelog.model.udcf.Gas;
+import net.sf.jdivelog.model.udcf.PPO2;
+import net.sf.jdivelog.model.udcf.Sample;
+import net.sf.jdivelog.model.udcf.SetpointSwitch;
+import net.sf.jdivelog.model.udcf.Switch;
+import net.sf.jdivelog.model.udcf.Temperature;
+import net.sf.jdivelog.model.udcf.Time;
+
+/**
+ * Binary encoding of a udcf dive profile as used by the profile section of
+ * {@link BinaryLogbookFile}. Every value of the XML representation is kept,
+ * so encoding and decoding is lossless. All numbers are big endian.
+ */
+public class ProfileCodec {
+
+    private static final int NULL_LENGTH = -1;
+
+    private ProfileCodec() {
+    }
+
+    /**
+     * encode a dive.
+     * @param dive the dive to encode.
+     * @return the encoded dive.
+     * @throws IOException on an unknown sample type.
+     */
+    public static byte[] encode(Dive dive) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        Date date = dive.getDate();
+        out.writeBoolean(date != null);
+        if (date != null) {
+            out.writeLong(date.getTime());
+        }
+        writeString(out, dive.getSurfaceinterval());
+        writeDouble(out, dive.getTemperature());
+        writeDouble(out, dive.getSurfaceTemperature());
+        writeDouble(out, dive.getDensity());
+        writeDouble(out, dive.getAltitude());
+        out.writeInt(dive.getMode());
+        ArrayList<Gas> gases = dive.getGases();
+        if (gases == null) {
+            out.writeInt(NULL_LENGTH);
+        } else {
+            out.writeInt(gases.size());
+            Iterator<Gas> git = gases.iterator();
+            while (git.hasNext()) {
+                Gas gas = git.next();
+                writeString(out, gas.getName());
+                writeDouble(out, gas.getTankvolume());
+                writeDouble(out, gas.getPstart());
+                writeDouble(out, gas.getPend());
+                writeDouble(out, gas.getOxygen());
+                writeDouble(out, gas.getNitrogen());
+                writeDouble(out, gas.getHelium());
+            }
+        }
+        int sampleCount = dive.getSampleCount();
+        if (!dive.hasSamples()) {
+            out.writeInt(NULL_LENGTH);
+        } else {
+            out.writeInt(sampleCount);
+            for (int i = 0; i < sampleCount; i++) {
+                writeSample(out, dive.getSample(i));
+            }
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * decode a dive.
+     * @param buf buffer positioned at the start of an encoded dive.
+     * @return the decoded dive.
+     * @throws IOException on an unknown sample type.
+     */
+    public static Dive decode(ByteBuffer buf) throws IOException {
+        Dive dive = new Dive();
+        if (buf.get() != 0) {
+            dive.setDate(new Date(buf.getLong()));
+        }
+        dive.setSurfaceinterval(readString(buf));
+        dive.setTemperature(readDouble(buf));
+        dive.setSurfaceTemperature(readDouble(buf));
+        dive.setDensity(readDouble(buf));
+        dive.setAltitude(readDouble(buf));
+        dive.setMode(buf.getInt());
+        int gasCount = buf.getInt();
+        if (gasCount == NULL_LENGTH) {
+            dive.setGases(null);
+        } else {
+            ArrayList<Gas> gases = new ArrayList<Gas>(gasCount);
+            for (int i = 0; i < gasCount; i++) {
+                Gas gas = new Gas();
+                gas.setName(readString(buf));
+                gas.setTankvolume(readDouble(buf));
+                gas.setPstart(readDouble(buf));
+                gas.setPend(readDouble(buf));
+                gas.setOxygen(readDouble(buf));
+                gas.setNitrogen(readDouble(buf));
+                gas.setHelium(readDouble(buf));
+                gases.add(gas);
+            }
+            dive.setGases(gases);
+        }
+        int sampleCount = buf.getInt();
+        if (sampleCount == 0) {
+            dive.setSamples(new ArrayList<Sample>());
+        }
+        for (int i = 0; i < sampleCount; i++) {
+            dive.addSample(readSample(buf));
+        }
+        return dive;
+    }
+
+    private static void writeSample(DataOutputStream out, Sample sample) throws IOException {
+        int type = sample.getType();
+        out.writeByte(type);
+        switch (type) {
+        case Sample.TYPE_DELTA:
+        case Sample.TYPE_DEPTH:
+        case Sample.TYPE_TIME:
+        case Sample.TYPE_TEMPERATURE:
+        case Sample.TYPE_SETPOINT_SWITCH:
+        case Sample.TYPE_CNS:
+            writeDouble(out, (Double) sample.getValue());
+            break;
+        case Sample.TYPE_SWITCH:
+        case Sample.TYPE_ALARM:
+            writeString(out, (String) sample.getValue());
+            break;
+        case Sample.TYPE_DECO:
+            DecoInfo deco = (DecoInfo) sample;
+            writeDouble(out, deco.getValue());
+            writeDouble(out, deco.getTfs());
+            writeDouble(out, deco.getTts());
+            break;
+        case Sample.TYPE_PPO2:
+            PPO2 ppo2 = (PPO2) sample;
+            writeString(out, ppo2.getSensor());
+            writeDouble(out, ppo2.getValue());
+            break;
+        default:
+            throw new IOException("unknown sample type " + type); //$NON-NLS-1$
+        }
+    }
+
+    private static Sample readSample(ByteBuffer buf) throws IOException {
+        int type = buf.get();
+        switch (type) {
+        case Sample.TYPE_DELTA:
+            Delta delta = new Delta();
+            delta.setValue(readDouble(buf));
+            return delta;
+        case Sample.TYPE_DEPTH:
+            Depth depth = new Depth();
+            depth.setValue(readDouble(buf));
+            return depth;
+        case Sample.TYPE_TIME:
+            Time time = new Time();
+            time.setValue(readDouble(buf));
+            return time;
+        case Sample.TYPE_TEMPERATURE:
+            Temperature temperature = new Temperature();
+            temperature.setValue(readDouble(buf));
+            return temperature;
+        case Sample.TYPE_SETPOINT_SWITCH:
+            SetpointSwitch setpoint = new SetpointSwitch();
+            setpoint.setValue(readDouble(buf));
+            return setpoint;
+        case Sample.TYPE_CNS:
+            Cns cns = new Cns();
+            cns.setValue(readDouble(buf));
+            return cns;
+        case Sample.TYPE_SWITCH:
+            Switch s = new Switch();
+            s.setValue(readString(buf));
+            return s;
+        case Sample.TYPE_ALARM:
+            Alarm alarm = new Alarm();
+            alarm.setValue(readString(buf));
+            return alarm;
+        case Sample.TYPE_DECO:
+            DecoInfo deco = new DecoInfo();
+            deco.setValue(readDouble(buf));
+            deco.setTfs(readDouble(buf));
+            deco.setTts(readDouble(buf));
+            return deco;
+        case Sample.TYPE_PPO2:
+            PPO2 ppo2 = new PPO2();
+            ppo2.setSensor(readString(buf));
+            ppo2.setValue(readDouble(buf));
+            return ppo2;
+        default:
+            throw new IOException("unknown sample type " + type); //$NON-NLS-1$
+        }
+    }
+
+    private static void writeDouble(DataOutputStream out, Double value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeDouble(value.doubleValue());
+        }
+    }
+
+    private static Double readDouble(ByteBuffer buf) {
+        if (buf.get() == 0) {
+            return null;
+        }
+        return Double.valueOf(buf.getDouble());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+        } else {
+            byte[] b = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(b.length);
+            out.write(b);
+        }
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int length = buf.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] b = new byte[length];
+        buf.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+}
@@ -22,11 +22,12 @@
 package net.sf.jdivelog.model.memomouse;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.Collection;
 
 import net.sf.jdivelog.gui.DiveImportWindow;
+import net.sf.jdivelog.gui.FileImport;
 import net.sf.jdivelog.gui.MainWindow;
 import net.sf.jdivelog.gui.resources.Messages;
 import net.sf.jdivelog.model.JDive;
@@ -40,21 +41,19 @@ import net.sf.jdivelog.model.MemoMouseAdapter;
  * @version $Revision: 1.10 $
  */
 public class MemoMouseFileLoader {
-    private static final Logger LOGGER = Logger
-        .getLogger(MemoMouseFileLoader.class.getName());
-
     public MemoMouseFileLoader(MainWindow mainWindow, File[] files,
-        int timeAdjustment) {
-        ArrayList<JDive> dives = new ArrayList<JDive>();
-
-        for (int i = 0; i < files.length; i++) {
-            try {
-                dives.addAll(new MemoMouseAdapter(new MemoMouseData(files[i],
-                    timeAdjustment)));
-            }
-            catch (Exception e) {
-                LOGGER.log(Level.SEVERE, "failed to load MemoMouse file", e);
-            }
+        final int timeAdjustment) {
+        ArrayList<JDive> dives = FileImport.load(mainWindow, files,
+            new FileImport.Decoder() {
+                public Collection<JDive> decode(File file, byte[] data)
+                    throws IOException {
+                    return new MemoMouseAdapter(new MemoMouseData(data,
+                        timeAdjustment));
+                }
+            });
+        if (dives == null) {
+            // cancelled
+            return;
         }
 
         // open the dive import window to mark the dives for import
@@ -21,21 +21,17 @@
  */
 package net.sf.jdivelog.model.smart;
 
-import java.io.BufferedInputStream;
-import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collection;
 import java.util.Properties;
-import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import net.sf.jdivelog.ci.SmartComputerType;
 import net.sf.jdivelog.ci.SmartInterface;
 import net.sf.jdivelog.gui.DiveImportWindow;
+import net.sf.jdivelog.gui.FileImport;
 import net.sf.jdivelog.gui.MainWindow;
 import net.sf.jdivelog.gui.resources.Messages;
 import net.sf.jdivelog.model.SmartAdapter;
@@ -52,54 +48,22 @@ public class SmartFileLoader {
     private static final Logger LOGGER = Logger.getLogger(SmartFileLoader.class
             .getName());
 
-    private ArrayList<JDive> diveToAdd = new ArrayList<JDive>();
-
     public SmartFileLoader(MainWindow mainWindow, File[] files) {
-        DataInputStream in = null;
-
-        for (int i = 0; i < files.length; i++) {
-            try {
-                in = new DataInputStream(new BufferedInputStream(
-                        new FileInputStream(files[i])));
-
-                int fileLength = (int) files[i].length();
-                byte[] read_data = new byte[fileLength];
-
-                for (int index = 0; index < read_data.length; index++) {
-                    read_data[index] = (byte) in.read();
-                }
-
-                Properties properties = mainWindow.getLogBook()
-                        .getComputerSettings();
-
-                if (properties != null) {
-                    String model = properties
-                            .getProperty(SmartInterface.PROPERTY.COMPUTER_MODEL
-                                    .toString());
-
-                    if (model != null) {
-                        SmartComputerType type = SmartComputerType
-                                .getFromIdentifier(Integer.parseInt(model));
-                        TreeSet<JDive> dives = new SmartAdapter(new SmartData(
-                                type, read_data));
-                        Iterator<JDive> iterator = dives.iterator();
-
-                        while (iterator.hasNext()) {
-                            diveToAdd.add((JDive) iterator.next());
+        ArrayList<JDive> diveToAdd = new ArrayList<JDive>();
+        final SmartComputerType type = getComputerType(mainWindow);
+
+        if (type != null) {
+            diveToAdd = FileImport.load(mainWindow, files,
+                    new FileImport.Decoder() {
+                        public Collection<JDive> decode(File file,
+                                byte[] read_data) {
+                            return new SmartAdapter(new SmartData(type,
+                                    read_data));
                         }
-                    }
-                } else {
-                    LOGGER.log(Level.SEVERE, "failed to read computer settings");
-                }
-            } catch (Exception e) {
-                LOGGER.log(Level.SEVERE, "failed to load Uwatec Smart file", e);
-            } finally {
-                if (in != null) {
-                    try {
-                        in.close();
-                    } catch (IOException e) {
-                    }
-                }
+                    });
+            if (diveToAdd == null) {
+                // cancelled
+                return;
             }
         }
 
@@ -109,4 +73,29 @@ public class SmartFileLoader {
 
         daw.setVisible(true);
     }
+
+    /**
+     * @return the computer type of the settings, <code>null</code> if it is
+     *         not configured.
+     */
+    private static SmartComputerType getComputerType(MainWindow mainWindow) {
+        Properties properties = mainWindow.getLogBook().getComputerSettings();
+
+        if (properties == null) {
+            LOGGER.log(Level.SEVERE, "failed to read computer settings");
+            return null;
+        }
+        String model = properties
+                .getProperty(SmartInterface.PROPERTY.COMPUTER_MODEL.toString());
+
+        if (model == null) {
+            return null;
+        }
+        try {
+            return SmartComputerType.getFromIdentifier(Integer.parseInt(model));
+        } catch (NumberFormatException e) {
+            LOGGER.log(Level.SEVERE, "invalid computer model " + model, e);
+            return null;
+        }
+    }
 }
@@ -21,17 +21,13 @@
  */
 package net.sf.jdivelog.model.sri;
 
-import java.io.BufferedInputStream;
-import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
 import java.util.ArrayList;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.Collection;
 
 import net.sf.jdivelog.ci.sri.format.DiveLogParser;
 import net.sf.jdivelog.gui.DiveImportWindow;
+import net.sf.jdivelog.gui.FileImport;
 import net.sf.jdivelog.gui.MainWindow;
 import net.sf.jdivelog.gui.resources.Messages;
 import net.sf.jdivelog.model.JDive;
@@ -45,26 +41,17 @@ import net.sf.jdivelog.model.PredatorAdapter;
  * @version $Revision: 1.10 $
  */
 public class PredatorFileLoader {
-    private static final Logger LOGGER = Logger
-            .getLogger(PredatorFileLoader.class.getName());
-
-    private ArrayList<JDive> dives = new ArrayList<JDive>();
-
     public PredatorFileLoader(MainWindow mainWindow, File[] files) {
         final DiveLogParser parser = new DiveLogParser();
-
-        for (int i = 0; i < files.length; i++) {
-            try {
-                final DataInputStream in = new DataInputStream(
-                        new BufferedInputStream(new FileInputStream(files[i])));
-                final byte[] dump = new byte[(int) files[i].length()];
-
-                in.read(dump);
-                dives.addAll(new PredatorAdapter(parser.getDiveLogs(dump), null));
-                in.close();
-            } catch (IOException e) {
-                LOGGER.log(Level.SEVERE, "failed to load Predator file", e);
-            }
+        ArrayList<JDive> dives = FileImport.load(mainWindow, files,
+                new FileImport.Decoder() {
+                    public Collection<JDive> decode(File file, byte[] dump) {
+                        return new PredatorAdapter(parser.getDiveLogs(dump), null);
+                    }
+                });
+        if (dives == null) {
+            // cancelled
+            return;
         }
 
         // open the diveImportDataTrak window to mark the dives for import
@@ -53,8 +53,44 @@ public class Dive implements Comparable<Dive> {
     
     private int mode;
     
+    /** samples as objects, only set once they have been requested by {@link #getSamples()} */
     private ArrayList<Sample> samples;
+
+    /** compact sample storage, used as long as nobody asked for the sample objects */
+    private SampleColumns columns;
         
+    /**
+     * @return a copy of the dive sharing nothing that can be changed, the
+     * samples of the copy are kept in the compact storage.
+     */
+    public Dive deepClone() {
+        Dive copy = new Dive();
+        copy.date = date == null ? null : new Date(date.getTime());
+        copy.surfaceinterval = surfaceinterval;
+        copy.temperature = temperature;
+        copy.surfaceTemperature = surfaceTemperature;
+        copy.density = density;
+        copy.altitude = altitude;
+        if (gases == null) {
+            copy.gases = null;
+        } else {
+            copy.gases = new ArrayList<Gas>(gases.size());
+            for (Gas gas : gases) {
+                copy.gases.add(gas.deepClone());
+            }
+        }
+        copy.mode = mode;
+        if (columns != null) {
+            copy.columns = columns.copy();
+        } else if (samples != null) {
+            copy.columns = new SampleColumns(samples.size());
+            for (Sample sample : samples) {
+                copy.columns.add(sample);
+            }
+        }
+        return copy;
+    }
+
     public void addGas(Gas gas) {
         if (gases == null) {
             gases = new ArrayList<Gas>();
@@ -69,17 +105,66 @@ public class Dive implements Comparable<Dive> {
     }
     
     public void addSample(Sample sample) {
-        if (samples == null) {
-            samples = new ArrayList<Sample>();
+        if (samples != null) {
+            samples.add(sample);
+        } else {
+            if (columns == null) {
+                columns = new SampleColumns();
+            }
+            columns.add(sample);
         }
-        samples.add(sample);
     }
     
     public void removeSample(Sample sample) {
-        if (samples != null) {
+        if (getSamples() != null) {
             samples.remove(sample);
         }
     }
+
+    /**
+     * @return <code>true</code> if samples have been added or set, even if there are none left.
+     */
+    public boolean hasSamples() {
+        return samples != null || columns != null;
+    }
+
+    /**
+     * add copies of all samples of another dive.
+     * @param other the dive to take the samples from.
+     */
+    public void appendSamples(Dive other) {
+        int size = other.getSampleCount();
+        for (int i = 0; i < size; i++) {
+            addSample(other.getSample(i));
+        }
+    }
+
+    /**
+     * @return the number of samples of this dive.
+     */
+    public int getSampleCount() {
+        if (samples != null) {
+            return samples.size();
+        }
+        return columns == null ? 0 : columns.size();
+    }
+
+    /**
+     * Get a single sample without turning the compact sample storage into
+     * objects. As long as {@link #getSamples()} has not been called, the
+     * returned sample is a copy and changing it has no effect on the dive.
+     * @param index index of the sample.
+     * @return the sample.
+     */
+    public Sample getSample(int index) {
+        if (samples != null) {
+            return samples.get(index);
+        }
+        if (columns == null || index >= columns.size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + getSampleCount());
+        }
+        return columns.sampleAt(index);
+    }
     
     public void setTimeDepthMode() {
         mode = MODE_TIME;
@@ -226,9 +311,9 @@ public class Dive implements Comparable<Dive> {
             sb.append("<DELTAMODE/>");
         }
         sb.append("<SAMPLES>");
-        Iterator<Sample> sit = samples.iterator();
-        while (sit.hasNext()) {
-            sb.append(sit.next().toString());
+        int count = getSampleCount();
+        for (int i = 0; i < count; i++) {
+            sb.append(getSample(i).toString());
         }
         sb.append("</SAMPLES>");
         sb.append("</DIVE>");
@@ -310,11 +395,106 @@ public class Dive implements Comparable<Dive> {
     public void setMode(int mode) {
         this.mode = mode;
     }
+    /**
+     * Get the samples as objects. Callers may change the list and the samples,
+     * so from now on the objects are kept instead of the compact storage.
+     * Read-only access should use {@link #getSampleCount()} and {@link #getSample(int)}.
+     * @return the samples, <code>null</code> if no sample has been added yet.
+     */
     public ArrayList<Sample> getSamples() {
+        if (samples == null && columns != null) {
+            samples = columns.toList();
+            columns = null;
+        }
         return samples;
     }
     public void setSamples(ArrayList<Sample> samples) {
         this.samples = samples;
+        this.columns = null;
+    }
+
+    /**
+     * multiply the values of all depth samples.
+     * @param factor the scale factor.
+     */
+    public void scaleDepths(double factor) {
+        scale(Sample.TYPE_DEPTH, factor);
+    }
+
+    /**
+     * multiply the values of all delta samples.
+     * @param factor the scale factor.
+     */
+    public void scaleDeltas(double factor) {
+        scale(Sample.TYPE_DELTA, factor);
+    }
+
+    /**
+     * @return the lowest temperature sample, <code>null</code> if there is none.
+     */
+    public Double getMinTemperature() {
+        return extreme(Sample.TYPE_TEMPERATURE, false);
+    }
+
+    /**
+     * @return the highest temperature sample, <code>null</code> if there is none.
+     */
+    public Double getMaxTemperature() {
+        return extreme(Sample.TYPE_TEMPERATURE, true);
+    }
+
+    private void scale(int type, double factor) {
+        int size = getSampleCount();
+        for (int i = 0; i < size; i++) {
+            if (typeAt(i) == type) {
+                double val = valueAt(i);
+                if (!Double.isNaN(val)) {
+                    if (samples == null) {
+                        columns.setValueAt(i, factor * val);
+                    } else if (type == Sample.TYPE_DEPTH) {
+                        ((Depth) samples.get(i)).setValue(Double.valueOf(factor * val));
+                    } else {
+                        ((Delta) samples.get(i)).setValue(Double.valueOf(factor * val));
+                    }
+                }
+            }
+        }
+    }
+
+    private Double extreme(int type, boolean max) {
+        double result = Double.NaN;
+        int size = getSampleCount();
+        for (int i = 0; i < size; i++) {
+            if (typeAt(i) == type) {
+                double val = valueAt(i);
+                if (!Double.isNaN(val) && (Double.isNaN(result) || (max ? val > result : val < result))) {
+                    result = val;
+                }
+            }
+        }
+        return Double.isNaN(result) ? null : Double.valueOf(result);
+    }
+
+    /**
+     * type of a sample, read from whichever storage is in use.
+     */
+    private int typeAt(int index) {
+        if (samples != null) {
+            return samples.get(index).getType();
+        }
+        return columns.typeAt(index);
+    }
+
+    /**
+     * numeric value of a sample, read from whichever storage is in use.
+     * @return the value, <code>NaN</code> if the sample has no numeric value.
+     */
+    private double valueAt(int index) {
+        if (samples != null) {
+            Object value = samples.get(index).getValue();
+            return value instanceof Double ? ((Double) value).doubleValue() : Double.NaN;
+        }
+        return columns.valueAt(index);
     }
     public String getSurfaceinterval() {
         return surfaceinterval;
@@ -350,50 +530,54 @@ public class Dive implements Comparable<Dive> {
     }
 
     public Double getMaxDepth() {
-        Double max = null;
-        if (getSamples() == null) {
+        if (samples == null && columns == null) {
             return null;
         }
-        Iterator<Sample> it = getSamples().iterator();
-        while (it.hasNext()) {
-            Object o = it.next();
-            if (o instanceof Depth) {
-                Depth d = (Depth)o;
-                Double val = d.getValue();
-                if (val != null) {
-                    if (max == null || max.doubleValue() < val.doubleValue()) {
-                        max = val;
-                    }
+        double max = Double.NaN;
+        int size = getSampleCount();
+        for (int i = 0; i < size; i++) {
+            if (typeAt(i) == Sample.TYPE_DEPTH) {
+                double val = valueAt(i);
+                if (!Double.isNaN(val) && (Double.isNaN(max) || max < val)) {
+                    max = val;
                 }
             }
         }
-        return max;
+        return Double.isNaN(max) ? null : Double.valueOf(max);
     }
     
     public void addSampleTimeOffset(Double offset) {
-        Iterator<Sample> it = getSamples().iterator();
-        while (it.hasNext()) {
-            Object o = it.next();
-            if (o instanceof Time) {
-                Time d = (Time)o;
-                d.setValue(d.getValue() + offset);
+        if (samples != null) {
+            Iterator<Sample> it = samples.iterator();
+            while (it.hasNext()) {
+                Object o = it.next();
+                if (o instanceof Time) {
+                    Time d = (Time)o;
+                    d.setValue(d.getValue() + offset);
+                }
+            }
+        } else if (columns != null) {
+            double off = offset.doubleValue();
+            int size = columns.size();
+            for (int i = 0; i < size; i++) {
+                if (columns.typeAt(i) == Sample.TYPE_TIME) {
+                    columns.setValueAt(i, columns.valueAt(i) + off);
+                }
             }
         }
     }
 
     public Double getAverageDepth() {
-        double average = 0;
-        int i = 0;
-        if (getSamples() == null) {
+        if (samples == null && columns == null) {
             return null;
         }
-        Iterator<Sample> it = getSamples().iterator();
-        while (it.hasNext()) {
-            Object o = it.next();
-            if (o instanceof Depth) {
-                Depth d = (Depth)o;
-                Double val = d.getValue();
-                if (val != null) {
+        double average = 0;
+        int i = 0;
+        int size = getSampleCount();
+        for (int j = 0; j < size; j++) {
+            if (typeAt(j) == Sample.TYPE_DEPTH) {
+                double val = valueAt(j);
+                if (!Double.isNaN(val)) {
                     average = average + val;
                     i++;
                 }
@@ -403,40 +587,34 @@ public class Dive implements Comparable<Dive> {
     }
 
     public Double getDuration() {
-        Double duration = null;
-        if (getSamples() != null) {
-            if (getMode() == MODE_DELTA) {
-                long units = 0;
-                double factor = 0;
-                long counter = 0;
-                Iterator<Sample> it = getSamples().iterator();
-                while (it.hasNext()) {
-                    Sample s = it.next();
-                    if (s instanceof Delta) {
-                        units += factor * counter;
-                        counter = 0;
-                        Delta d = (Delta)s;
-                        factor = (d.getValue()).doubleValue();
-                    } else if (s instanceof Depth) {
-                        counter++;
-                    }
-                }
-                units += factor*counter;
-                duration = new Double(units);
-            } else {
-                Iterator<Sample> it = getSamples().iterator();
-                Double time = null;
-                while (it.hasNext()) {
-                    Sample s = it.next();
-                    if (s instanceof Time) {
-                        Time t = (Time)s;
-                        time = t.getValue();
-                    }
+        if (samples == null && columns == null) {
+            return null;
+        }
+        int size = getSampleCount();
+        if (getMode() == MODE_DELTA) {
+            long units = 0;
+            double factor = 0;
+            long counter = 0;
+            for (int i = 0; i < size; i++) {
+                int type = typeAt(i);
+                if (type == Sample.TYPE_DELTA) {
+                    units += factor * counter;
+                    counter = 0;
+                    factor = valueAt(i);
+                } else if (type == Sample.TYPE_DEPTH) {
+                    counter++;
                 }
-                duration = time;
+            }
+            units += factor*counter;
+            return Double.valueOf(units);
+        }
+        for (int i = size - 1; i >= 0; i--) {
+            if (typeAt(i) == Sample.TYPE_TIME) {
+                double time = valueAt(i);
+                return Double.isNaN(time) ? null : Double.valueOf(time);
             }
         }
-        return duration;
+        return null;
     }
 
     public int compareTo(Dive o) {
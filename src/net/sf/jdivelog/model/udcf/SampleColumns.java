@@ -0,0 +1,249 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: SampleColumns.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.model.udcf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Description: Compact storage of the samples of a dive.
+ * <p>
+ * Every sample is stored as its type and its numeric value in two parallel
+ * primitive arrays, in the order the samples were added, so the udcf sequence
+ * (delta, time, depth, temperature, ...) is preserved exactly. A missing value
+ * is stored as <code>NaN</code>. The names of gas switches, alarms and ppO2
+ * sensors are stored as an index into a small table of the distinct names,
+ * the deco times in two more primitive columns. These columns are only
+ * allocated once a sample needs them.
+ */
+class SampleColumns {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private byte[] types;
+    private double[] values;
+    private int size;
+    /** index into names plus one, 0 for no name */
+    private short[] nameIndexes;
+    private ArrayList<String> names;
+    private double[] tfs;
+    private double[] tts;
+
+    SampleColumns() {
+        this(INITIAL_CAPACITY);
+    }
+
+    SampleColumns(int capacity) {
+        types = new byte[Math.max(capacity, 1)];
+        values = new double[Math.max(capacity, 1)];
+    }
+
+    int size() {
+        return size;
+    }
+
+    int typeAt(int index) {
+        return types[index];
+    }
+
+    /**
+     * @return the value of the sample at the given index, <code>NaN</code> if it has none.
+     */
+    double valueAt(int index) {
+        return values[index];
+    }
+
+    void setValueAt(int index, double value) {
+        values[index] = value;
+    }
+
+    void add(Sample sample) {
+        int type = sample.getType();
+        if (size == types.length) {
+            grow(size * 2);
+        }
+        types[size] = (byte) type;
+        switch (type) {
+        case Sample.TYPE_SWITCH:
+        case Sample.TYPE_ALARM:
+            values[size] = Double.NaN;
+            setName(size, (String) sample.getValue());
+            break;
+        case Sample.TYPE_PPO2:
+            PPO2 ppo2 = (PPO2) sample;
+            values[size] = toPrimitive(ppo2.getValue());
+            setName(size, ppo2.getSensor());
+            break;
+        case Sample.TYPE_DECO:
+            DecoInfo deco = (DecoInfo) sample;
+            values[size] = toPrimitive(deco.getValue());
+            if (deco.getTfs() != null || deco.getTts() != null) {
+                if (tfs == null) {
+                    tfs = newColumn(types.length);
+                    tts = newColumn(types.length);
+                }
+                tfs[size] = toPrimitive(deco.getTfs());
+                tts[size] = toPrimitive(deco.getTts());
+            }
+            break;
+        default:
+            values[size] = toPrimitive((Double) sample.getValue());
+        }
+        size++;
+    }
+
+    private void grow(int capacity) {
+        types = Arrays.copyOf(types, capacity);
+        values = Arrays.copyOf(values, capacity);
+        if (nameIndexes != null) {
+            nameIndexes = Arrays.copyOf(nameIndexes, capacity);
+        }
+        if (tfs != null) {
+            int oldCapacity = tfs.length;
+            tfs = Arrays.copyOf(tfs, capacity);
+            tts = Arrays.copyOf(tts, capacity);
+            Arrays.fill(tfs, oldCapacity, capacity, Double.NaN);
+            Arrays.fill(tts, oldCapacity, capacity, Double.NaN);
+        }
+    }
+
+    private void setName(int index, String name) {
+        if (name == null) {
+            return;
+        }
+        if (nameIndexes == null) {
+            nameIndexes = new short[types.length];
+            names = new ArrayList<String>();
+        }
+        int i = names.indexOf(name);
+        if (i < 0) {
+            i = names.size();
+            names.add(name);
+        }
+        nameIndexes[index] = (short) (i + 1);
+    }
+
+    private String nameAt(int index) {
+        if (nameIndexes == null || nameIndexes[index] == 0) {
+            return null;
+        }
+        return names.get(nameIndexes[index] - 1);
+    }
+
+    private static double[] newColumn(int capacity) {
+        double[] column = new double[capacity];
+        Arrays.fill(column, Double.NaN);
+        return column;
+    }
+
+    /**
+     * create a sample object for the given index. The sample is detached,
+     * changing it does not change the stored value.
+     */
+    Sample sampleAt(int index) {
+        int type = types[index];
+        Double value = toObject(values[index]);
+        switch (type) {
+        case Sample.TYPE_DELTA:
+            Delta delta = new Delta();
+            delta.setValue(value);
+            return delta;
+        case Sample.TYPE_SWITCH:
+            Switch s = new Switch();
+            s.setValue(nameAt(index));
+            return s;
+        case Sample.TYPE_ALARM:
+            Alarm alarm = new Alarm();
+            alarm.setValue(nameAt(index));
+            return alarm;
+        case Sample.TYPE_DEPTH:
+            Depth depth = new Depth();
+            depth.setValue(value);
+            return depth;
+        case Sample.TYPE_TIME:
+            Time time = new Time();
+            time.setValue(value);
+            return time;
+        case Sample.TYPE_TEMPERATURE:
+            Temperature temperature = new Temperature();
+            temperature.setValue(value);
+            return temperature;
+        case Sample.TYPE_DECO:
+            DecoInfo deco = new DecoInfo();
+            deco.setValue(value);
+            if (tfs != null) {
+                deco.setTfs(toObject(tfs[index]));
+                deco.setTts(toObject(tts[index]));
+            }
+            return deco;
+        case Sample.TYPE_PPO2:
+            PPO2 ppo2 = new PPO2();
+            ppo2.setSensor(nameAt(index));
+            ppo2.setValue(value);
+            return ppo2;
+        case Sample.TYPE_SETPOINT_SWITCH:
+            SetpointSwitch setpoint = new SetpointSwitch();
+            setpoint.setValue(value);
+            return setpoint;
+        case Sample.TYPE_CNS:
+            Cns cns = new Cns();
+            cns.setValue(value);
+            return cns;
+        default:
+            throw new IllegalStateException("unknown sample type " + type);
+        }
+    }
+
+    /**
+     * @return an independent copy of the columns.
+     */
+    SampleColumns copy() {
+        SampleColumns copy = new SampleColumns(size);
+        copy.types = Arrays.copyOf(types, Math.max(size, 1));
+        copy.values = Arrays.copyOf(values, Math.max(size, 1));
+        copy.size = size;
+        if (nameIndexes != null) {
+            copy.nameIndexes = Arrays.copyOf(nameIndexes, copy.types.length);
+            copy.names = new ArrayList<String>(names);
+        }
+        if (tfs != null) {
+            copy.tfs = Arrays.copyOf(tfs, copy.types.length);
+            copy.tts = Arrays.copyOf(tts, copy.types.length);
+        }
+        return copy;
+    }
+
+    ArrayList<Sample> toList() {
+        ArrayList<Sample> list = new ArrayList<Sample>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(sampleAt(i));
+        }
+        return list;
+    }
+
+    private static double toPrimitive(Double value) {
+        return value == null ? Double.NaN : value.doubleValue();
+    }
+
+    private static Double toObject(double value) {
+        return Double.isNaN(value) ? null : Double.valueOf(value);
+    }
+
+}
@@ -23,7 +23,6 @@ package net.sf.jdivelog.model.udcf;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.TreeSet;
 
@@ -132,13 +131,7 @@ public class UdcfFileLoader {
 
     private void fixDelta(String units, Dive dive) {
         if (!"si".equals(units)) {
-            ArrayList<Sample> samples = dive.getSamples();
-            for (Sample sample : samples) {
-                if (sample instanceof Delta) {
-                    Delta d = (Delta) sample;
-                    d.setValue(d.getValue() / 60.0);
-                }
-            }
+            dive.scaleDeltas(1 / 60.0);
         }
     }
 
@@ -0,0 +1,170 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: LogbookXMLReader.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.printing;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import net.sf.jdivelog.model.JDive;
+import net.sf.jdivelog.model.JDiveLog;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * Description: Reads a logbook as SAX events, for a
+ * {@link javax.xml.transform.sax.SAXSource} of a report.
+ * <p>
+ * The XML of the logbook is written a part at a time, the elements before
+ * the dives, every single dive and the elements after them, and each part
+ * is parsed into the content handler before the next one is written. So
+ * only the XML of one dive is held in memory and no thread is needed to
+ * write the logbook while the report reads it. The input source given to
+ * {@link #parse(InputSource)} is ignored.
+ */
+public class LogbookXMLReader extends XMLFilterImpl {
+
+    private static final String ROOT = "JDiveLog"; //$NON-NLS-1$
+    private static final String IGNORED_DIVES = "IgnoredDives"; //$NON-NLS-1$
+    private static final String FRAGMENT = "fragment"; //$NON-NLS-1$
+
+    private final JDiveLog logbook;
+
+    public LogbookXMLReader(JDiveLog logbook) {
+        this.logbook = logbook;
+    }
+
+    @Override
+    public void parse(InputSource input) throws SAXException, IOException {
+        ContentHandler handler = getContentHandler();
+        if (handler == null) {
+            return;
+        }
+        XMLReader parser = newParser();
+        parser.setContentHandler(new FragmentHandler(handler));
+        parser.setErrorHandler(getErrorHandler());
+        Attributes noAttributes = new AttributesImpl();
+        StringBuffer sb = new StringBuffer();
+        handler.startDocument();
+        handler.startElement("", ROOT, ROOT, noAttributes); //$NON-NLS-1$
+        logbook.writeHead(sb);
+        parse(parser, sb);
+        for (JDive dive : logbook.getDives()) {
+            dive.write(sb);
+            parse(parser, sb);
+        }
+        if (logbook.getIgnoredDives().size() > 0) {
+            handler.startElement("", IGNORED_DIVES, IGNORED_DIVES, noAttributes); //$NON-NLS-1$
+            for (JDive dive : logbook.getIgnoredDives()) {
+                dive.write(sb);
+                parse(parser, sb);
+            }
+            handler.endElement("", IGNORED_DIVES, IGNORED_DIVES); //$NON-NLS-1$
+        }
+        logbook.writeTail(sb);
+        parse(parser, sb);
+        handler.endElement("", ROOT, ROOT); //$NON-NLS-1$
+        handler.endDocument();
+    }
+
+    @Override
+    public void parse(String systemId) throws SAXException, IOException {
+        parse(new InputSource(systemId));
+    }
+
+    //
+    // private methods
+    //
+
+    /**
+     * parses the elements in the buffer and empties it.
+     */
+    private static void parse(XMLReader parser, StringBuffer sb) throws SAXException, IOException {
+        sb.insert(0, "<" + FRAGMENT + ">"); //$NON-NLS-1$ //$NON-NLS-2$
+        sb.append("</" + FRAGMENT + ">"); //$NON-NLS-1$ //$NON-NLS-2$
+        parser.parse(new InputSource(new StringReader(sb.toString())));
+        sb.setLength(0);
+    }
+
+    private static XMLReader newParser() throws SAXException {
+        try {
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(true);
+            return factory.newSAXParser().getXMLReader();
+        } catch (ParserConfigurationException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    //
+    // inner classes
+    //
+
+    /**
+     * passes the events of a parsed part on, without the document and the
+     * element around the part.
+     */
+    private static class FragmentHandler extends XMLFilterImpl {
+
+        private int depth;
+
+        public FragmentHandler(ContentHandler handler) {
+            setContentHandler(handler);
+        }
+
+        @Override
+        public void setDocumentLocator(Locator locator) {
+            // the locations within a part mean nothing to the report
+        }
+
+        @Override
+        public void startDocument() {
+            depth = 0;
+        }
+
+        @Override
+        public void endDocument() {
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+            if (depth++ > 0) {
+                super.startElement(uri, localName, qName, atts);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            if (--depth > 0) {
+                super.endElement(uri, localName, qName);
+            }
+        }
+    }
+
+}
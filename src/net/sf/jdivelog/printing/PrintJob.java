@@ -21,37 +21,63 @@
  */
 package net.sf.jdivelog.printing;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.StringReader;
-import java.io.Writer;
+import java.io.OutputStream;
 
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.sax.SAXSource;
+
+import net.sf.jdivelog.model.JDiveLog;
 import net.sf.jdivelog.printing.fop.FopUtil;
+import net.sf.jdivelog.printing.report.ProfileUtil;
+
+import org.apache.fop.apps.FOPException;
+import org.apache.fop.apps.Fop;
+import org.xml.sax.InputSource;
 
+/**
+ * Description: Prints a logbook with a report.
+ * <p>
+ * The report reads the logbook as SAX events from a
+ * {@link LogbookXMLReader} and sends the generated FO document as SAX events
+ * directly to FOP. Neither the logbook XML nor the FO document are held in
+ * memory or written to a file as a whole.
+ * <p>
+ * The job runs in the background while the user goes on working, so the
+ * logbook handed to the job has to be a copy, see {@link JDiveLog#copy()}.
+ */
 public class PrintJob {
     
-    private String xmlData;
+    private JDiveLog logbook;
     private Report report;
     private OutputDevice outputDevice;
+    private ProfileUtil profiles;
     
-    public PrintJob(String xmlData, Report report, OutputDevice outDevice) {
-        this.xmlData = xmlData;
+    public PrintJob(JDiveLog logbook, Report report, OutputDevice outDevice) {
+        this.logbook = logbook;
         this.report = report;
         this.outputDevice = outDevice;
+        this.profiles = new ProfileUtil(logbook);
     }
     
     public void execute() {
         try {
-            File tmp = File.createTempFile("jdl", ".fo");
-            Writer bos = new BufferedWriter(new FileWriter(tmp));
-            report.run(new StringReader(xmlData), bos);
-            FopUtil.convert(new BufferedReader(new FileReader(tmp)), outputDevice.getOutputStream(), outputDevice.getExpectedMimeType());
+            OutputStream out = new BufferedOutputStream(outputDevice.getOutputStream());
+            profiles.bind();
+            try {
+                Fop fop = FopUtil.newFop(outputDevice.getExpectedMimeType(), out);
+                report.run(new SAXSource(new LogbookXMLReader(logbook), new InputSource()), new SAXResult(fop.getDefaultHandler()));
+            } finally {
+                ProfileUtil.unbind();
+                out.close();
+            }
         } catch (IOException ioe) {
             throw new RuntimeException(ioe);
+        } catch (FOPException e) {
+            throw new RuntimeException(e);
+        } finally {
+            profiles.release();
         }
     }
 
@@ -21,8 +21,8 @@
  */
 package net.sf.jdivelog.printing;
 
-import java.io.Reader;
-import java.io.Writer;
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
 
 public interface Report {
     
@@ -33,9 +33,9 @@ public interface Report {
 
     /**
      * runs the report
-     * @param in input stream containing logbook as xml
-     * @param out output stream for fo-document
+     * @param in source of the logbook as xml
+     * @param out result for the fo-document, e.g. the SAX handler of FOP
      */
-    public void run(Reader in, Writer out);
+    public void run(Source in, Result out);
 
 }
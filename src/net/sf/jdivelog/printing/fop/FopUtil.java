@@ -21,19 +21,7 @@
  */
 package net.sf.jdivelog.printing.fop;
 
-import java.io.BufferedOutputStream;
-import java.io.IOException;
 import java.io.OutputStream;
-import java.io.Reader;
-
-import javax.xml.transform.Result;
-import javax.xml.transform.Source;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerConfigurationException;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.sax.SAXResult;
-import javax.xml.transform.stream.StreamSource;
 
 import org.apache.fop.apps.FOPException;
 import org.apache.fop.apps.FOUserAgent;
@@ -42,49 +30,26 @@ import org.apache.fop.apps.FopFactory;
 
 public class FopUtil {
 
-    public static void convert(Reader in, OutputStream out, String mimetype) {
-        
-        FopFactory fopFactory = FopFactory.newInstance();
-        FOUserAgent foUserAgent = fopFactory.newFOUserAgent();
+    /** setting up a factory is expensive, it is shared by all print jobs */
+    private static FopFactory fopFactory;
+
+    /**
+     * @param mimetype the output format.
+     * @param out the stream for the output, it is not buffered by FOP.
+     * @return a new FOP instance, the FO document has to be sent to its default handler.
+     */
+    public static Fop newFop(String mimetype, OutputStream out) throws FOPException {
+        FopFactory factory = getFopFactory();
+        FOUserAgent foUserAgent = factory.newFOUserAgent();
         // configure foUserAgent as desired
+        return factory.newFop(mimetype, foUserAgent, out);
+    }
 
-        // Setup output stream.  Note: Using BufferedOutputStream
-        // for performance reasons (helpful with FileOutputStreams).
-        out = new BufferedOutputStream(out);
-
-        try {
-            Fop fop = fopFactory.newFop(mimetype, foUserAgent, out);
-            
-            // Step 3: Setup JAXP using identity transformer
-            TransformerFactory factory = TransformerFactory.newInstance();
-            Transformer transformer = factory.newTransformer(); // identity
-                                                                // transformer
-
-            // Step 4: Setup input and output for XSLT transformation
-            // Setup input stream
-            Source src = new StreamSource(in);
-
-            // Resulting SAX events (the generated FO) must be piped through to
-            // FOP
-            Result res = new SAXResult(fop.getDefaultHandler());
-
-            // Step 5: Start XSLT transformation and FOP processing
-            transformer.transform(src, res);
-
-        } catch (TransformerConfigurationException e) {
-            throw new RuntimeException(e);
-        } catch (FOPException e) {
-            throw new RuntimeException(e);
-        } catch (TransformerException e) {
-            throw new RuntimeException(e);
-        } finally {
-            // Clean-up
-            try {
-                out.close();
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+    private static synchronized FopFactory getFopFactory() {
+        if (fopFactory == null) {
+            fopFactory = FopFactory.newInstance();
         }
+        return fopFactory;
     }
 
 }
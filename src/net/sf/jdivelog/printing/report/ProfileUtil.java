@@ -21,11 +21,23 @@
  */
 package net.sf.jdivelog.printing.report;
 
+import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
 
 import org.apache.batik.ext.awt.image.codec.jpeg.JPEGImageWriter;
 import org.apache.batik.ext.awt.image.spi.ImageWriterParams;
@@ -33,62 +45,225 @@ import org.apache.batik.ext.awt.image.spi.ImageWriterParams;
 import net.sf.jdivelog.gui.DiveProfile;
 import net.sf.jdivelog.model.JDive;
 import net.sf.jdivelog.model.JDiveLog;
+import net.sf.jdivelog.model.ProfileSettings;
 
-
+/**
+ * Description: Profile images for the XSL reports.
+ * <p>
+ * Every print job owns an instance for its logbook. While the job runs the
+ * report, the instance is bound to the thread doing the transformation with
+ * {@link #bind()}, the static methods called by the reports use the instance
+ * bound to their thread, so parallel jobs do not share any state. When the
+ * report asks for the first profile of a size, the profiles of all dives are
+ * rendered in that size on a thread pool, in the order of the dives, so they
+ * are usually ready when the report gets to them. The images are written to
+ * a temporary directory which is deleted by {@link #release()}.
+ */
 public class ProfileUtil {
     
-    private static JDiveLog logbook;
+    private static final Logger LOGGER = Logger.getLogger(ProfileUtil.class.getName());
+
+    private static final ThreadLocal<ProfileUtil> CURRENT = new ThreadLocal<ProfileUtil>();
+
+    private final JDiveLog logbook;
     
-    public static void setLogbook(JDiveLog lb) {
+    private final HashMap<Long, JDive> divesByNumber = new HashMap<Long, JDive>();
+
+    private final HashMap<String, Future<File>> profiles = new HashMap<String, Future<File>>();
+
+    private final HashSet<String> renderedSizes = new HashSet<String>();
+
+    private ExecutorService executor;
+
+    private File tempDir;
+
+    private boolean released = false;
+
+    public ProfileUtil(JDiveLog lb) {
         logbook = lb;
+        for (JDive dive : lb.getDives()) {
+            if (dive.getDiveNumber() != null && !divesByNumber.containsKey(dive.getDiveNumber())) {
+                divesByNumber.put(dive.getDiveNumber(), dive);
+            }
+        }
+    }
+
+    /**
+     * use this instance for the reports transformed by the current thread,
+     * until {@link #unbind()} is called.
+     */
+    public void bind() {
+        CURRENT.set(this);
+    }
+
+    public static void unbind() {
+        CURRENT.remove();
     }
     
+    /**
+     * stop rendering and delete the rendered profiles.
+     */
+    public synchronized void release() {
+        released = true;
+        if (executor != null) {
+            executor.shutdownNow();
+            try {
+                // the images must not be written after the directory has been deleted
+                executor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                LOGGER.warning("interrupted while stopping the profile rendering"); //$NON-NLS-1$
+            }
+            executor = null;
+        }
+        profiles.clear();
+        renderedSizes.clear();
+        if (tempDir != null) {
+            File[] files = tempDir.listFiles();
+            if (files != null) {
+                for (File f : files) {
+                    f.delete();
+                }
+            }
+            if (!tempDir.delete()) {
+                LOGGER.warning("could not delete " + tempDir.getPath()); //$NON-NLS-1$
+            }
+            tempDir = null;
+        }
+    }
+
     public static boolean hasProfile(long num) {
-        JDive dive = getDive(num);
+        JDive dive = current().getDive(num);
         return dive != null && dive.getDive() != null;
     }
     
     public static String getProfile(long num, int width, int height) {
+        Future<File> profile = current().request(num, width, height);
+        try {
+            return profile.get().getAbsolutePath();
+        } catch (InterruptedException e) {
+            throw new RuntimeException("Interrupted while rendering profile!", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error writing profile!", e.getCause());
+        }
+    }
+    
+    //
+    // private methods
+    //
+
+    private static ProfileUtil current() {
+        ProfileUtil util = CURRENT.get();
+        if (util == null) {
+            throw new IllegalStateException("Logbook not set!");
+        }
+        return util;
+    }
+
+    private JDive getDive(long num) {
+        return divesByNumber.get(Long.valueOf(num));
+    }
+
+    private synchronized Future<File> request(long num, int width, int height) {
+        if (released) {
+            throw new IllegalStateException("Print job has finished!");
+        }
         JDive dive = getDive(num);
         if (dive == null) {
             throw new IllegalArgumentException("Dive "+num+" not found!");
         }
-        DiveProfile p = new DiveProfile(logbook.getProfileSettings(), dive);
-        p.setSize(width, height);
-        return writeProfile(p, width, height).getAbsolutePath();
+        Future<File> profile = request(dive, width, height);
+        if (renderedSizes.add(width + "x" + height)) { //$NON-NLS-1$
+            for (JDive d : logbook.getDives()) {
+                if (d.getDive() != null && d == divesByNumber.get(d.getDiveNumber())) {
+                    request(d, width, height);
+                }
+            }
+        }
+        return profile;
     }
-    
-    private static JDive getDive(long num) {
-        if (logbook == null) {
-            throw new IllegalStateException("Logbook not set!");
+
+    private Future<File> request(JDive dive, int width, int height) {
+        String key = dive.getDiveNumber() + ":" + width + "x" + height; //$NON-NLS-1$ //$NON-NLS-2$
+        Future<File> profile = profiles.get(key);
+        if (profile == null) {
+            File file = new File(getTempDir(), "profile_" + dive.getDiveNumber() + "_" + width + "x" + height + ".jpg"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+            profile = getExecutor().submit(new ProfileRenderer(logbook.getProfileSettings(), dive, width, height, file));
+            profiles.put(key, profile);
         }
-        for (JDive dive : logbook.getDives()) {
-            if (Long.valueOf(num).equals(dive.getDiveNumber())) {
-                return dive;
+        return profile;
+    }
+
+    private File getTempDir() {
+        if (tempDir == null) {
+            try {
+                tempDir = File.createTempFile("jdl", "profiles"); //$NON-NLS-1$ //$NON-NLS-2$
+            } catch (IOException e) {
+                throw new RuntimeException("Error creating profile directory!", e);
+            }
+            if (!tempDir.delete() || !tempDir.mkdir()) {
+                throw new RuntimeException("Error creating profile directory " + tempDir.getPath());
             }
         }
-        return null;
+        return tempDir;
     }
-    
-    private static File writeProfile(DiveProfile p, int width, int height) {
-        File file;
-        try {
-            file = File.createTempFile("prof", "jpg");
-        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-        p.paint(img.createGraphics());
-        float quality = 90;
-        BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(file));
-        JPEGImageWriter w = new JPEGImageWriter();
-        ImageWriterParams params = new ImageWriterParams();
-        params.setJPEGQuality(quality / 100.0f, false);
-        w.writeImage(img, out);
-        out.close();
+
+    private ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new RendererThreadFactory());
+        }
+        return executor;
+    }
+
+    //
+    // inner classes
+    //
+
+    private static class ProfileRenderer implements Callable<File> {
+
+        private final ProfileSettings settings;
+        private final JDive dive;
+        private final int width;
+        private final int height;
+        private final File file;
+
+        public ProfileRenderer(ProfileSettings settings, JDive dive, int width, int height, File file) {
+            this.settings = settings;
+            this.dive = dive;
+            this.width = width;
+            this.height = height;
+            this.file = file;
         }
-        catch (IOException e) {
-            throw new RuntimeException("Error writing profile!", e);
+
+        public File call() throws IOException {
+            DiveProfile p = new DiveProfile(settings, dive);
+            p.setSize(width, height);
+            BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = img.createGraphics();
+            p.paint(g);
+            g.dispose();
+            float quality = 90;
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+            try {
+                JPEGImageWriter w = new JPEGImageWriter();
+                ImageWriterParams params = new ImageWriterParams();
+                params.setJPEGQuality(quality / 100.0f, false);
+                w.writeImage(img, out, params);
+            } finally {
+                out.close();
+            }
+            return file;
         }
-        return file;
+    }
 
+    private static class RendererThreadFactory implements ThreadFactory {
+
+        private int count = 0;
+
+        public synchronized Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "profile-renderer-" + (++count)); //$NON-NLS-1$
+            t.setDaemon(true);
+            return t;
+        }
     }
 
 }
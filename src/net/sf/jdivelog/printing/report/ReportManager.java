@@ -24,20 +24,36 @@ package net.sf.jdivelog.printing.report;
 import java.util.HashMap;
 import java.util.TreeSet;
 
+import javax.xml.transform.Templates;
+
 import net.sf.jdivelog.gui.resources.Messages;
 import net.sf.jdivelog.printing.Report;
 
 public class ReportManager {
     
+    /** message key of the name and stylesheet of every report */
+    private static final String[][] REPORTS = {
+        { "report.divelist_a4", "divelist_a4.xsl" }, //$NON-NLS-1$ //$NON-NLS-2$
+        { "report.divelist_a5", "divelist_a5.xsl" }, //$NON-NLS-1$ //$NON-NLS-2$
+        { "report.divelist_simple_a4", "divelist_simple_a4.xsl" }, //$NON-NLS-1$ //$NON-NLS-2$
+        { "report.divelist_simple_a5", "divelist_simple_a5.xsl" }, //$NON-NLS-1$ //$NON-NLS-2$
+        { "report.divedetail_a4", "divedetail_a4.xsl" } //$NON-NLS-1$ //$NON-NLS-2$
+    };
+
+    /** the compiled stylesheets by file name, shared by all instances */
+    private static HashMap<String, Templates> templates = new HashMap<String, Templates>();
+
     public HashMap<String, Report> reportsByName;
     
+    /**
+     * the reports are named in the current language, see {@link Messages#getLocale()}.
+     */
     public ReportManager() {
         reportsByName = new HashMap<String, Report>();
-        addReport(new XslFoReport(Messages.getString("report.divelist_a4"), getClass().getResourceAsStream("divelist_a4.xsl")));
-        addReport(new XslFoReport(Messages.getString("report.divelist_a5"), getClass().getResourceAsStream("divelist_a5.xsl")));
-        addReport(new XslFoReport(Messages.getString("report.divelist_simple_a4"), getClass().getResourceAsStream("divelist_simple_a4.xsl")));
-        addReport(new XslFoReport(Messages.getString("report.divelist_simple_a5"), getClass().getResourceAsStream("divelist_simple_a5.xsl")));
-        addReport(new XslFoReport(Messages.getString("report.divedetail_a4"), getClass().getResourceAsStream("divedetail_a4.xsl")));
+        for (String[] report : REPORTS) {
+            Report r = new XslFoReport(Messages.getString(report[0]), getTemplates(report[1]));
+            reportsByName.put(r.getName(), r);
+        }
     }
     
     public String[] getReportNames() {
@@ -54,8 +70,13 @@ public class ReportManager {
     // private methods
     //
     
-    private void addReport(Report r) {
-        reportsByName.put(r.getName(), r);
+    private static synchronized Templates getTemplates(String filename) {
+        Templates t = templates.get(filename);
+        if (t == null) {
+            t = XslFoReport.compile(ReportManager.class.getResourceAsStream(filename));
+            templates.put(filename, t);
+        }
+        return t;
     }
 
 }
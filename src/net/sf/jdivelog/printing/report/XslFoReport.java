@@ -22,15 +22,14 @@
 package net.sf.jdivelog.printing.report;
 
 import java.io.InputStream;
-import java.io.Reader;
-import java.io.Writer;
 
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
 import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 
 import net.sf.jdivelog.printing.Report;
@@ -41,10 +40,26 @@ public class XslFoReport implements Report {
     private Templates translet;
     
     public XslFoReport(String name, InputStream xsl) {
+        this(name, compile(xsl));
+    }
+    
+    /**
+     * @param name the report name.
+     * @param translet the compiled stylesheet, see {@link #compile(InputStream)}.
+     */
+    public XslFoReport(String name, Templates translet) {
         this.name = name;
+        this.translet = translet;
+    }
+    
+    /**
+     * @param xsl the stylesheet of a report.
+     * @return the compiled stylesheet, can be shared by several reports.
+     */
+    public static Templates compile(InputStream xsl) {
         try {
             TransformerFactory tFactory = TransformerFactory.newInstance();
-            translet = tFactory.newTemplates(new StreamSource(xsl));
+            return tFactory.newTemplates(new StreamSource(xsl));
         } catch (TransformerConfigurationException tce) {
             throw new RuntimeException(tce);
         }
@@ -54,10 +69,10 @@ public class XslFoReport implements Report {
         return name;
     }
 
-    public void run(Reader in, Writer out) {
+    public void run(Source in, Result out) {
         try {
             Transformer t = translet.newTransformer();
-            t.transform(new StreamSource(in), new StreamResult(out));
+            t.transform(in, out);
         } catch (TransformerConfigurationException tce) {
             throw new RuntimeException(tce);
         } catch (TransformerException e) {
@@ -0,0 +1,77 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: HashUtil.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Description: Hashes used as cache keys, e.g. for the files of an HTML
+ * export or the cached thumbnails.
+ */
+public class HashUtil {
+
+    private HashUtil() {
+    }
+
+    /**
+     * @param parts the inputs, compared by their string value.
+     * @return the hex encoded SHA-1 hash of the inputs.
+     */
+    public static String hash(Object... parts) {
+        MessageDigest md = newDigest();
+        for (Object part : parts) {
+            md.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+            md.update((byte) 0);
+        }
+        return toHex(md.digest());
+    }
+
+    /**
+     * @param data binary input, the position of the buffer is not changed.
+     * @return the hex encoded SHA-1 hash of the remaining bytes.
+     */
+    public static String hashBytes(ByteBuffer data) {
+        MessageDigest md = newDigest();
+        md.update(data.duplicate());
+        return toHex(md.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+        } catch (NoSuchAlgorithmException e) {
+            // every java platform has to support SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] digest) {
+        StringBuffer sb = new StringBuffer();
+        for (byte b : digest) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+}
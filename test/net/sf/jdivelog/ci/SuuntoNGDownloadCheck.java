@@ -0,0 +1,283 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: SuuntoNGDownloadCheck.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.ci;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Random;
+
+import net.sf.jdivelog.gui.statusbar.StatusInterface;
+import net.sf.jdivelog.model.JDive;
+import net.sf.jdivelog.model.SuuntoNGAdapter;
+import net.sf.jdivelog.model.suuntong.DiveProfileData;
+import net.sf.jdivelog.model.suuntong.DiveProfileHeader;
+import net.sf.jdivelog.model.suuntong.LogBook;
+import net.sf.jdivelog.model.suuntong.LogEntry;
+import net.sf.jdivelog.model.suuntong.Memory;
+import net.sf.jdivelog.model.suuntong.MemoryHeader;
+
+/**
+ * Description: Checks that reading the dives of a Suunto D6/D9 memory
+ * image newest first, stopping at the last dive of the logbook, gives the
+ * same dives as the former download, which read every dive from the
+ * oldest on and dropped the known ones afterwards. The ring buffers wrap
+ * around the end of the memory. Prints the memory pages each download
+ * has to transfer.
+ * <p>
+ * Run with the classes of <code>src</code> on the class path, exits with
+ * status 1 on the first difference.
+ */
+public class SuuntoNGDownloadCheck {
+
+    /** size of a memory page read from the dive computer, see ReadMemory */
+    private static final int PAGE_SIZE = 0x78;
+    private static final int PAGES = Memory.SIZE / PAGE_SIZE + 1;
+    private static final int RINGS = 200;
+
+    public static void main(String[] args) throws Exception {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : System.currentTimeMillis();
+        Random random = new Random(seed);
+        File image = File.createTempFile("suuntoNG", ".data"); //$NON-NLS-1$ //$NON-NLS-2$
+        StatusInterface status = new SilentStatus();
+        long formerPages = 0;
+        long newestFirstPages = 0;
+        int syncs = 0;
+        try {
+            for (int ring = 0; ring < RINGS; ring++) {
+                ArrayList<Date> dates = new ArrayList<Date>();
+                Files.write(image.toPath(), newImage(random, dates));
+                Memory memory = Memory.loadFromFile(image.getPath());
+                for (int known = 0; known <= dates.size(); known += 1 + random.nextInt(4)) {
+                    Date lastDiveDate = known == 0 ? null : dates.get(known - 1);
+                    boolean downloadAll = random.nextInt(4) == 0;
+                    CountingMemory former = new CountingMemory(memory);
+                    CountingMemory newestFirst = new CountingMemory(memory);
+                    String expected = write(formerLogBook(status, former, lastDiveDate, downloadAll));
+                    String read = write(SuuntoNGInterface.readLogBook(status, newestFirst, lastDiveDate, downloadAll));
+                    if (!expected.equals(read)) {
+                        fail(seed, "ring " + ring + " with " + known + " of " + dates.size() + " dives known differs"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                    }
+                    if (known == dates.size() - 1 && !downloadAll) {
+                        formerPages += former.pages.cardinality();
+                        newestFirstPages += newestFirst.pages.cardinality();
+                        syncs++;
+                    }
+                }
+            }
+        } finally {
+            image.delete();
+        }
+        System.out.println(RINGS + " rings read equal to the former download, seed " + seed); //$NON-NLS-1$
+        System.out.println("pages transferred for one new dive: former " + formerPages / Math.max(1, syncs) + ", newest first " + newestFirstPages / Math.max(1, syncs) + " (average of " + syncs + " syncs)"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+    }
+
+    /**
+     * @param dates gets the dates of the dives, oldest first, without seconds.
+     * @return the memory of a dive computer with 10 to 60 dives, the oldest
+     *         at a random place of the ring buffer.
+     */
+    private static byte[] newImage(Random random, ArrayList<Date> dates) {
+        byte[] image = new byte[PAGES * PAGE_SIZE];
+        int ringSize = Memory.SIZE - MemoryHeader.SIZE;
+        int count = 10 + random.nextInt(51);
+        int[] lengths = new int[count];
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            lengths[i] = DiveProfileHeader.D6_SIZE + 2 * (20 + random.nextInt(ringSize / count / 2 - DiveProfileHeader.D6_SIZE));
+            total += lengths[i];
+        }
+        int oldest = MemoryHeader.SIZE + random.nextInt(ringSize);
+        int[] offsets = new int[count + 1];
+        offsets[0] = oldest;
+        for (int i = 0; i < count; i++) {
+            offsets[i + 1] = wrap(offsets[i] + lengths[i]);
+        }
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2008, Calendar.MARCH, 1, 8, 0, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        for (int i = 0; i < count; i++) {
+            calendar.add(Calendar.MINUTE, 90 + random.nextInt(3000));
+            dates.add(calendar.getTime());
+            byte[] dive = new byte[lengths[i]];
+            putInt(dive, 0x00, i == 0 ? offsets[count] : offsets[i - 1]);
+            putInt(dive, 0x02, offsets[i + 1]);
+            putInt(dive, 0x0D, random.nextInt(6000));
+            putInt(dive, 0x0F, random.nextInt(90));
+            // no tank pressure
+            putInt(dive, 0x11, 0xFFFF);
+            dive[0x15] = (byte) calendar.get(Calendar.HOUR_OF_DAY);
+            dive[0x16] = (byte) calendar.get(Calendar.MINUTE);
+            dive[0x17] = (byte) random.nextInt(60);
+            putInt(dive, 0x18, calendar.get(Calendar.YEAR));
+            dive[0x1A] = (byte) (calendar.get(Calendar.MONTH) + 1);
+            dive[0x1B] = (byte) calendar.get(Calendar.DAY_OF_MONTH);
+            dive[0x1C] = 20;
+            // no temperatures and no event markers
+            dive[0x44] = 0;
+            putInt(dive, 0x49, 0xFFFF);
+            for (int p = DiveProfileHeader.D6_SIZE; p < dive.length; p += 2) {
+                putInt(dive, p, random.nextInt(5000));
+            }
+            for (int b = 0; b < dive.length; b++) {
+                image[wrap(offsets[i] + b)] = dive[b];
+            }
+        }
+        putInt(image, 0x190, offsets[count - 1]);
+        putInt(image, 0x192, count);
+        putInt(image, 0x196, oldest);
+        if (total > ringSize) {
+            throw new IllegalStateException("dives do not fit into the ring buffer"); //$NON-NLS-1$
+        }
+        return image;
+    }
+
+    private static int wrap(int address) {
+        return address < Memory.SIZE ? address : address - Memory.SIZE + MemoryHeader.SIZE;
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >> 8);
+    }
+
+    /**
+     * the former download: every dive from the oldest on, the dives not
+     * newer than the last dive of the logbook dropped afterwards.
+     */
+    private static LogBook formerLogBook(StatusInterface status, Memory memory, Date lastDiveDate, boolean downloadAll) throws Exception {
+        byte[] bytes = readMemory(memory, 0, MemoryHeader.SIZE);
+        MemoryHeader memoryHeader = new MemoryHeader(bytes);
+        LogBook logBook = new LogBook(memoryHeader);
+        int currentDiveOffset = memoryHeader.oldestDiveInBuffer;
+        for (int diveNumber = 1; diveNumber <= memoryHeader.numberOfDivesInBuffer; diveNumber++) {
+            bytes = readMemory(memory, currentDiveOffset, DiveProfileHeader.VYPER_AIR_SIZE);
+            DiveProfileHeader diveProfileHeader = new DiveProfileHeader(bytes);
+            if (diveProfileHeader.nextDiveOffset > currentDiveOffset) {
+                bytes = readMemory(memory, currentDiveOffset, diveProfileHeader.nextDiveOffset - currentDiveOffset);
+            } else {
+                bytes = readMemory(memory, currentDiveOffset, Memory.SIZE - currentDiveOffset + diveProfileHeader.nextDiveOffset - MemoryHeader.SIZE);
+            }
+            currentDiveOffset = diveProfileHeader.nextDiveOffset;
+            diveProfileHeader = new DiveProfileHeader(bytes);
+            LogEntry logEntry = new LogEntry(diveProfileHeader);
+            byte[] diveProfile = new byte[bytes.length - diveProfileHeader.getSize()];
+            System.arraycopy(bytes, diveProfileHeader.getSize(), diveProfile, 0, diveProfile.length);
+            DiveProfileData diveProfileData = new DiveProfileData(diveProfile, diveProfileHeader.sampleRecordingInterval,
+                    diveProfileHeader.temperatureRecordingInterval, diveProfileHeader.offsetToFirstMarker,
+                    diveProfileHeader.hasTankPressureInformation());
+            if (downloadAll || (lastDiveDate == null) || logEntry.date.after(lastDiveDate)) {
+                logEntry.setProfile(diveProfileData.getProfile());
+                logBook.addLogEntry(logEntry);
+            }
+        }
+        return logBook;
+    }
+
+    private static byte[] readMemory(Memory memory, int address, int count) throws Exception {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        if (address + count <= Memory.SIZE) {
+            result.write(memory.read(address, count));
+        } else {
+            byte[] bytes = memory.read(address, Memory.SIZE - address);
+            result.write(bytes);
+            result.write(memory.read(MemoryHeader.SIZE, count - bytes.length));
+        }
+        return result.toByteArray();
+    }
+
+    private static String write(LogBook logBook) throws IOException {
+        StringBuffer sb = new StringBuffer();
+        sb.append(logBook.getLogEntries().size()).append('\n');
+        for (JDive dive : new SuuntoNGAdapter(logBook)) {
+            dive.write(sb);
+        }
+        return sb.toString();
+    }
+
+    private static void fail(long seed, String message) {
+        System.err.println(message + " (seed " + seed + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        System.exit(1);
+    }
+
+    /**
+     * records the pages which would have to be transferred from the dive computer.
+     */
+    private static class CountingMemory extends Memory {
+
+        private final Memory image;
+        private final BitSet pages = new BitSet(PAGES);
+
+        public CountingMemory(Memory image) throws IOException {
+            super(null);
+            this.image = image;
+        }
+
+        public byte[] read(int address, int count) throws IOException, ChecksumException, InterruptedException {
+            pages.set(address / PAGE_SIZE, (address + count - 1) / PAGE_SIZE + 1);
+            return image.read(address, count);
+        }
+    }
+
+    private static class SilentStatus implements StatusInterface {
+
+        public void commSend() {
+        }
+
+        public void commReceive() {
+        }
+
+        public void commStatistics(int bytesPerSecond, int cpuPercent) {
+        }
+
+        public void messageError(String message) {
+        }
+
+        public void messageWarn(String message) {
+        }
+
+        public void messageInfo(String message) {
+        }
+
+        public void messageClear() {
+        }
+
+        public void infiniteProgressbarStart() {
+        }
+
+        public void infiniteProgressbarEnd() {
+        }
+
+        public void countingProgressbarStart(int maxCount, boolean showInPercent) {
+        }
+
+        public void countingProgressbarIncrement() {
+        }
+
+        public void countingProgressbarEnd() {
+        }
+    }
+
+}
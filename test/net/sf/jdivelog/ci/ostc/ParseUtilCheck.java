@@ -0,0 +1,133 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: ParseUtilCheck.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.ci.ostc;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Description: Checks that {@link ParseUtil#extractAndSortProfiles(byte[])},
+ * which searches the profile ring in place, gives the same profiles as the
+ * former version which copied the ring three times, and compares the time
+ * both take for a dump of the size of an OSTC EEPROM.
+ * <p>
+ * Rings the former version failed on are skipped. Exits with status 1 on
+ * the first difference.
+ */
+public class ParseUtilCheck {
+
+    private static final int CONFIG_LENGTH = 266;
+    private static final int RINGS = 100000;
+    private static final int EEPROM_SIZE = 32768 + CONFIG_LENGTH;
+    private static final int ROUNDS = 20000;
+
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : System.currentTimeMillis();
+        Random random = new Random(seed);
+        int compared = 0;
+        for (int n = 0; n < RINGS; n++) {
+            byte[] data = newDump(random, CONFIG_LENGTH + 1 + random.nextInt(200));
+            byte[] expected;
+            try {
+                expected = stretchedRing(data);
+            } catch (RuntimeException e) {
+                continue;
+            }
+            byte[] actual = ParseUtil.extractAndSortProfiles(data);
+            if (!Arrays.equals(expected, actual)) {
+                System.err.println("profiles differ for ring " + n + " (seed " + seed + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+                System.exit(1);
+            }
+            compared++;
+        }
+        System.out.println(compared + " rings equal the former version, seed " + seed); //$NON-NLS-1$
+
+        byte[] eeprom = newDump(random, EEPROM_SIZE);
+        put(eeprom, ParseUtil.SEQ_END, 20000);
+        put(eeprom, ParseUtil.SEQ_START_DIVE_HEADER, 20003);
+        long sink = 0;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                sink += stretchedRing(eeprom).length;
+            }
+            long stretched = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                sink += ParseUtil.extractAndSortProfiles(eeprom).length;
+            }
+            long inPlace = System.nanoTime() - start;
+            if (round == 4) {
+                System.out.println("stretched ring: " + stretched / ROUNDS / 1000.0 + " us, in place: " + inPlace / ROUNDS / 1000.0 + " us (" + sink + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+            }
+        }
+    }
+
+    /**
+     * @return random profile bytes with some start and end tags, the end tag
+     *         of the ring is placed at a random position.
+     */
+    private static byte[] newDump(Random random, int length) {
+        byte[] data = new byte[length];
+        random.nextBytes(data);
+        for (int i = CONFIG_LENGTH; i < length; i++) {
+            // random bytes rarely form tags
+            if (data[i] == ParseUtil.SEQ_START_DIVE_HEADER[0] || data[i] == ParseUtil.SEQ_END[0]) {
+                data[i] = 0;
+            }
+        }
+        int len = length - CONFIG_LENGTH;
+        for (int dives = random.nextInt(5); dives > 0; dives--) {
+            put(data, ParseUtil.SEQ_START_DIVE_HEADER, random.nextInt(len));
+        }
+        if (random.nextInt(10) > 0) {
+            put(data, ParseUtil.SEQ_END, random.nextInt(len));
+        }
+        return data;
+    }
+
+    /**
+     * puts the sequence into the ring, it may wrap around the end.
+     */
+    private static void put(byte[] data, byte[] sequence, int pos) {
+        int len = data.length - CONFIG_LENGTH;
+        for (int i = 0; i < sequence.length; i++) {
+            data[CONFIG_LENGTH + (pos + i) % len] = sequence[i];
+        }
+    }
+
+    /**
+     * the former version of {@link ParseUtil#extractAndSortProfiles(byte[])}.
+     */
+    private static byte[] stretchedRing(byte[] data) {
+        int len = data.length - CONFIG_LENGTH;
+        byte[] profiles1 = new byte[len*3];
+        System.arraycopy(data, CONFIG_LENGTH, profiles1, 0, len);
+        System.arraycopy(data, CONFIG_LENGTH, profiles1, len, len);
+        System.arraycopy(data, CONFIG_LENGTH, profiles1, len*2, len);
+        int firstEnd = ParseUtil.seekSequence(profiles1, ParseUtil.SEQ_END, 0);
+        int firstStart = ParseUtil.seekSequence(profiles1, ParseUtil.SEQ_START_DIVE_HEADER, firstEnd > 0 ? firstEnd : 0);
+        int secondEnd = firstStart + len;
+        byte[] profiles2 = new byte[secondEnd+ParseUtil.SEQ_END.length-firstStart];
+        System.arraycopy(profiles1, firstStart, profiles2, 0, secondEnd+ParseUtil.SEQ_END.length-firstStart);
+        return profiles2;
+    }
+
+}
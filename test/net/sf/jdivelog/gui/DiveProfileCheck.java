@@ -0,0 +1,170 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: DiveProfileCheck.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.gui;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Random;
+
+import net.sf.jdivelog.model.JDive;
+import net.sf.jdivelog.model.ProfileSettings;
+import net.sf.jdivelog.model.udcf.DecoInfo;
+import net.sf.jdivelog.model.udcf.Depth;
+import net.sf.jdivelog.model.udcf.Dive;
+import net.sf.jdivelog.model.udcf.Gas;
+import net.sf.jdivelog.model.udcf.PPO2;
+import net.sf.jdivelog.model.udcf.Temperature;
+import net.sf.jdivelog.model.udcf.Time;
+
+/**
+ * Description: Checks that a {@link DiveProfile} painting its cached layers
+ * gives the same pixels as a new profile rendering them, also after the
+ * size changed and after comparison profiles were added and removed, and
+ * compares the time of a repaint from the cache with a repaint that has to
+ * render the layers, as every repaint did before.
+ * <p>
+ * Runs headless. Exits with status 1 on the first difference. The dives
+ * have no alarms, since the alarm icons are loaded asynchronously.
+ */
+public class DiveProfileCheck {
+
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 400;
+    private static final int DIVES = 20;
+    private static final int SAMPLES = 4000;
+    private static final int ROUNDS = 200;
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true"); //$NON-NLS-1$ //$NON-NLS-2$
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : System.currentTimeMillis();
+        Random random = new Random(seed);
+        ProfileSettings settings = new ProfileSettings();
+        for (int n = 0; n < DIVES; n++) {
+            JDive dive = newDive(random, 1 + random.nextInt(SAMPLES));
+            JDive other = newDive(random, 1 + random.nextInt(SAMPLES));
+            DiveProfile profile = newProfile(settings, dive, WIDTH, HEIGHT);
+            int[] first = paint(profile);
+            compare(seed, n, "second paint", first, paint(profile)); //$NON-NLS-1$
+
+            profile.setSize(WIDTH / 2, HEIGHT / 2);
+            compare(seed, n, "smaller size", paint(newProfile(settings, dive, WIDTH / 2, HEIGHT / 2)), paint(profile)); //$NON-NLS-1$
+            profile.setSize(WIDTH, HEIGHT);
+            compare(seed, n, "size restored", first, paint(profile)); //$NON-NLS-1$
+
+            profile.addComparisonProfile(other);
+            DiveProfile compared = newProfile(settings, dive, WIDTH, HEIGHT);
+            compared.addComparisonProfile(other);
+            compare(seed, n, "comparison added", paint(compared), paint(profile)); //$NON-NLS-1$
+            profile.removeComparisonProfiles();
+            compare(seed, n, "comparison removed", first, paint(profile)); //$NON-NLS-1$
+        }
+        System.out.println(DIVES + " dives paint the same pixels from the cache, seed " + seed); //$NON-NLS-1$ //$NON-NLS-2$
+
+        DiveProfile profile = newProfile(settings, newDive(random, SAMPLES), WIDTH, HEIGHT);
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        long rendered = 0;
+        long cached = 0;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int r = 0; r < ROUNDS; r++) {
+                // a size change of one pixel makes the profile render its layers into a new image
+                profile.setSize(WIDTH - r % 2, HEIGHT);
+                paint(profile, image);
+            }
+            rendered = System.nanoTime() - start;
+            profile.setSize(WIDTH, HEIGHT);
+            start = System.nanoTime();
+            for (int r = 0; r < ROUNDS; r++) {
+                paint(profile, image);
+            }
+            cached = System.nanoTime() - start;
+        }
+        System.out.println(SAMPLES + " samples on " + WIDTH + "x" + HEIGHT + ", repaint rendering the layers: " + rendered / ROUNDS / 1000 + " us, repaint from the cache: " + cached / ROUNDS / 1000 + " us"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+    }
+
+    private static DiveProfile newProfile(ProfileSettings settings, JDive dive, int width, int height) {
+        DiveProfile profile = new DiveProfile(settings, dive);
+        profile.setSize(width, height);
+        return profile;
+    }
+
+    /**
+     * @return a random dive with depths, temperatures, ppO2 and deco information.
+     */
+    private static JDive newDive(Random random, int samples) {
+        Dive dive = new Dive();
+        dive.setDate(new Date(1200000000000L));
+        dive.setTimeDepthMode();
+        Gas gas = new Gas();
+        gas.setName("Air"); //$NON-NLS-1$
+        gas.setOxygen(Double.valueOf(0.21));
+        gas.setHelium(Double.valueOf(0));
+        gas.setNitrogen(Double.valueOf(0.79));
+        dive.addGas(gas);
+        double depth = 0;
+        for (int i = 0; i < samples; i++) {
+            Time time = new Time();
+            time.setValue(Double.valueOf(i / 6.0));
+            dive.addSample(time);
+            depth = Math.max(0, Math.min(80, depth + random.nextGaussian()));
+            Depth d = new Depth();
+            d.setValue(Double.valueOf(depth));
+            dive.addSample(d);
+            if (i % 10 == 0) {
+                Temperature temperature = new Temperature();
+                temperature.setValue(Double.valueOf(280 + random.nextInt(15)));
+                dive.addSample(temperature);
+            }
+            if (i % 20 == 0) {
+                PPO2 ppo2 = new PPO2();
+                ppo2.setSensor("1"); //$NON-NLS-1$
+                ppo2.setValue(Double.valueOf(0.21 * (1 + depth / 10)));
+                dive.addSample(ppo2);
+                DecoInfo deco = new DecoInfo();
+                deco.setValue(Double.valueOf(depth > 30 ? 3 * random.nextInt(3) : 0));
+                dive.addSample(deco);
+            }
+        }
+        return new JDive("si", dive); //$NON-NLS-1$
+    }
+
+    private static int[] paint(DiveProfile profile) {
+        BufferedImage image = new BufferedImage(profile.getWidth(), profile.getHeight(), BufferedImage.TYPE_INT_RGB);
+        paint(profile, image);
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData().clone();
+    }
+
+    private static void paint(DiveProfile profile, BufferedImage image) {
+        Graphics2D g = image.createGraphics();
+        profile.paint(g);
+        g.dispose();
+    }
+
+    private static void compare(long seed, int n, String name, int[] expected, int[] painted) {
+        if (!Arrays.equals(expected, painted)) {
+            System.err.println("dive " + n + " differs, " + name + " (seed " + seed + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+            System.exit(1);
+        }
+    }
+
+}
@@ -0,0 +1,182 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: FileImportCheck.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.gui;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.sf.jdivelog.model.JDive;
+import net.sf.jdivelog.model.udcf.Depth;
+import net.sf.jdivelog.model.udcf.Dive;
+import net.sf.jdivelog.model.udcf.Temperature;
+import net.sf.jdivelog.model.udcf.Time;
+
+/**
+ * Description: Checks that {@link FileImport} returns the dives of all
+ * files in the order of the files, leaving out files which are missing or
+ * cannot be decoded, like reading and decoding the files one after the
+ * other, and times both.
+ * <p>
+ * The decoder turns every two bytes into a depth sample of a udcf profile;
+ * the decoders of the dive computer loaders are anonymous classes of their
+ * loaders and need a main window. Run with the classes of <code>src</code>
+ * on the class path, exits with status 1 on the first difference.
+ */
+public class FileImportCheck {
+
+    private static final int FILES = 300;
+    private static final int MAX_SIZE = 64 * 1024;
+    private static final byte CORRUPT = (byte) 0xFF;
+
+    private static final Logger IMPORT_LOGGER = Logger.getLogger(FileImport.class.getName());
+
+    public static void main(String[] args) throws Exception {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : System.currentTimeMillis();
+        Random random = new Random(seed);
+        // the skipped files are logged as errors
+        IMPORT_LOGGER.setLevel(Level.OFF);
+        File dir = Files.createTempDirectory("import").toFile(); //$NON-NLS-1$
+        try {
+            File[] files = new File[FILES];
+            int missing = 0;
+            int corrupt = 0;
+            for (int i = 0; i < FILES; i++) {
+                files[i] = new File(dir, "dump" + i + ".bin"); //$NON-NLS-1$ //$NON-NLS-2$
+                int kind = random.nextInt(20);
+                if (kind == 0) {
+                    missing++;
+                    continue;
+                }
+                byte[] data = new byte[2 + 2 * random.nextInt(MAX_SIZE / 2)];
+                random.nextBytes(data);
+                data[0] = kind == 1 ? CORRUPT : (byte) random.nextInt(3);
+                if (kind == 1) {
+                    corrupt++;
+                }
+                Files.write(files[i].toPath(), data);
+            }
+
+            // once to warm up, then measured
+            FileImport.load(null, files, new SampleDecoder());
+            readOneByOne(files);
+            long start = System.nanoTime();
+            ArrayList<JDive> expected = readOneByOne(files);
+            long sequential = System.nanoTime() - start;
+            start = System.nanoTime();
+            ArrayList<JDive> imported = FileImport.load(null, files, new SampleDecoder());
+            long pooled = System.nanoTime() - start;
+
+            if (imported == null || imported.size() != expected.size()) {
+                fail(seed, (imported == null ? "no" : String.valueOf(imported.size())) + " dives imported, expected " + expected.size()); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            for (int i = 0; i < expected.size(); i++) {
+                if (!write(expected.get(i)).equals(write(imported.get(i)))) {
+                    fail(seed, "dive " + i + " differs"); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+            }
+            int threads = Math.min(FILES, Runtime.getRuntime().availableProcessors());
+            System.out.println(expected.size() + " dives of " + FILES + " files in file order, " + missing + " missing and " + corrupt + " corrupt files left out, seed " + seed); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+            System.out.println("one by one: " + sequential / 1000000 + " ms, " + threads + " workers: " + pooled / 1000000 + " ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+        } finally {
+            File[] children = dir.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    child.delete();
+                }
+            }
+            dir.delete();
+        }
+    }
+
+    /**
+     * the former import: every file read and decoded after the other.
+     */
+    private static ArrayList<JDive> readOneByOne(File[] files) {
+        SampleDecoder decoder = new SampleDecoder();
+        ArrayList<JDive> dives = new ArrayList<JDive>();
+        for (File file : files) {
+            try {
+                dives.addAll(decoder.decode(file, Files.readAllBytes(file.toPath())));
+            } catch (Exception e) {
+                // left out, like FileImport does
+            }
+        }
+        return dives;
+    }
+
+    private static String write(JDive dive) throws IOException {
+        StringBuffer sb = new StringBuffer();
+        dive.write(sb);
+        return sb.toString();
+    }
+
+    private static void fail(long seed, String message) {
+        System.err.println(message + " (seed " + seed + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        System.exit(1);
+    }
+
+    /**
+     * splits a file into one to three dives, every two bytes are a depth
+     * sample, every twentieth a temperature as well.
+     */
+    private static class SampleDecoder implements FileImport.Decoder {
+
+        public Collection<JDive> decode(File file, byte[] data) throws IOException {
+            if (data[0] == CORRUPT) {
+                throw new IOException("corrupt file " + file.getName()); //$NON-NLS-1$
+            }
+            int diveCount = 1 + data[0];
+            int samples = (data.length - 2) / 2;
+            ArrayList<JDive> dives = new ArrayList<JDive>();
+            for (int d = 0; d < diveCount; d++) {
+                Dive dive = new Dive();
+                dive.setDate(new Date(1200000000000L + ((data[1] & 0xFF) * 3 + d) * 86400000L));
+                dive.setTimeDepthMode();
+                int from = d * samples / diveCount;
+                int to = (d + 1) * samples / diveCount;
+                for (int s = from; s < to; s++) {
+                    Time time = new Time();
+                    time.setValue(Double.valueOf((s - from) / 6.0));
+                    dive.addSample(time);
+                    Depth depth = new Depth();
+                    depth.setValue(Double.valueOf((((data[2 + 2 * s] & 0xFF) << 8) | (data[3 + 2 * s] & 0xFF)) / 1000.0));
+                    dive.addSample(depth);
+                    if (s % 20 == 0) {
+                        Temperature temperature = new Temperature();
+                        temperature.setValue(Double.valueOf(273.15 + (data[2 + 2 * s] & 0x1F)));
+                        dive.addSample(temperature);
+                    }
+                }
+                JDive jdive = new JDive("SI", dive); //$NON-NLS-1$
+                jdive.setComment(file.getName() + " " + d); //$NON-NLS-1$
+                dives.add(jdive);
+            }
+            return dives;
+        }
+    }
+
+}
@@ -0,0 +1,242 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: HtmlExportCheck.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.gui;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Properties;
+import java.util.Random;
+import java.util.TreeMap;
+
+import net.sf.jdivelog.gui.statusbar.StatusInterface;
+import net.sf.jdivelog.model.Buddy;
+import net.sf.jdivelog.model.DiveSite;
+import net.sf.jdivelog.model.ExportSettings;
+import net.sf.jdivelog.model.JDive;
+import net.sf.jdivelog.model.JDiveLog;
+import net.sf.jdivelog.model.Masterdata;
+
+/**
+ * Description: Checks that the HTML export writes the same files with one
+ * worker as with several, and that the progress counts
+ * every dive once, and prints the time of both.
+ * <p>
+ * The profile images and the pictures are not exported: they are written
+ * with the JPEG encoder of Batik, which needs the
+ * <code>com.sun.image.codec.jpeg</code> classes that newer Java runtimes
+ * no longer have. So only the index, detail and stylesheet files are
+ * compared. Run with the classes of <code>src</code> and the libraries on
+ * the class path, from the directory containing <code>skins</code>; exits
+ * with status 1 on the first difference.
+ */
+public class HtmlExportCheck {
+
+    private static final int DIVES = 2000;
+    private static final int SITES = 200;
+    private static final String SKIN = "skins/simple_white_blue.zip"; //$NON-NLS-1$
+
+    public static void main(String[] args) throws Exception {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : System.currentTimeMillis();
+        JDiveLog single = newLogbook(new Random(seed));
+        JDiveLog parallel = newLogbook(new Random(seed));
+        // at least four workers, so the pool is exercised on a single processor as well
+        int workers = Math.max(4, Runtime.getRuntime().availableProcessors());
+        // the export directory is part of the keys in the manifest, so both
+        // exports are written to the same directory
+        File parallelDir = Files.createTempDirectory("export").toFile(); //$NON-NLS-1$
+        File singleDir = new File(parallelDir.getPath() + "-single"); //$NON-NLS-1$
+        try {
+            // once to warm up, then measured
+            export(newLogbook(new Random(seed)), parallelDir, workers);
+            delete(parallelDir);
+            parallelDir.mkdir();
+            long singleTime = export(single, parallelDir, 1);
+            if (!parallelDir.renameTo(singleDir) || !parallelDir.mkdir()) {
+                fail(seed, "could not move the export to " + singleDir); //$NON-NLS-1$
+            }
+            long parallelTime = export(parallel, parallelDir, workers);
+            TreeMap<String, File> expected = list(singleDir, singleDir, new TreeMap<String, File>());
+            TreeMap<String, File> written = list(parallelDir, parallelDir, new TreeMap<String, File>());
+            if (!expected.keySet().equals(written.keySet())) {
+                fail(seed, "the exports have different files"); //$NON-NLS-1$
+            }
+            for (String name : expected.keySet()) {
+                if (name.endsWith(ExportManifest.FILENAME)) {
+                    // the manifest starts with the time it was saved
+                    if (!load(expected.get(name)).equals(load(written.get(name)))) {
+                        fail(seed, name + " differs"); //$NON-NLS-1$
+                    }
+                } else if (!Arrays.equals(Files.readAllBytes(expected.get(name).toPath()), Files.readAllBytes(written.get(name).toPath()))) {
+                    fail(seed, name + " differs"); //$NON-NLS-1$
+                }
+            }
+            System.out.println(expected.size() + " files of " + DIVES + " dives equal with 1 and " + workers + " workers, seed " + seed); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+            System.out.println("1 worker: " + singleTime / 1000000 + " ms, " + workers + " workers: " + parallelTime / 1000000 + " ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+        } finally {
+            delete(singleDir);
+            delete(parallelDir);
+        }
+    }
+
+    private static long export(JDiveLog logbook, File dir, int threads) throws Exception {
+        System.setProperty(net.sf.jdivelog.JDiveLog.PROPERTY_EXPORT_THREADS, String.valueOf(threads));
+        logbook.getExportSettings().setExportDirectory(dir.getPath());
+        CountingStatus status = new CountingStatus();
+        long start = System.nanoTime();
+        int exported = new HtmlExportUtil(status, logbook).execute();
+        long time = System.nanoTime() - start;
+        if (exported != DIVES || status.increments != DIVES) {
+            fail(0, threads + " workers exported " + exported + " dives with " + status.increments + " progress steps"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        }
+        return time;
+    }
+
+    private static JDiveLog newLogbook(Random random) {
+        JDiveLog logbook = new JDiveLog();
+        Masterdata masterdata = new Masterdata();
+        for (int i = 0; i < SITES; i++) {
+            DiveSite site = new DiveSite();
+            site.setSpot("Spot " + i); //$NON-NLS-1$
+            site.setCity("City " + random.nextInt(20)); //$NON-NLS-1$
+            site.setCountry("Country " + random.nextInt(10)); //$NON-NLS-1$
+            site.setPrivateId(String.valueOf(i));
+            masterdata.addDiveSite(site);
+        }
+        for (int i = 0; i < 20; i++) {
+            Buddy buddy = new Buddy();
+            buddy.setFirstname("Buddy"); //$NON-NLS-1$
+            buddy.setLastname(String.valueOf(i));
+            masterdata.addBuddy(buddy);
+        }
+        logbook.setMasterdata(masterdata);
+        ExportSettings settings = new ExportSettings();
+        settings.setSkinFile(new File(SKIN).getAbsolutePath());
+        settings.setFullExport(true);
+        settings.setGroupByYear(true);
+        settings.setDetailVisible(true);
+        settings.setDetailProfile(false);
+        settings.setPictureVisible(false);
+        settings.setIndexImages(0);
+        logbook.setExportSettings(settings);
+        for (int i = 0; i < DIVES; i++) {
+            JDive dive = new JDive();
+            dive.setDiveNumber(Long.valueOf(i + 1));
+            dive.setDate(new Date(1200000000000L + i * 86400000L + random.nextInt(86400) * 1000L));
+            dive.setUnits("si"); //$NON-NLS-1$
+            dive.setDiveSiteId(String.valueOf(random.nextInt(SITES)));
+            dive.setDepth(Double.valueOf(random.nextInt(600) / 10.0));
+            dive.setDuration(Double.valueOf(random.nextInt(90)));
+            dive.setTemperature(Double.valueOf(random.nextInt(30)));
+            dive.setBuddy("Buddy " + random.nextInt(20)); //$NON-NLS-1$
+            dive.setComment("dive " + i + " <b>&amp;</b>"); //$NON-NLS-1$ //$NON-NLS-2$
+            logbook.addDive(dive);
+        }
+        return logbook;
+    }
+
+    private static Properties load(File file) throws IOException {
+        Properties properties = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        return properties;
+    }
+
+    private static TreeMap<String, File> list(File root, File dir, TreeMap<String, File> files) {
+        for (File file : dir.listFiles()) {
+            if (file.isDirectory()) {
+                list(root, file, files);
+            } else {
+                files.put(file.getPath().substring(root.getPath().length()), file);
+            }
+        }
+        return files;
+    }
+
+    private static void delete(File file) throws IOException {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        Files.deleteIfExists(file.toPath());
+    }
+
+    private static void fail(long seed, String message) {
+        System.err.println(message + " (seed " + seed + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        System.exit(1);
+    }
+
+    /**
+     * counts the progress steps, which the workers report concurrently.
+     */
+    private static class CountingStatus implements StatusInterface {
+
+        private int increments;
+
+        public void commSend() {
+        }
+
+        public void commReceive() {
+        }
+
+        public void commStatistics(int bytesPerSecond, int cpuPercent) {
+        }
+
+        public void messageError(String message) {
+        }
+
+        public void messageWarn(String message) {
+        }
+
+        public void messageInfo(String message) {
+        }
+
+        public void messageClear() {
+        }
+
+        public void infiniteProgressbarStart() {
+        }
+
+        public void infiniteProgressbarEnd() {
+        }
+
+        public void countingProgressbarStart(int maxCount, boolean showInPercent) {
+            increments = 0;
+        }
+
+        public void countingProgressbarIncrement() {
+            increments++;
+        }
+
+        public void countingProgressbarEnd() {
+        }
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: LogBookTableModelCheck.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.gui;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.TreeSet;
+
+import javax.swing.table.AbstractTableModel;
+
+import net.sf.jdivelog.gui.LogbookChangeEvent.EventType;
+import net.sf.jdivelog.gui.util.SortableTableModel;
+import net.sf.jdivelog.gui.util.TableSorter;
+import net.sf.jdivelog.model.DiveSite;
+import net.sf.jdivelog.model.JDive;
+import net.sf.jdivelog.model.JDiveLog;
+import net.sf.jdivelog.model.Masterdata;
+
+/**
+ * Description: Checks that the rows of the dive list are the dives of the
+ * set in their order, also after dives were added and removed, and times
+ * rendering every cell and sorting every column of 10000 dives against
+ * the former row access, which copied the set into an array for every
+ * single value.
+ * <p>
+ * Run with the classes of <code>src</code> on the class path, exits with
+ * status 1 on the first difference.
+ */
+public class LogBookTableModelCheck {
+
+    private static final int DIVES = 10000;
+    private static final int SITES = 300;
+    private static final int CHANGES = 200;
+
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : System.currentTimeMillis();
+        Random random = new Random(seed);
+        JDiveLog logbook = new JDiveLog();
+        Masterdata masterdata = new Masterdata();
+        for (int i = 0; i < SITES; i++) {
+            DiveSite site = new DiveSite();
+            site.setSpot("Spot " + random.nextInt(SITES)); //$NON-NLS-1$
+            site.setCity("City " + random.nextInt(SITES / 10)); //$NON-NLS-1$
+            site.setCountry("Country " + random.nextInt(20)); //$NON-NLS-1$
+            site.setPrivateId(String.valueOf(i));
+            masterdata.addDiveSite(site);
+        }
+        logbook.setMasterdata(masterdata);
+        long number = 0;
+        for (int i = 0; i < DIVES; i++) {
+            logbook.addDive(newDive(random, ++number));
+        }
+        TreeSet<JDive> dives = logbook.getDives();
+        LogBookTableModel model = new LogBookTableModel(logbook, dives);
+        compare(seed, model, dives);
+
+        // the snapshot must follow the set after every change event
+        for (int i = 0; i < CHANGES; i++) {
+            if (random.nextBoolean()) {
+                logbook.addDive(newDive(random, ++number));
+            } else {
+                logbook.removeDive((JDive) dives.toArray()[random.nextInt(dives.size())]);
+            }
+            model.logbookChanged(new LogbookChangeEvent(EventType.LOGBOOK_DATA_CHANGED));
+            compare(seed, model, dives);
+        }
+
+        SortableTableModel former = new ArrayPerValueModel(model, dives);
+        long renderFormer = render(former);
+        long renderNow = render(model);
+        long sortFormer = sort(former);
+        long sortNow = sort(model);
+        System.out.println("rows equal the dive set after " + CHANGES + " changes, seed " + seed); //$NON-NLS-1$ //$NON-NLS-2$
+        System.out.println(dives.size() + " dives, all cells: array per value " + renderFormer / 1000000 + " ms, snapshot " + renderNow / 1000000 + " ms; sorting all columns: array per value " + sortFormer / 1000000 + " ms, snapshot " + sortNow / 1000000 + " ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+    }
+
+    private static JDive newDive(Random random, long number) {
+        JDive dive = new JDive();
+        dive.setDiveNumber(Long.valueOf(number));
+        dive.setDate(new Date(1200000000000L + random.nextInt(100000) * 3600000L));
+        dive.setUnits("si"); //$NON-NLS-1$
+        dive.setDiveSiteId(String.valueOf(random.nextInt(SITES)));
+        dive.setDepth(Double.valueOf(random.nextInt(600) / 10.0));
+        dive.setDuration(Double.valueOf(random.nextInt(90)));
+        return dive;
+    }
+
+    private static void compare(long seed, LogBookTableModel model, TreeSet<JDive> dives) {
+        Object[] expected = dives.toArray();
+        if (model.getRowCount() != expected.length) {
+            fail(seed, "row count " + model.getRowCount() + " != " + expected.length); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        for (int row = 0; row < expected.length; row++) {
+            if (model.getDive(row) != expected[row] || model.getRow(row) != expected[row]) {
+                fail(seed, "dive of row " + row + " differs"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+    }
+
+    private static void fail(long seed, String message) {
+        System.err.println(message + " (seed " + seed + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        System.exit(1);
+    }
+
+    private static long render(SortableTableModel model) {
+        long start = System.nanoTime();
+        int rows = model.getRowCount();
+        int columns = model.getColumnCount();
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                model.getValueAt(row, column);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long sort(SortableTableModel model) {
+        TableSorter sorter = new TableSorter(model);
+        long start = System.nanoTime();
+        for (int column = 0; column < model.getColumnCount(); column++) {
+            sorter.sortColumn(column, true);
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * the row access of the model before the snapshot: the dive set is
+     * copied into an array for every value, then the value is taken from
+     * the model.
+     */
+    private static class ArrayPerValueModel extends AbstractTableModel implements SortableTableModel {
+
+        private static final long serialVersionUID = 1L;
+
+        private final LogBookTableModel model;
+        private final TreeSet<JDive> dives;
+
+        public ArrayPerValueModel(LogBookTableModel model, TreeSet<JDive> dives) {
+            this.model = model;
+            this.dives = dives;
+        }
+
+        public int getRowCount() {
+            return dives.size();
+        }
+
+        public int getColumnCount() {
+            return model.getColumnCount();
+        }
+
+        public Object getValueAt(int rowIndex, int columnIndex) {
+            dives.toArray();
+            return model.getValueAt(rowIndex, columnIndex);
+        }
+
+        public Class<?> getUnformattedColumnClass(int column) {
+            return model.getUnformattedColumnClass(column);
+        }
+
+        public Object getUnformattedValueAt(int row, int column) {
+            dives.toArray();
+            return model.getUnformattedValueAt(row, column);
+        }
+    }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: PolyShapeCheck.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.gui;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Polygon;
+import java.awt.Shape;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.PathIterator;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Description: Checks that a {@link PolyShape}, which keeps only the first,
+ * the minimum, the maximum and the last point of every pixel column, draws
+ * the same pixels as the polygon or path of all points, filled and as an
+ * outline, and compares the time both take to be drawn.
+ * <p>
+ * Runs headless. Exits with status 1 on the first difference.
+ */
+public class PolyShapeCheck {
+
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 400;
+    private static final int PROFILES = 200;
+    private static final int SAMPLES = 20000;
+    private static final int ROUNDS = 50;
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true"); //$NON-NLS-1$ //$NON-NLS-2$
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : System.currentTimeMillis();
+        Random random = new Random(seed);
+        long points = 0;
+        long reduced = 0;
+        for (int n = 0; n < PROFILES; n++) {
+            int[][] xy = newProfile(random, n % 4 == 0 ? 1 + random.nextInt(WIDTH) : SAMPLES);
+            for (int fill = 0; fill < 2; fill++) {
+                Shape all = allPoints(xy, fill == 0);
+                PolyShape shape = newShape(xy, fill == 0);
+                if (!Arrays.equals(draw(all, fill == 0), draw(shape, fill == 0))) {
+                    System.err.println("profile " + n + " differs, " + (fill == 0 ? "filled" : "outline") + " (seed " + seed + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+                    System.exit(1);
+                }
+                if (fill == 0) {
+                    points += xy[0].length;
+                    reduced += count(shape);
+                }
+            }
+        }
+        System.out.println(PROFILES + " profiles draw the same pixels, " + points + " points reduced to " + reduced + ", seed " + seed); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
+        int[][] xy = newProfile(random, SAMPLES);
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for (int r = 0; r < ROUNDS; r++) {
+                draw(allPoints(xy, true), true);
+            }
+            long full = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int r = 0; r < ROUNDS; r++) {
+                draw(newShape(xy, true), true);
+            }
+            long columns = System.nanoTime() - start;
+            if (round == 4) {
+                System.out.println(SAMPLES + " samples on " + WIDTH + " columns, all points: " + full / ROUNDS / 1000 + " us, per column: " + columns / ROUNDS / 1000 + " us"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+            }
+        }
+    }
+
+    /**
+     * @return x and y of a random dive profile, starting and ending at the surface.
+     */
+    private static int[][] newProfile(Random random, int samples) {
+        int[] x = new int[samples + 2];
+        int[] y = new int[samples + 2];
+        double depth = 0;
+        for (int i = 0; i < samples; i++) {
+            depth += random.nextGaussian() * 2;
+            if (random.nextInt(500) == 0) {
+                // a spike
+                depth += random.nextInt(100) - 50;
+            }
+            depth = Math.max(0, Math.min(HEIGHT - 1, depth));
+            x[i] = (int) ((long) i * (WIDTH - 1) / Math.max(1, samples - 1));
+            y[i] = (int) depth;
+        }
+        x[samples] = WIDTH - 1;
+        x[samples + 1] = 0;
+        return new int[][] { x, y };
+    }
+
+    private static Shape allPoints(int[][] xy, boolean polygon) {
+        if (polygon) {
+            return new Polygon(xy[0], xy[1], xy[0].length);
+        }
+        GeneralPath path = new GeneralPath();
+        path.moveTo(xy[0][0], xy[1][0]);
+        for (int i = 1; i < xy[0].length; i++) {
+            path.lineTo(xy[0][i], xy[1][i]);
+        }
+        return path;
+    }
+
+    private static PolyShape newShape(int[][] xy, boolean polygon) {
+        PolyShape shape = polygon ? new PolyShape(new Polygon()) : new PolyShape(new GeneralPath());
+        for (int i = 0; i < xy[0].length; i++) {
+            shape.addPoint(xy[0][i], xy[1][i]);
+        }
+        return shape;
+    }
+
+    private static int count(Shape shape) {
+        int n = 0;
+        for (PathIterator it = shape.getPathIterator(null); !it.isDone(); it.next()) {
+            n++;
+        }
+        return n;
+    }
+
+    private static int[] draw(Shape shape, boolean fill) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        if (fill) {
+            g.fill(shape);
+        } else {
+            g.draw(shape);
+        }
+        g.dispose();
+        return image.getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH);
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: ProfileSeriesCheck.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.gui;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Description: Checks that a {@link ProfileSeries} holds the same samples as
+ * a map ordered by time which keeps the first value of every time, as the
+ * sets of the profile did before, and compares the time both take to be
+ * filled with the samples of a long dive and read in order.
+ * <p>
+ * Exits with status 1 on the first difference.
+ */
+public class ProfileSeriesCheck {
+
+    private static final int SERIES = 2000;
+    private static final int SAMPLES = 12 * 3600 / 2;
+    private static final int ROUNDS = 200;
+
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : System.currentTimeMillis();
+        Random random = new Random(seed);
+        for (int n = 0; n < SERIES; n++) {
+            ProfileSeries series = new ProfileSeries();
+            TreeMap<Double, Double> expected = new TreeMap<Double, Double>();
+            double time = 0;
+            for (int i = random.nextInt(500); i > 0; i--) {
+                int kind = random.nextInt(20);
+                double t;
+                if (kind == 0) {
+                    // inserted around a gas switch
+                    t = random.nextInt((int) time + 1);
+                } else if (kind == 1) {
+                    t = time;
+                } else {
+                    time += 1 + random.nextInt(3);
+                    t = time;
+                }
+                double value = random.nextInt(20) == 0 ? Double.NaN : random.nextInt(1000) / 10.0;
+                series.add(t, value);
+                if (!expected.containsKey(Double.valueOf(t))) {
+                    expected.put(Double.valueOf(t), Double.valueOf(value));
+                }
+                if (random.nextInt(50) == 0) {
+                    // reading in between sorts, later samples are added to the sorted arrays
+                    compare(seed, n, series, expected, random);
+                }
+            }
+            compare(seed, n, series, expected, random);
+        }
+        System.out.println(SERIES + " series equal the ordered map, seed " + seed); //$NON-NLS-1$
+
+        double sink = 0;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for (int r = 0; r < ROUNDS; r++) {
+                TreeSet<Sample> set = new TreeSet<Sample>();
+                for (int i = 0; i < SAMPLES; i++) {
+                    set.add(new Sample(i * 2, i % 400 / 10.0));
+                }
+                for (Sample s : set) {
+                    sink += s.value;
+                }
+            }
+            long treeSet = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int r = 0; r < ROUNDS; r++) {
+                ProfileSeries series = new ProfileSeries();
+                for (int i = 0; i < SAMPLES; i++) {
+                    series.add(i * 2, i % 400 / 10.0);
+                }
+                for (int i = 0; i < series.size(); i++) {
+                    sink += series.getValue(i);
+                }
+            }
+            long arrays = System.nanoTime() - start;
+            if (round == 4) {
+                System.out.println(SAMPLES + " samples, tree set: " + treeSet / ROUNDS / 1000 + " us, arrays: " + arrays / ROUNDS / 1000 + " us (" + sink + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+            }
+        }
+    }
+
+    private static void compare(long seed, int n, ProfileSeries series, TreeMap<Double, Double> expected, Random random) {
+        if (series.size() != expected.size()) {
+            fail(seed, n, "size " + series.size() + " != " + expected.size()); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        int index = 0;
+        for (Map.Entry<Double, Double> entry : expected.entrySet()) {
+            if (series.getTime(index) != entry.getKey().doubleValue()
+                    || Double.compare(series.getValue(index), entry.getValue().doubleValue()) != 0
+                    || series.isBreak(index) != entry.getValue().isNaN()) {
+                fail(seed, n, "sample " + index + " differs"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            index++;
+        }
+        for (int i = 0; i < 20; i++) {
+            double t = random.nextInt(1600) / 2.0 - 10;
+            int ceiling = expected.headMap(Double.valueOf(t), false).size();
+            if (series.ceilingIndex(t) != ceiling) {
+                fail(seed, n, "ceiling of " + t + " " + series.ceilingIndex(t) + " != " + ceiling); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            }
+        }
+    }
+
+    private static void fail(long seed, int n, String message) {
+        System.err.println("series " + n + " (seed " + seed + "): " + message); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        System.exit(1);
+    }
+
+    /**
+     * a sample as the profile kept them in sets before.
+     */
+    private static class Sample implements Comparable<Sample> {
+        private final double time;
+        private final double value;
+
+        public Sample(double time, double value) {
+            this.time = time;
+            this.value = value;
+        }
+
+        public int compareTo(Sample o) {
+            return Double.compare(time, o.time);
+        }
+    }
+
+}
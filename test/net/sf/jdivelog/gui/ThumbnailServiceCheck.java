@@ -0,0 +1,194 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: ThumbnailServiceCheck.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.gui;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import net.sf.jdivelog.gui.util.ImageUtil;
+
+/**
+ * Description: Checks that the {@link ThumbnailService} delivers the same
+ * thumbnails as creating them directly, notifies every listener once,
+ * writes them to the cache directory and creates a new thumbnail for a
+ * changed picture. Compares the time the requesting thread is blocked
+ * with the time it was blocked by the former synchronous thumbnail
+ * creation.
+ * <p>
+ * Runs headless with a temporary home directory. Run with the classes of
+ * <code>src</code> and the libraries on the class path, exits with status
+ * 1 on the first difference.
+ */
+public class ThumbnailServiceCheck {
+
+    private static final int PICTURES = 30;
+    private static final int WIDTH = 3000;
+    private static final int HEIGHT = 2000;
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true"); //$NON-NLS-1$ //$NON-NLS-2$
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : System.currentTimeMillis();
+        Random random = new Random(seed);
+        File dir = Files.createTempDirectory("thumbs").toFile(); //$NON-NLS-1$
+        // the cache directory is taken from the home directory when the service is loaded
+        System.setProperty("user.home", dir.getPath()); //$NON-NLS-1$
+        try {
+            File[] pictures = new File[PICTURES];
+            int[] rotations = new int[PICTURES];
+            for (int i = 0; i < PICTURES; i++) {
+                pictures[i] = new File(dir, "picture" + i + ".jpg"); //$NON-NLS-1$ //$NON-NLS-2$
+                writePicture(random, pictures[i]);
+                rotations[i] = random.nextInt(4);
+            }
+
+            // the former table model created the thumbnails on the event dispatch thread
+            long start = System.nanoTime();
+            BufferedImage[] expected = new BufferedImage[PICTURES];
+            for (int i = 0; i < PICTURES; i++) {
+                expected[i] = create(pictures[i], rotations[i]);
+            }
+            long former = System.nanoTime() - start;
+
+            ThumbnailService service = ThumbnailService.getInstance();
+            CountingListener listener = new CountingListener(PICTURES);
+            start = System.nanoTime();
+            for (int i = 0; i < PICTURES; i++) {
+                if (service.getThumbnail(pictures[i], rotations[i], listener) != null) {
+                    fail(seed, "thumbnail " + i + " returned before it was loaded"); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+            }
+            long blocked = System.nanoTime() - start;
+            listener.await(seed);
+            long loaded = System.nanoTime() - start;
+            for (int i = 0; i < PICTURES; i++) {
+                compare(seed, "thumbnail " + i, expected[i], service.getThumbnail(pictures[i], rotations[i], listener)); //$NON-NLS-1$
+            }
+            if (listener.calls != PICTURES || service.getPendingCount() != 0) {
+                fail(seed, listener.calls + " notifications, " + service.getPendingCount() + " pending"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            File[] cached = ThumbnailService.CACHE_DIR.listFiles();
+            if (cached == null || cached.length != PICTURES) {
+                fail(seed, (cached == null ? 0 : cached.length) + " thumbnails in the cache directory"); //$NON-NLS-1$
+            }
+            for (File f : cached) {
+                BufferedImage img = ImageIO.read(f);
+                if (img == null || img.getWidth() > PictureTableModel.THUMB_MAX_X || img.getHeight() > PictureTableModel.THUMB_MAX_Y) {
+                    fail(seed, "cached thumbnail " + f.getName() + " can not be read"); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+            }
+
+            // a changed picture gets a new thumbnail
+            int changed = random.nextInt(PICTURES);
+            writePicture(random, pictures[changed]);
+            pictures[changed].setLastModified(pictures[changed].lastModified() + 2000);
+            listener = new CountingListener(1);
+            if (service.getThumbnail(pictures[changed], rotations[changed], listener) != null) {
+                fail(seed, "the thumbnail of the changed picture is the old one"); //$NON-NLS-1$
+            }
+            listener.await(seed);
+            compare(seed, "changed thumbnail", create(pictures[changed], rotations[changed]), service.getThumbnail(pictures[changed], rotations[changed], null)); //$NON-NLS-1$
+
+            System.out.println(PICTURES + " thumbnails of " + WIDTH + "x" + HEIGHT + " pictures equal, cached and renewed after a change, seed " + seed); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+            System.out.println("requesting thread blocked: former " + former / 1000000 + " ms, service " + blocked / 1000000 + " ms, all loaded after " + loaded / 1000000 + " ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private static BufferedImage create(File file, int rotation) throws IOException {
+        Image img = ImageUtil.read(file, PictureTableModel.THUMB_MAX_X, PictureTableModel.THUMB_MAX_Y, rotation);
+        return ImageUtil.transform(img, PictureTableModel.THUMB_MAX_X, PictureTableModel.THUMB_MAX_Y, rotation);
+    }
+
+    private static void writePicture(Random random, File file) throws IOException {
+        BufferedImage img = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        for (int i = 0; i < 200; i++) {
+            g.setColor(new java.awt.Color(random.nextInt(0x1000000)));
+            g.fillOval(random.nextInt(WIDTH), random.nextInt(HEIGHT), random.nextInt(WIDTH / 4), random.nextInt(HEIGHT / 4));
+        }
+        g.dispose();
+        if (!ImageIO.write(img, "jpg", file)) { //$NON-NLS-1$
+            throw new IOException("no JPEG writer"); //$NON-NLS-1$
+        }
+    }
+
+    private static void compare(long seed, String name, BufferedImage expected, Image thumb) {
+        if (!(thumb instanceof BufferedImage)) {
+            fail(seed, name + " is not loaded"); //$NON-NLS-1$
+        }
+        BufferedImage img = (BufferedImage) thumb;
+        if (img.getWidth() != expected.getWidth() || img.getHeight() != expected.getHeight()
+                || !Arrays.equals(expected.getRGB(0, 0, expected.getWidth(), expected.getHeight(), null, 0, expected.getWidth()),
+                        img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth()))) {
+            fail(seed, name + " differs"); //$NON-NLS-1$
+        }
+    }
+
+    private static void delete(File file) throws IOException {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        Files.deleteIfExists(file.toPath());
+    }
+
+    private static void fail(long seed, String message) {
+        System.err.println(message + " (seed " + seed + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        System.exit(1);
+    }
+
+    /**
+     * counts the notifications, which arrive on the event dispatch thread.
+     */
+    private static class CountingListener implements ThumbnailService.Listener {
+
+        private final CountDownLatch latch;
+        private volatile int calls;
+
+        public CountingListener(int expected) {
+            latch = new CountDownLatch(expected);
+        }
+
+        public void thumbnailLoaded(File file) {
+            calls++;
+            latch.countDown();
+        }
+
+        public void await(long seed) throws InterruptedException {
+            if (!latch.await(2, TimeUnit.MINUTES)) {
+                fail(seed, "thumbnails not loaded after two minutes"); //$NON-NLS-1$
+            }
+        }
+    }
+
+}
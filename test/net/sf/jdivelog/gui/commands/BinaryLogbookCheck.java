@@ -0,0 +1,252 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: BinaryLogbookCheck.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.gui.commands;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Random;
+
+import net.sf.jdivelog.model.DiveSite;
+import net.sf.jdivelog.model.JDive;
+import net.sf.jdivelog.model.JDiveLog;
+import net.sf.jdivelog.model.Masterdata;
+import net.sf.jdivelog.model.jdivelog.BinaryLogbookFile;
+import net.sf.jdivelog.model.udcf.Depth;
+import net.sf.jdivelog.model.udcf.Dive;
+import net.sf.jdivelog.model.udcf.Gas;
+import net.sf.jdivelog.model.udcf.Temperature;
+import net.sf.jdivelog.model.udcf.Time;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Description: Checks that a logbook saved as binary container loads to
+ * the same dives, ignored dives and master data as the XML file, and that
+ * saving an opened container copies the profiles without decoding them. Prints the file sizes, the load times and the heap
+ * held by each loaded logbook.
+ * <p>
+ * Run with the classes of <code>src</code> and the libraries on the class
+ * path, exits with status 1 on the first difference.
+ */
+public class BinaryLogbookCheck {
+
+    private static final int DIVES = 5000;
+    private static final int IGNORED = 50;
+    private static final int SAMPLES = 1000;
+
+    public static void main(String[] args) throws Exception {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : System.currentTimeMillis();
+        JDiveLog logbook = newLogbook(new Random(seed));
+        File xml = File.createTempFile("logbook", ".jlb"); //$NON-NLS-1$ //$NON-NLS-2$
+        File binary = File.createTempFile("logbook", "." + BinaryLogbookFile.EXTENSION); //$NON-NLS-1$ //$NON-NLS-2$
+        File copy = File.createTempFile("copy", "." + BinaryLogbookFile.EXTENSION); //$NON-NLS-1$ //$NON-NLS-2$
+        try {
+            writeXml(logbook, xml);
+            BinaryLogbookFile.write(logbook, binary);
+            String expected = content(logbook, false);
+            logbook = null;
+
+            // once to warm up, then measured
+            loadXml(xml);
+            loadBinary(binary);
+            long heap = usedHeap();
+            long start = System.nanoTime();
+            JDiveLog fromXml = loadXml(xml);
+            long xmlTime = System.nanoTime() - start;
+            long xmlHeap = usedHeap() - heap;
+            fromXml = null;
+            heap = usedHeap();
+            start = System.nanoTime();
+            JDiveLog fromBinary = loadBinary(binary);
+            long binaryTime = System.nanoTime() - start;
+            long binaryHeap = usedHeap() - heap;
+
+            // the profiles are still encoded, so they are copied over; the
+            // XML part is not compared, settings left unset are saved with
+            // their defaults
+            BinaryLogbookFile.write(fromBinary, copy);
+            if (!encodedProfiles(fromBinary).equals(encodedProfiles(loadBinary(copy)))) {
+                fail(seed, "saving the opened container changed the profiles"); //$NON-NLS-1$
+            }
+            // the loaders read only some fields of the ignored dives, so they
+            // are compared between the two files only
+            fromXml = loadXml(xml);
+            if (!expected.equals(content(fromXml, false))) {
+                fail(seed, "the XML file loads different dives"); //$NON-NLS-1$
+            }
+            // decodes every profile
+            if (!content(fromXml, true).equals(content(fromBinary, true))) {
+                fail(seed, "the binary container loads a different logbook than the XML file"); //$NON-NLS-1$
+            }
+            System.out.println(DIVES + " dives of " + SAMPLES + " samples and " + IGNORED + " ignored dives equal from both files, seed " + seed); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+            System.out.println("XML: " + xml.length() / 1024 / 1024 + " MB, loaded in " + xmlTime / 1000000 + " ms, holding " + xmlHeap / 1024 / 1024 + " MB"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+            System.out.println("binary: " + binary.length() / 1024 / 1024 + " MB, loaded in " + binaryTime / 1000000 + " ms, holding " + binaryHeap / 1024 / 1024 + " MB"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+        } finally {
+            xml.delete();
+            binary.delete();
+            copy.delete();
+        }
+    }
+
+    /**
+     * the load of CommandLoadFile for a logbook of the current version.
+     */
+    private static JDiveLog loadXml(File file) throws SAXException, IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            return CommandLoadFile.parseCurrentVersion(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * the load of CommandLoadFile for a binary container.
+     */
+    private static JDiveLog loadBinary(File file) throws SAXException, IOException {
+        BinaryLogbookFile binaryFile = BinaryLogbookFile.open(file);
+        InputStream in = binaryFile.getMetadataStream();
+        try {
+            JDiveLog logbook = CommandLoadFile.parseCurrentVersion(in);
+            binaryFile.attachProfiles(logbook);
+            return logbook;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @return the encoded profiles of all dives, failing if one has been decoded.
+     */
+    private static ArrayList<ByteBuffer> encodedProfiles(JDiveLog logbook) {
+        ArrayList<JDive> dives = new ArrayList<JDive>(logbook.getDives());
+        dives.addAll(logbook.getIgnoredDives());
+        ArrayList<ByteBuffer> profiles = new ArrayList<ByteBuffer>();
+        for (JDive dive : dives) {
+            if (dive.getEncodedDive() == null) {
+                fail(0, "dive " + dive.getDiveNumber() + " has been decoded"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            profiles.add(dive.getEncodedDive());
+        }
+        return profiles;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static String content(JDiveLog logbook, boolean withIgnoredDives) throws IOException {
+        StringBuffer sb = new StringBuffer();
+        logbook.getMasterdata().write(sb);
+        for (JDive dive : logbook.getDives()) {
+            dive.write(sb);
+        }
+        if (withIgnoredDives) {
+            for (JDive dive : logbook.getIgnoredDives()) {
+                dive.write(sb);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void writeXml(JDiveLog logbook, File file) throws IOException {
+        Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+        try {
+            w.write("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n"); //$NON-NLS-1$
+            logbook.write(w);
+        } finally {
+            w.close();
+        }
+    }
+
+    private static void fail(long seed, String message) {
+        System.err.println(message + " (seed " + seed + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        System.exit(1);
+    }
+
+    private static JDiveLog newLogbook(Random random) {
+        JDiveLog logbook = new JDiveLog();
+        Masterdata masterdata = new Masterdata();
+        for (int i = 0; i < 20; i++) {
+            DiveSite site = new DiveSite();
+            site.setSpot("Spot " + i); //$NON-NLS-1$
+            site.setCountry("CH"); //$NON-NLS-1$
+            site.setPrivateId(String.valueOf(i + 1));
+            masterdata.addDiveSite(site);
+        }
+        logbook.setMasterdata(masterdata);
+        for (int i = 0; i < DIVES + IGNORED; i++) {
+            JDive jdive = new JDive("SI", newDive(random, i)); //$NON-NLS-1$
+            jdive.setDiveNumber(Long.valueOf(i + 1));
+            jdive.setComment("<dive & \"quotes\"> " + i); //$NON-NLS-1$
+            jdive.setDiveSiteId(String.valueOf(1 + random.nextInt(20)));
+            if (i < DIVES) {
+                logbook.addDive(jdive);
+            } else {
+                logbook.addIgnoredDive(jdive);
+            }
+        }
+        return logbook;
+    }
+
+    private static Dive newDive(Random random, int n) {
+        Dive dive = new Dive();
+        dive.setDate(new Date(1200000000000L + n * 86400000L));
+        dive.setTimeDepthMode();
+        Gas gas = new Gas();
+        gas.setName("Nitrox " + (21 + random.nextInt(20))); //$NON-NLS-1$
+        gas.setOxygen(Double.valueOf(0.32));
+        gas.setHelium(Double.valueOf(0));
+        gas.setNitrogen(Double.valueOf(0.68));
+        dive.addGas(gas);
+        double depth = 0;
+        for (int s = 0; s < SAMPLES; s++) {
+            Time time = new Time();
+            time.setValue(Double.valueOf(s / 6.0));
+            dive.addSample(time);
+            depth = Math.max(0, depth + (random.nextInt(21) - 10) / 10.0);
+            Depth d = new Depth();
+            d.setValue(Double.valueOf(depth));
+            dive.addSample(d);
+            if (s % 10 == 0) {
+                Temperature temperature = new Temperature();
+                temperature.setValue(Double.valueOf(280 + random.nextInt(20)));
+                dive.addSample(temperature);
+            }
+        }
+        return dive;
+    }
+
+}
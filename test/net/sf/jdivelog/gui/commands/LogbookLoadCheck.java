@@ -0,0 +1,205 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: LogbookLoadCheck.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.gui.commands;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Random;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import net.sf.jdivelog.model.Buddy;
+import net.sf.jdivelog.model.DiveSite;
+import net.sf.jdivelog.model.JDive;
+import net.sf.jdivelog.model.JDiveLog;
+import net.sf.jdivelog.model.Masterdata;
+import net.sf.jdivelog.model.udcf.Depth;
+import net.sf.jdivelog.model.udcf.Dive;
+import net.sf.jdivelog.model.udcf.Temperature;
+import net.sf.jdivelog.model.udcf.Time;
+
+import org.apache.commons.digester3.Digester;
+import org.xml.sax.SAXException;
+
+/**
+ * Description: Checks that a saved logbook is loaded back unchanged and
+ * times the load with the version read from the first elements against
+ * the former full Digester pass that only read the version, for logbooks
+ * of 5000 and 20000 dives.
+ * <p>
+ * Run with the classes of <code>src</code> and the libraries on the class
+ * path, exits with status 1 if the loaded logbook differs.
+ */
+public class LogbookLoadCheck {
+
+    private static final int[] DIVES = { 5000, 20000 };
+    private static final int SAMPLES = 300;
+
+    public static void main(String[] args) throws Exception {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : System.currentTimeMillis();
+        Random random = new Random(seed);
+        for (int count : DIVES) {
+            JDiveLog logbook = newLogbook(random, count);
+            File file = File.createTempFile("logbook", ".jlb"); //$NON-NLS-1$ //$NON-NLS-2$
+            try {
+                write(logbook, file);
+                // once to warm up, then measured
+                load(file, false);
+                load(file, true);
+                long start = System.nanoTime();
+                JDiveLog loaded = load(file, true);
+                long fullPass = System.nanoTime() - start;
+                start = System.nanoTime();
+                loaded = load(file, false);
+                long sniffed = System.nanoTime() - start;
+                // settings left unset are loaded with their defaults, so the
+                // dives and the master data are compared
+                String saved = divesAndMasterdata(logbook);
+                String reloaded = divesAndMasterdata(loaded);
+                if (!saved.equals(reloaded)) {
+                    int i = 0;
+                    while (i < saved.length() && i < reloaded.length() && saved.charAt(i) == reloaded.charAt(i)) {
+                        i++;
+                    }
+                    System.err.println("loaded logbook of " + count + " dives differs from the saved one (seed " + seed + ") at " + i + ":"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+                    System.err.println(excerpt(saved, i));
+                    System.err.println(excerpt(reloaded, i));
+                    System.exit(1);
+                }
+                System.out.println(count + " dives, " + file.length() / 1024 / 1024 + " MB loaded unchanged, version read by a full Digester pass: " + fullPass / 1000000 + " ms, sniffed: " + sniffed / 1000000 + " ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+            } finally {
+                file.delete();
+            }
+        }
+        System.out.println("seed " + seed); //$NON-NLS-1$
+    }
+
+    /**
+     * the load of CommandLoadFile for a logbook of the current version.
+     * @param fullVersionPass <code>true</code> to read the version the former
+     * way, with a Digester parsing the whole file.
+     */
+    private static JDiveLog load(File file, boolean fullVersionPass) throws SAXException, IOException {
+        VersionBean vb = fullVersionPass ? readVersionWithDigester(file) : CommandLoadFile.readVersion(open(file));
+        if (!"2.13".equals(vb.getVersion())) { //$NON-NLS-1$
+            throw new IllegalStateException("unexpected version " + vb.getVersion()); //$NON-NLS-1$
+        }
+        InputStream in = open(file);
+        try {
+            return CommandLoadFile.parseCurrentVersion(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static VersionBean readVersionWithDigester(File file) throws SAXException, IOException {
+        Digester d = new Digester();
+        try {
+            d.setFeature("http://apache.org/xml/features/allow-java-encodings", true); //$NON-NLS-1$
+        } catch (ParserConfigurationException e) {
+            // tried it, but never mind
+        }
+        d.setValidating(false);
+        d.addObjectCreate("JDiveLog", VersionBean.class); //$NON-NLS-1$
+        d.addCallMethod("JDiveLog/Version", "setVersion", 1); //$NON-NLS-1$ //$NON-NLS-2$
+        d.addCallParam("JDiveLog/Version", 0); //$NON-NLS-1$
+        return (VersionBean) d.parse(file);
+    }
+
+    private static String divesAndMasterdata(JDiveLog logbook) throws IOException {
+        StringBuffer sb = new StringBuffer();
+        logbook.getMasterdata().write(sb);
+        for (JDive dive : logbook.getDives()) {
+            dive.write(sb);
+        }
+        return sb.toString();
+    }
+
+    private static String excerpt(String s, int index) {
+        return s.substring(Math.max(0, index - 60), Math.min(s.length(), index + 60));
+    }
+
+    private static InputStream open(File file) throws IOException {
+        return new BufferedInputStream(new FileInputStream(file));
+    }
+
+    private static void write(JDiveLog logbook, File file) throws IOException {
+        Writer bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+        try {
+            bw.write("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n"); //$NON-NLS-1$
+            logbook.write(bw);
+        } finally {
+            bw.close();
+        }
+    }
+
+    private static JDiveLog newLogbook(Random random, int count) {
+        JDiveLog logbook = new JDiveLog();
+        Masterdata masterdata = new Masterdata();
+        for (int i = 0; i < 20; i++) {
+            Buddy buddy = new Buddy();
+            buddy.setFirstname("Buddy " + i); //$NON-NLS-1$
+            buddy.setLastname("Mller"); //$NON-NLS-1$
+            masterdata.addBuddy(buddy);
+            DiveSite site = new DiveSite();
+            site.setSpot("Spot " + i); //$NON-NLS-1$
+            site.setCountry("CH"); //$NON-NLS-1$
+            site.setPrivateId(String.valueOf(i + 1));
+            masterdata.addDiveSite(site);
+        }
+        logbook.setMasterdata(masterdata);
+        for (int i = 0; i < count; i++) {
+            Dive dive = new Dive();
+            dive.setDate(new Date(1200000000000L + i * 86400000L));
+            dive.setTimeDepthMode();
+            double depth = 0;
+            for (int s = 0; s < SAMPLES; s++) {
+                Time time = new Time();
+                time.setValue(Double.valueOf(s / 6.0));
+                dive.addSample(time);
+                depth = Math.max(0, depth + (random.nextInt(21) - 10) / 10.0);
+                Depth d = new Depth();
+                d.setValue(Double.valueOf(depth));
+                dive.addSample(d);
+                if (s % 10 == 0) {
+                    Temperature temperature = new Temperature();
+                    temperature.setValue(Double.valueOf(280 + random.nextInt(20)));
+                    dive.addSample(temperature);
+                }
+            }
+            JDive jdive = new JDive("SI", dive); //$NON-NLS-1$
+            jdive.setDiveNumber(Long.valueOf(i + 1));
+            jdive.setDiveSiteId(String.valueOf(1 + random.nextInt(20)));
+            jdive.setComment("<dive & \"quotes\"> " + i); //$NON-NLS-1$
+            logbook.addDive(jdive);
+        }
+        return logbook;
+    }
+
+}
@@ -0,0 +1,242 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: UndoHistoryCheck.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.gui.commands;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Random;
+import java.util.TreeSet;
+
+import net.sf.jdivelog.model.JDive;
+import net.sf.jdivelog.model.JDiveLog;
+
+/**
+ * Description: Checks that undoing and redoing commands recorded as
+ * {@link DiveListChange}s restores the dives and the ignored dives of
+ * every step, that the {@link CommandManager} keeps no more commands than
+ * its history limit, and compares the heap held by a full history with
+ * the heap held by the former records, which copied the dive list before
+ * and after every command.
+ * <p>
+ * Run with the classes of <code>src</code> on the class path, exits with
+ * status 1 on the first difference.
+ */
+public class UndoHistoryCheck {
+
+    private static final int DIVES = 10000;
+    private static final int COMMANDS = CommandManager.DEFAULT_HISTORY_LIMIT;
+
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : System.currentTimeMillis();
+        Random random = new Random(seed);
+        JDiveLog logbook = newLogbook(random);
+        CommandManager manager = CommandManager.getInstance();
+        manager.setHistoryLimit(CommandManager.DEFAULT_HISTORY_LIMIT);
+
+        ArrayList<String> states = new ArrayList<String>();
+        states.add(state(logbook));
+        for (int i = 0; i < COMMANDS; i++) {
+            manager.execute(new ChangeCommand(logbook, random));
+            states.add(state(logbook));
+        }
+        for (int i = COMMANDS - 1; i >= 0; i--) {
+            manager.undo();
+            compare(seed, "undo to step " + i, states.get(i), logbook); //$NON-NLS-1$
+        }
+        if (manager.canUndo()) {
+            fail(seed, "undo possible before the first command"); //$NON-NLS-1$
+        }
+        for (int i = 1; i <= COMMANDS; i++) {
+            manager.redo();
+            compare(seed, "redo to step " + i, states.get(i), logbook); //$NON-NLS-1$
+        }
+
+        // a command after an undo drops the commands which could be redone
+        manager.undo();
+        manager.undo();
+        manager.execute(new ChangeCommand(logbook, random));
+        if (manager.canRedo()) {
+            fail(seed, "redo possible after a new command"); //$NON-NLS-1$
+        }
+
+        // the oldest commands are dropped beyond the limit
+        manager.setHistoryLimit(COMMANDS / 2);
+        int undos = 0;
+        while (manager.canUndo()) {
+            manager.undo();
+            undos++;
+        }
+        if (undos != COMMANDS / 2) {
+            fail(seed, undos + " commands undone with a limit of " + COMMANDS / 2); //$NON-NLS-1$
+        }
+        manager.setHistoryLimit(CommandManager.DEFAULT_HISTORY_LIMIT);
+        System.out.println(COMMANDS + " commands undone and redone on " + DIVES + " dives, history limit kept, seed " + seed); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+        // heap held by a full history of each kind
+        ArrayList<Object> history = new ArrayList<Object>();
+        long heap = usedHeap();
+        for (int i = 0; i < COMMANDS; i++) {
+            history.add(new SnapshotCommand(logbook, random));
+        }
+        long snapshots = usedHeap() - heap;
+        history.clear();
+        heap = usedHeap();
+        for (int i = 0; i < COMMANDS; i++) {
+            ChangeCommand cmd = new ChangeCommand(logbook, random);
+            cmd.execute();
+            history.add(cmd);
+        }
+        long changes = usedHeap() - heap;
+        System.out.println(COMMANDS + " commands on " + DIVES + " dives hold " + snapshots / 1024 + " KB as list copies, " + changes / 1024 + " KB as changes, " + history.size() + " commands"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+    }
+
+    private static JDiveLog newLogbook(Random random) {
+        JDiveLog logbook = new JDiveLog();
+        for (int i = 0; i < DIVES; i++) {
+            logbook.addDive(newDive(random));
+        }
+        return logbook;
+    }
+
+    private static JDive newDive(Random random) {
+        JDive dive = new JDive();
+        dive.setDiveNumber(Long.valueOf(random.nextInt(1000000)));
+        dive.setDate(new Date(1200000000000L + random.nextInt(100000) * 3600000L));
+        dive.setDepth(Double.valueOf(random.nextInt(600) / 10.0));
+        dive.setDuration(Double.valueOf(random.nextInt(90)));
+        return dive;
+    }
+
+    /**
+     * @return the identities of the dives and the ignored dives in their order.
+     */
+    private static String state(JDiveLog logbook) {
+        StringBuffer sb = new StringBuffer();
+        for (JDive dive : logbook.getDives()) {
+            sb.append(System.identityHashCode(dive)).append(',');
+        }
+        sb.append('|');
+        for (JDive dive : logbook.getIgnoredDives()) {
+            sb.append(System.identityHashCode(dive)).append(',');
+        }
+        return sb.toString();
+    }
+
+    private static void compare(long seed, String step, String expected, JDiveLog logbook) {
+        if (!expected.equals(state(logbook))) {
+            fail(seed, "dives differ after " + step); //$NON-NLS-1$
+        }
+    }
+
+    private static void fail(long seed, String message) {
+        System.err.println(message + " (seed " + seed + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        System.exit(1);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * adds, deletes or ignores some dives, or takes some back from the
+     * ignored dives, like the dive commands.
+     */
+    private static class ChangeCommand implements UndoableCommand {
+
+        private final JDiveLog logbook;
+        private final Random random;
+        private final DiveListChange dives = new DiveListChange(false);
+        private final DiveListChange ignoredDives = new DiveListChange(true);
+
+        public ChangeCommand(JDiveLog logbook, Random random) {
+            this.logbook = logbook;
+            this.random = random;
+        }
+
+        public void execute() {
+            int count = 1 + random.nextInt(20);
+            switch (random.nextInt(4)) {
+            case 0:
+                for (int i = 0; i < count; i++) {
+                    dives.add(logbook, newDive(random));
+                }
+                break;
+            case 1:
+                for (JDive dive : pick(logbook.getDives(), count)) {
+                    dives.remove(logbook, dive);
+                }
+                break;
+            case 2:
+                for (JDive dive : pick(logbook.getDives(), count)) {
+                    dives.remove(logbook, dive);
+                    ignoredDives.add(logbook, dive);
+                }
+                break;
+            default:
+                for (JDive dive : pick(logbook.getIgnoredDives(), count)) {
+                    ignoredDives.remove(logbook, dive);
+                    dives.add(logbook, dive);
+                }
+            }
+        }
+
+        public void undo() {
+            ignoredDives.undo(logbook);
+            dives.undo(logbook);
+        }
+
+        public void redo() {
+            dives.redo(logbook);
+            ignoredDives.redo(logbook);
+        }
+
+        private ArrayList<JDive> pick(TreeSet<JDive> set, int count) {
+            ArrayList<JDive> all = new ArrayList<JDive>(set);
+            ArrayList<JDive> picked = new ArrayList<JDive>();
+            for (int i = 0; i < count && !all.isEmpty(); i++) {
+                picked.add(all.remove(random.nextInt(all.size())));
+            }
+            return picked;
+        }
+    }
+
+    /**
+     * the record of the former dive commands: a copy of the dive list
+     * before and after the command.
+     */
+    private static class SnapshotCommand {
+
+        private final TreeSet<JDive> oldDiveList;
+        private final TreeSet<JDive> newDiveList;
+
+        public SnapshotCommand(JDiveLog logbook, Random random) {
+            oldDiveList = new TreeSet<JDive>(logbook.getDives());
+            JDive dive = newDive(random);
+            logbook.addDive(dive);
+            newDiveList = new TreeSet<JDive>(logbook.getDives());
+            logbook.removeDive(dive);
+        }
+    }
+
+}
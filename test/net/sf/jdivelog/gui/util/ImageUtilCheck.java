@@ -0,0 +1,126 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: ImageUtilCheck.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.gui.util;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Description: Compares scaling a large photo after decoding it with
+ * subsampling, see {@link ImageUtil#read(File, int, int, int)}, with
+ * scaling the fully decoded photo: the decoded size, the time and the mean
+ * difference of the scaled images.
+ * <p>
+ * Runs headless. Exits with status 1 if the scaled images differ by more
+ * than 3 percent on average.
+ */
+public class ImageUtilCheck {
+
+    private static final int PHOTO_WIDTH = 6000;
+    private static final int PHOTO_HEIGHT = 4000;
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 600;
+    /** 3 percent, subsampling skips pixels without filtering them */
+    private static final double MAX_DIFFERENCE = 0.03 * 255;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true"); //$NON-NLS-1$ //$NON-NLS-2$
+        File file = File.createTempFile("imagecheck", ".jpg"); //$NON-NLS-1$ //$NON-NLS-2$
+        try {
+            ImageIO.write(newPhoto(), "jpg", file); //$NON-NLS-1$
+            for (int rotation = 0; rotation < 4; rotation++) {
+                BufferedImage full = null;
+                BufferedImage subsampled = null;
+                BufferedImage decoded = null;
+                long fullTime = 0;
+                long subsampledTime = 0;
+                for (int round = 0; round < ROUNDS; round++) {
+                    long start = System.nanoTime();
+                    full = ImageUtil.transform(ImageIO.read(file), WIDTH, HEIGHT, rotation);
+                    fullTime = System.nanoTime() - start;
+                    start = System.nanoTime();
+                    decoded = ImageUtil.read(file, WIDTH, HEIGHT, rotation);
+                    subsampled = ImageUtil.transform(decoded, WIDTH, HEIGHT, rotation);
+                    subsampledTime = System.nanoTime() - start;
+                }
+                if (full.getWidth() != subsampled.getWidth() || full.getHeight() != subsampled.getHeight()) {
+                    fail("size differs for rotation " + rotation); //$NON-NLS-1$
+                }
+                double difference = meanDifference(full, subsampled);
+                System.out.println("rotation " + rotation + ": decoded " + decoded.getWidth() + "x" + decoded.getHeight() //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                        + " instead of " + PHOTO_WIDTH + "x" + PHOTO_HEIGHT + ", " + subsampledTime / 1000000 + " ms instead of " //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+                        + fullTime / 1000000 + " ms, mean difference " + difference); //$NON-NLS-1$
+                if (difference > MAX_DIFFERENCE) {
+                    fail("scaled images differ for rotation " + rotation); //$NON-NLS-1$
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * @return a photo with gradients and some fine detail.
+     */
+    private static BufferedImage newPhoto() {
+        BufferedImage img = new BufferedImage(PHOTO_WIDTH, PHOTO_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, new Color(0, 40, 120), PHOTO_WIDTH, PHOTO_HEIGHT, new Color(60, 200, 220)));
+        g.fillRect(0, 0, PHOTO_WIDTH, PHOTO_HEIGHT);
+        Random random = new Random(1);
+        for (int i = 0; i < 2000; i++) {
+            g.setColor(new Color(random.nextInt(0x1000000)));
+            g.fillOval(random.nextInt(PHOTO_WIDTH), random.nextInt(PHOTO_HEIGHT), 20 + random.nextInt(200), 20 + random.nextInt(200));
+        }
+        g.dispose();
+        return img;
+    }
+
+    /**
+     * @return the mean difference of the color channels, 0 to 255.
+     */
+    private static double meanDifference(BufferedImage a, BufferedImage b) {
+        long sum = 0;
+        for (int y = 0; y < a.getHeight(); y++) {
+            for (int x = 0; x < a.getWidth(); x++) {
+                int p = a.getRGB(x, y);
+                int q = b.getRGB(x, y);
+                for (int shift = 0; shift < 24; shift += 8) {
+                    sum += Math.abs(((p >> shift) & 0xff) - ((q >> shift) & 0xff));
+                }
+            }
+        }
+        return (double) sum / (3L * a.getWidth() * a.getHeight());
+    }
+
+    private static void fail(String message) {
+        System.err.println(message);
+        System.exit(1);
+    }
+
+}
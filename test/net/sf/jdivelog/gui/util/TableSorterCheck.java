@@ -0,0 +1,263 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: TableSorterCheck.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.gui.util;
+
+import java.io.File;
+import java.text.Collator;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Random;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Description: Checks that sorting by the precomputed keys gives the same
+ * row order as the former sort, which asked the model and the collator on
+ * every comparison, for columns of numbers, dates, strings, booleans and
+ * other objects with repeated values and <code>null</code>s, and times
+ * both. The columns resemble the dive list and the dive site table.
+ * <p>
+ * Run with the classes of <code>src</code> on the class path, exits with
+ * status 1 on the first difference.
+ */
+public class TableSorterCheck {
+
+    private static final int ROWS = 20000;
+    private static final int SORTS = 100;
+
+    private static final String[] WORDS = { "Zrich", "zurich", "Zug", "gypten", "Aegypten", "agypten", "land", "Oland", "cluse", "Ecluse", "Malta", "malta", "" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$ //$NON-NLS-9$ //$NON-NLS-10$ //$NON-NLS-11$ //$NON-NLS-12$ //$NON-NLS-13$
+
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : System.currentTimeMillis();
+        Random random = new Random(seed);
+        RandomModel model = new RandomModel(random, ROWS);
+        TableSorter sorter = new TableSorter(model);
+        FormerSorter former = new FormerSorter(model);
+        long sortTime = 0;
+        long formerTime = 0;
+        for (int i = 0; i < SORTS; i++) {
+            if (i % 10 == 9) {
+                // the keys must be extracted again after the model changed
+                model.change(random);
+                model.fireTableDataChanged();
+                former.reset();
+            }
+            int column = random.nextInt(model.getColumnCount());
+            boolean ascending = random.nextBoolean();
+            long start = System.nanoTime();
+            sorter.sortColumn(column, ascending);
+            sortTime += System.nanoTime() - start;
+            start = System.nanoTime();
+            former.sort(column, ascending);
+            formerTime += System.nanoTime() - start;
+            if (!Arrays.equals(sorter.indexList, former.indexList)) {
+                System.err.println("row order differs after sort " + i + " by column " + column + (ascending ? " ascending" : " descending") + " (seed " + seed + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+                System.exit(1);
+            }
+        }
+        System.out.println("row order equals the former sort for " + SORTS + " sorts of " + ROWS + " rows, seed " + seed); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+        System.out.println("compared on every comparison: " + formerTime / 1000000 + " ms, precomputed keys: " + sortTime / 1000000 + " ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+
+    /**
+     * a table with a column of every kind the sorter knows.
+     */
+    private static class RandomModel extends AbstractTableModel implements SortableTableModel {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final Class<?>[] CLASSES = { Long.class, Date.class, String.class, String.class, Double.class, Integer.class, Boolean.class, File.class };
+
+        private final Object[][] values;
+
+        public RandomModel(Random random, int rows) {
+            values = new Object[rows][CLASSES.length];
+            for (int row = 0; row < rows; row++) {
+                fill(random, row);
+            }
+        }
+
+        public void change(Random random) {
+            for (int i = 0; i < values.length / 10; i++) {
+                fill(random, random.nextInt(values.length));
+            }
+        }
+
+        private void fill(Random random, int row) {
+            Object[] v = values[row];
+            v[0] = Long.valueOf(random.nextInt(values.length));
+            v[1] = new Date(1200000000000L + random.nextInt(1000) * 86400000L);
+            v[2] = WORDS[random.nextInt(WORDS.length)] + " " + random.nextInt(5); //$NON-NLS-1$
+            v[3] = WORDS[random.nextInt(WORDS.length)];
+            v[4] = Double.valueOf(random.nextInt(600) / 10.0);
+            v[5] = Integer.valueOf(random.nextInt(6) - 3);
+            v[6] = Boolean.valueOf(random.nextBoolean());
+            v[7] = new File("/pictures/" + WORDS[random.nextInt(WORDS.length)]); //$NON-NLS-1$
+            for (int column = 0; column < v.length; column++) {
+                if (random.nextInt(20) == 0) {
+                    v[column] = null;
+                }
+            }
+        }
+
+        public int getRowCount() {
+            return values.length;
+        }
+
+        public int getColumnCount() {
+            return CLASSES.length;
+        }
+
+        public Object getValueAt(int rowIndex, int columnIndex) {
+            return values[rowIndex][columnIndex];
+        }
+
+        public Class<?> getUnformattedColumnClass(int column) {
+            return CLASSES[column];
+        }
+
+        public Object getUnformattedValueAt(int row, int column) {
+            return values[row][column];
+        }
+    }
+
+    /**
+     * the former sort of {@link TableSorter}, comparing the values of the
+     * model on every comparison.
+     */
+    private static class FormerSorter {
+
+        private final SortableTableModel model;
+        private final Collator collator = Collator.getInstance();
+        private int[] indexList;
+        private int column;
+        private boolean asc;
+
+        public FormerSorter(SortableTableModel model) {
+            this.model = model;
+            reset();
+        }
+
+        public void reset() {
+            indexList = new int[model.getRowCount()];
+            for (int i = 0; i < indexList.length; i++) {
+                indexList[i] = i;
+            }
+        }
+
+        public void sort(int col, boolean ascending) {
+            column = col;
+            asc = ascending;
+            shuttlesort(indexList.clone(), indexList, 0, indexList.length);
+        }
+
+        private int compareRowsByColumn(int row1, int row2) {
+            Class<?> type = model.getUnformattedColumnClass(column);
+
+            // check for null
+            Object obj1 = model.getUnformattedValueAt(row1, column);
+            Object obj2 = model.getUnformattedValueAt(row2, column);
+            if (obj1 == null && obj2 == null)
+                return 0;
+            if (obj1 == null)
+                return -1;
+            if (obj2 == null)
+                return 1;
+
+            // Check for possible classes
+            if (type.getSuperclass() == java.lang.Number.class || type.getSuperclass().getSuperclass() == java.lang.Number.class) {
+                double d1 = ((Number) obj1).doubleValue();
+                double d2 = ((Number) obj2).doubleValue();
+                if (d1 < d2)
+                    return -1;
+                if (d1 > d2)
+                    return 1;
+                return 0;
+            }
+            if (type == String.class) {
+                String str1 = (String) obj1;
+                String str2 = (String) obj2;
+                return collator.compare(str1, str2);
+            }
+            if (type == Boolean.class) {
+                boolean b1 = ((Boolean) obj1).booleanValue();
+                boolean b2 = ((Boolean) obj2).booleanValue();
+                if (b1 == b2)
+                    return 0;
+                if (b1)
+                    return 1;
+                return -1;
+            }
+            if (type == java.util.Date.class) {
+                long n1 = ((java.util.Date) obj1).getTime();
+                long n2 = ((java.util.Date) obj2).getTime();
+                if (n1 < n2)
+                    return -1;
+                if (n1 > n2)
+                    return 1;
+                return 0;
+            }
+            String str1 = obj1.toString();
+            String str2 = obj2.toString();
+            int res = str1.compareTo(str2);
+            if (res < 0)
+                return -1;
+            if (res > 0)
+                return 1;
+            return 0;
+        }
+
+        private int compare(int row1, int row2) {
+            int result = compareRowsByColumn(row1, row2);
+            if (result != 0)
+                return asc ? result : -result;
+            return 0;
+        }
+
+        private void shuttlesort(int from[], int to[], int low, int high) {
+            if (high - low < 2)
+                return;
+
+            int middle = (low + high) / 2;
+            shuttlesort(to, from, low, middle);
+            shuttlesort(to, from, middle, high);
+
+            int p = low;
+            int q = middle;
+
+            if (high - low >= 4 && compare(from[middle - 1], from[middle]) <= 0) {
+                for (int i = low; i < high; i++) {
+                    to[i] = from[i];
+                }
+                return;
+            }
+
+            // A normal merge.
+            for (int i = low; i < high; i++) {
+                if (q >= high || (p < middle && compare(from[p], from[q]) <= 0)) {
+                    to[i] = from[p++];
+                } else {
+                    to[i] = from[q++];
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: DiveStatisticsCheck.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.model;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Random;
+
+import net.sf.jdivelog.util.UnitConverter;
+
+/**
+ * Description: Checks that the statistics kept up to date by the logbook
+ * equal the statistics computed from scratch, after random additions,
+ * removals and changes of dives in place.
+ * <p>
+ * Run with the classes of <code>src</code> on the class path, exits with
+ * status 1 on the first difference.
+ */
+public class DiveStatisticsCheck {
+
+    private static final int STEPS = 20000;
+
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : System.currentTimeMillis();
+        Random random = new Random(seed);
+        JDiveLog logbook = new JDiveLog();
+        ArrayList<JDive> dives = new ArrayList<JDive>();
+        long number = 0;
+        for (int step = 0; step < STEPS; step++) {
+            int action = random.nextInt(10);
+            if (action < 5 || dives.isEmpty()) {
+                JDive dive = newDive(random, ++number);
+                dives.add(dive);
+                logbook.addDive(dive);
+            } else if (action < 8) {
+                JDive dive = dives.remove(random.nextInt(dives.size()));
+                logbook.removeDive(dive);
+            } else {
+                // changed in place, followed by a change notification naming the dive
+                JDive dive = dives.get(random.nextInt(dives.size()));
+                dive.setDepth(randomValue(random, 60));
+                dive.setTemperature(randomValue(random, 30));
+                logbook.updateStatistics(Collections.singleton(dive));
+            }
+            if (step % 100 == 0) {
+                compare(seed, step, logbook.getStatistics(), DiveStatistics.of(logbook.getDives()));
+            }
+        }
+        compare(seed, STEPS, logbook.getStatistics(), DiveStatistics.of(logbook.getDives()));
+        System.out.println("incremental statistics equal the full recompute, seed " + seed); //$NON-NLS-1$
+    }
+
+    private static JDive newDive(Random random, long number) {
+        JDive dive = new JDive();
+        dive.setDiveNumber(Long.valueOf(number));
+        dive.setDate(new Date(number * 3600000L));
+        dive.setUnits(UnitConverter.SYSTEMS[random.nextInt(3)]);
+        dive.setDepth(randomValue(random, 60));
+        dive.setTemperature(randomValue(random, 30));
+        dive.setDuration(randomValue(random, 90));
+        dive.setAMV(randomValue(random, 25));
+        return dive;
+    }
+
+    /**
+     * @return a value with one decimal, or <code>null</code> or 0 now and then.
+     */
+    private static Double randomValue(Random random, int max) {
+        int kind = random.nextInt(20);
+        if (kind == 0) {
+            return null;
+        }
+        if (kind == 1) {
+            return Double.valueOf(0);
+        }
+        return Double.valueOf(random.nextInt(max * 10) / 10.0);
+    }
+
+    private static void compare(long seed, int step, DiveStatistics incremental, DiveStatistics full) {
+        check(seed, step, "dive count", incremental.getDiveCount(), full.getDiveCount(), 0); //$NON-NLS-1$
+        check(seed, step, "max depth", incremental.getMaxDepth(), full.getMaxDepth(), 0); //$NON-NLS-1$
+        check(seed, step, "max dive time", incremental.getMaxDiveTime(), full.getMaxDiveTime(), 0); //$NON-NLS-1$
+        check(seed, step, "max temperature", incremental.getMaxTemperature(), full.getMaxTemperature(), 0); //$NON-NLS-1$
+        check(seed, step, "min temperature", incremental.getMinTemperature(), full.getMinTemperature(), 0); //$NON-NLS-1$
+        check(seed, step, "next dive number", incremental.getNextDiveNumber(), full.getNextDiveNumber(), 0); //$NON-NLS-1$
+        // sums are kept incrementally, the averages may differ in the last rounded digit
+        check(seed, step, "total duration", incremental.getTotalDuration(), full.getTotalDuration(), 1e-6); //$NON-NLS-1$
+        check(seed, step, "average depth", incremental.getAverageDepth(), full.getAverageDepth(), 0.01); //$NON-NLS-1$
+        check(seed, step, "average amv", incremental.getAverageAmv(), full.getAverageAmv(), 0.01); //$NON-NLS-1$
+        check(seed, step, "average temperature", incremental.getAverageTemperature(), full.getAverageTemperature(), 0.01); //$NON-NLS-1$
+        check(seed, step, "average duration", incremental.getAverageDuration(), full.getAverageDuration(), 0.01); //$NON-NLS-1$
+    }
+
+    private static void check(long seed, int step, String name, Number incremental, Number full, double tolerance) {
+        double a = incremental == null ? 0 : toDouble(incremental);
+        double b = full == null ? 0 : toDouble(full);
+        if (Math.abs(a - b) > tolerance + 1e-9) {
+            System.err.println(name + " differs after step " + step + " (seed " + seed + "): " + incremental + " != " + full); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+            System.exit(1);
+        }
+    }
+
+    private static double toDouble(Number n) {
+        return n instanceof BigDecimal ? ((BigDecimal) n).doubleValue() : n.doubleValue();
+    }
+
+}
@@ -0,0 +1,185 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: LogbookWriteCheck.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.model;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Random;
+
+import net.sf.jdivelog.model.udcf.Depth;
+import net.sf.jdivelog.model.udcf.Dive;
+import net.sf.jdivelog.model.udcf.Temperature;
+import net.sf.jdivelog.model.udcf.Time;
+
+/**
+ * Description: Checks that streaming a logbook into the file writes the
+ * same bytes as the former save, which rendered the whole logbook into one
+ * String first, and prints the time and the peak heap of both.
+ * <p>
+ * Run with the classes of <code>src</code> on the class path, exits with
+ * status 1 if the files differ. The peak heap includes garbage the
+ * collector had no reason to collect yet; with a small -Xmx, e.g. 96m for
+ * the default 500 dives, the streamed save still fits where the string
+ * runs out of memory. The number of dives is the second argument.
+ */
+public class LogbookWriteCheck {
+
+    private static final int DIVES = 500;
+    private static final int SAMPLES = 3600;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n"; //$NON-NLS-1$
+
+    public static void main(String[] args) throws IOException {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : System.currentTimeMillis();
+        int dives = args.length > 1 ? Integer.parseInt(args[1]) : DIVES;
+        JDiveLog logbook = newLogbook(new Random(seed), dives);
+        File stringFile = File.createTempFile("string", ".jlb"); //$NON-NLS-1$ //$NON-NLS-2$
+        File streamFile = File.createTempFile("stream", ".jlb"); //$NON-NLS-1$ //$NON-NLS-2$
+        try {
+            resetPeaks();
+            long logbookHeap = peakHeap();
+            System.out.println(dives + " dives, logbook alone: peak heap " + logbookHeap / 1024 / 1024 + " MB"); //$NON-NLS-1$ //$NON-NLS-2$
+
+            resetPeaks();
+            long start = System.nanoTime();
+            writeStream(logbook, streamFile);
+            long streamTime = System.nanoTime() - start;
+            System.out.println("streamed: " + streamTime / 1000000 + " ms, peak heap " + peakHeap() / 1024 / 1024 + " MB"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+            resetPeaks();
+            start = System.nanoTime();
+            try {
+                writeString(logbook, stringFile);
+            } catch (OutOfMemoryError e) {
+                System.out.println("rendered string: out of memory, nothing to compare (seed " + seed + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+                return;
+            }
+            long stringTime = System.nanoTime() - start;
+            System.out.println("rendered string: " + stringTime / 1000000 + " ms, peak heap " + peakHeap() / 1024 / 1024 + " MB"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+            byte[] expected = Files.readAllBytes(stringFile.toPath());
+            byte[] written = Files.readAllBytes(streamFile.toPath());
+            if (!Arrays.equals(expected, written)) {
+                System.err.println("streamed file differs from the rendered string (seed " + seed + "), " + written.length + " != " + expected.length + " bytes"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+                System.exit(1);
+            }
+            System.out.println("streamed file equals the rendered string, " + written.length / 1024 / 1024 + " MB, seed " + seed); //$NON-NLS-1$ //$NON-NLS-2$
+        } finally {
+            stringFile.delete();
+            streamFile.delete();
+        }
+    }
+
+    /**
+     * the former save: the whole logbook as one String, then written out.
+     */
+    private static void writeString(JDiveLog logbook, File file) throws IOException {
+        String stream = logbook.toString();
+        Writer bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+        try {
+            bw.write(HEADER);
+            bw.write(stream);
+        } finally {
+            bw.close();
+        }
+    }
+
+    /**
+     * the save of CommandSaveFile, without the rename of the temporary file.
+     */
+    private static void writeStream(JDiveLog logbook, File file) throws IOException {
+        Writer bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE);
+        try {
+            bw.write(HEADER);
+            logbook.write(bw);
+        } finally {
+            bw.close();
+        }
+    }
+
+    private static JDiveLog newLogbook(Random random, int count) {
+        JDiveLog logbook = new JDiveLog();
+        Masterdata masterdata = new Masterdata();
+        for (int i = 0; i < 20; i++) {
+            Buddy buddy = new Buddy();
+            buddy.setFirstname("Jrg " + i); //$NON-NLS-1$
+            buddy.setLastname("Mller"); //$NON-NLS-1$
+            masterdata.addBuddy(buddy);
+        }
+        logbook.setMasterdata(masterdata);
+        for (int i = 0; i < count; i++) {
+            Dive dive = new Dive();
+            dive.setDate(new Date(1200000000000L + i * 86400000L));
+            dive.setTimeDepthMode();
+            double depth = 0;
+            for (int s = 0; s < SAMPLES; s++) {
+                Time time = new Time();
+                time.setValue(Double.valueOf(s / 60.0));
+                dive.addSample(time);
+                depth = Math.max(0, depth + (random.nextInt(21) - 10) / 10.0);
+                Depth d = new Depth();
+                d.setValue(Double.valueOf(depth));
+                dive.addSample(d);
+                if (s % 10 == 0) {
+                    Temperature temperature = new Temperature();
+                    temperature.setValue(Double.valueOf(280 + random.nextInt(20)));
+                    dive.addSample(temperature);
+                }
+            }
+            JDive jdive = new JDive("SI", dive); //$NON-NLS-1$
+            jdive.setDiveNumber(Long.valueOf(i + 1));
+            jdive.setPlace("Zrichsee " + random.nextInt(50)); //$NON-NLS-1$
+            jdive.setComment("<dive & \"quotes\"> " + i); //$NON-NLS-1$
+            logbook.addDive(jdive);
+        }
+        return logbook;
+    }
+
+    private static void resetPeaks() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+}
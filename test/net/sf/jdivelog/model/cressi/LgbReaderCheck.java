@@ -0,0 +1,261 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: LgbReaderCheck.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.model.cressi;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Description: Checks that {@link LgbReader} reads the same values as the
+ * {@link RandomAccessFile} the Cressi import used before, for random
+ * sequences of seeks and reads over random files, and that its signature
+ * search finds the first occurrence. Then compares the time a signature
+ * search takes with the former byte by byte reads.
+ * <p>
+ * Exits with status 1 on the first difference.
+ */
+public class LgbReaderCheck {
+
+    private static final int FILES = 200;
+    private static final int STEPS = 2000;
+    private static final int BENCHMARK_SIZE = 2 * 1024 * 1024;
+
+    public static void main(String[] args) throws IOException {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : System.currentTimeMillis();
+        Random random = new Random(seed);
+        File file = File.createTempFile("lgbcheck", ".lgb"); //$NON-NLS-1$ //$NON-NLS-2$
+        try {
+            for (int n = 0; n < FILES; n++) {
+                byte[] data = new byte[random.nextInt(4096)];
+                // few distinct values, so signatures occur now and then
+                for (int i = 0; i < data.length; i++) {
+                    data[i] = (byte) (random.nextInt(4) * 0x55);
+                }
+                write(file, data);
+                compare(seed, n, file, data, random);
+            }
+            System.out.println(FILES + " files read the same as with RandomAccessFile, seed " + seed); //$NON-NLS-1$
+
+            byte[] data = new byte[BENCHMARK_SIZE];
+            byte[] mark = { 'D', 'D', 'B' };
+            System.arraycopy(mark, 0, data, data.length - mark.length, mark.length);
+            write(file, data);
+            for (int round = 0; round < 3; round++) {
+                long start = System.nanoTime();
+                RandomAccessFile raf = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+                try {
+                    skipByteWise(raf, mark);
+                } finally {
+                    raf.close();
+                }
+                long byteWise = System.nanoTime() - start;
+                start = System.nanoTime();
+                LgbReader reader = new LgbReader(file);
+                int pos = reader.indexOf(mark);
+                long inMemory = System.nanoTime() - start;
+                if (pos != data.length - mark.length) {
+                    fail(seed, -1, "signature at " + pos); //$NON-NLS-1$
+                }
+                if (round == 2) {
+                    System.out.println("signature search over " + BENCHMARK_SIZE / 1024 + " KB, byte by byte: " + byteWise / 1000000 + " ms, read into memory: " + inMemory / 1000000 + " ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void compare(long seed, int n, File file, byte[] data, Random random) throws IOException {
+        LgbReader reader = new LgbReader(file);
+        RandomAccessFile raf = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+        try {
+            if (reader.length() != raf.length()) {
+                fail(seed, n, "length"); //$NON-NLS-1$
+            }
+            for (int step = 0; step < STEPS; step++) {
+                long expected;
+                long actual;
+                int op = random.nextInt(8);
+                try {
+                    switch (op) {
+                    case 0:
+                        // the reader stops a seek beyond the end at the end, the file
+                        // would be positioned beyond it, which makes skipBytes negative
+                        long pos = random.nextInt(data.length + 10);
+                        raf.seek(Math.min(pos, data.length));
+                        reader.seek(pos);
+                        expected = 0;
+                        actual = 0;
+                        break;
+                    case 1:
+                        int skip = random.nextInt(20);
+                        expected = raf.skipBytes(skip);
+                        actual = reader.skipBytes(skip);
+                        break;
+                    case 2:
+                        byte[] a = new byte[random.nextInt(10) + 1];
+                        byte[] b = new byte[a.length];
+                        expected = raf.read(a);
+                        actual = reader.read(b);
+                        if (!Arrays.equals(a, b)) {
+                            actual = Long.MIN_VALUE;
+                        }
+                        break;
+                    case 3:
+                        expected = raf.readByte();
+                        actual = reader.readByte();
+                        break;
+                    case 4:
+                        expected = raf.readUnsignedByte();
+                        actual = reader.readUnsignedByte();
+                        break;
+                    case 5:
+                        expected = raf.readUnsignedShort();
+                        actual = reader.readUnsignedShort();
+                        break;
+                    case 6:
+                        expected = raf.readInt();
+                        actual = reader.readInt();
+                        break;
+                    default:
+                        byte[] mark = new byte[1 + random.nextInt(3)];
+                        for (int i = 0; i < mark.length; i++) {
+                            mark[i] = (byte) (random.nextInt(4) * 0x55);
+                        }
+                        expected = indexOf(data, mark, (int) raf.getFilePointer());
+                        actual = reader.indexOf(mark);
+                        break;
+                    }
+                } catch (EOFException e) {
+                    // both have to fail, the position after a failed read is not compared
+                    expectEof(seed, n, op, raf, reader);
+                    long pos = random.nextInt(data.length + 1);
+                    raf.seek(pos);
+                    reader.seek(pos);
+                    continue;
+                }
+                if (expected != actual || raf.getFilePointer() != reader.getFilePointer()) {
+                    fail(seed, n, "step " + step + ", operation " + op + ": " + expected + " != " + actual); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                }
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * repeats the read which failed with an {@link EOFException} on the other reader.
+     */
+    private static void expectEof(long seed, int n, int op, RandomAccessFile raf, LgbReader reader) throws IOException {
+        long pos = reader.getFilePointer();
+        raf.seek(pos);
+        reader.seek(pos);
+        boolean rafFailed = false;
+        boolean readerFailed = false;
+        try {
+            read(raf, op);
+        } catch (EOFException e) {
+            rafFailed = true;
+        }
+        try {
+            switch (op) {
+            case 3:
+                reader.readByte();
+                break;
+            case 4:
+                reader.readUnsignedByte();
+                break;
+            case 5:
+                reader.readUnsignedShort();
+                break;
+            default:
+                reader.readInt();
+                break;
+            }
+        } catch (EOFException e) {
+            readerFailed = true;
+        }
+        if (rafFailed != readerFailed) {
+            fail(seed, n, "end of file at " + pos + ", operation " + op); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    private static void read(RandomAccessFile raf, int op) throws IOException {
+        switch (op) {
+        case 3:
+            raf.readByte();
+            break;
+        case 4:
+            raf.readUnsignedByte();
+            break;
+        case 5:
+            raf.readUnsignedShort();
+            break;
+        default:
+            raf.readInt();
+            break;
+        }
+    }
+
+    private static int indexOf(byte[] data, byte[] mark, int from) {
+        for (int i = from; i <= data.length - mark.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(data, i, i + mark.length), mark)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * the former signature search of {@link CressiLGB}, one read per byte.
+     */
+    private static void skipByteWise(RandomAccessFile rd, byte[] mark) throws IOException {
+        int pos = 0;
+        while (pos < mark.length) {
+            int ch = rd.readUnsignedByte();
+            if (ch == mark[pos]) {
+                pos++;
+            } else {
+                pos = 0;
+            }
+        }
+    }
+
+    private static void write(File file, byte[] data) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void fail(long seed, int n, String message) {
+        System.err.println("file " + n + " (seed " + seed + "): " + message); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        System.exit(1);
+    }
+
+}
@@ -0,0 +1,294 @@
+/*
+ * Project: JDiveLog: A Dive Logbook written in Java
+ * File: DiveSamplesCheck.java
+ *
+ * This file is part of JDiveLog.
+ * JDiveLog is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * JDiveLog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with JDiveLog; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package net.sf.jdivelog.model.udcf;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Description: Checks that a dive keeping its samples in the compact
+ * columns gives the same samples, maximum and average depth and duration
+ * as the former computation over a list of sample objects, before and
+ * after a time offset was added. Then times both for the same dives.
+ * <p>
+ * Run with the classes of <code>src</code> on the class path, exits with
+ * status 1 on the first difference.
+ */
+public class DiveSamplesCheck {
+
+    private static final int DIVES = 2000;
+    private static final int MAX_SAMPLES = 3000;
+    private static final int ROUNDS = 5;
+
+    private static final String[] NAMES = { "Air", "EAN32", "EAN50", "Tx18/45" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : System.currentTimeMillis();
+        Random random = new Random(seed);
+        Dive[] dives = new Dive[DIVES];
+        ArrayList<ArrayList<Sample>> lists = new ArrayList<ArrayList<Sample>>(DIVES);
+        long samples = 0;
+        for (int i = 0; i < DIVES; i++) {
+            ArrayList<Sample> list = newSamples(random);
+            Dive dive = new Dive();
+            dive.setMode(random.nextBoolean() ? Dive.MODE_DELTA : Dive.MODE_TIME);
+            for (Sample sample : list) {
+                dive.addSample(sample);
+            }
+            dives[i] = dive;
+            lists.add(list);
+            samples += list.size();
+        }
+        for (int i = 0; i < DIVES; i++) {
+            compare(seed, i, dives[i], lists.get(i));
+        }
+
+        long columnTime = Long.MAX_VALUE;
+        long listTime = Long.MAX_VALUE;
+        double sink = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < DIVES; i++) {
+                sink += sum(dives[i].getMaxDepth(), dives[i].getAverageDepth(), dives[i].getDuration());
+            }
+            columnTime = Math.min(columnTime, System.nanoTime() - start);
+            start = System.nanoTime();
+            for (int i = 0; i < DIVES; i++) {
+                ArrayList<Sample> list = dives[i].hasSamples() ? lists.get(i) : null;
+                sink -= sum(maxDepth(list), averageDepth(list), duration(list, dives[i].getMode()));
+            }
+            listTime = Math.min(listTime, System.nanoTime() - start);
+        }
+
+        for (int i = 0; i < DIVES; i++) {
+            Double offset = Double.valueOf(random.nextInt(600) / 10.0);
+            dives[i].addSampleTimeOffset(offset);
+            addSampleTimeOffset(lists.get(i), offset);
+            compare(seed, i, dives[i], lists.get(i));
+        }
+        // from here on the dive keeps the sample objects again
+        for (int i = 0; i < DIVES; i++) {
+            dives[i].getSamples();
+            compare(seed, i, dives[i], lists.get(i));
+        }
+
+        System.out.println("columns equal the sample lists for " + DIVES + " dives with " + samples + " samples, seed " + seed + (Math.abs(sink) < 1e-3 ? "" : " (sums differ)")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+        System.out.println("max depth, average depth and duration of all dives: columns " + columnTime / 1000 + " us, sample lists " + listTime / 1000 + " us"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+    }
+
+    /**
+     * @return samples the way the dive computers deliver them: a delta or a
+     * time before each depth, sometimes a temperature, now and then one of
+     * the other kinds.
+     */
+    private static ArrayList<Sample> newSamples(Random random) {
+        int count = random.nextInt(MAX_SAMPLES);
+        ArrayList<Sample> list = new ArrayList<Sample>(count);
+        double time = 0;
+        for (int i = 0; i < count; i++) {
+            if (random.nextInt(50) == 0) {
+                Delta delta = new Delta();
+                delta.setValue(Double.valueOf(1 + random.nextInt(30)));
+                list.add(delta);
+            }
+            Time t = new Time();
+            time += random.nextInt(30) / 10.0;
+            t.setValue(Double.valueOf(time));
+            list.add(t);
+            Depth depth = new Depth();
+            depth.setValue(random.nextInt(100) == 0 ? null : Double.valueOf(random.nextInt(800) / 10.0));
+            list.add(depth);
+            if (random.nextInt(4) == 0) {
+                Temperature temperature = new Temperature();
+                temperature.setValue(Double.valueOf(random.nextInt(300) / 10.0));
+                list.add(temperature);
+            }
+            switch (random.nextInt(40)) {
+            case 0:
+                Switch sw = new Switch();
+                sw.setValue(NAMES[random.nextInt(NAMES.length)]);
+                list.add(sw);
+                break;
+            case 1:
+                Alarm alarm = new Alarm();
+                alarm.setValue(random.nextBoolean() ? Alarm.ALARM_DECO : Alarm.ALARM_BOOKMARK);
+                list.add(alarm);
+                break;
+            case 2:
+                PPO2 ppo2 = new PPO2();
+                ppo2.setSensor(random.nextBoolean() ? null : String.valueOf(random.nextInt(3)));
+                ppo2.setValue(Double.valueOf(random.nextInt(16) / 10.0));
+                list.add(ppo2);
+                break;
+            case 3:
+                DecoInfo deco = new DecoInfo();
+                deco.setValue(Double.valueOf(random.nextInt(10) * 3));
+                deco.setTfs(random.nextBoolean() ? null : Double.valueOf(random.nextInt(60)));
+                deco.setTts(random.nextBoolean() ? null : Double.valueOf(random.nextInt(60)));
+                list.add(deco);
+                break;
+            case 4:
+                Cns cns = new Cns();
+                cns.setValue(Double.valueOf(random.nextInt(100)));
+                list.add(cns);
+                break;
+            case 5:
+                SetpointSwitch setpoint = new SetpointSwitch();
+                setpoint.setValue(Double.valueOf(random.nextInt(14) / 10.0));
+                list.add(setpoint);
+                break;
+            default:
+                break;
+            }
+        }
+        return list;
+    }
+
+    private static void compare(long seed, int index, Dive dive, ArrayList<Sample> list) {
+        // a dive nothing was added to had no sample list before either
+        ArrayList<Sample> samples = dive.hasSamples() ? list : null;
+        if (dive.getSampleCount() != list.size()) {
+            fail(seed, index, "sample count", Integer.valueOf(dive.getSampleCount()), Integer.valueOf(list.size())); //$NON-NLS-1$
+        }
+        for (int i = 0; i < list.size(); i++) {
+            Sample sample = dive.getSample(i);
+            Sample expected = list.get(i);
+            // the xml of a sample holds its type and all of its values
+            if (sample.getType() != expected.getType() || !sample.toString().equals(expected.toString())) {
+                fail(seed, index, "sample " + i, sample, expected); //$NON-NLS-1$
+            }
+        }
+        check(seed, index, "max depth", dive.getMaxDepth(), maxDepth(samples)); //$NON-NLS-1$
+        check(seed, index, "average depth", dive.getAverageDepth(), averageDepth(samples)); //$NON-NLS-1$
+        check(seed, index, "duration", dive.getDuration(), duration(samples, dive.getMode())); //$NON-NLS-1$
+    }
+
+    private static void check(long seed, int index, String name, Double value, Double expected) {
+        if (value == null ? expected != null : !value.equals(expected)) {
+            fail(seed, index, name, value, expected);
+        }
+    }
+
+    private static void fail(long seed, int index, String name, Object value, Object expected) {
+        System.err.println(name + " differs for dive " + index + " (seed " + seed + "): " + value + " != " + expected); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+        System.exit(1);
+    }
+
+    private static double sum(Double a, Double b, Double c) {
+        return (a == null ? 0 : a.doubleValue()) + (b == null || b.isNaN() ? 0 : b.doubleValue()) + (c == null ? 0 : c.doubleValue());
+    }
+
+    //
+    // the former computations of Dive over the sample objects
+    //
+
+    private static Double maxDepth(ArrayList<Sample> samples) {
+        Double max = null;
+        if (samples == null) {
+            return null;
+        }
+        Iterator<Sample> it = samples.iterator();
+        while (it.hasNext()) {
+            Object o = it.next();
+            if (o instanceof Depth) {
+                Depth d = (Depth)o;
+                Double val = d.getValue();
+                if (val != null) {
+                    if (max == null || max.doubleValue() < val.doubleValue()) {
+                        max = val;
+                    }
+                }
+            }
+        }
+        return max;
+    }
+
+    private static void addSampleTimeOffset(ArrayList<Sample> samples, Double offset) {
+        Iterator<Sample> it = samples.iterator();
+        while (it.hasNext()) {
+            Object o = it.next();
+            if (o instanceof Time) {
+                Time d = (Time)o;
+                d.setValue(d.getValue() + offset);
+            }
+        }
+    }
+
+    private static Double averageDepth(ArrayList<Sample> samples) {
+        double average = 0;
+        int i = 0;
+        if (samples == null) {
+            return null;
+        }
+        Iterator<Sample> it = samples.iterator();
+        while (it.hasNext()) {
+            Object o = it.next();
+            if (o instanceof Depth) {
+                Depth d = (Depth)o;
+                Double val = d.getValue();
+                if (val != null) {
+                    average = average + val;
+                    i++;
+                }
+            }
+        }
+        return (average / i);
+    }
+
+    private static Double duration(ArrayList<Sample> samples, int mode) {
+        Double duration = null;
+        if (samples == null) {
+            return null;
+        }
+        if (mode == Dive.MODE_DELTA) {
+            long units = 0;
+            double factor = 0;
+            long counter = 0;
+            Iterator<Sample> it = samples.iterator();
+            while (it.hasNext()) {
+                Sample s = it.next();
+                if (s instanceof Delta) {
+                    units += factor * counter;
+                    counter = 0;
+                    Delta d = (Delta)s;
+                    factor = (d.getValue()).doubleValue();
+                } else if (s instanceof Depth) {
+                    counter++;
+                }
+            }
+            units += factor*counter;
+            duration = new Double(units);
+        } else {
+            Iterator<Sample> it = samples.iterator();
+            Double time = null;
+            while (it.hasNext()) {
+                Sample s = it.next();
+                if (s instanceof Time) {
+                    Time t = (Time)s;
+                    time = t.getValue();
+                }
+            }
+            duration = time;
+        }
+        return duration;
+    }
+
+}